@@ -16,8 +16,11 @@
 
 package com.example.bulkupdateindex;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+import com.example.bulkupdateindex.profile.MigrateEvent;
 import com.google.gson.JsonObject;
 import io.searchbox.action.BulkableAction;
 import io.searchbox.core.Update;
@@ -27,7 +30,23 @@ import io.searchbox.core.Update;
  *
  * @author Stephane Nicoll
  */
-public abstract class AbstractIndexer {
+public abstract class AbstractIndexer implements ActionEmitter {
+
+	private final ThreadLocal<IndexActionContainer> containers = ThreadLocal
+			.withInitial(IndexActionContainer::new);
+
+	private final Consumer<IndexActionContainer> migration = this::migrate;
+
+	private final AnomalyReporter anomalyReporter = new AnomalyReporter();
+
+	/**
+	 * Return the {@link AnomalyReporter} to use to report anomalies found in the input
+	 * documents.
+	 * @return the anomaly reporter
+	 */
+	public AnomalyReporter getAnomalyReporter() {
+		return this.anomalyReporter;
+	}
 
 	/**
 	 * Analyze the input document and return an {@link Update} or {@code null} if the
@@ -36,9 +55,62 @@ public abstract class AbstractIndexer {
 	 * @return an {@link Update} or {@code null}
 	 */
 	public List<BulkableAction<?>> index(JsonObject input) {
-		IndexActionContainer container = new IndexActionContainer(input);
-		migrate(container);
-		return container.getActions();
+		return apply(input);
+	}
+
+	@Override
+	public void emit(JsonObject input, List<BulkableAction<?>> actions) {
+		emit(input, actions, this.migration);
+	}
+
+	/**
+	 * Analyze the input document using the specified migration.
+	 * @param input the input document to reindex
+	 * @param migration the migration to apply
+	 * @return the actions to apply
+	 */
+	protected List<BulkableAction<?>> index(JsonObject input,
+			Consumer<IndexActionContainer> migration) {
+		List<BulkableAction<?>> actions = new ArrayList<>();
+		emit(input, actions, migration);
+		return actions;
+	}
+
+	/**
+	 * Analyze the input document using the specified migration and append the actions to
+	 * apply to the specified list. The {@link IndexActionContainer} is reused for each
+	 * document processed by the current thread.
+	 * @param input the input document to reindex
+	 * @param actions the list to append actions to
+	 * @param migration the migration to apply
+	 */
+	protected void emit(JsonObject input, List<BulkableAction<?>> actions,
+			Consumer<IndexActionContainer> migration) {
+		MigrateEvent event = new MigrateEvent();
+		event.begin();
+		int start = actions.size();
+		IndexActionContainer container = this.containers.get();
+		container.reset(input, actions);
+		try {
+			migration.accept(container);
+			if (event.shouldCommit()) {
+				event.complete(getClass().getSimpleName(), container.getIndex(),
+						container.getId(), actions.size() - start);
+			}
+		}
+		finally {
+			container.clear();
+		}
+	}
+
+	/**
+	 * Return a {@link ScriptMigration} that is equivalent to this indexer and can run on
+	 * the cluster, or {@code null} if the migration can only run on the client.
+	 * @return the script migration or {@code null}
+	 * @see BulkUpdateIndex#updateInPlace
+	 */
+	public ScriptMigration getScriptMigration() {
+		return null;
 	}
 
 	protected abstract void migrate(IndexActionContainer container);
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+
+/**
+ * An update function that appends the actions of a hit to a list supplied by the caller
+ * rather than returning a new list. A page of hits is transformed into a single list,
+ * without intermediate allocations per hit.
+ * <p>
+ * An emitter can be used wherever an update function is expected, in which case a new
+ * list is created for each hit.
+ *
+ * @author Stephane Nicoll
+ */
+@FunctionalInterface
+public interface ActionEmitter extends Function<JsonObject, List<BulkableAction<?>>> {
+
+	/**
+	 * Append the actions for the specified hit, if any.
+	 * @param hit the hit to process
+	 * @param actions the list to append actions to
+	 */
+	void emit(JsonObject hit, List<BulkableAction<?>> actions);
+
+	@Override
+	default List<BulkableAction<?>> apply(JsonObject hit) {
+		List<BulkableAction<?>> actions = new ArrayList<>();
+		emit(hit, actions);
+		return actions;
+	}
+
+	/**
+	 * Append the actions of the specified update function for a hit, using {@link #emit}
+	 * if the function is an {@link ActionEmitter}.
+	 * @param updateFunction the update function
+	 * @param hit the hit to process
+	 * @param actions the list to append actions to
+	 */
+	static void emit(Function<JsonObject, List<BulkableAction<?>>> updateFunction,
+			JsonObject hit, List<BulkableAction<?>> actions) {
+		if (updateFunction instanceof ActionEmitter) {
+			((ActionEmitter) updateFunction).emit(hit, actions);
+		}
+		else {
+			List<BulkableAction<?>> hitActions = updateFunction.apply(hit);
+			if (hitActions != null) {
+				actions.addAll(hitActions);
+			}
+		}
+	}
+
+}
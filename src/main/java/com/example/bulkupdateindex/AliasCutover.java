@@ -0,0 +1,237 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Count;
+import io.searchbox.core.CountResult;
+import io.searchbox.indices.CreateIndex;
+import io.searchbox.indices.DeleteIndex;
+import io.searchbox.indices.Refresh;
+import io.searchbox.indices.aliases.AddAliasMapping;
+import io.searchbox.indices.aliases.GetAliases;
+import io.searchbox.indices.aliases.ModifyAliases;
+import io.searchbox.indices.aliases.RemoveAliasMapping;
+import io.searchbox.indices.mapping.GetMapping;
+import io.searchbox.indices.settings.GetSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Build a versioned physical index and move a read alias to it in a single atomic
+ * operation once it has been verified.
+ * <p>
+ * The new index is created with the settings and mappings of the index the alias
+ * currently points to, if any, and is deleted if it could not be built or verified.
+ *
+ * @author Stephane Nicoll
+ */
+class AliasCutover {
+
+	private static final Logger logger = LoggerFactory.getLogger(AliasCutover.class);
+
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter
+			.ofPattern("yyyyMMddHHmmss");
+
+	/**
+	 * Settings that are set by the cluster when an index is created and cannot be copied
+	 * to a new index.
+	 */
+	private static final List<String> INTERNAL_SETTINGS = Arrays.asList("uuid",
+			"creation_date", "provided_name", "version");
+
+	private final JestClient jestClient;
+
+	AliasCutover(JestClient jestClient) {
+		this.jestClient = jestClient;
+	}
+
+	String rebuild(String alias, Duration retention, RebuildOperation operation)
+			throws IOException {
+		Instant now = Instant.now();
+		String index = alias + "-"
+				+ TIMESTAMP_FORMAT.format(LocalDateTime.ofInstant(now, ZoneOffset.UTC));
+		List<String> previousIndices = getIndices(alias);
+		if (previousIndices.contains(alias)) {
+			throw new IllegalStateException("Could not use " + alias + " as an alias, "
+					+ "an index with that name already exists");
+		}
+		logger.info("Building " + index + " for " + alias);
+		createIndex(index, previousIndices);
+		try {
+			long expectedCount = operation.build(index);
+			execute(new Refresh.Builder().addIndex(index).build(), "refresh " + index);
+			long count = count(index);
+			if (count < expectedCount) {
+				throw new IllegalStateException(String.format(
+						"%s holds %s documents, expected at least %s. Alias %s is left "
+								+ "unchanged",
+						index, count, expectedCount, alias));
+			}
+			swap(alias, previousIndices, index);
+		}
+		catch (Throwable ex) {
+			// Do not leave a half-built index behind
+			try {
+				execute(new DeleteIndex.Builder(index).build(), "delete " + index);
+			}
+			catch (Throwable deleteEx) {
+				ex.addSuppressed(deleteEx);
+			}
+			throw ex;
+		}
+		if (retention != null) {
+			deleteExpiredIndices(alias, now.minus(retention));
+		}
+		return index;
+	}
+
+	private void createIndex(String index, List<String> previousIndices)
+			throws IOException {
+		CreateIndex.Builder builder = new CreateIndex.Builder(index);
+		if (!previousIndices.isEmpty()) {
+			// Indices are named after their creation time, copy the most recent one
+			String currentIndex = Collections.max(previousIndices);
+			JsonObject definition = getDefinition(currentIndex);
+			if (definition.size() > 0) {
+				logger.info("Using settings and mappings of " + currentIndex);
+				builder.settings(definition.toString());
+			}
+		}
+		execute(builder.build(), "create " + index);
+	}
+
+	private JsonObject getDefinition(String index) throws IOException {
+		JsonObject definition = new JsonObject();
+		JsonObject settings = getIndexElement(
+				new GetSettings.Builder().addIndex(index).build(), index, "settings");
+		if (settings != null) {
+			JsonObject indexSettings = settings.getAsJsonObject("index");
+			if (indexSettings != null) {
+				INTERNAL_SETTINGS.forEach(indexSettings::remove);
+			}
+			definition.add("settings", settings);
+		}
+		JsonObject mappings = getIndexElement(
+				new GetMapping.Builder().addIndex(index).build(), index, "mappings");
+		if (mappings != null) {
+			definition.add("mappings", mappings);
+		}
+		return definition;
+	}
+
+	private JsonObject getIndexElement(Action<JestResult> action, String index,
+			String name) throws IOException {
+		JestResult result = this.jestClient.execute(action);
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException("Failed to retrieve " + name + " of " + index
+					+ " " + result.getErrorMessage());
+		}
+		JsonObject content = result.getJsonObject().getAsJsonObject(index);
+		return (content != null) ? content.getAsJsonObject(name) : null;
+	}
+
+	private void swap(String alias, List<String> previousIndices, String index)
+			throws IOException {
+		logger.info("Moving " + alias + " from " + previousIndices + " to " + index);
+		ModifyAliases.Builder builder = new ModifyAliases.Builder(
+				new AddAliasMapping.Builder(index, alias).build());
+		if (!previousIndices.isEmpty()) {
+			builder.addAlias(
+					new RemoveAliasMapping.Builder(previousIndices, alias).build());
+		}
+		execute(builder.build(), "move alias " + alias);
+	}
+
+	private void deleteExpiredIndices(String alias, Instant cutoff) throws IOException {
+		JestResult result = this.jestClient
+				.execute(new GetAliases.Builder().addIndex(alias + "-*").build());
+		if (!result.isSucceeded()) {
+			return;
+		}
+		for (Map.Entry<String, JsonElement> entry : result.getJsonObject().entrySet()) {
+			String index = entry.getKey();
+			JsonObject aliases = entry.getValue().getAsJsonObject()
+					.getAsJsonObject("aliases");
+			Instant created = parseTimestamp(index.substring(alias.length() + 1));
+			if (created != null && created.isBefore(cutoff)
+					&& (aliases == null || !aliases.has(alias))) {
+				logger.info("Deleting " + index + " that is no longer used by " + alias);
+				execute(new DeleteIndex.Builder(index).build(), "delete " + index);
+			}
+		}
+	}
+
+	private Instant parseTimestamp(String text) {
+		try {
+			return LocalDateTime.parse(text, TIMESTAMP_FORMAT).toInstant(ZoneOffset.UTC);
+		}
+		catch (DateTimeParseException ex) {
+			return null;
+		}
+	}
+
+	private List<String> getIndices(String alias) throws IOException {
+		JestResult result = this.jestClient
+				.execute(new GetAliases.Builder().addIndex(alias).build());
+		List<String> indices = new ArrayList<>();
+		if (result.isSucceeded()) {
+			for (Map.Entry<String, JsonElement> entry : result.getJsonObject()
+					.entrySet()) {
+				indices.add(entry.getKey());
+			}
+		}
+		return indices;
+	}
+
+	private long count(String index) throws IOException {
+		CountResult result = this.jestClient
+				.execute(new Count.Builder().addIndex(index).build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException(
+					"Failed to count " + index + " " + result.getErrorMessage());
+		}
+		return result.getCount().longValue();
+	}
+
+	private void execute(Action<JestResult> action, String description)
+			throws IOException {
+		JestResult result = this.jestClient.execute(action);
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException(
+					"Failed to " + description + " " + result.getErrorMessage());
+		}
+	}
+
+}
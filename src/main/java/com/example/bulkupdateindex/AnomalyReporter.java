@@ -0,0 +1,229 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Count anomalies found while indexing by type and key, rather than logging each of them.
+ * Only a limited number of samples per type is logged every minute and a summary of the
+ * most frequent keys can be logged at the end of a run. Recording an anomaly does not
+ * format any message and is safe to call concurrently.
+ * <p>
+ * The number of distinct keys tracked per type is bounded; anomalies with additional keys
+ * are only accounted for in the total of their type.
+ *
+ * @author Stephane Nicoll
+ */
+public class AnomalyReporter {
+
+	private static final Logger logger = LoggerFactory.getLogger(AnomalyReporter.class);
+
+	private static final long SAMPLE_WINDOW = TimeUnit.MINUTES.toNanos(1);
+
+	private final int maxKeys;
+
+	private final int samplesPerMinute;
+
+	private final ConcurrentMap<String, TypeStatistics> types = new ConcurrentHashMap<>();
+
+	public AnomalyReporter() {
+		this(10000, 10);
+	}
+
+	/**
+	 * Create a new instance.
+	 * @param maxKeys the maximum number of distinct keys tracked per type
+	 * @param samplesPerMinute the maximum number of samples logged per type and minute
+	 */
+	public AnomalyReporter(int maxKeys, int samplesPerMinute) {
+		this.maxKeys = maxKeys;
+		this.samplesPerMinute = samplesPerMinute;
+	}
+
+	/**
+	 * Record an anomaly.
+	 * @param type the type of the anomaly
+	 * @param key the elements identifying what the anomaly relates to
+	 */
+	public void record(String type, String... key) {
+		record(type, 1, key);
+	}
+
+	/**
+	 * Record an anomaly that affects several items, such as a stat entry that accounts
+	 * for a number of downloads. Counts of the type and key are incremented by the
+	 * specified weight.
+	 * @param type the type of the anomaly
+	 * @param weight the number of items affected by the anomaly
+	 * @param key the elements identifying what the anomaly relates to
+	 */
+	public void record(String type, long weight, String... key) {
+		TypeStatistics statistics = this.types.get(type);
+		if (statistics == null) {
+			statistics = this.types.computeIfAbsent(type, TypeStatistics::new);
+		}
+		statistics.record(new Key(key), weight);
+	}
+
+	/**
+	 * Return the number of anomalies of the specified type.
+	 * @param type the type of the anomaly
+	 * @return the number of anomalies
+	 */
+	public long getCount(String type) {
+		TypeStatistics statistics = this.types.get(type);
+		return (statistics != null) ? statistics.total.sum() : 0;
+	}
+
+	/**
+	 * Return the number of anomalies of the specified type and key.
+	 * @param type the type of the anomaly
+	 * @param key the elements identifying what the anomaly relates to
+	 * @return the number of anomalies
+	 */
+	public long getCount(String type, String... key) {
+		TypeStatistics statistics = this.types.get(type);
+		LongAdder count = (statistics != null) ? statistics.keys.get(new Key(key)) : null;
+		return (count != null) ? count.sum() : 0;
+	}
+
+	/**
+	 * Log a summary of the anomalies, if any, and clear them.
+	 * @param topKeys the number of most frequent keys to report per type
+	 */
+	public void logSummary(int topKeys) {
+		if (!this.types.isEmpty()) {
+			logger.warn(getSummary(topKeys));
+		}
+		this.types.clear();
+	}
+
+	/**
+	 * Return a summary of the anomalies with the most frequent keys of each type.
+	 * @param topKeys the number of most frequent keys to report per type
+	 * @return a summary
+	 */
+	public String getSummary(int topKeys) {
+		StringBuilder sb = new StringBuilder("Anomalies:");
+		new TreeMap<>(this.types).forEach((type, statistics) -> {
+			sb.append(String.format("%n%s: %s", type, statistics.total.sum()));
+			statistics.keys.entrySet().stream()
+					.sorted(Comparator.comparingLong(
+							(Map.Entry<Key, LongAdder> entry) -> entry.getValue().sum())
+							.reversed())
+					.limit(topKeys)
+					.forEach((entry) -> sb.append(String.format("%n\t%s: %s",
+							entry.getKey(), entry.getValue().sum())));
+			long untracked = statistics.untracked.sum();
+			if (untracked > 0) {
+				sb.append(String.format("%n\t(untracked keys): %s", untracked));
+			}
+		});
+		return sb.toString();
+	}
+
+	private final class TypeStatistics {
+
+		private final String type;
+
+		private final LongAdder total = new LongAdder();
+
+		private final LongAdder untracked = new LongAdder();
+
+		private final ConcurrentMap<Key, LongAdder> keys = new ConcurrentHashMap<>();
+
+		private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+		private final AtomicInteger samples = new AtomicInteger();
+
+		TypeStatistics(String type) {
+			this.type = type;
+		}
+
+		void record(Key key, long weight) {
+			this.total.add(weight);
+			LongAdder count = this.keys.get(key);
+			if (count == null && this.keys.size() < AnomalyReporter.this.maxKeys) {
+				count = this.keys.computeIfAbsent(key, (k) -> new LongAdder());
+			}
+			if (count != null) {
+				count.add(weight);
+			}
+			else {
+				this.untracked.add(weight);
+			}
+			if (shouldSample()) {
+				logger.warn("{} for {} [{} so far]", this.type, key, this.total.sum());
+			}
+		}
+
+		private boolean shouldSample() {
+			long now = System.nanoTime();
+			long start = this.windowStart.get();
+			if (now - start > SAMPLE_WINDOW
+					&& this.windowStart.compareAndSet(start, now)) {
+				this.samples.set(0);
+			}
+			return this.samples.incrementAndGet() <= AnomalyReporter.this.samplesPerMinute
+					&& logger.isWarnEnabled();
+		}
+
+	}
+
+	private static final class Key {
+
+		private final String[] elements;
+
+		private final int hashCode;
+
+		Key(String[] elements) {
+			this.elements = elements;
+			this.hashCode = Arrays.hashCode(elements);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof Key)
+					&& Arrays.equals(this.elements, ((Key) obj).elements);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public String toString() {
+			return String.join(" - ", this.elements);
+		}
+
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.example.bulkupdateindex.profile.BulkRequestEvent;
+import com.example.bulkupdateindex.profile.BulkSerializeEvent;
+import com.example.bulkupdateindex.profile.FailedItemsEvent;
+import com.google.gson.Gson;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.BulkResult.BulkResultItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.ObjectUtils;
+
+/**
+ * A {@link DocumentSink} that sends actions to the cluster using the bulk API.
+ *
+ * @author Stephane Nicoll
+ */
+public class BulkDocumentSink implements DocumentSink {
+
+	private static final Logger logger = LoggerFactory.getLogger(BulkDocumentSink.class);
+
+	private final Gson gson = new Gson();
+
+	private final JestClient jestClient;
+
+	private final WriteMode writeMode;
+
+	private final BulkFailureHandler failureHandler;
+
+	private final UnchangedDocumentFilter unchangedDocumentFilter;
+
+	public BulkDocumentSink(JestClient jestClient, WriteMode writeMode) {
+		this(jestClient, writeMode, (failedItems) -> {
+		});
+	}
+
+	public BulkDocumentSink(JestClient jestClient, WriteMode writeMode,
+			BulkFailureHandler failureHandler) {
+		this.jestClient = jestClient;
+		this.writeMode = writeMode;
+		this.failureHandler = failureHandler;
+		this.unchangedDocumentFilter = new UnchangedDocumentFilter(jestClient);
+	}
+
+	@Override
+	public void write(List<BulkableAction<?>> actions) throws IOException {
+		List<BulkableAction<?>> updates = filterUnchanged(actions);
+		if (updates.size() < actions.size()) {
+			logger.info(String.format("Skipping %s unchanged elements",
+					actions.size() - updates.size()));
+		}
+		if (updates.isEmpty()) {
+			logger.info("No element to update");
+			return;
+		}
+		Bulk.Builder bulkUpdate = new Bulk.Builder();
+		updates.forEach((action) -> bulkUpdate.addAction(applyWriteMode(action)));
+		logger.info(String.format("Updating %s elements", updates.size()));
+		BulkSerializeEvent serializeEvent = new BulkSerializeEvent();
+		serializeEvent.begin();
+		// Failed items refer to the actions as they were received
+		SerializedBulk bulk = new SerializedBulk(bulkUpdate, updates, this.gson);
+		serializeEvent.complete(updates.size(), bulk.getSize());
+		BulkRequestEvent requestEvent = new BulkRequestEvent();
+		requestEvent.begin();
+		BulkResult updateResult = this.jestClient.execute(bulk);
+		List<BulkResultItem> allFailedItems = updateResult.getFailedItems();
+		requestEvent.complete(updates.size(), bulk.getSize(), allFailedItems.size());
+		if (allFailedItems.isEmpty()) {
+			return;
+		}
+		FailedItemsEvent failedItemsEvent = new FailedItemsEvent();
+		failedItemsEvent.begin();
+		List<BulkResultItem> failedItems = getFailedItems(allFailedItems);
+		if (!ObjectUtils.isEmpty(failedItems)) {
+			logger.error("Failed to update elements " + failedItems);
+			this.failureHandler.onFailures(failedItems);
+		}
+		failedItemsEvent.complete(allFailedItems.size(),
+				allFailedItems.size() - failedItems.size());
+	}
+
+	private List<BulkableAction<?>> filterUnchanged(List<BulkableAction<?>> actions)
+			throws IOException {
+		if (this.writeMode == WriteMode.SKIP_UNCHANGED) {
+			return this.unchangedDocumentFilter.filter(actions);
+		}
+		return actions;
+	}
+
+	private BulkableAction<?> applyWriteMode(BulkableAction<?> action) {
+		if (this.writeMode == WriteMode.CREATE && action instanceof HashedIndex) {
+			return ((HashedIndex) action).asCreate();
+		}
+		return action;
+	}
+
+	private List<BulkResultItem> getFailedItems(List<BulkResultItem> failedItems) {
+		if (this.writeMode != WriteMode.CREATE) {
+			return failedItems;
+		}
+		// Documents that exist already are expected in create mode
+		return failedItems.stream().filter(
+				(item) -> !("create".equals(item.operation) && item.status == 409))
+				.collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.List;
+
+import io.searchbox.core.BulkResult.BulkResultItem;
+
+/**
+ * Callback invoked with the items of a bulk request that failed.
+ *
+ * @author Stephane Nicoll
+ * @see BulkDocumentSink
+ */
+@FunctionalInterface
+public interface BulkFailureHandler {
+
+	/**
+	 * Handle the specified failed items.
+	 * @param failedItems the items that failed
+	 */
+	void onFailures(List<BulkResultItem> failedItems);
+
+	/**
+	 * Return a handler that invokes this handler and then the specified one.
+	 * @param next the handler to invoke next
+	 * @return a composed handler
+	 */
+	default BulkFailureHandler andThen(BulkFailureHandler next) {
+		return (failedItems) -> {
+			onFailures(failedItems);
+			next.onFailures(failedItems);
+		};
+	}
+
+}
@@ -17,28 +17,34 @@
 package com.example.bulkupdateindex;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
+import com.example.bulkupdateindex.ingest.IngestPipeline;
+import com.example.bulkupdateindex.profile.PageEvent;
+import com.example.bulkupdateindex.snapshot.SnapshotDocumentSource;
+import com.example.bulkupdateindex.snapshot.SnapshotReader;
+import com.example.bulkupdateindex.snapshot.SnapshotWriter;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import io.searchbox.action.BulkableAction;
 import io.searchbox.client.JestClient;
-import io.searchbox.client.JestResult;
-import io.searchbox.core.Bulk;
-import io.searchbox.core.BulkResult;
 import io.searchbox.core.Search;
-import io.searchbox.core.SearchScroll;
 import io.searchbox.core.Update;
-import io.searchbox.core.search.sort.Sort;
-import io.searchbox.params.Parameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.stereotype.Component;
-import org.springframework.util.ObjectUtils;
+import org.springframework.util.Assert;
 
 /**
  * Bulk update elements based on a search.
@@ -52,8 +58,173 @@ public class BulkUpdateIndex {
 
 	private final JestClient jestClient;
 
+	private final WriteOptimizedLifecycle writeOptimizedLifecycle;
+
+	private final AliasCutover aliasCutover;
+
+	private final UpdateByQueryOperation updateByQueryOperation;
+
+	private final ReindexOperation reindexOperation;
+
+	private JestClient bulkClient;
+
+	private boolean shardGrouping;
+
+	private DeadLetterQueue deadLetterQueue;
+
 	public BulkUpdateIndex(JestClient jestClient) {
 		this.jestClient = jestClient;
+		this.writeOptimizedLifecycle = new WriteOptimizedLifecycle(jestClient);
+		this.aliasCutover = new AliasCutover(jestClient);
+		this.updateByQueryOperation = new UpdateByQueryOperation(jestClient);
+		this.reindexOperation = new ReindexOperation(jestClient);
+		this.bulkClient = jestClient;
+	}
+
+	/**
+	 * Set the client to use to send bulk requests, such as a
+	 * {@link com.example.bulkupdateindex.transport.LoadBalancedJestClient} that spreads
+	 * them across the nodes of the cluster. By default, the main client is used.
+	 * @param bulkClient the client to use for bulk requests
+	 */
+	public void setBulkClient(JestClient bulkClient) {
+		Assert.notNull(bulkClient, "BulkClient must not be null");
+		this.bulkClient = bulkClient;
+	}
+
+	/**
+	 * Set whether the actions of a page should be split per target shard before being
+	 * sent, so that each bulk request only involves a single shard. Disabled by default.
+	 * @param shardGrouping whether to send shard-aligned bulk requests
+	 * @see ShardGroupingDocumentSink
+	 */
+	public void setShardGrouping(boolean shardGrouping) {
+		this.shardGrouping = shardGrouping;
+	}
+
+	/**
+	 * Set the {@link DeadLetterQueue} to which actions that have failed for good should
+	 * be written. By default, failed actions are only logged.
+	 * @param deadLetterQueue the dead-letter queue or {@code null}
+	 * @see #replayDeadLetters(Path, int)
+	 */
+	public void setDeadLetterQueue(DeadLetterQueue deadLetterQueue) {
+		this.deadLetterQueue = deadLetterQueue;
+	}
+
+	/**
+	 * Build a new physical index named after the specified alias and a timestamp, and
+	 * move the alias to it in a single atomic operation once the operation has completed
+	 * and the new index holds the expected number of documents. Readers of the alias
+	 * never see a partially built index.
+	 * @param alias the read alias
+	 * @param retention how long indices that no longer hold the alias are kept, or
+	 * {@code null} to keep them
+	 * @param operation the operation that builds the new index
+	 * @return the name of the new physical index
+	 * @throws IOException if an index operation fails
+	 */
+	public String rebuild(String alias, Duration retention, RebuildOperation operation)
+			throws IOException {
+		return this.aliasCutover.rebuild(alias, retention, operation);
+	}
+
+	/**
+	 * Run the specified operation with the target index optimized for write: refresh is
+	 * disabled and replicas are removed for the duration of the operation. The original
+	 * settings are restored once the operation has completed, even if it failed. The
+	 * target index must exist.
+	 * @param targetIndex the index the operation writes to
+	 * @param operation the operation to run
+	 * @throws IOException if an index operation fails
+	 */
+	public void optimizeForWrite(String targetIndex, IndexingOperation operation)
+			throws IOException {
+		optimizeForWrite(targetIndex, 0, operation);
+	}
+
+	/**
+	 * Run the specified operation with the target index optimized for write and force
+	 * merge it if the operation completed successfully.
+	 * @param targetIndex the index the operation writes to
+	 * @param maxNumSegments the number of segments to force merge to, or {@code 0} to not
+	 * force merge the target index
+	 * @param operation the operation to run
+	 * @throws IOException if an index operation fails
+	 * @see #optimizeForWrite(String, IndexingOperation)
+	 */
+	public void optimizeForWrite(String targetIndex, int maxNumSegments,
+			IndexingOperation operation) throws IOException {
+		this.writeOptimizedLifecycle.run(targetIndex, maxNumSegments, operation);
+	}
+
+	/**
+	 * Migrate the documents of the specified index in place. If the indexer provides a
+	 * {@link AbstractIndexer#getScriptMigration() script migration}, it runs on the
+	 * cluster using {@code _update_by_query}. Otherwise, documents are migrated by the
+	 * indexer on the client.
+	 * @param index the index to migrate
+	 * @param type the type of the documents to migrate or {@code null}
+	 * @param indexer the indexer
+	 * @param pageSize the size of a page if the migration runs on the client
+	 * @param slices the number of slices if the migration runs on the cluster
+	 * @param requestsPerSecond the throttle if the migration runs on the cluster, or
+	 * {@code -1} to disable throttling
+	 * @return the number of elements that have been processed
+	 * @throws IOException if an index operation fails
+	 */
+	public long updateInPlace(String index, String type, AbstractIndexer indexer,
+			int pageSize, int slices, float requestsPerSecond) throws IOException {
+		ScriptMigration migration = indexer.getScriptMigration();
+		if (migration != null) {
+			return updateByQuery(index, type, migration, slices, requestsPerSecond);
+		}
+		Search.Builder searchBuilder = new Search.Builder("").addIndex(index);
+		if (type != null) {
+			searchBuilder.addType(type);
+		}
+		return update(searchBuilder, pageSize, indexer);
+	}
+
+	/**
+	 * Run the specified {@link ScriptMigration} on the cluster using
+	 * {@code _update_by_query} and wait for it to complete. Documents are not transferred
+	 * to the client. Progress is logged as the task runs. Documents that are modified
+	 * concurrently do not stop the task but are reported as a failure once it has
+	 * completed.
+	 * @param index the index to migrate
+	 * @param type the type of the documents to migrate or {@code null}
+	 * @param migration the migration
+	 * @param slices the number of slices to run in parallel
+	 * @param requestsPerSecond the throttle or {@code -1} to disable throttling
+	 * @return the number of elements that have been updated
+	 * @throws IOException if an index operation fails
+	 */
+	public long updateByQuery(String index, String type, ScriptMigration migration,
+			int slices, float requestsPerSecond) throws IOException {
+		return this.updateByQueryOperation.run(index, type, migration, slices,
+				requestsPerSecond);
+	}
+
+	/**
+	 * Copy the documents of an index to another index on the cluster using
+	 * {@code _reindex} and wait for it to complete. Documents are not transferred to the
+	 * client. If an {@link IngestPipeline} is specified, it is created or replaced first
+	 * and each document is transformed by it before being indexed.
+	 * @param sourceIndex the index to copy
+	 * @param type the type of the documents to copy or {@code null}
+	 * @param targetIndex the index to copy to
+	 * @param pipeline the pipeline that transforms documents or {@code null}
+	 * @param slices the number of slices to run in parallel
+	 * @param requestsPerSecond the throttle or {@code -1} to disable throttling
+	 * @return the number of elements that have been indexed
+	 * @throws IOException if an index operation fails
+	 */
+	public long reindex(String sourceIndex, String type, String targetIndex,
+			IngestPipeline pipeline, int slices, float requestsPerSecond)
+			throws IOException {
+		return this.reindexOperation.run(sourceIndex, type, targetIndex, pipeline, slices,
+				requestsPerSecond);
 	}
 
 	/**
@@ -61,61 +232,371 @@ public class BulkUpdateIndex {
 	 * @param searchBuilder a search query builder targeting the elements to update
 	 * @param pageSize the size of a page
 	 * @param updateFunction the {@link Update} function for a given hit
+	 * @return the number of elements that have been processed
+	 * @throws IOException if an index operation fails
+	 */
+	public long update(Search.Builder searchBuilder, int pageSize,
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction)
+			throws IOException {
+		return update(searchBuilder, pageSize, WriteMode.INDEX, updateFunction);
+	}
+
+	/**
+	 * Update the elements defined by the specific search.
+	 * @param searchBuilder a search query builder targeting the elements to update
+	 * @param pageSize the size of a page
+	 * @param writeMode how {@link HashedIndex} actions should be written
+	 * @param updateFunction the {@link Update} function for a given hit
+	 * @return the number of elements that have been processed
+	 * @throws IOException if an index operation fails
+	 */
+	public long update(Search.Builder searchBuilder, int pageSize, WriteMode writeMode,
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction)
+			throws IOException {
+		try (DocumentSource source = new ScrollDocumentSource(this.jestClient,
+				searchBuilder, pageSize);
+				DocumentSink sink = createBulkSink(writeMode, null)) {
+			return update(source, sink, trackOrigins(updateFunction));
+		}
+	}
+
+	/**
+	 * Update the elements defined by the specific search and notify the specified
+	 * {@link BulkFailureHandler} of the items that have failed.
+	 * @param searchBuilder a search query builder targeting the elements to update
+	 * @param pageSize the size of a page
+	 * @param writeMode how {@link HashedIndex} actions should be written
+	 * @param updateFunction the {@link Update} function for a given hit
+	 * @param failureHandler the handler to notify of failed items
+	 * @return the number of elements that have been processed
+	 * @throws IOException if an index operation fails
+	 */
+	public long update(Search.Builder searchBuilder, int pageSize, WriteMode writeMode,
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction,
+			BulkFailureHandler failureHandler) throws IOException {
+		try (DocumentSource source = new ScrollDocumentSource(this.jestClient,
+				searchBuilder, pageSize);
+				DocumentSink sink = createBulkSink(writeMode, failureHandler)) {
+			return update(source, sink, trackOrigins(updateFunction));
+		}
+	}
+
+	/**
+	 * Update the elements defined by the specific search with several indexers in a
+	 * single pass. The actions of all indexers are written in shared bulk requests.
+	 * @param searchBuilder a search query builder targeting the elements of all indexers
+	 * @param pageSize the size of a page
+	 * @param writeMode how {@link HashedIndex} actions should be written
+	 * @param indexers the indexers to run against each element
+	 * @return the number of elements that have been processed
+	 * @throws IOException if an index operation fails
+	 */
+	public long update(Search.Builder searchBuilder, int pageSize, WriteMode writeMode,
+			IndexerGroup indexers) throws IOException {
+		try (DocumentSource source = new ScrollDocumentSource(this.jestClient,
+				searchBuilder, pageSize);
+				DocumentSink sink = indexers.track(
+						(failureHandler) -> createBulkSink(writeMode, failureHandler))) {
+			long hits = update(source, sink, trackOrigins(indexers));
+			logger.info(indexers.toString());
+			return hits;
+		}
+	}
+
+	/**
+	 * Update the elements provided by the specified {@link DocumentSource} and write the
+	 * resulting actions to the specified {@link DocumentSink}. The time spent in each
+	 * stage is logged once the source is exhausted.
+	 * @param source the source of the elements to update
+	 * @param sink the sink to write actions to
+	 * @param updateFunction the {@link Update} function for a given hit
+	 * @return the number of elements that have been processed
 	 * @throws IOException if an index operation fails
 	 */
-	public void update(Search.Builder searchBuilder, int pageSize,
+	public long update(DocumentSource source, DocumentSink sink,
 			Function<JsonObject, List<BulkableAction<?>>> updateFunction)
 			throws IOException {
-		Search search = searchBuilder.addSort(new Sort("_doc"))
-				.setParameter(Parameters.SIZE, pageSize)
-				.setParameter(Parameters.SCROLL, "5m").build();
-		JestResult result = this.jestClient.execute(search);
-		if (!result.isSucceeded()) {
-			throw new IllegalStateException("Query failed " + result.getErrorMessage());
-		}
-		boolean moreResults = processPage(result, updateFunction);
-		String scrollId = result.getJsonObject().get("_scroll_id").getAsString();
+		UpdateStatistics statistics = new UpdateStatistics();
+		JsonArray hits = read(source, statistics);
 		int page = 1;
-		while (moreResults) {
-			logger.info("Indexing page " + page + "[" + ((page - 1) * pageSize) + " to "
-					+ (page * pageSize) + "]");
-			SearchScroll scroll = new SearchScroll.Builder(scrollId, "5m").build();
-			result = this.jestClient.execute(scroll);
-			moreResults = processPage(result, updateFunction);
+		while (hits.size() > 0) {
+			logger.info("Indexing page " + page + "[" + statistics.getHits() + " elements"
+					+ " read so far]");
+			PageEvent event = new PageEvent();
+			event.begin();
+			List<BulkableAction<?>> actions = transform(hits, updateFunction, statistics);
+			write(sink, actions, statistics);
+			event.complete(page, hits.size(), actions.size());
+			hits = read(source, statistics);
 			page++;
 		}
+		logger.info("No more elements");
+		logger.info(statistics.toString());
+		return statistics.getHits();
+	}
+
+	/**
+	 * Update the elements defined by the specific search using the specified
+	 * {@link UpdatePipeline} rather than processing one page at a time.
+	 * @param searchBuilder a search query builder targeting the elements to update
+	 * @param pageSize the size of a page
+	 * @param writeMode how {@link HashedIndex} actions should be written
+	 * @param updateFunction the {@link Update} function for a given hit
+	 * @param pipeline the pipeline to use
+	 * @return the number of elements that have been processed
+	 * @throws IOException if an index operation fails
+	 */
+	public long update(Search.Builder searchBuilder, int pageSize, WriteMode writeMode,
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction,
+			UpdatePipeline pipeline) throws IOException {
+		try (DocumentSource source = new ScrollDocumentSource(this.jestClient,
+				searchBuilder, pageSize);
+				DocumentSink sink = createBulkSink(writeMode, null)) {
+			return update(source, sink, trackOrigins(updateFunction), pipeline);
+		}
+	}
+
+	/**
+	 * Update the elements provided by the specified {@link DocumentSource} using the
+	 * specified {@link UpdatePipeline}: elements are read, transformed and written
+	 * concurrently.
+	 * @param source the source of the elements to update
+	 * @param sink the sink to write actions to
+	 * @param updateFunction the {@link Update} function for a given hit
+	 * @param pipeline the pipeline to use
+	 * @return the number of elements that have been processed
+	 * @throws IOException if an index operation fails
+	 */
+	public long update(DocumentSource source, DocumentSink sink,
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction,
+			UpdatePipeline pipeline) throws IOException {
+		return pipeline.run(source, sink, updateFunction);
+	}
+
+	/**
+	 * Export the elements defined by the specific search to a local snapshot.
+	 * @param searchBuilder a search query builder targeting the elements to export
+	 * @param pageSize the size of a page
+	 * @param directory the directory to write the snapshot to
+	 * @param hitsPerChunk the maximum number of elements per chunk
+	 * @return the number of elements that have been exported
+	 * @throws IOException if an index operation fails or the snapshot could not be
+	 * written
+	 * @see #replay(Path, int, WriteMode, Function)
+	 */
+	public long export(Search.Builder searchBuilder, int pageSize, Path directory,
+			int hitsPerChunk) throws IOException {
+		try (DocumentSource source = new ScrollDocumentSource(this.jestClient,
+				searchBuilder, pageSize);
+				SnapshotWriter writer = new SnapshotWriter(directory, hitsPerChunk)) {
+			long total = 0;
+			JsonArray hits = source.nextPage();
+			while (hits.size() > 0) {
+				for (JsonElement hit : hits) {
+					writer.write(hit.getAsJsonObject());
+				}
+				total += hits.size();
+				logger.info("Exported " + total + " elements");
+				hits = source.nextPage();
+			}
+			return total;
+		}
 	}
 
-	private boolean processPage(JestResult result,
+	/**
+	 * Update the elements of a local snapshot rather than the elements of a search.
+	 * Chunks of the snapshot are processed in parallel.
+	 * @param directory the directory holding the snapshot
+	 * @param pageSize the size of a page
+	 * @param writeMode how {@link HashedIndex} actions should be written
+	 * @param updateFunction the {@link Update} function for a given hit
+	 * @return the number of elements that have been processed
+	 * @throws IOException if an index operation fails or the snapshot could not be read
+	 * @see #export(Search.Builder, int, Path, int)
+	 */
+	public long replay(Path directory, int pageSize, WriteMode writeMode,
 			Function<JsonObject, List<BulkableAction<?>>> updateFunction)
 			throws IOException {
-		JsonArray hits = result.getJsonObject().getAsJsonObject("hits")
-				.getAsJsonArray("hits");
-		if (hits.size() == 0) {
-			logger.info("No more elements");
-			return false;
+		SnapshotReader reader = new SnapshotReader(directory);
+		List<Path> chunks = reader.getChunks();
+		if (chunks.isEmpty()) {
+			logger.info("No chunk found in " + directory);
+			return 0;
 		}
-		List<BulkableAction<?>> updates = new ArrayList<>();
-		for (JsonElement hit : hits) {
-			List<BulkableAction<?>> actions = updateFunction.apply(hit.getAsJsonObject());
-			if (actions != null) {
-				updates.addAll(actions);
+		Function<JsonObject, List<BulkableAction<?>>> function = trackOrigins(
+				updateFunction);
+		int threads = Math.min(chunks.size(), Runtime.getRuntime().availableProcessors());
+		try (DocumentSink sink = createBulkSink(writeMode, null)) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<Long>> results = new ArrayList<>();
+				for (Path chunk : chunks) {
+					results.add(executor.submit(() -> {
+						logger.info("Replaying " + chunk);
+						try (DocumentSource source = new SnapshotDocumentSource(reader,
+								Collections.singletonList(chunk), pageSize)) {
+							return update(source, sink, function);
+						}
+					}));
+				}
+				long total = 0;
+				for (Future<Long> result : results) {
+					total += getResult(result);
+				}
+				return total;
 			}
+			finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Send the specified actions using bulk requests of at most {@code pageSize} actions.
+	 * Actions that fail are written to the {@link #setDeadLetterQueue dead-letter queue},
+	 * if any, with no source.
+	 * @param actions the actions to send
+	 * @param pageSize the maximum number of actions per bulk request
+	 * @throws IOException if an index operation fails
+	 */
+	public void write(List<BulkableAction<?>> actions, int pageSize) throws IOException {
+		if (this.deadLetterQueue != null) {
+			this.deadLetterQueue.trackOrigins(actions);
 		}
-		if (!updates.isEmpty()) {
-			Bulk.Builder bulkUpdate = new Bulk.Builder();
-			updates.forEach(bulkUpdate::addAction);
-			logger.info(String.format("Updating %s elements", updates.size()));
-			BulkResult updateResult = this.jestClient.execute(bulkUpdate.build());
-			if (!ObjectUtils.isEmpty(updateResult.getFailedItems())) {
-				logger.error(
-						"Failed to update elements " + updateResult.getFailedItems());
+		try (DocumentSink sink = createBulkSink(WriteMode.INDEX, null)) {
+			for (int i = 0; i < actions.size(); i += pageSize) {
+				sink.write(actions.subList(i, Math.min(i + pageSize, actions.size())));
 			}
 		}
+	}
+
+	/**
+	 * Send again the actions of a dead-letter file, as they were originally created.
+	 * Useful when the cause of the failure was on the cluster, such as a mapping that has
+	 * been fixed since.
+	 * @param file the dead-letter file
+	 * @param pageSize the number of actions per bulk request
+	 * @return the number of actions that have been sent
+	 * @throws IOException if an index operation fails or the file could not be read
+	 * @see DeadLetterQueue
+	 */
+	public long replayDeadLetters(Path file, int pageSize) throws IOException {
+		try (DocumentSource source = new DeadLetterDocumentSource(file, null, pageSize);
+				DocumentSink sink = createBulkSink(WriteMode.INDEX, null)) {
+			return update(source, sink, trackOrigins((entry) -> Collections
+					.singletonList(DeadLetterQueue.toAction(entry))));
+		}
+	}
+
+	/**
+	 * Fetch again the documents the actions of a dead-letter file were created from and
+	 * run them through the specified update function. Useful when the cause of the
+	 * failure was the update function itself.
+	 * @param file the dead-letter file
+	 * @param pageSize the number of documents to fetch at once
+	 * @param writeMode how {@link HashedIndex} actions should be written
+	 * @param updateFunction the {@link Update} function for a given hit
+	 * @return the number of documents that have been processed
+	 * @throws IOException if an index operation fails or the file could not be read
+	 */
+	public long replayDeadLetters(Path file, int pageSize, WriteMode writeMode,
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction)
+			throws IOException {
+		try (DocumentSource source = new DeadLetterDocumentSource(file, this.jestClient,
+				pageSize); DocumentSink sink = createBulkSink(writeMode, null)) {
+			return update(source, sink, trackOrigins(updateFunction));
+		}
+	}
+
+	private long getResult(Future<Long> result) throws IOException {
+		try {
+			return result.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while replaying snapshot", ex);
+		}
+		catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			}
+			throw new IllegalStateException("Failed to replay snapshot", ex.getCause());
+		}
+	}
+
+	/**
+	 * Create a {@link DocumentSink} that sends bulk requests the same way the
+	 * {@code update} methods of this instance do, that is using the {@link #setBulkClient
+	 * bulk client}, {@link #setShardGrouping shard grouping} and
+	 * {@link #setDeadLetterQueue dead-letter queue}, if any. The sink must be closed once
+	 * it is no longer needed.
+	 * @param writeMode how {@link HashedIndex} actions should be written
+	 * @return a new bulk sink
+	 * @see #trackOrigins(Function)
+	 */
+	public DocumentSink createBulkSink(WriteMode writeMode) {
+		return createBulkSink(writeMode, null);
+	}
+
+	/**
+	 * Wrap the specified update function so that the actions it creates are written to
+	 * the {@link #setDeadLetterQueue dead-letter queue}, if any, with the hit they were
+	 * created from if a sink created by {@link #createBulkSink(WriteMode)} fails to send
+	 * them.
+	 * @param updateFunction the {@link Update} function for a given hit
+	 * @return an update function that tracks the origin of actions
+	 */
+	public Function<JsonObject, List<BulkableAction<?>>> trackOrigins(
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction) {
+		return (this.deadLetterQueue != null)
+				? this.deadLetterQueue.trackOrigins(updateFunction) : updateFunction;
+	}
+
+	private JsonArray read(DocumentSource source, UpdateStatistics statistics)
+			throws IOException {
+		long start = System.nanoTime();
+		JsonArray hits = source.nextPage();
+		statistics.read(hits.size(), System.nanoTime() - start);
+		return hits;
+	}
+
+	private List<BulkableAction<?>> transform(JsonArray hits,
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction,
+			UpdateStatistics statistics) {
+		long start = System.nanoTime();
+		List<BulkableAction<?>> updates = new ArrayList<>();
+		for (JsonElement hit : hits) {
+			ActionEmitter.emit(updateFunction, hit.getAsJsonObject(), updates);
+		}
+		statistics.transform(updates.size(), System.nanoTime() - start);
+		return updates;
+	}
+
+	private void write(DocumentSink sink, List<BulkableAction<?>> actions,
+			UpdateStatistics statistics) throws IOException {
+		long start = System.nanoTime();
+		sink.write(actions);
+		statistics.write(System.nanoTime() - start);
+	}
+
+	private DocumentSink createBulkSink(WriteMode writeMode,
+			BulkFailureHandler failureHandler) {
+		DocumentSink sink;
+		if (this.deadLetterQueue != null) {
+			sink = this.deadLetterQueue
+					.track((deadLetterHandler) -> new BulkDocumentSink(this.bulkClient,
+							writeMode,
+							(failureHandler != null)
+									? failureHandler.andThen(deadLetterHandler)
+									: deadLetterHandler));
+		}
 		else {
-			logger.info("No element to update");
+			sink = (failureHandler != null)
+					? new BulkDocumentSink(this.bulkClient, writeMode, failureHandler)
+					: new BulkDocumentSink(this.bulkClient, writeMode);
 		}
-		return true;
+		return (this.shardGrouping) ? new ShardGroupingDocumentSink(sink, this.jestClient)
+				: sink;
 	}
 
 }
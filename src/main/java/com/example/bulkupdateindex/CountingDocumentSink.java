@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.searchbox.action.BulkableAction;
+
+/**
+ * A {@link DocumentSink} that discards actions and only counts them. Useful to measure
+ * how fast a {@link DocumentSource} can be read and transformed.
+ *
+ * @author Stephane Nicoll
+ */
+public class CountingDocumentSink implements DocumentSink {
+
+	private final AtomicLong count = new AtomicLong();
+
+	@Override
+	public void write(List<BulkableAction<?>> actions) {
+		this.count.addAndGet(actions.size());
+	}
+
+	public long getCount() {
+		return this.count.get();
+	}
+
+}
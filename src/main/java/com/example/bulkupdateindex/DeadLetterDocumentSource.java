@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Doc;
+import io.searchbox.core.MultiGet;
+
+/**
+ * A {@link DocumentSource} that reads the entries of a dead-letter file. If a
+ * {@link JestClient} is specified, the documents the failed actions were created from are
+ * fetched again instead, so that they can go through a fixed update function.
+ *
+ * @author Stephane Nicoll
+ * @see DeadLetterQueue
+ */
+class DeadLetterDocumentSource implements DocumentSource {
+
+	private final JsonParser parser = new JsonParser();
+
+	private final Set<String> sources = new LinkedHashSet<>();
+
+	private final BufferedReader reader;
+
+	private final JestClient jestClient;
+
+	private final int pageSize;
+
+	DeadLetterDocumentSource(Path file, JestClient jestClient, int pageSize)
+			throws IOException {
+		this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+		this.jestClient = jestClient;
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public JsonArray nextPage() throws IOException {
+		while (true) {
+			List<JsonObject> entries = readEntries();
+			if (entries.isEmpty()) {
+				return new JsonArray();
+			}
+			JsonArray page = (this.jestClient != null) ? fetch(entries)
+					: toJsonArray(entries);
+			if (page.size() > 0) {
+				return page;
+			}
+		}
+	}
+
+	private List<JsonObject> readEntries() throws IOException {
+		List<JsonObject> entries = new ArrayList<>();
+		while (entries.size() < this.pageSize) {
+			String line = this.reader.readLine();
+			if (line == null) {
+				break;
+			}
+			if (!line.trim().isEmpty()) {
+				JsonObject entry = this.parser.parse(line).getAsJsonObject();
+				if (this.jestClient == null || this.sources.add(getSourceKey(entry))) {
+					entries.add(entry);
+				}
+			}
+		}
+		return entries;
+	}
+
+	private JsonArray toJsonArray(List<JsonObject> entries) {
+		JsonArray page = new JsonArray();
+		entries.forEach(page::add);
+		return page;
+	}
+
+	private JsonArray fetch(List<JsonObject> entries) throws IOException {
+		List<Doc> docs = new ArrayList<>();
+		for (JsonObject entry : entries) {
+			JsonObject source = entry.getAsJsonObject("source");
+			docs.add(new Doc(source.get("index").getAsString(),
+					source.get("type").getAsString(), source.get("id").getAsString()));
+		}
+		JestResult result = this.jestClient
+				.execute(new MultiGet.Builder.ByDoc(docs).build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException(
+					"Failed to fetch documents " + result.getErrorMessage());
+		}
+		JsonArray page = new JsonArray();
+		for (JsonElement doc : result.getJsonObject().getAsJsonArray("docs")) {
+			JsonElement found = doc.getAsJsonObject().get("found");
+			if (found != null && found.getAsBoolean()) {
+				page.add(doc);
+			}
+		}
+		return page;
+	}
+
+	private static String getSourceKey(JsonObject entry) {
+		JsonObject source = entry.getAsJsonObject("source");
+		return source.get("index").getAsString() + "/" + source.get("type").getAsString()
+				+ "/" + source.get("id").getAsString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.reader.close();
+	}
+
+}
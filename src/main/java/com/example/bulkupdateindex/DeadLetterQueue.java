@@ -0,0 +1,308 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.BulkResult.BulkResultItem;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Index;
+import io.searchbox.core.Update;
+import io.searchbox.params.Parameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only file of the actions that failed for good, such as mapping conflicts, so
+ * that they can be replayed once the cause has been fixed rather than rerunning a full
+ * migration. Each line is a JSON entry holding the failed action, its document, the error
+ * and the id of the hit the action was created from.
+ * <p>
+ * Actions are associated to the hit they were created from when they are created, and
+ * released once written, see {@link #trackOrigins(Function)} and
+ * {@link #track(Function)}. Actions are tracked by identity, so that several actions for
+ * the same document, or actions with no id, keep their own origin.
+ *
+ * @author Stephane Nicoll
+ * @see BulkUpdateIndex#setDeadLetterQueue(DeadLetterQueue)
+ * @see BulkUpdateIndex#replayDeadLetters(Path, int)
+ */
+public class DeadLetterQueue implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(DeadLetterQueue.class);
+
+	private final Gson gson = new Gson();
+
+	private final Map<BulkableAction<?>, Origin> origins = Collections
+			.synchronizedMap(new IdentityHashMap<>());
+
+	private final Path file;
+
+	private final Writer writer;
+
+	private long count;
+
+	public DeadLetterQueue(Path file) throws IOException {
+		this.file = file;
+		this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	public Path getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Return the number of entries written since this instance was created.
+	 * @return the number of entries
+	 */
+	public synchronized long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Wrap the specified update function so that the actions it creates are associated to
+	 * the hit they were created from.
+	 * @param updateFunction the update function
+	 * @return an update function that tracks the origin of actions
+	 */
+	public Function<JsonObject, List<BulkableAction<?>>> trackOrigins(
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction) {
+		return (ActionEmitter) (hit, actions) -> {
+			int start = actions.size();
+			ActionEmitter.emit(updateFunction, hit, actions);
+			for (int i = start; i < actions.size(); i++) {
+				BulkableAction<?> action = actions.get(i);
+				this.origins.put(action, new Origin(action, hit));
+			}
+		};
+	}
+
+	/**
+	 * Track the specified actions, which were not created from a hit, so that they are
+	 * written to this queue if they fail. Their entry has no source.
+	 * @param actions the actions to track
+	 */
+	public void trackOrigins(List<BulkableAction<?>> actions) {
+		actions.forEach((action) -> this.origins.put(action, new Origin(action, null)));
+	}
+
+	/**
+	 * Wrap the specified {@link BulkDocumentSink} so that the actions that failed are
+	 * written to this queue.
+	 * @param sinkFactory the factory of the sink, given the handler of failed items
+	 * @return a sink that writes failed actions to this queue
+	 */
+	public DocumentSink track(
+			Function<BulkFailureHandler, ? extends DocumentSink> sinkFactory) {
+		DocumentSink sink = sinkFactory.apply(this::onFailures);
+		return new DocumentSink() {
+
+			@Override
+			public void write(List<BulkableAction<?>> actions) throws IOException {
+				try {
+					sink.write(actions);
+				}
+				finally {
+					actions.forEach(DeadLetterQueue.this.origins::remove);
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				sink.close();
+			}
+
+		};
+	}
+
+	private void onFailures(List<BulkResultItem> failedItems) {
+		try {
+			for (BulkResultItem item : failedItems) {
+				BulkableAction<?> action = SlimBulkResult.getAction(item);
+				Origin origin = (action != null) ? this.origins.get(action) : null;
+				if (origin != null) {
+					write(createEntry(item, origin));
+				}
+				else {
+					logger.warn("No action found for failed item " + item.index + "/"
+							+ item.type + "/" + item.id);
+				}
+			}
+			flush();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to write to " + this.file, ex);
+		}
+	}
+
+	private JsonObject createEntry(BulkResultItem item, Origin origin) {
+		JsonObject entry = new JsonObject();
+		entry.addProperty("timestamp", Instant.now().toString());
+		entry.add("source", origin.source);
+		entry.addProperty("operation", item.operation);
+		entry.addProperty("index", item.index);
+		entry.addProperty("type", item.type);
+		entry.addProperty("id", item.id);
+		String routing = getRouting(origin.action);
+		if (routing != null) {
+			entry.addProperty("routing", routing);
+		}
+		entry.addProperty("status", item.status);
+		entry.add("error",
+				(item.error != null) ? parseError(item.error) : JsonNull.INSTANCE);
+		String data = origin.action.getData(this.gson);
+		if (data != null) {
+			entry.add("document", new JsonParser().parse(data));
+		}
+		return entry;
+	}
+
+	private synchronized void write(JsonObject entry) throws IOException {
+		this.writer.write(entry.toString());
+		this.writer.write('\n');
+		this.count++;
+	}
+
+	private synchronized void flush() throws IOException {
+		this.writer.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.writer.close();
+		if (this.count > 0) {
+			logger.warn(String.format("%s failed actions written to %s", this.count,
+					this.file));
+		}
+	}
+
+	/**
+	 * Create the action described by the specified entry, as it was originally sent.
+	 * @param entry an entry of a dead-letter file
+	 * @return the action
+	 */
+	static BulkableAction<?> toAction(JsonObject entry) {
+		String operation = entry.get("operation").getAsString();
+		String index = entry.get("index").getAsString();
+		String type = entry.get("type").getAsString();
+		String id = getText(entry, "id");
+		String routing = getText(entry, "routing");
+		JsonElement document = entry.get("document");
+		switch (operation) {
+		case "index":
+		case "create":
+			Index.Builder indexBuilder = new Index.Builder(document).index(index)
+					.type(type).id(id);
+			if (operation.equals("create")) {
+				indexBuilder.setParameter(Parameters.OP_TYPE, "create");
+			}
+			if (routing != null) {
+				indexBuilder.setParameter(Parameters.ROUTING, routing);
+			}
+			return indexBuilder.build();
+		case "update":
+			Update.Builder updateBuilder = new Update.Builder(document).index(index)
+					.type(type).id(id);
+			if (routing != null) {
+				updateBuilder.setParameter(Parameters.ROUTING, routing);
+			}
+			return updateBuilder.build();
+		case "delete":
+			Delete.Builder deleteBuilder = new Delete.Builder(id).index(index).type(type);
+			if (routing != null) {
+				deleteBuilder.setParameter(Parameters.ROUTING, routing);
+			}
+			return deleteBuilder.build();
+		default:
+			throw new IllegalStateException("Unsupported operation " + operation);
+		}
+	}
+
+	private static String getRouting(BulkableAction<?> action) {
+		Collection<Object> routing = action.getParameter(Parameters.ROUTING);
+		return (routing != null && !routing.isEmpty())
+				? routing.iterator().next().toString() : null;
+	}
+
+	private static String getText(JsonObject object, String member) {
+		JsonElement element = object.get(member);
+		return (element != null && !element.isJsonNull()) ? element.getAsString() : null;
+	}
+
+	private static JsonElement parseError(String error) {
+		try {
+			return new JsonParser().parse(error);
+		}
+		catch (RuntimeException ex) {
+			return new JsonPrimitive(error);
+		}
+	}
+
+	private static final class Origin {
+
+		private final BulkableAction<?> action;
+
+		private final JsonObject source;
+
+		// The hit is the entry of a dead-letter file when it is replayed
+		private Origin(BulkableAction<?> action, JsonObject hit) {
+			this.action = action;
+			this.source = (hit != null) ? getSource(hit) : null;
+		}
+
+		private static JsonObject getSource(JsonObject hit) {
+			if (hit.has("_id")) {
+				return createSource(hit);
+			}
+			JsonElement source = hit.get("source");
+			return (source != null && source.isJsonObject()) ? source.getAsJsonObject()
+					: null;
+		}
+
+		private static JsonObject createSource(JsonObject hit) {
+			JsonObject source = new JsonObject();
+			source.add("index", hit.get("_index"));
+			source.add("type", hit.get("_type"));
+			source.add("id", hit.get("_id"));
+			return source;
+		}
+
+	}
+
+}
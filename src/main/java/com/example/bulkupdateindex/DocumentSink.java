@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import io.searchbox.action.BulkableAction;
+
+/**
+ * A destination for the actions produced by a migration.
+ *
+ * @author Stephane Nicoll
+ * @see DocumentSource
+ */
+public interface DocumentSink extends Closeable {
+
+	/**
+	 * Write the specified actions.
+	 * @param actions the actions to write
+	 * @throws IOException if the actions could not be written
+	 */
+	void write(List<BulkableAction<?>> actions) throws IOException;
+
+	@Override
+	default void close() throws IOException {
+	}
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.google.gson.JsonArray;
+
+/**
+ * A source of documents to migrate, read one page at a time.
+ *
+ * @author Stephane Nicoll
+ * @see DocumentSink
+ */
+public interface DocumentSource extends Closeable {
+
+	/**
+	 * Return the next page of hits. Each hit holds the metadata of the document and its
+	 * {@code _source}.
+	 * @return the next page of hits or an empty array if the source is exhausted
+	 * @throws IOException if the page could not be read
+	 */
+	JsonArray nextPage() throws IOException;
+
+	/**
+	 * Return the size of the last page returned by {@link #nextPage()}, in characters, as
+	 * it was read. Used to estimate the memory held by a page without serializing it
+	 * again.
+	 * @return the size of the last page or {@code -1} if it is not known
+	 */
+	default long getLastPageSize() {
+		return -1;
+	}
+
+	@Override
+	default void close() throws IOException {
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import com.google.gson.JsonObject;
+import io.searchbox.core.Index;
+import io.searchbox.params.Parameters;
+
+/**
+ * An {@link Index} action that keeps track of the content hash of the document to index.
+ *
+ * @author Stephane Nicoll
+ */
+public class HashedIndex extends Index {
+
+	/**
+	 * The name of the property holding the content hash in the indexed document.
+	 */
+	public static final String CONTENT_HASH_PROPERTY = "contentHash";
+
+	private final String contentHash;
+
+	protected HashedIndex(Builder builder) {
+		super(builder);
+		this.contentHash = builder.contentHash;
+	}
+
+	public String getContentHash() {
+		return this.contentHash;
+	}
+
+	public JsonObject getDocument() {
+		return (JsonObject) this.payload;
+	}
+
+	/**
+	 * Return a copy of this action that only creates the document if it does not exist
+	 * yet.
+	 * @return an equivalent action using {@code create} semantics
+	 */
+	public HashedIndex asCreate() {
+		return (HashedIndex) new Builder(getDocument(), this.contentHash)
+				.index(getIndex()).type(getType()).id(getId())
+				.setParameter(Parameters.OP_TYPE, "create").build();
+	}
+
+	/**
+	 * Builder for {@link HashedIndex}.
+	 */
+	public static class Builder extends Index.Builder {
+
+		private final String contentHash;
+
+		public Builder(JsonObject document, String contentHash) {
+			super(document);
+			this.contentHash = contentHash;
+		}
+
+		@Override
+		public HashedIndex build() {
+			return new HashedIndex(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * A {@link DocumentSource} that pages through a list of hits held in memory.
+ *
+ * @author Stephane Nicoll
+ */
+public class InMemoryDocumentSource implements DocumentSource {
+
+	private final List<JsonObject> hits;
+
+	private final int pageSize;
+
+	private int position;
+
+	public InMemoryDocumentSource(List<JsonObject> hits, int pageSize) {
+		this.hits = hits;
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public JsonArray nextPage() {
+		JsonArray page = new JsonArray();
+		int end = Math.min(this.position + this.pageSize, this.hits.size());
+		for (int i = this.position; i < end; i++) {
+			page.add(this.hits.get(i));
+		}
+		this.position = end;
+		return page;
+	}
+
+}
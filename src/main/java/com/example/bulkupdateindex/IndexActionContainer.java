@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import com.example.bulkupdateindex.support.DocumentDigest;
 import com.google.gson.JsonObject;
 import io.searchbox.action.BulkableAction;
 import io.searchbox.core.Update;
@@ -31,25 +32,58 @@ import io.searchbox.core.Update;
  */
 public class IndexActionContainer {
 
-	private final List<BulkableAction<?>> actions = new ArrayList<>();
+	private List<BulkableAction<?>> actions;
 
-	private final JsonObject document;
+	private int start;
 
-	private final String id;
+	private JsonObject document;
 
-	private final String index;
+	private String id;
 
-	private final String type;
+	private String index;
+
+	private String type;
 
 	public IndexActionContainer(JsonObject document) {
+		reset(document, new ArrayList<>());
+	}
+
+	/**
+	 * Create an empty container, to be {@link #reset reset} for each document.
+	 */
+	IndexActionContainer() {
+	}
+
+	/**
+	 * Reuse this container for the specified document. Actions are appended to the
+	 * specified list.
+	 * @param document the root document
+	 * @param actions the list to append actions to
+	 */
+	void reset(JsonObject document, List<BulkableAction<?>> actions) {
 		this.document = document;
 		this.id = document.get("_id").getAsString();
 		this.index = document.get("_index").getAsString();
 		this.type = document.get("_type").getAsString();
+		this.actions = actions;
+		this.start = actions.size();
+	}
+
+	/**
+	 * Release the document and the list of actions of this container.
+	 */
+	void clear() {
+		this.document = null;
+		this.actions = null;
 	}
 
+	/**
+	 * Return the actions that have been added for the current document.
+	 * @return the actions
+	 */
 	public List<BulkableAction<?>> getActions() {
-		return Collections.unmodifiableList(this.actions);
+		return Collections
+				.unmodifiableList(this.actions.subList(this.start, this.actions.size()));
 	}
 
 	public void addUpdateAction(JsonObject updatedSource) {
@@ -59,10 +93,36 @@ public class IndexActionContainer {
 				.type(this.type).build());
 	}
 
+	/**
+	 * Add an action that indexes the specified document with a stable id. The content
+	 * hash of the document is stored alongside so that unchanged documents can be skipped
+	 * on subsequent runs.
+	 * @param index the target index
+	 * @param type the target type
+	 * @param id the stable id of the document
+	 * @param document the document to index
+	 * @see WriteMode
+	 */
+	public void addIndexAction(String index, String type, String id,
+			JsonObject document) {
+		String contentHash = DocumentDigest.contentHash(document);
+		document.addProperty(HashedIndex.CONTENT_HASH_PROPERTY, contentHash);
+		this.actions.add(new HashedIndex.Builder(document, contentHash).index(index)
+				.type(type).id(id).build());
+	}
+
 	public void addAction(BulkableAction<?> action) {
 		this.actions.add(action);
 	}
 
+	public String getId() {
+		return this.id;
+	}
+
+	public String getIndex() {
+		return this.index;
+	}
+
 	public JsonObject getDocument() {
 		return this.document;
 	}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.BulkResult.BulkResultItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * Run several {@link AbstractIndexer indexers} against each hit of a single scan. The
+ * actions of all indexers are merged in the same bulk requests while hits, actions and
+ * failures are counted per indexer.
+ * <p>
+ * An indexer that throws an exception for a hit does not prevent the other indexers from
+ * processing it. A group tracks a single pass. Indexers must be registered before the
+ * pass starts, hits and failed items may then be handled concurrently.
+ *
+ * @author Stephane Nicoll
+ * @see BulkUpdateIndex#update(io.searchbox.core.Search.Builder, int, WriteMode,
+ * IndexerGroup)
+ */
+public class IndexerGroup implements ActionEmitter {
+
+	private static final Logger logger = LoggerFactory.getLogger(IndexerGroup.class);
+
+	private final Map<String, Registration> registrations = new LinkedHashMap<>();
+
+	private final Map<BulkableAction<?>, Registration> origins = Collections
+			.synchronizedMap(new IdentityHashMap<>());
+
+	/**
+	 * Register an indexer.
+	 * @param name the name of the indexer, used for reporting
+	 * @param indexer the indexer
+	 * @param types the types of the hits the indexer should receive, or none to receive
+	 * all hits
+	 * @return this instance
+	 */
+	public IndexerGroup add(String name, AbstractIndexer indexer, String... types) {
+		Assert.notNull(indexer, "Indexer must not be null");
+		Assert.isTrue(!this.registrations.containsKey(name),
+				"An indexer named '" + name + "' is already registered");
+		this.registrations.put(name, new Registration(name, indexer, types));
+		return this;
+	}
+
+	/**
+	 * Return the statistics of the indexer with the specified name.
+	 * @param name the name of an indexer
+	 * @return the statistics of that indexer
+	 */
+	public IndexerStatistics getStatistics(String name) {
+		Registration registration = this.registrations.get(name);
+		Assert.notNull(registration, "No indexer named '" + name + "'");
+		return registration.statistics;
+	}
+
+	@Override
+	public void emit(JsonObject hit, List<BulkableAction<?>> actions) {
+		String type = getText(hit, "_type");
+		for (Registration registration : this.registrations.values()) {
+			if (registration.accept(type)) {
+				registration.emit(hit, actions);
+			}
+		}
+	}
+
+	/**
+	 * Wrap the specified {@link BulkDocumentSink} so that the failed items of a bulk
+	 * request are reported against the indexer that created them.
+	 * @param sinkFactory the factory of the sink, given the handler of failed items
+	 * @return a sink that tracks failures per indexer
+	 */
+	public DocumentSink track(
+			Function<BulkFailureHandler, ? extends DocumentSink> sinkFactory) {
+		DocumentSink sink = sinkFactory.apply(this::onFailures);
+		return new DocumentSink() {
+
+			@Override
+			public void write(List<BulkableAction<?>> actions) throws IOException {
+				try {
+					sink.write(actions);
+				}
+				finally {
+					actions.forEach(IndexerGroup.this.origins::remove);
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				sink.close();
+			}
+
+		};
+	}
+
+	private void onFailures(List<BulkResultItem> failedItems) {
+		for (BulkResultItem item : failedItems) {
+			BulkableAction<?> action = SlimBulkResult.getAction(item);
+			Registration registration = (action != null) ? this.origins.get(action)
+					: null;
+			if (registration != null) {
+				registration.statistics.failures.incrementAndGet();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		this.registrations.values().forEach((registration) -> sb
+				.append(String.format("%n")).append(registration.statistics));
+		return "Indexers:" + sb;
+	}
+
+	private static String getText(JsonObject hit, String member) {
+		JsonElement element = hit.get(member);
+		return (element != null && !element.isJsonNull()) ? element.getAsString() : null;
+	}
+
+	private class Registration {
+
+		private final AbstractIndexer indexer;
+
+		private final List<String> types;
+
+		private final IndexerStatistics statistics;
+
+		Registration(String name, AbstractIndexer indexer, String[] types) {
+			this.indexer = indexer;
+			this.types = Arrays.asList(types);
+			this.statistics = new IndexerStatistics(name);
+		}
+
+		boolean accept(String type) {
+			return this.types.isEmpty() || this.types.contains(type);
+		}
+
+		void emit(JsonObject hit, List<BulkableAction<?>> actions) {
+			this.statistics.hits.incrementAndGet();
+			int start = actions.size();
+			try {
+				this.indexer.emit(hit, actions);
+				for (int i = start; i < actions.size(); i++) {
+					IndexerGroup.this.origins.put(actions.get(i), this);
+				}
+				this.statistics.actions.addAndGet(actions.size() - start);
+			}
+			catch (RuntimeException ex) {
+				// Discard the actions the indexer may have emitted before failing
+				actions.subList(start, actions.size()).clear();
+				this.statistics.errors.incrementAndGet();
+				logger.error(String.format("Indexer '%s' failed to process %s",
+						this.statistics.name, getText(hit, "_id")), ex);
+			}
+		}
+
+	}
+
+	/**
+	 * Statistics of an indexer of the group.
+	 */
+	public static final class IndexerStatistics {
+
+		private final String name;
+
+		private final AtomicLong hits = new AtomicLong();
+
+		private final AtomicLong actions = new AtomicLong();
+
+		private final AtomicLong errors = new AtomicLong();
+
+		private final AtomicLong failures = new AtomicLong();
+
+		private IndexerStatistics(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Return the number of hits the indexer has received.
+		 * @return the number of hits
+		 */
+		public long getHits() {
+			return this.hits.get();
+		}
+
+		/**
+		 * Return the number of actions the indexer has created.
+		 * @return the number of actions
+		 */
+		public long getActions() {
+			return this.actions.get();
+		}
+
+		/**
+		 * Return the number of hits the indexer failed to process.
+		 * @return the number of errors
+		 */
+		public long getErrors() {
+			return this.errors.get();
+		}
+
+		/**
+		 * Return the number of actions of the indexer that the bulk API rejected.
+		 * @return the number of failures
+		 */
+		public long getFailures() {
+			return this.failures.get();
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"%s: received %s elements, created %s actions [errors: %s, "
+							+ "failures: %s]",
+					this.name, this.hits.get(), this.actions.get(), this.errors.get(),
+					this.failures.get());
+		}
+
+	}
+
+}
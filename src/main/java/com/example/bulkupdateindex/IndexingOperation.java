@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+
+/**
+ * An operation that writes to one or more indices.
+ *
+ * @author Stephane Nicoll
+ */
+@FunctionalInterface
+public interface IndexingOperation {
+
+	/**
+	 * Run the operation.
+	 * @throws IOException if an index operation fails
+	 */
+	void run() throws IOException;
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A budget of bytes shared by concurrent stages. A reservation that is larger than the
+ * budget is only granted when nothing else is reserved so that a single oversized element
+ * does not block forever.
+ *
+ * @author Stephane Nicoll
+ */
+class MemoryBudget {
+
+	private final long limit;
+
+	private long reserved;
+
+	MemoryBudget(long limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Reserve the specified number of bytes if they are available.
+	 * @param bytes the number of bytes to reserve
+	 * @return {@code true} if the bytes have been reserved
+	 */
+	synchronized boolean tryReserve(long bytes) {
+		if (this.reserved > 0 && this.reserved + bytes > this.limit) {
+			return false;
+		}
+		this.reserved += bytes;
+		return true;
+	}
+
+	/**
+	 * Reserve the specified number of bytes, waiting up to the specified time for them to
+	 * be released.
+	 * @param bytes the number of bytes to reserve
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @return {@code true} if the bytes have been reserved
+	 * @throws InterruptedException if the current thread was interrupted
+	 */
+	synchronized boolean tryReserve(long bytes, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (!tryReserve(bytes)) {
+			long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			if (remaining <= 0) {
+				return false;
+			}
+			wait(remaining);
+		}
+		return true;
+	}
+
+	synchronized void release(long bytes) {
+		this.reserved -= bytes;
+		notifyAll();
+	}
+
+	synchronized long getReserved() {
+		return this.reserved;
+	}
+
+}
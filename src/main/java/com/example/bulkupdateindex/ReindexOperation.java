@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+
+import com.example.bulkupdateindex.action.PutPipeline;
+import com.example.bulkupdateindex.action.Reindex;
+import com.example.bulkupdateindex.ingest.IngestPipeline;
+import com.google.gson.JsonObject;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copy the documents of an index to another index on the cluster using {@code _reindex},
+ * optionally transforming them with an {@link IngestPipeline}.
+ *
+ * @author Stephane Nicoll
+ */
+class ReindexOperation {
+
+	private static final Logger logger = LoggerFactory.getLogger(ReindexOperation.class);
+
+	private final JestClient jestClient;
+
+	private final TaskTracker taskTracker;
+
+	ReindexOperation(JestClient jestClient) {
+		this.jestClient = jestClient;
+		this.taskTracker = new TaskTracker(jestClient);
+	}
+
+	long run(String sourceIndex, String type, String targetIndex, IngestPipeline pipeline,
+			int slices, float requestsPerSecond) throws IOException {
+		if (pipeline != null) {
+			execute(new PutPipeline.Builder(pipeline.getId(),
+					pipeline.toJson().toString()).build(),
+					"Failed to create ingest pipeline " + pipeline.getId());
+		}
+		String body = createBody(sourceIndex, type, targetIndex, pipeline).toString();
+		JestResult result = execute(
+				new Reindex.Builder(body).slices(slices)
+						.requestsPerSecond(requestsPerSecond).async().build(),
+				"Failed to start reindex of " + sourceIndex);
+		String taskId = result.getJsonObject().get("task").getAsString();
+		logger.info(String.format("Started reindex of %s to %s [task: %s]", sourceIndex,
+				targetIndex, taskId));
+		JsonObject response = this.taskTracker.await(taskId);
+		return TaskTracker.getLong(response, "created")
+				+ TaskTracker.getLong(response, "updated");
+	}
+
+	static JsonObject createBody(String sourceIndex, String type, String targetIndex,
+			IngestPipeline pipeline) {
+		JsonObject source = new JsonObject();
+		source.addProperty("index", sourceIndex);
+		if (type != null) {
+			source.addProperty("type", type);
+		}
+		JsonObject dest = new JsonObject();
+		dest.addProperty("index", targetIndex);
+		if (pipeline != null) {
+			dest.addProperty("pipeline", pipeline.getId());
+		}
+		JsonObject body = new JsonObject();
+		body.add("source", source);
+		body.add("dest", dest);
+		return body;
+	}
+
+	private JestResult execute(Action<JestResult> action, String failureMessage)
+			throws IOException {
+		JestResult result = this.jestClient.execute(action);
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException(
+					failureMessage + ": " + result.getErrorMessage());
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * An in-place migration expressed as a Painless script applied to the documents matching
+ * a query, so that it can run on the cluster rather than on the client.
+ *
+ * @author Stephane Nicoll
+ * @see AbstractIndexer#getScriptMigration()
+ */
+public final class ScriptMigration {
+
+	private static final Gson gson = new Gson();
+
+	private final String script;
+
+	private final String query;
+
+	private final Map<String, Object> params;
+
+	/**
+	 * Create a new instance.
+	 * @param script the Painless source of the script, using {@code ctx._source} to
+	 * update the document
+	 * @param query the query of the documents to migrate or {@code null} to migrate all
+	 * documents
+	 * @param params the parameters of the script or {@code null}
+	 */
+	public ScriptMigration(String script, String query, Map<String, Object> params) {
+		Assert.hasText(script, "Script must not be empty");
+		this.script = script;
+		this.query = query;
+		this.params = params;
+	}
+
+	public String getScript() {
+		return this.script;
+	}
+
+	public String getQuery() {
+		return this.query;
+	}
+
+	public Map<String, Object> getParams() {
+		return this.params;
+	}
+
+	/**
+	 * Return the body of an {@code _update_by_query} request for this migration.
+	 * @return the request body
+	 */
+	public JsonObject toRequestBody() {
+		JsonObject body = new JsonObject();
+		if (StringUtils.hasText(this.query)) {
+			body.add("query", new JsonParser().parse(this.query));
+		}
+		JsonObject scriptObject = new JsonObject();
+		scriptObject.addProperty("lang", "painless");
+		scriptObject.addProperty("source", this.script);
+		if (this.params != null && !this.params.isEmpty()) {
+			scriptObject.add("params", gson.toJsonTree(this.params));
+		}
+		body.add("script", scriptObject);
+		return body;
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+
+import com.example.bulkupdateindex.profile.FetchEvent;
+import com.google.gson.JsonArray;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.ClearScroll;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchScroll;
+import io.searchbox.core.search.sort.Sort;
+import io.searchbox.params.Parameters;
+
+/**
+ * A {@link DocumentSource} that scrolls the result of a search.
+ *
+ * @author Stephane Nicoll
+ */
+public class ScrollDocumentSource implements DocumentSource {
+
+	private static final String SCROLL_TIMEOUT = "5m";
+
+	private final JestClient jestClient;
+
+	private final Search.Builder searchBuilder;
+
+	private final int pageSize;
+
+	private String scrollId;
+
+	private int page;
+
+	private long lastPageSize = -1;
+
+	public ScrollDocumentSource(JestClient jestClient, Search.Builder searchBuilder,
+			int pageSize) {
+		this.jestClient = jestClient;
+		this.searchBuilder = searchBuilder;
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public JsonArray nextPage() throws IOException {
+		FetchEvent event = new FetchEvent();
+		event.begin();
+		JestResult result = (this.scrollId != null)
+				? this.jestClient.execute(
+						new SearchScroll.Builder(this.scrollId, SCROLL_TIMEOUT).build())
+				: this.jestClient.execute(this.searchBuilder.addSort(new Sort("_doc"))
+						.setParameter(Parameters.SIZE, this.pageSize)
+						.setParameter(Parameters.SCROLL, SCROLL_TIMEOUT).build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException("Query failed " + result.getErrorMessage());
+		}
+		this.scrollId = result.getJsonObject().get("_scroll_id").getAsString();
+		JsonArray hits = result.getJsonObject().getAsJsonObject("hits")
+				.getAsJsonArray("hits");
+		this.lastPageSize = result.getJsonString().length();
+		event.complete(++this.page, hits.size(), this.lastPageSize);
+		return hits;
+	}
+
+	@Override
+	public long getLastPageSize() {
+		return this.lastPageSize;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.scrollId != null) {
+			this.jestClient.execute(
+					new ClearScroll.Builder().addScrollId(this.scrollId).build());
+			this.scrollId = null;
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+
+import com.example.bulkupdateindex.profile.FetchEvent;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Search;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * A {@link DocumentSource} that pages through the result of a search using
+ * {@code search_after}. Contrary to a scroll, no search context is kept open on the
+ * cluster between pages.
+ *
+ * @author Stephane Nicoll
+ */
+public class SearchAfterDocumentSource implements DocumentSource {
+
+	private final JestClient jestClient;
+
+	private final String index;
+
+	private final String type;
+
+	private final JsonObject query;
+
+	private final String sortField;
+
+	private final int pageSize;
+
+	private JsonArray searchAfter;
+
+	private boolean exhausted;
+
+	private int page;
+
+	private long lastPageSize = -1;
+
+	/**
+	 * Create a new instance.
+	 * @param jestClient the client to use
+	 * @param index the index to search
+	 * @param type the type to search or {@code null}
+	 * @param query the search body or an empty string to match all documents
+	 * @param sortField a field that uniquely identifies a document, such as {@code _uid}
+	 * @param pageSize the size of a page
+	 */
+	public SearchAfterDocumentSource(JestClient jestClient, String index, String type,
+			String query, String sortField, int pageSize) {
+		this.jestClient = jestClient;
+		this.index = index;
+		this.type = type;
+		this.query = (StringUtils.hasText(query))
+				? new JsonParser().parse(query).getAsJsonObject() : new JsonObject();
+		this.sortField = sortField;
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public JsonArray nextPage() throws IOException {
+		if (this.exhausted) {
+			return new JsonArray();
+		}
+		FetchEvent event = new FetchEvent();
+		event.begin();
+		Search.Builder builder = new Search.Builder(createBody().toString())
+				.addIndex(this.index);
+		if (this.type != null) {
+			builder.addType(this.type);
+		}
+		JestResult result = this.jestClient.execute(builder.build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException("Query failed " + result.getErrorMessage());
+		}
+		JsonArray hits = result.getJsonObject().getAsJsonObject("hits")
+				.getAsJsonArray("hits");
+		this.lastPageSize = result.getJsonString().length();
+		event.complete(++this.page, hits.size(), this.lastPageSize);
+		if (hits.size() < this.pageSize) {
+			this.exhausted = true;
+		}
+		if (hits.size() > 0) {
+			this.searchAfter = hits.get(hits.size() - 1).getAsJsonObject()
+					.getAsJsonArray("sort");
+		}
+		return hits;
+	}
+
+	@Override
+	public long getLastPageSize() {
+		return this.lastPageSize;
+	}
+
+	private JsonObject createBody() {
+		JsonObject body = this.query.deepCopy();
+		body.addProperty("size", this.pageSize);
+		JsonArray sort = new JsonArray();
+		sort.add(this.sortField);
+		body.add("sort", sort);
+		if (this.searchAfter != null) {
+			body.add("search_after", this.searchAfter);
+		}
+		return body;
+	}
+
+}
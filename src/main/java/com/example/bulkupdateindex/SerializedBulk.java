@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+
+/**
+ * A {@link Bulk} that serializes its actions eagerly, so that the time spent serializing
+ * a request can be told apart from the time spent sending it.
+ * <p>
+ * The response is trimmed to the {@code errors} flag and the status and error of each
+ * item, and is only parsed as far as needed: a successful response is not parsed beyond
+ * the {@code errors} flag. Failed items are identified using the position of the
+ * requested actions.
+ *
+ * @author Stephane Nicoll
+ */
+class SerializedBulk extends Bulk {
+
+	static final String FILTER_PATH = "errors,items.*.status,items.*.error";
+
+	private final String data;
+
+	private final List<BulkableAction<?>> actions;
+
+	SerializedBulk(Bulk.Builder builder, Gson gson) {
+		this(builder, null, gson);
+	}
+
+	/**
+	 * Create a new instance whose items are attributed to the specified actions rather
+	 * than to the actions of the request, such as when an action was copied to change how
+	 * it is written.
+	 * @param builder the builder of the request
+	 * @param sources the actions the items are attributed to, in the order of the
+	 * request, or {@code null} to use the actions of the request
+	 * @param gson the gson instance to use to serialize the request
+	 */
+	SerializedBulk(Bulk.Builder builder, List<BulkableAction<?>> sources, Gson gson) {
+		super(builder.setParameter("filter_path", FILTER_PATH));
+		this.data = super.getData(gson);
+		this.actions = new ArrayList<>();
+		if (sources != null) {
+			this.actions.addAll(sources);
+		}
+		else {
+			this.bulkableActions.forEach(this.actions::add);
+		}
+	}
+
+	@Override
+	public String getData(Gson gson) {
+		return this.data;
+	}
+
+	@Override
+	public BulkResult createNewElasticSearchResult(String responseBody, int statusCode,
+			String reasonPhrase, Gson gson) {
+		if (!isHttpSuccessful(statusCode)) {
+			return super.createNewElasticSearchResult(responseBody, statusCode,
+					reasonPhrase, gson);
+		}
+		return new SlimBulkResult(gson, responseBody, statusCode, this.actions);
+	}
+
+	/**
+	 * Return the size of the request, in characters.
+	 * @return the size of the request
+	 */
+	long getSize() {
+		return this.data.length();
+	}
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.params.Parameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DocumentSink} that splits the actions it receives per target shard, so that
+ * each bulk request sent by the delegate only involves a single shard rather than waiting
+ * for the slowest shard of the index. Actions of the same document always target the same
+ * shard so their relative order is preserved. The batches of a page are sent concurrently
+ * so that the page takes as long as its slowest batch rather than the sum of all of them.
+ * The delegate must therefore be thread-safe and the sink must be closed to release the
+ * threads that send the batches.
+ * <p>
+ * Actions with no id, or targeting an index whose routing could not be determined, are
+ * sent in a separate batch.
+ *
+ * @author Stephane Nicoll
+ * @see ShardRouting
+ */
+public class ShardGroupingDocumentSink implements DocumentSink {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(ShardGroupingDocumentSink.class);
+
+	private static final int DEFAULT_CONCURRENCY = 4;
+
+	private final DocumentSink delegate;
+
+	private final Function<String, ShardRouting> routingResolver;
+
+	private final Map<String, Optional<ShardRouting>> routings = new ConcurrentHashMap<>();
+
+	private final ExecutorService executor;
+
+	public ShardGroupingDocumentSink(DocumentSink delegate, JestClient jestClient) {
+		this(delegate, (index) -> {
+			try {
+				return ShardRouting.fetch(jestClient, index);
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}, DEFAULT_CONCURRENCY);
+	}
+
+	ShardGroupingDocumentSink(DocumentSink delegate,
+			Function<String, ShardRouting> routingResolver, int concurrency) {
+		this.delegate = delegate;
+		this.routingResolver = routingResolver;
+		this.executor = Executors.newFixedThreadPool(concurrency);
+	}
+
+	@Override
+	public void write(List<BulkableAction<?>> actions) throws IOException {
+		List<List<BulkableAction<?>>> batches = new ArrayList<>(groupByShard(actions));
+		if (batches.isEmpty()) {
+			return;
+		}
+		List<Future<?>> writes = new ArrayList<>();
+		for (List<BulkableAction<?>> batch : batches.subList(1, batches.size())) {
+			writes.add(this.executor.submit(() -> {
+				this.delegate.write(batch);
+				return null;
+			}));
+		}
+		IOException failure = null;
+		try {
+			this.delegate.write(batches.get(0));
+		}
+		catch (IOException ex) {
+			failure = ex;
+		}
+		for (Future<?> write : writes) {
+			IOException writeFailure = await(write);
+			if (failure == null) {
+				failure = writeFailure;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	// Wait for the write to complete so that no batch outlives the page
+	private IOException await(Future<?> write) {
+		try {
+			write.get();
+			return null;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while writing a batch", ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				return (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException("Failed to write a batch", cause);
+		}
+	}
+
+	Collection<List<BulkableAction<?>>> groupByShard(List<BulkableAction<?>> actions) {
+		Map<String, List<BulkableAction<?>>> batches = new LinkedHashMap<>();
+		for (BulkableAction<?> action : actions) {
+			batches.computeIfAbsent(getShardKey(action), (key) -> new ArrayList<>())
+					.add(action);
+		}
+		return batches.values();
+	}
+
+	private String getShardKey(BulkableAction<?> action) {
+		String index = action.getIndex();
+		ShardRouting routing = getRouting(index);
+		if (routing == null || action.getId() == null) {
+			return index;
+		}
+		return index + "/" + routing.getShard(action.getId(), getRouting(action));
+	}
+
+	private ShardRouting getRouting(String index) {
+		return this.routings.computeIfAbsent(index, (key) -> {
+			try {
+				return Optional.of(this.routingResolver.apply(key));
+			}
+			catch (RuntimeException ex) {
+				logger.warn("Actions targeting " + key + " will not be grouped by shard: "
+						+ ex.getMessage());
+				return Optional.empty();
+			}
+		}).orElse(null);
+	}
+
+	private String getRouting(BulkableAction<?> action) {
+		Collection<Object> routing = action.getParameter(Parameters.ROUTING);
+		return (routing != null && !routing.isEmpty())
+				? routing.iterator().next().toString() : null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.executor.shutdownNow();
+		this.delegate.close();
+	}
+
+}
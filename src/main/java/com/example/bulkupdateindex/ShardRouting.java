@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.cluster.State;
+
+import org.springframework.util.Assert;
+
+/**
+ * Compute the shard a document is routed to, the same way Elasticsearch does: the routing
+ * value, or the id if the document has no routing, is hashed using murmur3 and mapped to
+ * one of the routing shards of the index.
+ * <p>
+ * Custom routing with {@code index.routing_partition_size} is not supported.
+ *
+ * @author Stephane Nicoll
+ */
+public final class ShardRouting {
+
+	private final int numberOfShards;
+
+	private final int routingNumShards;
+
+	private final int routingFactor;
+
+	/**
+	 * Create a new instance.
+	 * @param numberOfShards the number of primary shards of the index
+	 * @param routingNumShards the number of routing shards of the index, which is the
+	 * number of shards unless the index can be split
+	 */
+	public ShardRouting(int numberOfShards, int routingNumShards) {
+		Assert.isTrue(numberOfShards > 0, "NumberOfShards must be positive");
+		Assert.isTrue(routingNumShards % numberOfShards == 0,
+				"RoutingNumShards must be a multiple of NumberOfShards");
+		this.numberOfShards = numberOfShards;
+		this.routingNumShards = routingNumShards;
+		this.routingFactor = routingNumShards / numberOfShards;
+	}
+
+	public int getNumberOfShards() {
+		return this.numberOfShards;
+	}
+
+	/**
+	 * Return the shard of a document.
+	 * @param id the id of the document
+	 * @param routing the routing value of the document or {@code null}
+	 * @return the shard of the document
+	 */
+	public int getShard(String id, String routing) {
+		String effectiveRouting = (routing != null) ? routing : id;
+		return Math.floorMod(hash(effectiveRouting), this.routingNumShards)
+				/ this.routingFactor;
+	}
+
+	/**
+	 * Fetch the routing of the specified index from the cluster state.
+	 * @param jestClient the client to use
+	 * @param index the name of an index, or an alias that points to a single index
+	 * @return the routing of the index
+	 * @throws IOException if the cluster state could not be retrieved
+	 */
+	public static ShardRouting fetch(JestClient jestClient, String index)
+			throws IOException {
+		JestResult result = jestClient
+				.execute(new State.Builder().withMetadata().indices(index).build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException("Failed to get routing of " + index + ": "
+					+ result.getErrorMessage());
+		}
+		return of(result.getJsonObject().getAsJsonObject("metadata")
+				.getAsJsonObject("indices"), index);
+	}
+
+	static ShardRouting of(JsonObject indices, String index) {
+		Assert.state(indices.size() == 1, "Expected a single index for '" + index
+				+ "' but got " + indices.keySet());
+		Map.Entry<String, JsonElement> entry = indices.entrySet().iterator().next();
+		JsonObject metadata = entry.getValue().getAsJsonObject();
+		int numberOfShards = metadata.getAsJsonObject("settings").getAsJsonObject("index")
+				.get("number_of_shards").getAsInt();
+		JsonElement routingNumShards = metadata.get("routing_num_shards");
+		return new ShardRouting(numberOfShards, (routingNumShards != null)
+				? routingNumShards.getAsInt() : numberOfShards);
+	}
+
+	/**
+	 * Hash the specified routing value the same way as Elasticsearch, that is using the
+	 * 32 bits variant of murmur3 on the UTF-16 code units of the value.
+	 * @param routing the routing value
+	 * @return the hash
+	 */
+	static int hash(String routing) {
+		byte[] bytes = new byte[routing.length() * 2];
+		for (int i = 0; i < routing.length(); i++) {
+			char c = routing.charAt(i);
+			bytes[i * 2] = (byte) c;
+			bytes[i * 2 + 1] = (byte) (c >>> 8);
+		}
+		return murmur3(bytes);
+	}
+
+	private static int murmur3(byte[] data) {
+		int c1 = 0xcc9e2d51;
+		int c2 = 0x1b873593;
+		int h1 = 0;
+		int roundedEnd = data.length & 0xfffffffc;
+		for (int i = 0; i < roundedEnd; i += 4) {
+			int k1 = (data[i] & 0xff) | ((data[i + 1] & 0xff) << 8)
+					| ((data[i + 2] & 0xff) << 16) | (data[i + 3] << 24);
+			k1 *= c1;
+			k1 = Integer.rotateLeft(k1, 15);
+			k1 *= c2;
+			h1 ^= k1;
+			h1 = Integer.rotateLeft(h1, 13);
+			h1 = h1 * 5 + 0xe6546b64;
+		}
+		// Code units are two bytes long so the tail is either empty or two bytes long
+		if ((data.length & 0x03) == 2) {
+			int k1 = (data[roundedEnd] & 0xff) | ((data[roundedEnd + 1] & 0xff) << 8);
+			k1 *= c1;
+			k1 = Integer.rotateLeft(k1, 15);
+			k1 *= c2;
+			h1 ^= k1;
+		}
+		h1 ^= data.length;
+		h1 ^= h1 >>> 16;
+		h1 *= 0x85ebca6b;
+		h1 ^= h1 >>> 13;
+		h1 *= 0xc2b2ae35;
+		h1 ^= h1 >>> 16;
+		return h1;
+	}
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.BulkResult;
+
+/**
+ * A {@link BulkResult} for a response trimmed by {@link SerializedBulk#FILTER_PATH}. Only
+ * the {@code errors} flag is read eagerly: items are read lazily and, as the trimmed
+ * response only holds their status and error, mapped back to the action at the same
+ * position in the request. Each item keeps a reference to that action, see
+ * {@link #getAction(BulkResultItem)}. Failed items are only read once and the returned
+ * list cannot be modified.
+ *
+ * @author Stephane Nicoll
+ */
+class SlimBulkResult extends BulkResult {
+
+	private static final String ERROR_MESSAGE = "One or more of the items in the Bulk "
+			+ "request failed, check BulkResult.getItems() for more information.";
+
+	private final List<BulkableAction<?>> actions;
+
+	private volatile List<BulkResultItem> failedItems;
+
+	SlimBulkResult(Gson gson, String responseBody, int statusCode,
+			List<BulkableAction<?>> actions) {
+		super(gson);
+		this.actions = actions;
+		setResponseCode(statusCode);
+		setJsonString(responseBody);
+		boolean errors = readErrors(responseBody);
+		setSucceeded(!errors);
+		if (errors) {
+			setErrorMessage(ERROR_MESSAGE);
+		}
+	}
+
+	@Override
+	public JsonObject getJsonObject() {
+		if (super.getJsonObject() == null) {
+			setJsonObject(new JsonParser().parse(getJsonString()).getAsJsonObject());
+		}
+		return super.getJsonObject();
+	}
+
+	@Override
+	public List<BulkResultItem> getItems() {
+		return readItems(false);
+	}
+
+	@Override
+	public List<BulkResultItem> getFailedItems() {
+		if (isSucceeded()) {
+			return Collections.emptyList();
+		}
+		// Both the transport and the sink inspect failed items, only read them once
+		List<BulkResultItem> items = this.failedItems;
+		if (items == null) {
+			items = Collections.unmodifiableList(readItems(true));
+			this.failedItems = items;
+		}
+		return items;
+	}
+
+	/**
+	 * Return the action that produced the specified item, or {@code null} if the item was
+	 * not read by a {@link SlimBulkResult}.
+	 * @param item the item of a bulk response
+	 * @return the action of the item or {@code null}
+	 */
+	static BulkableAction<?> getAction(BulkResultItem item) {
+		return (item instanceof ActionResultItem) ? ((ActionResultItem) item).action
+				: null;
+	}
+
+	private static boolean readErrors(String responseBody) {
+		try (JsonReader reader = new JsonReader(new StringReader(responseBody))) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if ("errors".equals(reader.nextName())) {
+					return reader.nextBoolean();
+				}
+				reader.skipValue();
+			}
+			return false;
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Invalid bulk response", ex);
+		}
+	}
+
+	private List<BulkResultItem> readItems(boolean failedOnly) {
+		List<BulkResultItem> items = new ArrayList<>();
+		try (JsonReader reader = new JsonReader(new StringReader(getJsonString()))) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (!"items".equals(reader.nextName())) {
+					reader.skipValue();
+					continue;
+				}
+				reader.beginArray();
+				for (int i = 0; reader.hasNext(); i++) {
+					BulkResultItem item = readItem(reader, this.actions.get(i));
+					if (!failedOnly || item.error != null) {
+						items.add(item);
+					}
+				}
+				reader.endArray();
+			}
+			return items;
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Invalid bulk response", ex);
+		}
+	}
+
+	private BulkResultItem readItem(JsonReader reader, BulkableAction<?> action)
+			throws IOException {
+		reader.beginObject();
+		String operation = reader.nextName();
+		int status = 0;
+		JsonElement error = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if ("status".equals(name)) {
+				status = reader.nextInt();
+			}
+			else if ("error".equals(name)) {
+				error = new JsonParser().parse(reader);
+			}
+			else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		reader.endObject();
+		String errorType = null;
+		String errorReason = null;
+		if (error != null && error.isJsonObject()) {
+			errorType = getString(error.getAsJsonObject(), "type");
+			errorReason = getString(error.getAsJsonObject(), "reason");
+		}
+		return new ActionResultItem(operation, action, status,
+				(error != null) ? error.toString() : null, errorType, errorReason);
+	}
+
+	private static String getString(JsonObject object, String member) {
+		JsonElement element = object.get(member);
+		return (element != null && !element.isJsonNull()) ? element.getAsString() : null;
+	}
+
+	/**
+	 * A {@link BulkResultItem} that keeps track of the action it was created from.
+	 */
+	private final class ActionResultItem extends BulkResultItem {
+
+		private final BulkableAction<?> action;
+
+		private ActionResultItem(String operation, BulkableAction<?> action, int status,
+				String error, String errorType, String errorReason) {
+			super(operation, action.getIndex(), action.getType(), action.getId(), status,
+					error, null, errorType, errorReason);
+			this.action = action;
+		}
+
+	}
+
+}
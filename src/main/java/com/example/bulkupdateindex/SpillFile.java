@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+
+/**
+ * An append-only file of pages that could not be kept in memory. Pages are written one
+ * per line and read back in the order they were written. The file is deleted on close.
+ *
+ * @author Stephane Nicoll
+ */
+class SpillFile implements Closeable {
+
+	private final JsonParser parser = new JsonParser();
+
+	private final Path file;
+
+	private final BufferedWriter writer;
+
+	private BufferedReader reader;
+
+	private long pending;
+
+	private long spilled;
+
+	SpillFile(Path directory) throws IOException {
+		this.file = Files.createTempFile(directory, "spill-", ".ndjson");
+		this.writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Append the specified page.
+	 * @param page the page to append
+	 * @throws IOException if the page could not be written
+	 */
+	synchronized void append(JsonArray page) throws IOException {
+		this.writer.write(page.toString());
+		this.writer.newLine();
+		this.pending++;
+		this.spilled++;
+	}
+
+	/**
+	 * Return the next page that was spilled or {@code null} if none is pending.
+	 * @return the next page or {@code null}
+	 * @throws IOException if the page could not be read
+	 */
+	synchronized JsonArray poll() throws IOException {
+		if (this.pending == 0) {
+			return null;
+		}
+		this.writer.flush();
+		if (this.reader == null) {
+			this.reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8);
+		}
+		this.pending--;
+		return this.parser.parse(this.reader.readLine()).getAsJsonArray();
+	}
+
+	/**
+	 * Return the number of pages that have been spilled so far.
+	 * @return the number of spilled pages
+	 */
+	synchronized long getSpilled() {
+		return this.spilled;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			this.writer.close();
+			if (this.reader != null) {
+				this.reader.close();
+			}
+		}
+		finally {
+			Files.deleteIfExists(this.file);
+		}
+	}
+
+}
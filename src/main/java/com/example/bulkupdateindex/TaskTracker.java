@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.example.bulkupdateindex.action.GetTask;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Wait for a task running on the cluster to complete, such as an {@code _update_by_query}
+ * or a {@code _reindex}, logging its progress.
+ *
+ * @author Stephane Nicoll
+ */
+class TaskTracker {
+
+	private static final Logger logger = LoggerFactory.getLogger(TaskTracker.class);
+
+	private static final long POLL_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+	private final JestClient jestClient;
+
+	TaskTracker(JestClient jestClient) {
+		this.jestClient = jestClient;
+	}
+
+	/**
+	 * Wait for the specified task to complete.
+	 * @param taskId the id of the task
+	 * @return the response of the task
+	 * @throws IOException if the state of the task could not be retrieved
+	 * @throws IllegalStateException if the task failed
+	 */
+	JsonObject await(String taskId) throws IOException {
+		while (true) {
+			JestResult result = this.jestClient
+					.execute(new GetTask.Builder(taskId).build());
+			if (!result.isSucceeded()) {
+				throw new IllegalStateException(
+						"Failed to get task " + taskId + ": " + result.getErrorMessage());
+			}
+			JsonObject task = result.getJsonObject();
+			logger.info(describeStatus(
+					task.getAsJsonObject("task").getAsJsonObject("status")));
+			if (task.has("completed") && task.get("completed").getAsBoolean()) {
+				return complete(taskId, task);
+			}
+			sleep();
+		}
+	}
+
+	private JsonObject complete(String taskId, JsonObject task) {
+		if (task.has("error")) {
+			throw new IllegalStateException(
+					"Task " + taskId + " failed: " + task.get("error"));
+		}
+		JsonObject response = task.getAsJsonObject("response");
+		JsonArray failures = response.getAsJsonArray("failures");
+		if (failures != null && failures.size() > 0) {
+			throw new IllegalStateException(
+					"Task " + taskId + " completed with failures: " + failures);
+		}
+		return response;
+	}
+
+	static String describeStatus(JsonObject status) {
+		long total = getLong(status, "total");
+		long processed = getLong(status, "updated") + getLong(status, "created")
+				+ getLong(status, "deleted") + getLong(status, "noops")
+				+ getLong(status, "version_conflicts");
+		return String.format(
+				"Processed %s/%s elements [created: %s, updated: %s, batches: %s, "
+						+ "noops: %s, version conflicts: %s, throttled: %sms]",
+				processed, total, getLong(status, "created"), getLong(status, "updated"),
+				getLong(status, "batches"), getLong(status, "noops"),
+				getLong(status, "version_conflicts"),
+				getLong(status, "throttled_millis"));
+	}
+
+	static long getLong(JsonObject object, String member) {
+		JsonElement element = object.get(member);
+		return (element != null && !element.isJsonNull()) ? element.getAsLong() : 0;
+	}
+
+	private void sleep() {
+		try {
+			Thread.sleep(POLL_INTERVAL);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for task", ex);
+		}
+	}
+
+}
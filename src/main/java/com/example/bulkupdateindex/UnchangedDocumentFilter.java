@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Doc;
+import io.searchbox.core.MultiGet;
+
+/**
+ * Remove the {@link HashedIndex} actions whose target document already exists with the
+ * same content hash.
+ *
+ * @author Stephane Nicoll
+ */
+class UnchangedDocumentFilter {
+
+	private final JestClient jestClient;
+
+	UnchangedDocumentFilter(JestClient jestClient) {
+		this.jestClient = jestClient;
+	}
+
+	List<BulkableAction<?>> filter(List<BulkableAction<?>> actions) throws IOException {
+		List<Doc> docs = new ArrayList<>();
+		for (BulkableAction<?> action : actions) {
+			if (action instanceof HashedIndex && action.getId() != null) {
+				Doc doc = new Doc(action.getIndex(), action.getType(), action.getId());
+				doc.setSource(new String[] { HashedIndex.CONTENT_HASH_PROPERTY });
+				docs.add(doc);
+			}
+		}
+		if (docs.isEmpty()) {
+			return actions;
+		}
+		Set<String> unchanged = findExistingDocuments(docs);
+		if (unchanged.isEmpty()) {
+			return actions;
+		}
+		List<BulkableAction<?>> result = new ArrayList<>(actions.size());
+		for (BulkableAction<?> action : actions) {
+			if (!(action instanceof HashedIndex) || !unchanged.contains(key(action))) {
+				result.add(action);
+			}
+		}
+		return result;
+	}
+
+	private Set<String> findExistingDocuments(List<Doc> docs) throws IOException {
+		JestResult result = this.jestClient
+				.execute(new MultiGet.Builder.ByDoc(docs).build());
+		Set<String> existingHashes = new HashSet<>();
+		JsonArray items = (result.isSucceeded())
+				? result.getJsonObject().getAsJsonArray("docs") : null;
+		if (items == null) {
+			return existingHashes;
+		}
+		for (JsonElement item : items) {
+			JsonObject doc = item.getAsJsonObject();
+			JsonObject source = doc.getAsJsonObject("_source");
+			if (source != null && source.has(HashedIndex.CONTENT_HASH_PROPERTY)) {
+				existingHashes.add(key(doc.get("_index").getAsString(),
+						doc.get("_type").getAsString(), doc.get("_id").getAsString(),
+						source.get(HashedIndex.CONTENT_HASH_PROPERTY).getAsString()));
+			}
+		}
+		return existingHashes;
+	}
+
+	private static String key(BulkableAction<?> action) {
+		return key(action.getIndex(), action.getType(), action.getId(),
+				((HashedIndex) action).getContentHash());
+	}
+
+	private static String key(String index, String type, String id, String hash) {
+		return index + "/" + type + "/" + id + "#" + hash;
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+
+import com.example.bulkupdateindex.action.UpdateByQuery;
+import com.google.gson.JsonObject;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Run a {@link ScriptMigration} on the cluster using {@code _update_by_query} and track
+ * its progress using the tasks API. Version conflicts do not stop the task but are
+ * reported as a failure once it has completed.
+ *
+ * @author Stephane Nicoll
+ */
+class UpdateByQueryOperation {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(UpdateByQueryOperation.class);
+
+	private final JestClient jestClient;
+
+	private final TaskTracker taskTracker;
+
+	UpdateByQueryOperation(JestClient jestClient) {
+		this.jestClient = jestClient;
+		this.taskTracker = new TaskTracker(jestClient);
+	}
+
+	long run(String index, String type, ScriptMigration migration, int slices,
+			float requestsPerSecond) throws IOException {
+		UpdateByQuery.Builder builder = new UpdateByQuery.Builder(
+				migration.toRequestBody().toString()).addIndex(index).slices(slices)
+						.requestsPerSecond(requestsPerSecond).proceedOnConflicts()
+						.async();
+		if (type != null) {
+			builder.addType(type);
+		}
+		JestResult result = this.jestClient.execute(builder.build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException("Failed to start update by query on " + index
+					+ ": " + result.getErrorMessage());
+		}
+		String taskId = result.getJsonObject().get("task").getAsString();
+		logger.info("Started update by query on " + index + " [task: " + taskId + "]");
+		JsonObject response = this.taskTracker.await(taskId);
+		long updated = TaskTracker.getLong(response, "updated");
+		// Conflicts do not abort the task so that all other documents are migrated
+		long versionConflicts = TaskTracker.getLong(response, "version_conflicts");
+		if (versionConflicts > 0) {
+			throw new IllegalStateException(String.format(
+					"Update by query on %s completed with %s version conflict(s), "
+							+ "%s element(s) have been updated but documents that were "
+							+ "modified concurrently have not been migrated",
+					index, versionConflicts, updated));
+		}
+		return updated;
+	}
+
+}
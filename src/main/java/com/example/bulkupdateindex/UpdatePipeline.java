@@ -0,0 +1,418 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * Run the read, transform and write stages of an update concurrently. Stages are
+ * connected by bounded queues: a stage that cannot keep up fills the queue in front of
+ * it, which blocks the upstream stage until demand resumes. Throughput therefore settles
+ * on the slowest stage and at most {@code bufferedPages} pages are held in memory between
+ * two stages.
+ * <p>
+ * Memory limits can be set to bound the number of bytes held between stages rather than
+ * the number of pages. Pages that are read while the budget of queued hits is exhausted
+ * are spilled to a local file and transformed later, while transformers wait for the
+ * budget of pending actions to have room before queuing more actions.
+ * <p>
+ * Demand is signalled by blocking rather than with Reactive Streams, as the application
+ * targets Java 8, which has no {@code java.util.concurrent.Flow}, and does not depend on
+ * Reactor. Writers use the blocking {@link DocumentSink} contract on dedicated threads
+ * rather than an asynchronous bulk transport, so that the sinks of
+ * {@link BulkUpdateIndex}, such as shard grouping or the dead-letter queue, apply as
+ * well. The {@link DocumentSink} must be thread-safe if more than one writer is used.
+ *
+ * @author Stephane Nicoll
+ * @see BulkUpdateIndex#update(DocumentSource, DocumentSink, Function, UpdatePipeline)
+ */
+public class UpdatePipeline {
+
+	private static final Logger logger = LoggerFactory.getLogger(UpdatePipeline.class);
+
+	private static final Batch<JsonArray> END_OF_PAGES = new Batch<>(new JsonArray(), 0);
+
+	private static final Batch<List<BulkableAction<?>>> END_OF_ACTIONS = new Batch<>(
+			new ArrayList<>(0), 0);
+
+	private static final long POLL_INTERVAL = 100;
+
+	// Approximate size of the metadata of an action (index, type, id, etc)
+	private static final int ACTION_OVERHEAD = 256;
+
+	private final int transformConcurrency;
+
+	private final int writeConcurrency;
+
+	private final int bufferedPages;
+
+	private long maxQueuedHitBytes;
+
+	private long maxPendingActionBytes;
+
+	private Path spillDirectory;
+
+	/**
+	 * Create a new instance.
+	 * @param transformConcurrency the number of threads transforming pages
+	 * @param writeConcurrency the number of threads writing actions
+	 * @param bufferedPages the maximum number of pages waiting between two stages
+	 */
+	public UpdatePipeline(int transformConcurrency, int writeConcurrency,
+			int bufferedPages) {
+		Assert.isTrue(transformConcurrency > 0,
+				"TransformConcurrency must be greater than 0");
+		Assert.isTrue(writeConcurrency > 0, "WriteConcurrency must be greater than 0");
+		Assert.isTrue(bufferedPages > 0, "BufferedPages must be greater than 0");
+		this.transformConcurrency = transformConcurrency;
+		this.writeConcurrency = writeConcurrency;
+		this.bufferedPages = bufferedPages;
+	}
+
+	/**
+	 * Bound the memory held between stages.
+	 * @param maxQueuedHitBytes the maximum number of bytes of hits waiting to be
+	 * transformed, additional pages are spilled to disk
+	 * @param maxPendingActionBytes the maximum number of bytes of actions waiting to be
+	 * written
+	 * @param spillDirectory the directory to use for pages that are spilled to disk
+	 */
+	public void setMemoryLimits(long maxQueuedHitBytes, long maxPendingActionBytes,
+			Path spillDirectory) {
+		Assert.isTrue(maxQueuedHitBytes > 0, "MaxQueuedHitBytes must be greater than 0");
+		Assert.isTrue(maxPendingActionBytes > 0,
+				"MaxPendingActionBytes must be greater than 0");
+		Assert.notNull(spillDirectory, "SpillDirectory must not be null");
+		this.maxQueuedHitBytes = maxQueuedHitBytes;
+		this.maxPendingActionBytes = maxPendingActionBytes;
+		this.spillDirectory = spillDirectory;
+	}
+
+	long run(DocumentSource source, DocumentSink sink,
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction)
+			throws IOException {
+		try (Run run = new Run(source, sink, updateFunction)) {
+			return run.execute();
+		}
+	}
+
+	private boolean hasMemoryLimits() {
+		return this.spillDirectory != null;
+	}
+
+	private long estimateSize(JsonArray hits, long length) {
+		if (!hasMemoryLimits()) {
+			return 0;
+		}
+		return ((length >= 0) ? length : estimateLength(hits)) * 2L;
+	}
+
+	// Actions are derived from the hits of a page so their size is close to the size of
+	// the page, this avoids serializing them before the sink does
+	private long estimateSize(List<BulkableAction<?>> actions, long hitsSize) {
+		return hasMemoryLimits() ? hitsSize + (long) ACTION_OVERHEAD * actions.size() : 0;
+	}
+
+	// Approximate length of the JSON representation of an element, without serializing it
+	private static long estimateLength(JsonElement element) {
+		if (element.isJsonObject()) {
+			long length = 2;
+			for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject()
+					.entrySet()) {
+				length += entry.getKey().length() + 4 + estimateLength(entry.getValue());
+			}
+			return length;
+		}
+		if (element.isJsonArray()) {
+			long length = 2;
+			for (JsonElement item : element.getAsJsonArray()) {
+				length += 1 + estimateLength(item);
+			}
+			return length;
+		}
+		if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+			return element.getAsString().length() + 2;
+		}
+		return 8;
+	}
+
+	private static <T> void offer(BlockingQueue<T> queue, T element,
+			List<Future<?>> downstream) throws IOException {
+		try {
+			while (!queue.offer(element, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+				checkWorkers(downstream);
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running pipeline", ex);
+		}
+	}
+
+	// Fail fast rather than waiting forever for a failed worker
+	private static void checkWorkers(List<Future<?>> workers) throws IOException {
+		for (Future<?> worker : workers) {
+			if (worker.isDone()) {
+				await(worker);
+			}
+		}
+	}
+
+	private static void await(List<Future<?>> workers) throws IOException {
+		for (Future<?> worker : workers) {
+			await(worker);
+		}
+	}
+
+	private static void await(Future<?> worker) throws IOException {
+		try {
+			worker.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running pipeline", ex);
+		}
+		catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			}
+			throw new IllegalStateException("Pipeline failed", ex.getCause());
+		}
+	}
+
+	/**
+	 * The state of a single run of the pipeline.
+	 */
+	private class Run implements AutoCloseable {
+
+		private final DocumentSource source;
+
+		private final DocumentSink sink;
+
+		private final Function<JsonObject, List<BulkableAction<?>>> updateFunction;
+
+		private final UpdateStatistics statistics = new UpdateStatistics();
+
+		private final BlockingQueue<Batch<JsonArray>> pages;
+
+		private final BlockingQueue<Batch<List<BulkableAction<?>>>> actions;
+
+		private final MemoryBudget hitsBudget;
+
+		private final MemoryBudget actionsBudget;
+
+		private final SpillFile spillFile;
+
+		private final ExecutorService executor;
+
+		Run(DocumentSource source, DocumentSink sink,
+				Function<JsonObject, List<BulkableAction<?>>> updateFunction)
+				throws IOException {
+			this.source = source;
+			this.sink = sink;
+			this.updateFunction = updateFunction;
+			this.pages = new ArrayBlockingQueue<>(UpdatePipeline.this.bufferedPages);
+			this.actions = new ArrayBlockingQueue<>(UpdatePipeline.this.bufferedPages);
+			boolean memoryLimits = hasMemoryLimits();
+			this.hitsBudget = (memoryLimits)
+					? new MemoryBudget(UpdatePipeline.this.maxQueuedHitBytes) : null;
+			this.actionsBudget = (memoryLimits)
+					? new MemoryBudget(UpdatePipeline.this.maxPendingActionBytes) : null;
+			this.spillFile = (memoryLimits)
+					? new SpillFile(UpdatePipeline.this.spillDirectory) : null;
+			this.executor = Executors
+					.newFixedThreadPool(UpdatePipeline.this.transformConcurrency
+							+ UpdatePipeline.this.writeConcurrency);
+		}
+
+		long execute() throws IOException {
+			List<Future<?>> writers = new ArrayList<>();
+			for (int i = 0; i < UpdatePipeline.this.writeConcurrency; i++) {
+				writers.add(this.executor.submit(this::write));
+			}
+			List<Future<?>> transformers = new ArrayList<>();
+			for (int i = 0; i < UpdatePipeline.this.transformConcurrency; i++) {
+				transformers.add(this.executor.submit(() -> transform(writers)));
+			}
+			List<Future<?>> workers = new ArrayList<>(transformers);
+			workers.addAll(writers);
+			int page = 1;
+			JsonArray hits = read();
+			while (hits.size() > 0) {
+				logger.info("Queuing page " + page + "[" + this.statistics.getHits()
+						+ " elements read so far]");
+				queue(hits, workers);
+				hits = read();
+				page++;
+			}
+			for (int i = 0; i < UpdatePipeline.this.transformConcurrency; i++) {
+				offer(this.pages, END_OF_PAGES, workers);
+			}
+			await(transformers);
+			for (int i = 0; i < UpdatePipeline.this.writeConcurrency; i++) {
+				offer(this.actions, END_OF_ACTIONS, writers);
+			}
+			await(writers);
+			logger.info("No more elements");
+			if (this.spillFile != null && this.spillFile.getSpilled() > 0) {
+				logger.info("Spilled " + this.spillFile.getSpilled() + " pages to disk");
+			}
+			logger.info(this.statistics.toString());
+			return this.statistics.getHits();
+		}
+
+		private JsonArray read() throws IOException {
+			long start = System.nanoTime();
+			JsonArray hits = this.source.nextPage();
+			this.statistics.read(hits.size(), System.nanoTime() - start);
+			return hits;
+		}
+
+		private void queue(JsonArray hits, List<Future<?>> workers) throws IOException {
+			if (this.spillFile == null) {
+				offer(this.pages, new Batch<>(hits, 0), workers);
+				return;
+			}
+			// Spilling never blocks, so it must not keep going once a worker has failed
+			checkWorkers(workers);
+			long size = estimateSize(hits, this.source.getLastPageSize());
+			if (this.hitsBudget.tryReserve(size)) {
+				if (this.pages.offer(new Batch<>(hits, size))) {
+					return;
+				}
+				this.hitsBudget.release(size);
+			}
+			this.spillFile.append(hits);
+		}
+
+		private Void transform(List<Future<?>> writers) throws Exception {
+			while (true) {
+				Batch<JsonArray> batch = this.pages.poll(POLL_INTERVAL,
+						TimeUnit.MILLISECONDS);
+				if (batch == END_OF_PAGES) {
+					JsonArray spilled = pollSpillFile();
+					while (spilled != null) {
+						transform(spilled, estimateSize(spilled, -1), writers);
+						spilled = pollSpillFile();
+					}
+					return null;
+				}
+				if (batch != null) {
+					release(this.hitsBudget, batch.size);
+					transform(batch.content, batch.size, writers);
+				}
+				else {
+					JsonArray spilled = pollSpillFile();
+					if (spilled != null) {
+						transform(spilled, estimateSize(spilled, -1), writers);
+					}
+				}
+			}
+		}
+
+		private void transform(JsonArray hits, long hitsSize, List<Future<?>> writers)
+				throws IOException, InterruptedException {
+			long start = System.nanoTime();
+			List<BulkableAction<?>> updates = new ArrayList<>();
+			for (JsonElement hit : hits) {
+				ActionEmitter.emit(this.updateFunction, hit.getAsJsonObject(), updates);
+			}
+			this.statistics.transform(updates.size(), System.nanoTime() - start);
+			long size = estimateSize(updates, hitsSize);
+			if (this.actionsBudget != null) {
+				while (!this.actionsBudget.tryReserve(size, POLL_INTERVAL,
+						TimeUnit.MILLISECONDS)) {
+					checkWorkers(writers);
+				}
+			}
+			offer(this.actions, new Batch<>(updates, size), writers);
+		}
+
+		private JsonArray pollSpillFile() throws IOException {
+			return (this.spillFile != null) ? this.spillFile.poll() : null;
+		}
+
+		private Void write() throws Exception {
+			Batch<List<BulkableAction<?>>> batch = this.actions.take();
+			while (batch != END_OF_ACTIONS) {
+				long start = System.nanoTime();
+				try {
+					this.sink.write(batch.content);
+				}
+				finally {
+					release(this.actionsBudget, batch.size);
+				}
+				this.statistics.write(System.nanoTime() - start);
+				batch = this.actions.take();
+			}
+			return null;
+		}
+
+		private void release(MemoryBudget budget, long size) {
+			if (budget != null) {
+				budget.release(size);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.executor.shutdownNow();
+			if (this.spillFile != null) {
+				this.spillFile.close();
+			}
+		}
+
+	}
+
+	/**
+	 * Content exchanged between two stages, with its estimated size in bytes.
+	 */
+	private static final class Batch<T> {
+
+		private final T content;
+
+		private final long size;
+
+		Batch(T content, long size) {
+			this.content = content;
+			this.size = size;
+		}
+
+	}
+
+}
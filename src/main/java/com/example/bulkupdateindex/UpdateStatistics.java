@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Track the number of elements and the time spent in each stage of an update. Time spent
+ * by concurrent stages is accumulated.
+ *
+ * @author Stephane Nicoll
+ */
+class UpdateStatistics {
+
+	private long hits;
+
+	private long actions;
+
+	private long readNanos;
+
+	private long transformNanos;
+
+	private long writeNanos;
+
+	synchronized void read(int hits, long nanos) {
+		this.hits += hits;
+		this.readNanos += nanos;
+	}
+
+	synchronized void transform(int actions, long nanos) {
+		this.actions += actions;
+		this.transformNanos += nanos;
+	}
+
+	synchronized void write(long nanos) {
+		this.writeNanos += nanos;
+	}
+
+	synchronized long getHits() {
+		return this.hits;
+	}
+
+	synchronized long getActions() {
+		return this.actions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format(
+				"Processed %s elements and wrote %s actions [read: %s, transform: %s, "
+						+ "write: %s]",
+				this.hits, this.actions, throughput(this.hits, this.readNanos),
+				throughput(this.hits, this.transformNanos),
+				throughput(this.actions, this.writeNanos));
+	}
+
+	private static String throughput(long count, long nanos) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		long perSecond = (nanos > 0) ? (count * TimeUnit.SECONDS.toNanos(1)) / nanos : 0;
+		return String.format("%sms, %s/s", millis, perSecond);
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+
+/**
+ * A high-water mark on a numeric field of the documents of a source index that have been
+ * migrated to a target index.
+ *
+ * @author Stephane Nicoll
+ * @see WatermarkRepository
+ */
+public class Watermark {
+
+	private final String source;
+
+	private final String target;
+
+	private final String field;
+
+	private final Long previousValue;
+
+	private final AtomicLong currentValue = new AtomicLong(Long.MIN_VALUE);
+
+	private final AtomicLong failures = new AtomicLong();
+
+	public Watermark(String source, String target, String field, Long previousValue) {
+		this.source = source;
+		this.target = target;
+		this.field = field;
+		this.previousValue = previousValue;
+		if (previousValue != null) {
+			this.currentValue.set(previousValue);
+		}
+	}
+
+	public String getSource() {
+		return this.source;
+	}
+
+	public String getTarget() {
+		return this.target;
+	}
+
+	public String getField() {
+		return this.field;
+	}
+
+	/**
+	 * Return the value of the mark when the run started or {@code null} if no document
+	 * has been migrated yet.
+	 * @return the previous value
+	 */
+	public Long getPreviousValue() {
+		return this.previousValue;
+	}
+
+	/**
+	 * Return the highest value seen so far, or {@code null} if no document has been
+	 * migrated yet.
+	 * @return the current value
+	 */
+	public Long getCurrentValue() {
+		long value = this.currentValue.get();
+		return (value != Long.MIN_VALUE) ? value : null;
+	}
+
+	/**
+	 * Return a query that targets the documents past this mark. Documents in the
+	 * {@code overlap} window before the mark are matched again so that documents that
+	 * became visible late are not missed.
+	 * @param overlap the overlap with the previous run
+	 * @return a search query
+	 */
+	public String toQuery(long overlap) {
+		if (this.previousValue == null) {
+			return "";
+		}
+		JsonObject range = new JsonObject();
+		range.addProperty("gte", this.previousValue - overlap);
+		JsonObject field = new JsonObject();
+		field.add(this.field, range);
+		JsonObject rangeQuery = new JsonObject();
+		rangeQuery.add("range", field);
+		JsonObject query = new JsonObject();
+		query.add("query", rangeQuery);
+		return query.toString();
+	}
+
+	/**
+	 * Wrap the specified update function so that the mark is moved forward for every hit.
+	 * @param updateFunction the update function
+	 * @return an update function that tracks this mark
+	 */
+	public Function<JsonObject, List<BulkableAction<?>>> track(
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction) {
+		return (ActionEmitter) (hit, actions) -> {
+			ActionEmitter.emit(updateFunction, hit, actions);
+			JsonElement value = hit.getAsJsonObject("_source").get(this.field);
+			if (value != null && !value.isJsonNull()) {
+				this.currentValue.accumulateAndGet(value.getAsLong(), Math::max);
+			}
+		};
+	}
+
+	/**
+	 * Return a {@link BulkFailureHandler} that records failed items against this mark. A
+	 * mark with failures should not be stored, as the failed documents would be left
+	 * behind it.
+	 * @return a failure handler that tracks this mark
+	 * @see #getFailures()
+	 */
+	public BulkFailureHandler trackFailures() {
+		return (failedItems) -> this.failures.addAndGet(failedItems.size());
+	}
+
+	/**
+	 * Return the number of items that have failed so far.
+	 * @return the number of failed items
+	 */
+	public long getFailures() {
+		return this.failures.get();
+	}
+
+}
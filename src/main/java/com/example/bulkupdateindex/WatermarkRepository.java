@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+
+import com.google.gson.JsonObject;
+import io.searchbox.client.JestClient;
+import io.searchbox.core.DocumentResult;
+import io.searchbox.core.Get;
+import io.searchbox.core.Index;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Store {@link Watermark watermarks} in a dedicated index so that incremental runs can be
+ * scheduled from any host.
+ *
+ * @author Stephane Nicoll
+ */
+@Component
+public class WatermarkRepository {
+
+	static final String INDEX = "bulk-update-watermarks";
+
+	static final String TYPE = "watermark";
+
+	private final JestClient jestClient;
+
+	public WatermarkRepository(JestClient jestClient) {
+		this.jestClient = jestClient;
+	}
+
+	/**
+	 * Load the {@link Watermark} of the specified source and target.
+	 * @param source the source index
+	 * @param target the target index
+	 * @param field the field on which the mark is computed
+	 * @return the watermark, with no previous value if none was stored yet
+	 * @throws IOException if the watermark could not be loaded
+	 */
+	public Watermark load(String source, String target, String field) throws IOException {
+		DocumentResult result = this.jestClient.execute(
+				new Get.Builder(INDEX, id(source, target, field)).type(TYPE).build());
+		Long value = null;
+		if (result.isSucceeded()) {
+			JsonObject document = result.getJsonObject();
+			if (document.has("_source")) {
+				value = document.getAsJsonObject("_source").get("value").getAsLong();
+			}
+		}
+		return new Watermark(source, target, field, value);
+	}
+
+	/**
+	 * Store the current value of the specified {@link Watermark}. Does nothing if no
+	 * document has been migrated.
+	 * @param watermark the watermark to store
+	 * @throws IOException if the watermark could not be stored
+	 */
+	public void save(Watermark watermark) throws IOException {
+		Long value = watermark.getCurrentValue();
+		if (value == null) {
+			return;
+		}
+		JsonObject document = new JsonObject();
+		document.addProperty("source", watermark.getSource());
+		document.addProperty("target", watermark.getTarget());
+		document.addProperty("field", watermark.getField());
+		document.addProperty("value", value);
+		DocumentResult result = this.jestClient.execute(new Index.Builder(document)
+				.index(INDEX).type(TYPE).id(id(watermark.getSource(),
+						watermark.getTarget(), watermark.getField()))
+				.refresh(true).build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException(
+					"Failed to store watermark " + result.getErrorMessage());
+		}
+	}
+
+	private static String id(String source, String target, String field) {
+		return source + ":" + target + ":" + field;
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+/**
+ * Define how {@link HashedIndex} actions are written to the target index.
+ *
+ * @author Stephane Nicoll
+ */
+public enum WriteMode {
+
+	/**
+	 * Index every document, overwriting any existing document with the same id.
+	 */
+	INDEX,
+
+	/**
+	 * Only create documents that do not exist yet.
+	 */
+	CREATE,
+
+	/**
+	 * Skip documents whose content hash is identical to the one of the existing document
+	 * with the same id.
+	 */
+	SKIP_UNCHANGED
+
+}
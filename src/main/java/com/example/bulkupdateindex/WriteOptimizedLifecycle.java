@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Get;
+import io.searchbox.core.Index;
+import io.searchbox.indices.ForceMerge;
+import io.searchbox.indices.Refresh;
+import io.searchbox.indices.settings.GetSettings;
+import io.searchbox.indices.settings.UpdateSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Disable refresh and replicas of a target index for the duration of a bulk load and
+ * restore them afterwards, even if the load fails.
+ * <p>
+ * The original settings are stored before being changed so that a subsequent run can
+ * restore them if the process died before it could do so.
+ *
+ * @author Stephane Nicoll
+ */
+class WriteOptimizedLifecycle {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(WriteOptimizedLifecycle.class);
+
+	static final String INDEX = "bulk-update-lifecycle";
+
+	static final String TYPE = "settings";
+
+	private static final String REFRESH_INTERVAL = "refresh_interval";
+
+	private static final String NUMBER_OF_REPLICAS = "number_of_replicas";
+
+	private final JestClient jestClient;
+
+	WriteOptimizedLifecycle(JestClient jestClient) {
+		this.jestClient = jestClient;
+	}
+
+	void run(String targetIndex, int maxNumSegments, IndexingOperation operation)
+			throws IOException {
+		JsonObject originalSettings = prepare(targetIndex);
+		try {
+			operation.run();
+			if (maxNumSegments > 0) {
+				forceMerge(targetIndex, maxNumSegments);
+			}
+		}
+		catch (Throwable ex) {
+			// Do not let a failure to restore hide the original failure
+			try {
+				restore(targetIndex, originalSettings);
+			}
+			catch (Throwable restoreEx) {
+				ex.addSuppressed(restoreEx);
+			}
+			throw ex;
+		}
+		restore(targetIndex, originalSettings);
+	}
+
+	private JsonObject prepare(String targetIndex) throws IOException {
+		JsonObject originalSettings = loadSavedSettings(targetIndex);
+		if (originalSettings != null) {
+			logger.warn("Found settings of " + targetIndex
+					+ " saved by a previous run that did not complete "
+					+ originalSettings);
+		}
+		else {
+			originalSettings = getCurrentSettings(targetIndex);
+			saveSettings(targetIndex, originalSettings);
+		}
+		JsonObject settings = new JsonObject();
+		settings.addProperty(REFRESH_INTERVAL, "-1");
+		settings.addProperty(NUMBER_OF_REPLICAS, 0);
+		logger.info("Optimizing " + targetIndex + " for write " + settings);
+		updateSettings(targetIndex, settings);
+		return originalSettings;
+	}
+
+	private void restore(String targetIndex, JsonObject originalSettings)
+			throws IOException {
+		logger.info("Restoring settings of " + targetIndex + " " + originalSettings);
+		updateSettings(targetIndex, originalSettings);
+		this.jestClient
+				.execute(new Delete.Builder(targetIndex).index(INDEX).type(TYPE).build());
+		this.jestClient.execute(new Refresh.Builder().addIndex(targetIndex).build());
+	}
+
+	private void forceMerge(String targetIndex, int maxNumSegments) throws IOException {
+		logger.info(
+				"Force merging " + targetIndex + " to " + maxNumSegments + " segment(s)");
+		JestResult result = this.jestClient.execute(new ForceMerge.Builder()
+				.addIndex(targetIndex).maxNumSegments(maxNumSegments).build());
+		if (!result.isSucceeded()) {
+			logger.error("Failed to force merge " + targetIndex + " "
+					+ result.getErrorMessage());
+		}
+	}
+
+	private JsonObject getCurrentSettings(String targetIndex) throws IOException {
+		JestResult result = this.jestClient
+				.execute(new GetSettings.Builder().addIndex(targetIndex).build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException("Failed to retrieve settings of "
+					+ targetIndex + " " + result.getErrorMessage());
+		}
+		JsonObject index = null;
+		for (Map.Entry<String, JsonElement> entry : result.getJsonObject().entrySet()) {
+			index = entry.getValue().getAsJsonObject().getAsJsonObject("settings")
+					.getAsJsonObject("index");
+		}
+		JsonObject settings = new JsonObject();
+		settings.add(REFRESH_INTERVAL, getSetting(index, REFRESH_INTERVAL));
+		settings.add(NUMBER_OF_REPLICAS, getSetting(index, NUMBER_OF_REPLICAS));
+		return settings;
+	}
+
+	private JsonElement getSetting(JsonObject index, String name) {
+		JsonElement value = (index != null) ? index.get(name) : null;
+		// A null value resets the setting to its default
+		return (value != null) ? value : JsonNull.INSTANCE;
+	}
+
+	private void updateSettings(String targetIndex, JsonObject settings)
+			throws IOException {
+		JsonObject body = new JsonObject();
+		body.add("index", settings);
+		JestResult result = this.jestClient
+				.execute(new UpdateSettings.Builder(body.toString()).addIndex(targetIndex)
+						.build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException("Failed to update settings of " + targetIndex
+					+ " " + result.getErrorMessage());
+		}
+	}
+
+	private JsonObject loadSavedSettings(String targetIndex) throws IOException {
+		JestResult result = this.jestClient
+				.execute(new Get.Builder(INDEX, targetIndex).type(TYPE).build());
+		if (result.isSucceeded() && result.getJsonObject().has("_source")) {
+			return result.getJsonObject().getAsJsonObject("_source")
+					.getAsJsonObject("settings");
+		}
+		return null;
+	}
+
+	private void saveSettings(String targetIndex, JsonObject settings)
+			throws IOException {
+		JsonObject document = new JsonObject();
+		document.addProperty("index", targetIndex);
+		document.add("settings", settings);
+		JestResult result = this.jestClient.execute(new Index.Builder(document.toString())
+				.index(INDEX).type(TYPE).id(targetIndex).refresh(true).build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException("Failed to save settings of " + targetIndex
+					+ " " + result.getErrorMessage());
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.action;
+
+import io.searchbox.action.AbstractAction;
+import io.searchbox.action.GenericResultAbstractAction;
+
+/**
+ * Jest action to get the state of a task using the {@code _tasks} API.
+ *
+ * @author Stephane Nicoll
+ */
+public class GetTask extends GenericResultAbstractAction {
+
+	private final String taskId;
+
+	protected GetTask(Builder builder) {
+		super(builder);
+		this.taskId = builder.taskId;
+		setURI(buildURI());
+	}
+
+	@Override
+	protected String buildURI() {
+		return "_tasks/" + this.taskId;
+	}
+
+	@Override
+	public String getRestMethodName() {
+		return "GET";
+	}
+
+	/**
+	 * Builder for a {@link GetTask}.
+	 */
+	public static class Builder extends AbstractAction.Builder<GetTask, Builder> {
+
+		private final String taskId;
+
+		public Builder(String taskId) {
+			this.taskId = taskId;
+		}
+
+		@Override
+		public GetTask build() {
+			return new GetTask(this);
+		}
+
+	}
+
+}
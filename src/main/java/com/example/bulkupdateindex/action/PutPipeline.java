@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.action;
+
+import io.searchbox.action.AbstractAction;
+import io.searchbox.action.GenericResultAbstractAction;
+
+/**
+ * Jest action to create or replace an ingest pipeline.
+ *
+ * @author Stephane Nicoll
+ */
+public class PutPipeline extends GenericResultAbstractAction {
+
+	private final String id;
+
+	protected PutPipeline(Builder builder) {
+		super(builder);
+		this.id = builder.id;
+		this.payload = builder.body;
+		setURI(buildURI());
+	}
+
+	@Override
+	protected String buildURI() {
+		return "_ingest/pipeline/" + this.id;
+	}
+
+	@Override
+	public String getRestMethodName() {
+		return "PUT";
+	}
+
+	/**
+	 * Builder for a {@link PutPipeline}.
+	 */
+	public static class Builder extends AbstractAction.Builder<PutPipeline, Builder> {
+
+		private final String id;
+
+		private final Object body;
+
+		public Builder(String id, Object body) {
+			this.id = id;
+			this.body = body;
+		}
+
+		@Override
+		public PutPipeline build() {
+			return new PutPipeline(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.action;
+
+import io.searchbox.action.AbstractAction;
+import io.searchbox.action.GenericResultAbstractAction;
+
+/**
+ * Jest action for the {@code _reindex} API, which is not provided by Jest.
+ *
+ * @author Stephane Nicoll
+ */
+public class Reindex extends GenericResultAbstractAction {
+
+	protected Reindex(Builder builder) {
+		super(builder);
+		this.payload = builder.body;
+		setURI(buildURI());
+	}
+
+	@Override
+	protected String buildURI() {
+		return "_reindex";
+	}
+
+	@Override
+	public String getRestMethodName() {
+		return "POST";
+	}
+
+	/**
+	 * Builder for a {@link Reindex}.
+	 */
+	public static class Builder extends AbstractAction.Builder<Reindex, Builder> {
+
+		private final Object body;
+
+		public Builder(Object body) {
+			this.body = body;
+		}
+
+		/**
+		 * Split the operation in the specified number of slices that run in parallel.
+		 * @param slices the number of slices
+		 * @return this builder
+		 */
+		public Builder slices(int slices) {
+			return setParameter("slices", slices);
+		}
+
+		/**
+		 * Throttle the operation to the specified number of documents per second.
+		 * @param requestsPerSecond the number of documents per second, or {@code -1} to
+		 * disable throttling
+		 * @return this builder
+		 */
+		public Builder requestsPerSecond(float requestsPerSecond) {
+			return setParameter("requests_per_second", requestsPerSecond);
+		}
+
+		/**
+		 * Return immediately with the id of a task rather than waiting for the operation
+		 * to complete.
+		 * @return this builder
+		 */
+		public Builder async() {
+			return setParameter("wait_for_completion", false);
+		}
+
+		@Override
+		public Reindex build() {
+			return new Reindex(this);
+		}
+
+	}
+
+}
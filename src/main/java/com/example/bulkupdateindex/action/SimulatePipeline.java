@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.action;
+
+import io.searchbox.action.AbstractAction;
+import io.searchbox.action.GenericResultAbstractAction;
+
+/**
+ * Jest action to run documents through an ingest pipeline without indexing them.
+ *
+ * @author Stephane Nicoll
+ */
+public class SimulatePipeline extends GenericResultAbstractAction {
+
+	protected SimulatePipeline(Builder builder) {
+		super(builder);
+		this.payload = builder.body;
+		setURI(buildURI());
+	}
+
+	@Override
+	protected String buildURI() {
+		return "_ingest/pipeline/_simulate";
+	}
+
+	@Override
+	public String getRestMethodName() {
+		return "POST";
+	}
+
+	/**
+	 * Builder for a {@link SimulatePipeline}.
+	 */
+	public static class Builder
+			extends AbstractAction.Builder<SimulatePipeline, Builder> {
+
+		private final Object body;
+
+		/**
+		 * Create a new instance.
+		 * @param body the request body, with the {@code pipeline} to use and the
+		 * {@code docs} to run through it
+		 */
+		public Builder(Object body) {
+			this.body = body;
+		}
+
+		@Override
+		public SimulatePipeline build() {
+			return new SimulatePipeline(this);
+		}
+
+	}
+
+}
@@ -21,10 +21,12 @@ import java.io.IOException;
 import com.example.bulkupdateindex.AbstractIndexer;
 import com.example.bulkupdateindex.BulkUpdateIndex;
 import com.example.bulkupdateindex.IndexActionContainer;
+import com.example.bulkupdateindex.WriteMode;
+import com.example.bulkupdateindex.support.DocumentDigest;
+import com.example.bulkupdateindex.support.VersionGenerations;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import io.searchbox.core.Index;
 import io.searchbox.core.Search;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,23 +43,47 @@ public class ModuleIndexer extends AbstractIndexer {
 
 	private static final Logger logger = LoggerFactory.getLogger(ModuleIndexer.class);
 
+	private final StatHandler statHandler = new StatHandler(getAnomalyReporter());
+
+	/**
+	 * Set the {@link VersionGenerations} to use to add the support generation of the
+	 * version of each download.
+	 * @param versionGenerations the version generations or {@code null}
+	 */
+	public void setVersionGenerations(VersionGenerations versionGenerations) {
+		this.statHandler.setVersionGenerations(versionGenerations);
+	}
+
 	public void indexModules(BulkUpdateIndex bulkUpdateIndex) throws IOException {
+		indexModules(bulkUpdateIndex, WriteMode.SKIP_UNCHANGED);
+	}
+
+	public void indexModules(BulkUpdateIndex bulkUpdateIndex, WriteMode writeMode)
+			throws IOException {
 		logger.info("Reindexing versions");
 		Search.Builder searchBuilder = new Search.Builder("").addIndex("projects")
 				.addType("download");
-		bulkUpdateIndex.update(searchBuilder, 2000, this::index);
+		try {
+			bulkUpdateIndex.update(searchBuilder, 2000, writeMode, this);
+		}
+		finally {
+			getAnomalyReporter().logSummary(20);
+		}
 	}
 
 	protected void migrate(IndexActionContainer container) {
-		StatHandler statHandler = new StatHandler();
 		JsonObject source = container.getSource();
 		JsonArray stats = source.getAsJsonArray("stats");
 
-		for (JsonElement stat : stats) {
-			JsonObject downloadDocument = statHandler.handle(source,
-					stat.getAsJsonObject());
-			container.addAction(new Index.Builder(downloadDocument).index("downloads")
-					.type("download").build());
+		for (JsonElement element : stats) {
+			JsonObject stat = element.getAsJsonObject();
+			JsonObject downloadDocument = this.statHandler.handle(source, stat);
+			if (downloadDocument == null) {
+				continue;
+			}
+			String id = DocumentDigest.id(container.getId(),
+					stat.get("source").getAsString(), stat.get("version").getAsString());
+			container.addIndexAction("downloads", "download", id, downloadDocument);
 		}
 	}
 
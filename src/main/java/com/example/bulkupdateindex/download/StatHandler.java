@@ -16,10 +16,13 @@
 
 package com.example.bulkupdateindex.download;
 
+import com.example.bulkupdateindex.AnomalyReporter;
+import com.example.bulkupdateindex.mapping.DocumentMapping;
+import com.example.bulkupdateindex.mapping.FieldType;
+import com.example.bulkupdateindex.support.VersionGenerations;
 import com.example.bulkupdateindex.support.VersionReference;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Denormalize stat entries to individual documents.
@@ -28,31 +31,66 @@ import org.slf4j.LoggerFactory;
  */
 class StatHandler {
 
-	private static final Logger logger = LoggerFactory.getLogger(StatHandler.class);
+	/**
+	 * Anomaly type for a stat whose version has no major nor minor, weighted by the
+	 * number of downloads of the stat.
+	 */
+	static final String NO_GENERATION = "No generation information";
 
+	/**
+	 * Anomaly type for a stat that has no source and is therefore skipped, weighted by
+	 * the number of downloads of the stat.
+	 */
+	static final String NO_SOURCE = "No source information";
+
+	private static final DocumentMapping<JsonObject> SOURCE_MAPPING = DocumentMapping
+			.builder().map("from", FieldType.LONG).map("to", FieldType.LONG)
+			.mapOptional("projectId", FieldType.STRING).map("groupId", FieldType.STRING)
+			.map("artifactId", FieldType.STRING).build();
+
+	private static final DocumentMapping<JsonObject> STAT_MAPPING = DocumentMapping
+			.builder().map("source", FieldType.STRING).map("count", FieldType.LONG)
+			.build();
+
+	private final AnomalyReporter anomalyReporter;
+
+	private VersionGenerations versionGenerations;
+
+	StatHandler(AnomalyReporter anomalyReporter) {
+		this.anomalyReporter = anomalyReporter;
+	}
+
+	void setVersionGenerations(VersionGenerations versionGenerations) {
+		this.versionGenerations = versionGenerations;
+	}
+
+	/**
+	 * Create the download document of the specified stat.
+	 * @param source the source document
+	 * @param stat the stat of the source document
+	 * @return the download document, or {@code null} if the stat has no source
+	 */
 	JsonObject handle(JsonObject source, JsonObject stat) {
+		if (!hasValue(stat, "source")) {
+			this.anomalyReporter.record(NO_SOURCE, getCount(stat),
+					source.get("groupId").getAsString(),
+					source.get("artifactId").getAsString());
+			return null;
+		}
 		String version = stat.get("version").getAsString();
 		VersionReference versionReference = VersionReference.parse(version);
 		if (versionReference.getMajor() == null && versionReference.getMinor() == null) {
-			String moduleId = source.get("groupId").getAsString() + " - "
-					+ source.get("artifactId").getAsString();
-			logger.warn(String.format(
-					"%s will have no generation information[count=%s, version='%s']",
-					moduleId, stat.get("count").getAsLong(), versionReference.getId()));
+			this.anomalyReporter.record(NO_GENERATION, getCount(stat),
+					source.get("groupId").getAsString(),
+					source.get("artifactId").getAsString(), versionReference.getId());
 		}
 		return createDocument(source, stat, versionReference);
 	}
 
 	private JsonObject createDocument(JsonObject source, JsonObject stat,
 			VersionReference versionReference) {
-		JsonObject object = new JsonObject();
-		object.addProperty("from", source.get("from").getAsLong());
-		object.addProperty("to", source.get("to").getAsLong());
-		object.addProperty("projectId", source.get("projectId").getAsString());
-		object.addProperty("groupId", source.get("groupId").getAsString());
-		object.addProperty("artifactId", source.get("artifactId").getAsString());
-		object.addProperty("source", stat.get("source").getAsString());
-		object.addProperty("count", stat.get("count").getAsLong());
+		JsonObject object = SOURCE_MAPPING.apply(source);
+		STAT_MAPPING.applyTo(stat, object);
 		JsonObject versionObject = new JsonObject();
 		versionObject.addProperty("id", versionReference.getId());
 		if (versionReference.getMajor() != null) {
@@ -61,8 +99,24 @@ class StatHandler {
 		if (versionReference.getMinor() != null) {
 			versionObject.addProperty("minor", versionReference.getMinor());
 		}
+		if (this.versionGenerations != null && object.has("projectId")) {
+			String generation = this.versionGenerations
+					.classify(object.get("projectId").getAsString(), versionReference);
+			if (generation != null) {
+				versionObject.addProperty("generation", generation);
+			}
+		}
 		object.add("version", versionObject);
 		return object;
 	}
 
+	private static boolean hasValue(JsonObject object, String name) {
+		JsonElement value = object.get(name);
+		return value != null && !value.isJsonNull();
+	}
+
+	private static long getCount(JsonObject stat) {
+		return (hasValue(stat, "count") ? stat.get("count").getAsLong() : 1);
+	}
+
 }
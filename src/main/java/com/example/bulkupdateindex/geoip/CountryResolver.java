@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.geoip;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resolve the country of IPv4 addresses using an {@link IpRangeDatabase}, with a cache of
+ * the most recently resolved addresses. The cache is split in segments that are locked
+ * independently so that concurrent workers rarely contend.
+ *
+ * @author Stephane Nicoll
+ */
+public class CountryResolver {
+
+	private static final int SEGMENTS = 16;
+
+	// Cached for addresses that are not part of any range
+	private static final String UNKNOWN = "";
+
+	private final IpRangeDatabase database;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+
+	/**
+	 * Create a new instance.
+	 * @param database the database to use
+	 * @param cacheSize the maximum number of addresses to cache
+	 */
+	public CountryResolver(IpRangeDatabase database, int cacheSize) {
+		this.database = database;
+		int segmentSize = Math.max(1, cacheSize / SEGMENTS);
+		for (int i = 0; i < SEGMENTS; i++) {
+			this.segments[i] = new Segment(segmentSize);
+		}
+	}
+
+	/**
+	 * Return the country of the specified address.
+	 * @param address an IPv4 address in dotted form
+	 * @return the ISO code of the country or {@code null} if it could not be resolved
+	 */
+	public String resolve(String address) {
+		long ip = IpRangeDatabase.parseIpv4(address);
+		if (ip == -1) {
+			return null;
+		}
+		int key = (int) ip;
+		Segment segment = this.segments[(key ^ (key >>> 16)) & (SEGMENTS - 1)];
+		String country;
+		synchronized (segment) {
+			country = segment.get(key);
+		}
+		if (country == null) {
+			country = this.database.lookup(key);
+			if (country == null) {
+				country = UNKNOWN;
+			}
+			synchronized (segment) {
+				segment.put(key, country);
+			}
+		}
+		return (!country.isEmpty()) ? country : null;
+	}
+
+	/**
+	 * An access-ordered map that evicts its least recently used entry.
+	 */
+	@SuppressWarnings("serial")
+	private static final class Segment extends LinkedHashMap<Integer, String> {
+
+		private final int maxSize;
+
+		Segment(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+			return size() > this.maxSize;
+		}
+
+	}
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.geoip;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A local database of IPv4 ranges and the country they are allocated to. Ranges are
+ * stored in a sorted binary table that is memory-mapped and searched in place, so that
+ * the database is shared by all threads without being loaded on the heap.
+ * <p>
+ * Each record of the table holds the first and the last address of a range as unsigned
+ * integers, followed by the two letters of the ISO country code. Use
+ * {@link #convert(Path, Path)} to create a table from a CSV file.
+ *
+ * @author Stephane Nicoll
+ */
+public class IpRangeDatabase {
+
+	private static final int MAGIC = 0x49505242; // IPRB
+
+	private static final int HEADER_SIZE = 8;
+
+	private static final int RECORD_SIZE = 10;
+
+	private final ByteBuffer table;
+
+	private final int size;
+
+	private final String[] countries = new String[26 * 26];
+
+	IpRangeDatabase(ByteBuffer table) {
+		if (table.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("Not an IP range table");
+		}
+		this.table = table;
+		this.size = table.getInt(4);
+	}
+
+	/**
+	 * Open the table at the specified location.
+	 * @param table the path to a table created by {@link #convert(Path, Path)}
+	 * @return the database
+	 * @throws IOException if the table could not be mapped
+	 */
+	public static IpRangeDatabase open(Path table) throws IOException {
+		try (FileChannel channel = FileChannel.open(table, StandardOpenOption.READ)) {
+			return new IpRangeDatabase(
+					channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Return the number of ranges in the database.
+	 * @return the number of ranges
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Return the country of the specified address.
+	 * @param address an IPv4 address in dotted form
+	 * @return the ISO code of the country or {@code null} if the address is invalid or
+	 * not part of any range
+	 */
+	public String lookup(String address) {
+		long ip = parseIpv4(address);
+		return (ip != -1) ? lookup((int) ip) : null;
+	}
+
+	/**
+	 * Return the country of the specified address.
+	 * @param ip an IPv4 address as an unsigned integer
+	 * @return the ISO code of the country or {@code null} if the address is not part of
+	 * any range
+	 */
+	public String lookup(int ip) {
+		int low = 0;
+		int high = this.size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int offset = HEADER_SIZE + middle * RECORD_SIZE;
+			if (Integer.compareUnsigned(this.table.getInt(offset), ip) > 0) {
+				high = middle - 1;
+			}
+			else if (Integer.compareUnsigned(this.table.getInt(offset + 4), ip) < 0) {
+				low = middle + 1;
+			}
+			else {
+				return getCountry(this.table.get(offset + 8), this.table.get(offset + 9));
+			}
+		}
+		return null;
+	}
+
+	private String getCountry(byte first, byte second) {
+		int index = (first - 'A') * 26 + (second - 'A');
+		if (index < 0 || index >= this.countries.length) {
+			return new String(new byte[] { first, second }, StandardCharsets.US_ASCII);
+		}
+		String country = this.countries[index];
+		if (country == null) {
+			// Benign race, every thread computes the same value
+			country = new String(new byte[] { first, second }, StandardCharsets.US_ASCII);
+			this.countries[index] = country;
+		}
+		return country;
+	}
+
+	/**
+	 * Parse an IPv4 address in dotted form.
+	 * @param address the address
+	 * @return the address as an unsigned integer or {@code -1} if the address is invalid
+	 */
+	public static long parseIpv4(String address) {
+		if (address == null) {
+			return -1;
+		}
+		long ip = 0;
+		int octet = -1;
+		int octets = 0;
+		for (int i = 0; i < address.length(); i++) {
+			char c = address.charAt(i);
+			if (c >= '0' && c <= '9') {
+				octet = (octet == -1) ? c - '0' : octet * 10 + (c - '0');
+				if (octet > 255) {
+					return -1;
+				}
+			}
+			else if (c == '.' && octet != -1 && octets < 3) {
+				ip = (ip << 8) | octet;
+				octet = -1;
+				octets++;
+			}
+			else {
+				return -1;
+			}
+		}
+		if (octet == -1 || octets != 3) {
+			return -1;
+		}
+		return (ip << 8) | octet;
+	}
+
+	/**
+	 * Create a table from a CSV file with one range per line, in the form
+	 * {@code first,last,country}, such as {@code 1.0.0.0,1.0.0.255,AU}. Empty lines and
+	 * lines starting with {@code #} are ignored.
+	 * @param csv the CSV file to read
+	 * @param table the table to write
+	 * @return the number of ranges
+	 * @throws IOException if the CSV file could not be read or the table written
+	 * @throws IllegalArgumentException if a line is invalid or ranges overlap
+	 */
+	public static int convert(Path csv, Path table) throws IOException {
+		List<long[]> ranges = new ArrayList<>();
+		List<String> countries = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(csv,
+				StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] elements = line.split(",");
+				long first = (elements.length == 3) ? parseIpv4(elements[0].trim()) : -1;
+				long last = (elements.length == 3) ? parseIpv4(elements[1].trim()) : -1;
+				if (first == -1 || last == -1 || first > last
+						|| elements[2].trim().length() != 2) {
+					throw new IllegalArgumentException("Invalid range '" + line + "'");
+				}
+				ranges.add(new long[] { first, last, countries.size() });
+				countries.add(elements[2].trim().toUpperCase());
+			}
+		}
+		ranges.sort(Comparator.comparingLong((range) -> range[0]));
+		// Validate all ranges first so that an invalid file leaves the table untouched
+		long previous = -1;
+		for (long[] range : ranges) {
+			if (range[0] <= previous) {
+				throw new IllegalArgumentException("Range starting at "
+						+ toString(range[0]) + " overlaps another range");
+			}
+			previous = range[1];
+		}
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(table)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(ranges.size());
+			for (long[] range : ranges) {
+				out.writeInt((int) range[0]);
+				out.writeInt((int) range[1]);
+				out.write(countries.get((int) range[2])
+						.getBytes(StandardCharsets.US_ASCII));
+			}
+		}
+		return ranges.size();
+	}
+
+	private static String toString(long ip) {
+		return ((ip >> 24) & 0xFF) + "." + ((ip >> 16) & 0xFF) + "." + ((ip >> 8) & 0xFF)
+				+ "." + (ip & 0xFF);
+	}
+
+}
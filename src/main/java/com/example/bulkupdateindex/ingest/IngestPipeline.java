@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.ingest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.springframework.util.Assert;
+
+/**
+ * The definition of an ingest pipeline, to transform documents on the cluster as they are
+ * indexed. Processors run in the order they were added and each processor sees the
+ * document as transformed by the previous ones.
+ *
+ * @author Stephane Nicoll
+ */
+public final class IngestPipeline {
+
+	private final String id;
+
+	private final String description;
+
+	private final List<JsonObject> processors;
+
+	private IngestPipeline(String id, String description, List<JsonObject> processors) {
+		this.id = id;
+		this.description = description;
+		this.processors = Collections.unmodifiableList(processors);
+	}
+
+	public String getId() {
+		return this.id;
+	}
+
+	public String getDescription() {
+		return this.description;
+	}
+
+	public List<JsonObject> getProcessors() {
+		return this.processors;
+	}
+
+	/**
+	 * Return the definition of the pipeline, as expected by the ingest API.
+	 * @return the definition of the pipeline
+	 */
+	public JsonObject toJson() {
+		JsonObject json = new JsonObject();
+		if (this.description != null) {
+			json.addProperty("description", this.description);
+		}
+		JsonArray processors = new JsonArray();
+		this.processors.forEach((processor) -> processors.add(processor.deepCopy()));
+		json.add("processors", processors);
+		return json;
+	}
+
+	/**
+	 * Create a new {@link Builder}.
+	 * @param id the id of the pipeline
+	 * @return a builder
+	 */
+	public static Builder builder(String id) {
+		return new Builder(id);
+	}
+
+	/**
+	 * Builder for an {@link IngestPipeline}. Fields use a dot to separate the names of
+	 * nested objects.
+	 */
+	public static final class Builder {
+
+		private static final Gson gson = new Gson();
+
+		private final String id;
+
+		private final List<JsonObject> processors = new ArrayList<>();
+
+		private String description;
+
+		private Builder(String id) {
+			Assert.hasText(id, "Id must not be empty");
+			this.id = id;
+		}
+
+		/**
+		 * Set the description of the pipeline.
+		 * @param description the description
+		 * @return this builder
+		 */
+		public Builder description(String description) {
+			this.description = description;
+			return this;
+		}
+
+		/**
+		 * Move a field. The pipeline fails if the field is missing, unless
+		 * {@code ignoreMissing} is set, or if the target field already exists.
+		 * @param field the field to move
+		 * @param targetField the new location of the field
+		 * @param ignoreMissing whether a missing field should be ignored
+		 * @return this builder
+		 */
+		public Builder rename(String field, String targetField, boolean ignoreMissing) {
+			JsonObject rename = new JsonObject();
+			rename.addProperty("field", field);
+			rename.addProperty("target_field", targetField);
+			rename.addProperty("ignore_missing", ignoreMissing);
+			return processor("rename", rename);
+		}
+
+		/**
+		 * Set a field to a constant value, replacing any existing value.
+		 * @param field the field to set
+		 * @param value the value
+		 * @return this builder
+		 */
+		public Builder set(String field, JsonElement value) {
+			JsonObject set = new JsonObject();
+			set.addProperty("field", field);
+			set.add("value", value);
+			return processor("set", set);
+		}
+
+		/**
+		 * Split a string field into an array.
+		 * @param field the field to split
+		 * @param separator the regular expression to split on
+		 * @param targetField the field holding the array or {@code null} to replace the
+		 * field
+		 * @param ignoreMissing whether a missing field should be ignored
+		 * @return this builder
+		 */
+		public Builder split(String field, String separator, String targetField,
+				boolean ignoreMissing) {
+			JsonObject split = new JsonObject();
+			split.addProperty("field", field);
+			split.addProperty("separator", separator);
+			if (targetField != null) {
+				split.addProperty("target_field", targetField);
+			}
+			split.addProperty("ignore_missing", ignoreMissing);
+			return processor("split", split);
+		}
+
+		/**
+		 * Convert a field to the specified type.
+		 * @param field the field to convert
+		 * @param type the type, such as {@code string} or {@code long}
+		 * @param ignoreMissing whether a missing field should be ignored
+		 * @return this builder
+		 */
+		public Builder convert(String field, String type, boolean ignoreMissing) {
+			JsonObject convert = new JsonObject();
+			convert.addProperty("field", field);
+			convert.addProperty("type", type);
+			convert.addProperty("ignore_missing", ignoreMissing);
+			return processor("convert", convert);
+		}
+
+		/**
+		 * Run a Painless script that updates the document using {@code ctx}.
+		 * @param source the source of the script
+		 * @param params the parameters of the script or {@code null}
+		 * @return this builder
+		 */
+		public Builder script(String source, Map<String, Object> params) {
+			JsonObject script = new JsonObject();
+			script.addProperty("lang", "painless");
+			script.addProperty("source", source);
+			if (params != null) {
+				script.add("params", gson.toJsonTree(params));
+			}
+			return processor("script", script);
+		}
+
+		private Builder processor(String type, JsonObject definition) {
+			JsonObject processor = new JsonObject();
+			processor.add(type, definition);
+			this.processors.add(processor);
+			return this;
+		}
+
+		/**
+		 * Build the pipeline.
+		 * @return the pipeline
+		 */
+		public IngestPipeline build() {
+			return new IngestPipeline(this.id, this.description,
+					new ArrayList<>(this.processors));
+		}
+
+	}
+
+}
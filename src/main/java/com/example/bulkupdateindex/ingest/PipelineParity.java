@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.ingest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.example.bulkupdateindex.action.SimulatePipeline;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+
+/**
+ * Compare the documents produced by an {@link IngestPipeline} with the ones produced by
+ * the equivalent client-side migration. Documents are run through the pipeline using the
+ * simulate API so nothing is indexed.
+ *
+ * @author Stephane Nicoll
+ */
+public class PipelineParity {
+
+	private final JestClient jestClient;
+
+	public PipelineParity(JestClient jestClient) {
+		this.jestClient = jestClient;
+	}
+
+	/**
+	 * Run the specified hits through the pipeline and compare each resulting document
+	 * with the source produced by the client-side migration. A hit that fails to migrate
+	 * on both sides is considered equivalent.
+	 * @param pipeline the pipeline to check
+	 * @param hits the hits to migrate
+	 * @param migration the client-side migration of a hit to a target source
+	 * @return a description of each difference, or an empty list if the pipeline produces
+	 * the same documents
+	 * @throws IOException if the pipeline could not be simulated
+	 */
+	public List<String> compare(IngestPipeline pipeline, List<JsonObject> hits,
+			Function<JsonObject, JsonObject> migration) throws IOException {
+		JestResult result = this.jestClient.execute(
+				new SimulatePipeline.Builder(createBody(pipeline, hits).toString())
+						.build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException("Failed to simulate ingest pipeline "
+					+ pipeline.getId() + ": " + result.getErrorMessage());
+		}
+		JsonArray docs = result.getJsonObject().getAsJsonArray("docs");
+		List<String> differences = new ArrayList<>();
+		for (int i = 0; i < hits.size(); i++) {
+			JsonObject hit = hits.get(i);
+			String id = hit.get("_id").getAsString();
+			JsonObject simulated = docs.get(i).getAsJsonObject();
+			JsonObject expected = migrate(migration, hit);
+			if (simulated.has("error")) {
+				if (expected != null) {
+					differences
+							.add(id + ": pipeline failed with " + simulated.get("error"));
+				}
+			}
+			else if (expected == null) {
+				differences.add(id + ": pipeline succeeded but migration failed");
+			}
+			else {
+				differences.addAll(diff(id, expected,
+						simulated.getAsJsonObject("doc").getAsJsonObject("_source")));
+			}
+		}
+		return differences;
+	}
+
+	private JsonObject migrate(Function<JsonObject, JsonObject> migration,
+			JsonObject hit) {
+		try {
+			return migration.apply(hit);
+		}
+		catch (RuntimeException ex) {
+			return null;
+		}
+	}
+
+	private JsonObject createBody(IngestPipeline pipeline, List<JsonObject> hits) {
+		JsonArray docs = new JsonArray();
+		for (JsonObject hit : hits) {
+			JsonObject doc = new JsonObject();
+			for (String member : new String[] { "_index", "_type", "_id", "_source" }) {
+				doc.add(member, hit.get(member));
+			}
+			docs.add(doc);
+		}
+		JsonObject body = new JsonObject();
+		body.add("pipeline", pipeline.toJson());
+		body.add("docs", docs);
+		return body;
+	}
+
+	/**
+	 * Describe the differences between two JSON elements. Members of an object are
+	 * compared regardless of their order and numbers regardless of their type.
+	 * @param path the path of the elements
+	 * @param expected the expected element
+	 * @param actual the actual element
+	 * @return a description of each difference
+	 */
+	static List<String> diff(String path, JsonElement expected, JsonElement actual) {
+		List<String> differences = new ArrayList<>();
+		if (expected.isJsonObject() && actual.isJsonObject()) {
+			JsonObject expectedObject = expected.getAsJsonObject();
+			JsonObject actualObject = actual.getAsJsonObject();
+			Set<String> members = new LinkedHashSet<>(expectedObject.keySet());
+			members.addAll(actualObject.keySet());
+			for (String member : members) {
+				String memberPath = path + "." + member;
+				if (!actualObject.has(member)) {
+					differences.add(memberPath + ": expected "
+							+ expectedObject.get(member) + " but was missing");
+				}
+				else if (!expectedObject.has(member)) {
+					differences
+							.add(memberPath + ": unexpected " + actualObject.get(member));
+				}
+				else {
+					differences.addAll(diff(memberPath, expectedObject.get(member),
+							actualObject.get(member)));
+				}
+			}
+		}
+		else if (expected.isJsonArray() && actual.isJsonArray()
+				&& expected.getAsJsonArray().size() == actual.getAsJsonArray().size()) {
+			JsonArray expectedArray = expected.getAsJsonArray();
+			JsonArray actualArray = actual.getAsJsonArray();
+			for (int i = 0; i < expectedArray.size(); i++) {
+				differences.addAll(diff(path + "[" + i + "]", expectedArray.get(i),
+						actualArray.get(i)));
+			}
+		}
+		else if (!expected.equals(actual)) {
+			differences.add(path + ": expected " + expected + " but was " + actual);
+		}
+		return differences;
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.job;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A job that processes the documents of a single index.
+ *
+ * @author Stephane Nicoll
+ * @see IndexJobScheduler
+ */
+public class IndexJob {
+
+	/**
+	 * Order jobs by descending priority and then by descending size so that the largest
+	 * indices start first and do not end up in the tail of a run.
+	 */
+	static final Comparator<IndexJob> EXECUTION_ORDER = Comparator
+			.comparingInt(IndexJob::getPriority).reversed()
+			.thenComparing(
+					Comparator.comparingLong(IndexJob::getDocumentCount).reversed())
+			.thenComparing(IndexJob::getIndex);
+
+	private final String index;
+
+	private final long documentCount;
+
+	private final int priority;
+
+	private final AtomicLong processed = new AtomicLong();
+
+	private volatile State state = State.QUEUED;
+
+	private volatile long startTime;
+
+	private volatile long endTime;
+
+	private volatile Throwable failure;
+
+	public IndexJob(String index, long documentCount, int priority) {
+		this.index = index;
+		this.documentCount = documentCount;
+		this.priority = priority;
+	}
+
+	public String getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Return the number of documents of the index when the job was created.
+	 * @return the number of documents
+	 */
+	public long getDocumentCount() {
+		return this.documentCount;
+	}
+
+	public int getPriority() {
+		return this.priority;
+	}
+
+	public State getState() {
+		return this.state;
+	}
+
+	/**
+	 * Return the number of documents that have been processed so far.
+	 * @return the number of processed documents
+	 */
+	public long getProcessed() {
+		return this.processed.get();
+	}
+
+	/**
+	 * Return the failure of the job, if any.
+	 * @return the failure or {@code null}
+	 */
+	public Throwable getFailure() {
+		return this.failure;
+	}
+
+	/**
+	 * Return the number of documents processed per second since the job started.
+	 * @return the throughput of the job
+	 */
+	public long getThroughput() {
+		if (this.startTime == 0) {
+			return 0;
+		}
+		long end = (this.endTime != 0) ? this.endTime : System.nanoTime();
+		long nanos = end - this.startTime;
+		return (nanos > 0) ? (getProcessed() * TimeUnit.SECONDS.toNanos(1)) / nanos : 0;
+	}
+
+	void processed(long count) {
+		this.processed.addAndGet(count);
+	}
+
+	void started() {
+		this.startTime = System.nanoTime();
+		this.state = State.RUNNING;
+	}
+
+	void completed() {
+		this.endTime = System.nanoTime();
+		this.state = State.COMPLETED;
+	}
+
+	void failed(Throwable failure) {
+		this.endTime = System.nanoTime();
+		this.failure = failure;
+		this.state = State.FAILED;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s [%s, %s/%s elements, %s/s]", this.index, this.state,
+				getProcessed(), this.documentCount, getThroughput());
+	}
+
+	/**
+	 * The state of a job.
+	 */
+	public enum State {
+
+		/**
+		 * The job is waiting for a slot.
+		 */
+		QUEUED,
+
+		/**
+		 * The job is running.
+		 */
+		RUNNING,
+
+		/**
+		 * The job has completed successfully.
+		 */
+		COMPLETED,
+
+		/**
+		 * The job has failed.
+		 */
+		FAILED
+
+	}
+
+}
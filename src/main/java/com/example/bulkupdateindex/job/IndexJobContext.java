@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.job;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import com.example.bulkupdateindex.ActionEmitter;
+import com.example.bulkupdateindex.BulkUpdateIndex;
+import com.example.bulkupdateindex.DocumentSink;
+import com.example.bulkupdateindex.DocumentSource;
+import com.example.bulkupdateindex.ScrollDocumentSource;
+import com.example.bulkupdateindex.WriteMode;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.core.Search;
+
+/**
+ * The context of an {@link IndexJob}. Updates that go through the context share the
+ * concurrency budget of the {@link IndexJobScheduler} and are accounted for in the
+ * progress of the job.
+ *
+ * @author Stephane Nicoll
+ */
+public class IndexJobContext {
+
+	private final IndexJob job;
+
+	private final JestClient jestClient;
+
+	private final BulkUpdateIndex bulkUpdateIndex;
+
+	private final Semaphore bulkPermits;
+
+	IndexJobContext(IndexJob job, JestClient jestClient, BulkUpdateIndex bulkUpdateIndex,
+			Semaphore bulkPermits) {
+		this.job = job;
+		this.jestClient = jestClient;
+		this.bulkUpdateIndex = bulkUpdateIndex;
+		this.bulkPermits = bulkPermits;
+	}
+
+	/**
+	 * Return the name of the index to process.
+	 * @return the index
+	 */
+	public String getIndex() {
+		return this.job.getIndex();
+	}
+
+	/**
+	 * Update the elements defined by the specific search.
+	 * @param searchBuilder a search query builder targeting the elements to update
+	 * @param pageSize the size of a page
+	 * @param writeMode how actions should be written
+	 * @param updateFunction the update function for a given hit
+	 * @return the number of elements that have been processed
+	 * @throws IOException if an index operation fails
+	 * @see BulkUpdateIndex#update(Search.Builder, int, WriteMode, Function)
+	 */
+	public long update(Search.Builder searchBuilder, int pageSize, WriteMode writeMode,
+			Function<JsonObject, List<BulkableAction<?>>> updateFunction)
+			throws IOException {
+		ActionEmitter emitter = (hit, actions) -> {
+			this.job.processed(1);
+			ActionEmitter.emit(updateFunction, hit, actions);
+		};
+		try (DocumentSource source = new ScrollDocumentSource(this.jestClient,
+				searchBuilder, pageSize);
+				DocumentSink sink = new ThrottledDocumentSink(
+						this.bulkUpdateIndex.createBulkSink(writeMode),
+						this.bulkPermits)) {
+			return this.bulkUpdateIndex.update(source, sink,
+					this.bulkUpdateIndex.trackOrigins(emitter));
+		}
+	}
+
+}
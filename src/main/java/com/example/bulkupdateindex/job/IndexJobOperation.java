@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.job;
+
+import java.io.IOException;
+
+/**
+ * An operation that processes a single index of a run.
+ *
+ * @author Stephane Nicoll
+ * @see IndexJobScheduler
+ */
+@FunctionalInterface
+public interface IndexJobOperation {
+
+	/**
+	 * Process the index of the specified context.
+	 * @param context the context of the job
+	 * @throws IOException if an index operation fails
+	 */
+	void run(IndexJobContext context) throws IOException;
+
+}
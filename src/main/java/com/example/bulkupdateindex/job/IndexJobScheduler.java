@@ -0,0 +1,242 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.job;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import com.example.bulkupdateindex.BulkUpdateIndex;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.indices.Stats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * Expand an index pattern into one {@link IndexJob} per index and run them concurrently.
+ * The number of concurrent scrolls and the number of in-flight bulk requests are capped
+ * across all jobs. Jobs are started by descending priority and then by descending size so
+ * that the largest indices do not end up in the tail of a run.
+ *
+ * @author Stephane Nicoll
+ */
+public class IndexJobScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(IndexJobScheduler.class);
+
+	private final JestClient jestClient;
+
+	private final BulkUpdateIndex bulkUpdateIndex;
+
+	private final int maxConcurrentScrolls;
+
+	private final int maxInFlightBulks;
+
+	private Duration reportInterval = Duration.ofSeconds(30);
+
+	/**
+	 * Create a new instance.
+	 * @param jestClient the client to use
+	 * @param bulkUpdateIndex the bulk update index to use
+	 * @param maxConcurrentScrolls the maximum number of jobs that run concurrently
+	 * @param maxInFlightBulks the maximum number of bulk requests in flight across all
+	 * jobs
+	 */
+	public IndexJobScheduler(JestClient jestClient, BulkUpdateIndex bulkUpdateIndex,
+			int maxConcurrentScrolls, int maxInFlightBulks) {
+		Assert.isTrue(maxConcurrentScrolls > 0,
+				"MaxConcurrentScrolls must be greater than 0");
+		Assert.isTrue(maxInFlightBulks > 0, "MaxInFlightBulks must be greater than 0");
+		this.jestClient = jestClient;
+		this.bulkUpdateIndex = bulkUpdateIndex;
+		this.maxConcurrentScrolls = maxConcurrentScrolls;
+		this.maxInFlightBulks = maxInFlightBulks;
+	}
+
+	/**
+	 * Set the interval at which the state of the jobs is reported.
+	 * @param reportInterval the report interval
+	 */
+	public void setReportInterval(Duration reportInterval) {
+		this.reportInterval = reportInterval;
+	}
+
+	/**
+	 * Run the specified operation against each index matching the specified pattern.
+	 * @param indexPattern the pattern of the indices to process
+	 * @param operation the operation to run for each index
+	 * @return the jobs, once they have all completed
+	 * @throws IOException if the indices could not be resolved
+	 */
+	public List<IndexJob> run(String indexPattern, IndexJobOperation operation)
+			throws IOException {
+		return run(indexPattern, (index) -> 0, operation);
+	}
+
+	/**
+	 * Run the specified operation against each index matching the specified pattern.
+	 * @param indexPattern the pattern of the indices to process
+	 * @param priority the priority of an index, higher priorities start first
+	 * @param operation the operation to run for each index
+	 * @return the jobs, once they have all completed
+	 * @throws IOException if the indices could not be resolved
+	 */
+	public List<IndexJob> run(String indexPattern, ToIntFunction<String> priority,
+			IndexJobOperation operation) throws IOException {
+		return run(indexPattern, (index) -> true, priority, operation);
+	}
+
+	/**
+	 * Run the specified operation against each index matching the specified pattern and
+	 * filter. Useful to leave out indices that the operation writes to when they match
+	 * the pattern as well.
+	 * @param indexPattern the pattern of the indices to process
+	 * @param filter the filter that indices matching the pattern should match
+	 * @param priority the priority of an index, higher priorities start first
+	 * @param operation the operation to run for each index
+	 * @return the jobs, once they have all completed
+	 * @throws IOException if the indices could not be resolved
+	 */
+	public List<IndexJob> run(String indexPattern, Predicate<String> filter,
+			ToIntFunction<String> priority, IndexJobOperation operation)
+			throws IOException {
+		List<IndexJob> jobs = resolve(indexPattern, filter, priority);
+		if (jobs.isEmpty()) {
+			logger.info("No index matching " + indexPattern);
+			return jobs;
+		}
+		return run(jobs, operation);
+	}
+
+	/**
+	 * Run the specified operation for each of the specified jobs.
+	 * @param jobs the jobs to run
+	 * @param operation the operation to run for each job
+	 * @return the jobs in execution order, once they have all completed
+	 */
+	public List<IndexJob> run(List<IndexJob> jobs, IndexJobOperation operation) {
+		if (jobs.isEmpty()) {
+			return new ArrayList<>();
+		}
+		List<IndexJob> ordered = jobs.stream().sorted(IndexJob.EXECUTION_ORDER)
+				.collect(Collectors.toList());
+		Semaphore bulkPermits = new Semaphore(this.maxInFlightBulks);
+		ExecutorService executor = Executors
+				.newFixedThreadPool(Math.min(this.maxConcurrentScrolls, ordered.size()));
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+		long interval = this.reportInterval.toMillis();
+		reporter.scheduleAtFixedRate(() -> report(ordered), interval, interval,
+				TimeUnit.MILLISECONDS);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (IndexJob job : ordered) {
+				IndexJobContext context = new IndexJobContext(job, this.jestClient,
+						this.bulkUpdateIndex, bulkPermits);
+				results.add(executor.submit(() -> execute(job, context, operation)));
+			}
+			for (Future<?> result : results) {
+				await(result);
+			}
+		}
+		finally {
+			reporter.shutdownNow();
+			executor.shutdownNow();
+		}
+		report(ordered);
+		return ordered;
+	}
+
+	private void execute(IndexJob job, IndexJobContext context,
+			IndexJobOperation operation) {
+		job.started();
+		logger.info("Started " + job);
+		try {
+			operation.run(context);
+			job.completed();
+			logger.info("Completed " + job);
+		}
+		catch (Exception ex) {
+			job.failed(ex);
+			logger.error("Failed " + job, ex);
+		}
+	}
+
+	private void await(Future<?> result) {
+		try {
+			result.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running jobs", ex);
+		}
+		catch (Exception ex) {
+			throw new IllegalStateException("Failed to run job", ex);
+		}
+	}
+
+	private void report(List<IndexJob> jobs) {
+		Map<IndexJob.State, Long> states = jobs.stream().collect(
+				Collectors.groupingBy(IndexJob::getState, Collectors.counting()));
+		StringBuilder sb = new StringBuilder(String.format("Jobs %s", states));
+		jobs.stream().filter((job) -> job.getState() != IndexJob.State.QUEUED)
+				.forEach((job) -> sb.append(String.format("%n")).append(job));
+		logger.info(sb.toString());
+	}
+
+	private List<IndexJob> resolve(String indexPattern, Predicate<String> filter,
+			ToIntFunction<String> priority) throws IOException {
+		JestResult result = this.jestClient
+				.execute(new Stats.Builder().addIndex(indexPattern).build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException("Failed to resolve " + indexPattern + ": "
+					+ result.getErrorMessage());
+		}
+		List<IndexJob> jobs = new ArrayList<>();
+		JsonObject indices = result.getJsonObject().getAsJsonObject("indices");
+		if (indices != null) {
+			for (Map.Entry<String, JsonElement> entry : indices.entrySet()) {
+				String index = entry.getKey();
+				if (!filter.test(index)) {
+					logger.debug("Skipping " + index);
+					continue;
+				}
+				long count = entry.getValue().getAsJsonObject()
+						.getAsJsonObject("primaries").getAsJsonObject("docs").get("count")
+						.getAsLong();
+				jobs.add(new IndexJob(index, count, priority.applyAsInt(index)));
+			}
+		}
+		return jobs;
+	}
+
+}
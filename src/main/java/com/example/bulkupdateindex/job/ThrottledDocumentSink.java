@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.job;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import com.example.bulkupdateindex.DocumentSink;
+import io.searchbox.action.BulkableAction;
+
+/**
+ * A {@link DocumentSink} that limits the number of concurrent writes across all the sinks
+ * sharing the same {@link Semaphore}.
+ *
+ * @author Stephane Nicoll
+ */
+class ThrottledDocumentSink implements DocumentSink {
+
+	private final DocumentSink delegate;
+
+	private final Semaphore permits;
+
+	ThrottledDocumentSink(DocumentSink delegate, Semaphore permits) {
+		this.delegate = delegate;
+		this.permits = permits;
+	}
+
+	@Override
+	public void write(List<BulkableAction<?>> actions) throws IOException {
+		try {
+			this.permits.acquire();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to write", ex);
+		}
+		try {
+			this.delegate.write(actions);
+		}
+		finally {
+			this.permits.release();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.delegate.close();
+	}
+
+}
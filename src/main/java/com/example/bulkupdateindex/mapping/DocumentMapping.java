@@ -0,0 +1,387 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.mapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.example.bulkupdateindex.ingest.IngestPipeline;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.springframework.util.Assert;
+
+/**
+ * A declarative mapping from a source document to a target document. A mapping is
+ * described once using a {@link Builder} and compiled to a flat plan of steps: paths are
+ * split, nested objects are resolved and coercions are selected up front so that applying
+ * the mapping only performs the lookups and writes that are strictly needed.
+ * <p>
+ * Fields are written in the order they were declared. A nested object of the target is
+ * written at the position of its first field and is always present, even if none of its
+ * fields have a value. A mapping is immutable and can be shared.
+ * <p>
+ * Computed fields receive a view of the source of type {@code T}. The source is bound to
+ * that view once per document, so that several computed fields can share it. By default
+ * the view is the source itself, see {@link #builder(Function)} to bind it to a dedicated
+ * type.
+ * <p>
+ * A mapping can also be translated to an {@link IngestPipeline} that performs the same
+ * transformation on the cluster, provided that every computed field has a Painless
+ * equivalent.
+ *
+ * @param <T> the type of the view of the source used by computed fields
+ * @author Stephane Nicoll
+ */
+public final class DocumentMapping<T> {
+
+	private static final String PRUNE_SCRIPT = "void prune(Map map) {"
+			+ " map.values().removeIf(v -> v == null);"
+			+ " for (def v : map.values()) { if (v instanceof Map) { prune(v); } } }"
+			+ " ctx.entrySet().removeIf(e -> !e.getKey().startsWith('_')"
+			+ " && (e.getValue() == null || !params.fields.contains(e.getKey())));"
+			+ " for (def e : ctx.entrySet()) {"
+			+ " if (!e.getKey().startsWith('_') && e.getValue() instanceof Map) {"
+			+ " prune(e.getValue()); } }";
+
+	private final Function<JsonObject, ? extends T> binder;
+
+	private final Step<T>[] steps;
+
+	private final List<Consumer<IngestPipeline.Builder>> processors;
+
+	private final List<String> fields;
+
+	private DocumentMapping(Function<JsonObject, ? extends T> binder, Step<T>[] steps,
+			List<Consumer<IngestPipeline.Builder>> processors, List<String> fields) {
+		this.binder = binder;
+		this.steps = steps;
+		this.processors = processors;
+		this.fields = fields;
+	}
+
+	/**
+	 * Create a new target document from the specified source.
+	 * @param source the source document
+	 * @return the target document
+	 * @throws IllegalStateException if a required field is missing
+	 */
+	public JsonObject apply(JsonObject source) {
+		return apply(source, this.binder.apply(source));
+	}
+
+	/**
+	 * Create a new target document from the specified source, using a view of the source
+	 * that has already been bound.
+	 * @param source the source document
+	 * @param view the view of the source used by computed fields
+	 * @return the target document
+	 * @throws IllegalStateException if a required field is missing
+	 */
+	public JsonObject apply(JsonObject source, T view) {
+		JsonObject target = new JsonObject();
+		applyTo(source, view, target);
+		return target;
+	}
+
+	/**
+	 * Map the specified source to an existing target document.
+	 * @param source the source document
+	 * @param target the target document
+	 * @throws IllegalStateException if a required field is missing
+	 */
+	public void applyTo(JsonObject source, JsonObject target) {
+		applyTo(source, this.binder.apply(source), target);
+	}
+
+	private void applyTo(JsonObject source, T view, JsonObject target) {
+		for (Step<T> step : this.steps) {
+			step.write(source, view, target);
+		}
+	}
+
+	/**
+	 * Create an {@link IngestPipeline} that performs this mapping on the cluster. Fields
+	 * are moved or converted in place, computed fields are written by their script and
+	 * fields that are not part of the target, as well as {@code null} values, are removed
+	 * last. Metadata fields starting with an underscore are left untouched.
+	 * @param id the id of the pipeline
+	 * @return the ingest pipeline
+	 * @throws IllegalStateException if a computed field has no script
+	 */
+	public IngestPipeline toIngestPipeline(String id) {
+		IngestPipeline.Builder builder = IngestPipeline.builder(id);
+		this.processors.forEach((processor) -> processor.accept(builder));
+		return builder
+				.script(PRUNE_SCRIPT, Collections.singletonMap("fields", this.fields))
+				.build();
+	}
+
+	/**
+	 * Create a new {@link Builder} whose computed fields use the source itself.
+	 * @return a builder
+	 */
+	public static Builder<JsonObject> builder() {
+		return new Builder<>(Function.identity());
+	}
+
+	/**
+	 * Create a new {@link Builder} whose computed fields use a view of the source created
+	 * by the specified binder.
+	 * @param binder the function that binds the source to a view
+	 * @param <T> the type of the view
+	 * @return a builder
+	 */
+	public static <T> Builder<T> builder(Function<JsonObject, ? extends T> binder) {
+		return new Builder<>(binder);
+	}
+
+	@FunctionalInterface
+	private interface Step<T> {
+
+		void write(JsonObject source, T view, JsonObject target);
+
+	}
+
+	/**
+	 * Builder for a {@link DocumentMapping}. Target paths use a dot to separate the names
+	 * of nested objects, such as {@code client.id}. Source paths can also use a dot to
+	 * read a field of a nested object of the source.
+	 *
+	 * @param <T> the type of the view of the source used by computed fields
+	 */
+	public static final class Builder<T> {
+
+		private static final String REQUIRED_SCRIPT = "def value = ctx;"
+				+ " for (String segment : params.field.splitOnToken('.')) {"
+				+ " value = (value instanceof Map) ? value[segment] : null; }"
+				+ " if (value == null) { throw new IllegalArgumentException("
+				+ "'Missing required field \\'' + params.field + '\\''); }";
+
+		private final Function<JsonObject, ? extends T> binder;
+
+		private final Map<String, Object> fields = new LinkedHashMap<>();
+
+		private final List<Consumer<IngestPipeline.Builder>> processors = new ArrayList<>();
+
+		private Builder(Function<JsonObject, ? extends T> binder) {
+			this.binder = binder;
+		}
+
+		/**
+		 * Copy a required field using the same name.
+		 * @param name the name of the field
+		 * @param type the type of the field
+		 * @return this builder
+		 */
+		public Builder<T> map(String name, FieldType type) {
+			return map(name, name, type);
+		}
+
+		/**
+		 * Copy a required field.
+		 * @param source the path of the field in the source
+		 * @param target the path of the field in the target
+		 * @param type the type of the field
+		 * @return this builder
+		 */
+		public Builder<T> map(String source, String target, FieldType type) {
+			Function<JsonObject, JsonElement> reader = reader(source);
+			return add(target, copy(source, target, type, false),
+					(key) -> (from, view, to) -> {
+						JsonElement value = reader.apply(from);
+						if (value == null) {
+							throw new IllegalStateException(
+									"Missing required field '" + source + "'");
+						}
+						to.add(key, type.coerce(value));
+					});
+		}
+
+		/**
+		 * Copy an optional field using the same name. Nothing is written if the field is
+		 * missing or {@code null}.
+		 * @param name the name of the field
+		 * @param type the type of the field
+		 * @return this builder
+		 */
+		public Builder<T> mapOptional(String name, FieldType type) {
+			return mapOptional(name, name, type);
+		}
+
+		/**
+		 * Copy an optional field. Nothing is written if the field is missing or
+		 * {@code null}.
+		 * @param source the path of the field in the source
+		 * @param target the path of the field in the target
+		 * @param type the type of the field
+		 * @return this builder
+		 */
+		public Builder<T> mapOptional(String source, String target, FieldType type) {
+			Function<JsonObject, JsonElement> reader = reader(source);
+			return add(target, copy(source, target, type, true),
+					(key) -> (from, view, to) -> {
+						JsonElement value = reader.apply(from);
+						if (value != null) {
+							to.add(key, type.coerce(value));
+						}
+					});
+		}
+
+		/**
+		 * Write a value computed from the source. Nothing is written if the function
+		 * returns {@code null}.
+		 * @param target the path of the field in the target
+		 * @param function the function computing the value from the view of the source
+		 * @return this builder
+		 */
+		public Builder<T> compute(String target,
+				Function<? super T, ? extends JsonElement> function) {
+			return compute(target, function, null);
+		}
+
+		/**
+		 * Write a value computed from the source, with a Painless script that computes
+		 * the same value on the cluster. Nothing is written if the function returns
+		 * {@code null}.
+		 * @param target the path of the field in the target
+		 * @param function the function computing the value from the view of the source
+		 * @param script a Painless script that writes the value to {@code ctx}, or
+		 * {@code null} if the field can only be computed on the client
+		 * @return this builder
+		 * @see #toIngestPipeline
+		 */
+		public Builder<T> compute(String target,
+				Function<? super T, ? extends JsonElement> function, String script) {
+			Consumer<IngestPipeline.Builder> processor = (script != null)
+					? (pipeline) -> pipeline.script(script, null) : (pipeline) -> {
+						throw new IllegalStateException(
+								"No script to compute '" + target + "'");
+					};
+			return add(target, processor, (key) -> (from, view, to) -> {
+				JsonElement value = function.apply(view);
+				if (value != null) {
+					to.add(key, value);
+				}
+			});
+		}
+
+		/**
+		 * Compile the mapping.
+		 * @return the compiled mapping
+		 */
+		public DocumentMapping<T> build() {
+			return new DocumentMapping<>(this.binder, compile(this.fields),
+					new ArrayList<>(this.processors),
+					new ArrayList<>(this.fields.keySet()));
+		}
+
+		@SuppressWarnings("unchecked")
+		private Builder<T> add(String target, Consumer<IngestPipeline.Builder> processor,
+				Function<String, Step<T>> step) {
+			Assert.hasText(target, "Target must not be empty");
+			String[] segments = target.split("\\.");
+			Map<String, Object> node = this.fields;
+			for (int i = 0; i < segments.length - 1; i++) {
+				if (!node.containsKey(segments[i])) {
+					String path = String.join(".", Arrays.copyOf(segments, i + 1));
+					this.processors
+							.add((pipeline) -> pipeline.set(path, new JsonObject()));
+				}
+				Object child = node.computeIfAbsent(segments[i],
+						(key) -> new LinkedHashMap<String, Object>());
+				Assert.state(child instanceof Map, "Field '" + segments[i] + "' of '"
+						+ target + "' is not an object");
+				node = (Map<String, Object>) child;
+			}
+			String key = segments[segments.length - 1];
+			Assert.state(!node.containsKey(key),
+					"Target '" + target + "' is already mapped");
+			node.put(key, step.apply(key));
+			this.processors.add(processor);
+			return this;
+		}
+
+		private static Consumer<IngestPipeline.Builder> copy(String source, String target,
+				FieldType type, boolean optional) {
+			String ingestType = type.getIngestType();
+			return (pipeline) -> {
+				if (!source.equals(target)) {
+					pipeline.rename(source, target, optional);
+				}
+				if (ingestType != null) {
+					pipeline.convert(target, ingestType, optional);
+				}
+				else if (!optional && source.equals(target)) {
+					pipeline.script(REQUIRED_SCRIPT,
+							Collections.singletonMap("field", target));
+				}
+			};
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> Step<T>[] compile(Map<String, Object> fields) {
+			List<Step<T>> steps = new ArrayList<>();
+			fields.forEach((key, value) -> {
+				if (value instanceof Step) {
+					steps.add((Step<T>) value);
+				}
+				else {
+					Step<T>[] nested = compile((Map<String, Object>) value);
+					steps.add((from, view, to) -> {
+						JsonObject object = new JsonObject();
+						for (Step<T> step : nested) {
+							step.write(from, view, object);
+						}
+						to.add(key, object);
+					});
+				}
+			});
+			return steps.toArray(new Step[0]);
+		}
+
+		private static Function<JsonObject, JsonElement> reader(String source) {
+			Assert.hasText(source, "Source must not be empty");
+			String[] segments = source.split("\\.");
+			if (segments.length == 1) {
+				return (from) -> valueOrNull(from.get(source));
+			}
+			return (from) -> {
+				JsonElement current = from;
+				for (String segment : segments) {
+					if (current == null || !current.isJsonObject()) {
+						return null;
+					}
+					current = current.getAsJsonObject().get(segment);
+				}
+				return valueOrNull(current);
+			};
+		}
+
+		private static JsonElement valueOrNull(JsonElement element) {
+			return (element != null && !element.isJsonNull()) ? element : null;
+		}
+
+	}
+
+}
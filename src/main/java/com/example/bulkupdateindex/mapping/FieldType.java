@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.mapping;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * The type a value is coerced to when it is copied by a {@link DocumentMapping}.
+ *
+ * @author Stephane Nicoll
+ */
+public enum FieldType {
+
+	/**
+	 * Copy the value as a string.
+	 */
+	STRING("string") {
+		@Override
+		JsonElement coerce(JsonElement value) {
+			return new JsonPrimitive(value.getAsString());
+		}
+	},
+
+	/**
+	 * Copy the value as a long.
+	 */
+	LONG("long") {
+		@Override
+		JsonElement coerce(JsonElement value) {
+			return new JsonPrimitive(value.getAsLong());
+		}
+	},
+
+	/**
+	 * Copy the value as a double.
+	 */
+	DOUBLE("double") {
+		@Override
+		JsonElement coerce(JsonElement value) {
+			return new JsonPrimitive(value.getAsDouble());
+		}
+	},
+
+	/**
+	 * Copy the value as a boolean.
+	 */
+	BOOLEAN("boolean") {
+		@Override
+		JsonElement coerce(JsonElement value) {
+			return new JsonPrimitive(value.getAsBoolean());
+		}
+	},
+
+	/**
+	 * Copy the value as is.
+	 */
+	RAW(null) {
+		@Override
+		JsonElement coerce(JsonElement value) {
+			return value;
+		}
+	};
+
+	private final String ingestType;
+
+	FieldType(String ingestType) {
+		this.ingestType = ingestType;
+	}
+
+	/**
+	 * Return the type of the {@code convert} ingest processor that performs the same
+	 * coercion, or {@code null} if the value is copied as is.
+	 * @return the ingest type or {@code null}
+	 */
+	String getIngestType() {
+		return this.ingestType;
+	}
+
+	abstract JsonElement coerce(JsonElement value);
+
+}
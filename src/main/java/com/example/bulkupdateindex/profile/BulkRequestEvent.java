@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the round-trip of a bulk request.
+ *
+ * @author Stephane Nicoll
+ */
+@Name(ProfileEvents.PREFIX + "BulkRequest")
+@Label("Bulk Request")
+@Category(ProfileEvents.CATEGORY)
+@Description("Send a bulk request and wait for its response")
+public class BulkRequestEvent extends Event {
+
+	@Label("Actions")
+	int actions;
+
+	@Label("Payload Size")
+	@Description("Size of the request, in characters")
+	long size;
+
+	@Label("Failed Items")
+	int failedItems;
+
+	/**
+	 * Commit this event with the specified details.
+	 * @param actions the number of actions
+	 * @param size the size of the request
+	 * @param failedItems the number of items that failed
+	 */
+	public void complete(int actions, long size, int failedItems) {
+		this.actions = actions;
+		this.size = size;
+		this.failedItems = failedItems;
+		commit();
+	}
+
+}
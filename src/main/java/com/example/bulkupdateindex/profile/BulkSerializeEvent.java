@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the serialization of a bulk request.
+ *
+ * @author Stephane Nicoll
+ */
+@Name(ProfileEvents.PREFIX + "BulkSerialize")
+@Label("Bulk Serialize")
+@Category(ProfileEvents.CATEGORY)
+@Description("Serialize a bulk request")
+public class BulkSerializeEvent extends Event {
+
+	@Label("Actions")
+	int actions;
+
+	@Label("Payload Size")
+	@Description("Size of the request, in characters")
+	long size;
+
+	/**
+	 * Commit this event with the specified details.
+	 * @param actions the number of actions
+	 * @param size the size of the request
+	 */
+	public void complete(int actions, long size) {
+		this.actions = actions;
+		this.size = size;
+		commit();
+	}
+
+}
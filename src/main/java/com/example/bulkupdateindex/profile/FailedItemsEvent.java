@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the handling of the items of a bulk request that failed.
+ *
+ * @author Stephane Nicoll
+ */
+@Name(ProfileEvents.PREFIX + "FailedItems")
+@Label("Failed Items")
+@Category(ProfileEvents.CATEGORY)
+@Description("Handle the failed items of a bulk request")
+public class FailedItemsEvent extends Event {
+
+	@Label("Failed Items")
+	int failedItems;
+
+	@Label("Ignored Items")
+	@Description("Failed items that are expected, such as existing documents in create mode")
+	int ignoredItems;
+
+	/**
+	 * Commit this event with the specified details.
+	 * @param failedItems the number of items that failed
+	 * @param ignoredItems the number of failed items that were ignored
+	 */
+	public void complete(int failedItems, int ignoredItems) {
+		this.failedItems = failedItems;
+		this.ignoredItems = ignoredItems;
+		commit();
+	}
+
+}
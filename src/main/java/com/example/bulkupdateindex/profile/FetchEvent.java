@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for fetching a page of hits from the cluster, including the parsing of the
+ * response.
+ *
+ * @author Stephane Nicoll
+ */
+@Name(ProfileEvents.PREFIX + "Fetch")
+@Label("Fetch")
+@Category(ProfileEvents.CATEGORY)
+@Description("Fetch a page of hits")
+public class FetchEvent extends Event {
+
+	@Label("Page")
+	int page;
+
+	@Label("Hits")
+	int hits;
+
+	@Label("Payload Size")
+	@Description("Size of the response, in characters")
+	long size;
+
+	/**
+	 * Commit this event with the specified details.
+	 * @param page the page number
+	 * @param hits the number of hits
+	 * @param size the size of the response
+	 */
+	public void complete(int page, int hits, long size) {
+		this.page = page;
+		this.hits = hits;
+		this.size = size;
+		commit();
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the migration of a single hit by an indexer.
+ *
+ * @author Stephane Nicoll
+ */
+@Name(ProfileEvents.PREFIX + "Migrate")
+@Label("Migrate")
+@Category(ProfileEvents.CATEGORY)
+@Description("Migrate a single hit")
+public class MigrateEvent extends Event {
+
+	@Label("Indexer")
+	String indexer;
+
+	@Label("Index")
+	String index;
+
+	@Label("Id")
+	String id;
+
+	@Label("Actions")
+	int actions;
+
+	/**
+	 * Commit this event with the specified details.
+	 * @param indexer the name of the indexer
+	 * @param index the index of the hit
+	 * @param id the id of the hit
+	 * @param actions the number of actions created for the hit
+	 */
+	public void complete(String indexer, String index, String id, int actions) {
+		this.indexer = indexer;
+		this.index = index;
+		this.id = id;
+		this.actions = actions;
+		commit();
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the processing of a page of hits, from read to write.
+ *
+ * @author Stephane Nicoll
+ */
+@Name(ProfileEvents.PREFIX + "Page")
+@Label("Page")
+@Category(ProfileEvents.CATEGORY)
+@Description("Read, transform and write a page of hits")
+public class PageEvent extends Event {
+
+	@Label("Page")
+	int page;
+
+	@Label("Hits")
+	int hits;
+
+	@Label("Actions")
+	int actions;
+
+	/**
+	 * Commit this event with the specified details.
+	 * @param page the page number
+	 * @param hits the number of hits
+	 * @param actions the number of actions
+	 */
+	public void complete(int page, int hits, int actions) {
+		this.page = page;
+		this.hits = hits;
+		this.actions = actions;
+		commit();
+	}
+
+}
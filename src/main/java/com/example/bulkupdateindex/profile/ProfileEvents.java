@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.profile;
+
+/**
+ * Constants shared by the Java Flight Recorder events of the application. Events are
+ * enabled by the {@code bulk-update-index.jfc} settings, for instance: <pre class="code">
+ * -XX:StartFlightRecording=settings=bulk-update-index.jfc,filename=migration.jfr
+ * </pre> A recording can then be summarized using {@link ProfileSummary}. Events rely on
+ * the {@code jdk.jfr} API, which is available as of Java 8u262.
+ *
+ * @author Stephane Nicoll
+ */
+public final class ProfileEvents {
+
+	/**
+	 * The prefix of the name of all events.
+	 */
+	public static final String PREFIX = "com.example.bulkupdateindex.";
+
+	/**
+	 * The category of all events.
+	 */
+	public static final String CATEGORY = "Bulk Update Index";
+
+	private ProfileEvents() {
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.profile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * Summarize the events of the application in a Java Flight Recorder recording: for each
+ * event type, the number of events, the total, median and 99th percentile durations as
+ * well as the total of their hits, actions and payload size.
+ *
+ * @author Stephane Nicoll
+ * @see ProfileEvents
+ */
+public class ProfileSummary {
+
+	private static final Logger logger = LoggerFactory.getLogger(ProfileSummary.class);
+
+	private static final String[] TOTALS = { "hits", "actions", "size", "failedItems" };
+
+	private final Map<String, Stage> stages = new TreeMap<>();
+
+	/**
+	 * Create a summary of the specified recording.
+	 * @param recording the path to a {@code .jfr} file
+	 * @return the summary
+	 * @throws IOException if the recording could not be read
+	 */
+	public static ProfileSummary of(Path recording) throws IOException {
+		ProfileSummary summary = new ProfileSummary();
+		try (RecordingFile file = new RecordingFile(recording)) {
+			while (file.hasMoreEvents()) {
+				summary.add(file.readEvent());
+			}
+		}
+		return summary;
+	}
+
+	void add(RecordedEvent event) {
+		String name = event.getEventType().getName();
+		if (name.startsWith(ProfileEvents.PREFIX)) {
+			this.stages.computeIfAbsent(name.substring(ProfileEvents.PREFIX.length()),
+					(key) -> new Stage()).add(event);
+		}
+	}
+
+	/**
+	 * Return the number of events of the specified stage.
+	 * @param stage the name of the stage, such as {@code Fetch}
+	 * @return the number of events
+	 */
+	public int getCount(String stage) {
+		Stage candidate = this.stages.get(stage);
+		return (candidate != null) ? candidate.durations.size() : 0;
+	}
+
+	/**
+	 * Return the total of the specified field for the specified stage.
+	 * @param stage the name of the stage, such as {@code Fetch}
+	 * @param field the name of the field, such as {@code hits}
+	 * @return the total
+	 */
+	public long getTotal(String stage, String field) {
+		Stage candidate = this.stages.get(stage);
+		return (candidate != null) ? candidate.totals.getOrDefault(field, 0L) : 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(String.format("%-15s %8s %10s %8s %8s  %s%n",
+				"Stage", "Count", "Total", "p50", "p99", "Totals"));
+		this.stages.forEach((name,
+				stage) -> sb.append(String.format("%-15s %8s %8sms %6sms %6sms  %s%n",
+						name, stage.durations.size(), stage.total().toMillis(),
+						stage.percentile(50).toMillis(), stage.percentile(99).toMillis(),
+						stage.totals)));
+		return sb.toString();
+	}
+
+	public static void main(String[] args) throws IOException {
+		Assert.isTrue(args.length == 1, "Usage: ProfileSummary <recording.jfr>");
+		logger.info(String.format("Summary of %s%n%s", args[0], of(Paths.get(args[0]))));
+	}
+
+	private static final class Stage {
+
+		private final List<Duration> durations = new ArrayList<>();
+
+		private final Map<String, Long> totals = new TreeMap<>();
+
+		private boolean sorted;
+
+		void add(RecordedEvent event) {
+			this.durations.add(event.getDuration());
+			this.sorted = false;
+			for (String field : TOTALS) {
+				if (event.hasField(field)) {
+					this.totals.merge(field, event.getLong(field), Long::sum);
+				}
+			}
+		}
+
+		Duration total() {
+			return this.durations.stream().reduce(Duration.ZERO, Duration::plus);
+		}
+
+		Duration percentile(int percentile) {
+			if (!this.sorted) {
+				Collections.sort(this.durations);
+				this.sorted = true;
+			}
+			int index = (int) Math.ceil(percentile / 100.0 * this.durations.size()) - 1;
+			return this.durations.get(Math.max(index, 0));
+		}
+
+	}
+
+}
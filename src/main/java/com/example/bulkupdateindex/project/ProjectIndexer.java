@@ -17,18 +17,31 @@
 package com.example.bulkupdateindex.project;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import com.example.bulkupdateindex.AbstractIndexer;
+import com.example.bulkupdateindex.ActionEmitter;
 import com.example.bulkupdateindex.BulkUpdateIndex;
 import com.example.bulkupdateindex.IndexActionContainer;
+import com.example.bulkupdateindex.Watermark;
+import com.example.bulkupdateindex.WatermarkRepository;
+import com.example.bulkupdateindex.WriteMode;
+import com.example.bulkupdateindex.geoip.CountryResolver;
+import com.example.bulkupdateindex.ingest.IngestPipeline;
+import com.example.bulkupdateindex.job.IndexJob;
+import com.example.bulkupdateindex.job.IndexJobScheduler;
+import com.example.bulkupdateindex.mapping.DocumentMapping;
+import com.example.bulkupdateindex.mapping.FieldType;
 import com.example.bulkupdateindex.support.Version;
+import com.example.bulkupdateindex.support.VersionGenerations;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import io.searchbox.core.Index;
+import com.google.gson.JsonPrimitive;
 import io.searchbox.core.Search;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,146 +61,454 @@ public class ProjectIndexer extends AbstractIndexer {
 
 	private static final Logger logger = LoggerFactory.getLogger(ProjectIndexer.class);
 
+	private static final String TARGET_SUFFIX = "-new";
+
+	private static final String DEFAULT_WATERMARK_FIELD = "generationTimestamp";
+
+	private static final long WATERMARK_OVERLAP = TimeUnit.MINUTES.toMillis(5);
+
+	// Painless equivalent of Version#safeParse, as regular expressions are disabled by
+	// default on the cluster
+	private static final String VERSION_SCRIPT = "boolean digits(String s) {"
+			+ " if (s.isEmpty()) { return false; }"
+			+ " for (int i = 0; i < s.length(); i++) {"
+			+ " if (!Character.isDigit(s.charAt(i))) { return false; } } return true; }"
+			+ " int number(String s) { return (s == 'x') ? 999 : Integer.parseInt(s); }"
+			+ " def version = null;"
+			+ " if (ctx.bootVersion != null) { String raw = ctx.bootVersion.trim();"
+			+ " int first = raw.indexOf('.');"
+			+ " int second = (first < 0) ? -1 : raw.indexOf('.', first + 1);"
+			+ " if (second > 0) { String major = raw.substring(0, first);"
+			+ " String minor = raw.substring(first + 1, second);"
+			+ " String rest = raw.substring(second + 1); int end = 0;"
+			+ " if (rest.startsWith('x')) { end = 1; } else {"
+			+ " while (end < rest.length() && Character.isDigit(rest.charAt(end))) {"
+			+ " end++; } }"
+			+ " String patch = rest.substring(0, end); String qualifier = rest.substring(end);"
+			+ " boolean valid = digits(major) && (minor == 'x' || digits(minor)) && end > 0;"
+			+ " if (valid && !qualifier.isEmpty()) { int i = 1;"
+			+ " while (i < qualifier.length() && !Character.isDigit(qualifier.charAt(i))) {"
+			+ " i++; } valid = '.|-'.contains(qualifier.substring(0, 1)) && i > 1"
+			+ " && (i == qualifier.length() || digits(qualifier.substring(i)));"
+			+ " if (valid) { String number = (i < qualifier.length())"
+			+ " ? String.valueOf(Integer.parseInt(qualifier.substring(i))) : '';"
+			+ " qualifier = '.' + qualifier.substring(1, i) + number; } }"
+			+ " if (valid) { int majorNumber = Integer.parseInt(major);"
+			+ " int minorNumber = number(minor);"
+			+ " version = ['id': majorNumber + '.' + minorNumber + '.' + number(patch)"
+			+ " + qualifier, 'major': String.valueOf(majorNumber),"
+			+ " 'minor': majorNumber + '.' + minorNumber]; } } }"
+			+ " ctx.version = version;";
+
+	private static final String DEPENDENCIES_SCRIPT = "List values = (ctx.dependencies != null)"
+			+ " ? new ArrayList(ctx.dependencies) : new ArrayList();"
+			+ " List sorted = new ArrayList(values); Collections.sort(sorted);"
+			+ " ctx.dependencies = ['values': values,"
+			+ " 'id': sorted.isEmpty() ? '_none' : String.join(' ', sorted),"
+			+ " 'count': values.size()];";
+
+	private static final String BUILD_SYSTEM_SCRIPT = "String[] elements = ctx.type.splitOnToken('-');"
+			+ " ctx.buildSystem = (elements.length == 2) ? elements[0] : null;";
+
+	private static final String ERROR_STATE_SCRIPT = "def errorState = null;"
+			+ " if (ctx.invalid) { errorState = ['invalid': true];"
+			+ " if (ctx.invalidJavaVersion == true) { errorState.javaVersion = true; }"
+			+ " if (ctx.invalidLanguage == true) { errorState.language = true; }"
+			+ " if (ctx.invalidPackaging == true) { errorState.packaging = true; }"
+			+ " if (ctx.invalidType == true) { errorState.type = true; }"
+			+ " if (ctx.invalidDependencies != null && !ctx.invalidDependencies.isEmpty()) {"
+			+ " errorState.dependencies = ctx.invalidDependencies; }"
+			+ " if (ctx.errorMessage != null) { errorState.message = ctx.errorMessage; } }"
+			+ " ctx.errorState = errorState;";
+
+	// Translated to the ingest pipeline. Requests migrated on the client are written
+	// from the fields of the bound request instead, see createDocument
+	private static final DocumentMapping<ProjectRequest> MAPPING = DocumentMapping
+			.builder(ProjectRequest::bind).map("generationTimestamp", FieldType.LONG)
+			.map("type", FieldType.STRING).map("groupId", FieldType.STRING)
+			.map("artifactId", FieldType.STRING).map("javaVersion", FieldType.STRING)
+			.map("language", FieldType.STRING).map("packaging", FieldType.STRING)
+			.mapOptional("packageName", FieldType.STRING)
+			.compute("version", ProjectIndexer::indexVersion, VERSION_SCRIPT)
+			.compute("dependencies", ProjectIndexer::indexDependencies,
+					DEPENDENCIES_SCRIPT)
+			.compute("buildSystem", ProjectIndexer::indexBuildSystem, BUILD_SYSTEM_SCRIPT)
+			.mapOptional("clientId", "client.id", FieldType.STRING)
+			.mapOptional("clientVersion", "client.version", FieldType.STRING)
+			.mapOptional("requestIpv4", "client.ip", FieldType.STRING)
+			.mapOptional("requestCountry", "client.country", FieldType.STRING)
+			.compute("errorState", ProjectIndexer::indexErrorState, ERROR_STATE_SCRIPT)
+			.build();
+
+	private static final IngestPipeline INGEST_PIPELINE = MAPPING
+			.toIngestPipeline("initializr-request");
+
+	private CountryResolver countryResolver;
+
+	private VersionGenerations versionGenerations;
+
+	/**
+	 * Set the {@link CountryResolver} to use to determine the country of requests that
+	 * only have an IP address. By default, the country is only copied if it is present.
+	 * Requests migrated on the cluster by the {@link #getIngestPipeline() ingest
+	 * pipeline} are not enriched.
+	 * @param countryResolver the country resolver or {@code null}
+	 */
+	public void setCountryResolver(CountryResolver countryResolver) {
+		this.countryResolver = countryResolver;
+	}
+
+	/**
+	 * Set the {@link VersionGenerations} to use to add the support generation of the
+	 * Spring Boot version of requests. Requests migrated on the cluster by the
+	 * {@link #getIngestPipeline() ingest pipeline} are not classified.
+	 * @param versionGenerations the version generations or {@code null}
+	 */
+	public void setVersionGenerations(VersionGenerations versionGenerations) {
+		this.versionGenerations = versionGenerations;
+	}
+
 	public void indexRequests(BulkUpdateIndex bulkUpdateIndex, String indexName)
 			throws IOException {
+		indexRequests(bulkUpdateIndex, indexName, WriteMode.SKIP_UNCHANGED);
+	}
+
+	public void indexRequests(BulkUpdateIndex bulkUpdateIndex, String indexName,
+			WriteMode writeMode) throws IOException {
 		logger.info("Reindexing generated project requests");
 		Search.Builder searchBuilder = new Search.Builder("").addIndex(indexName)
 				.addType("request");
-		bulkUpdateIndex.update(searchBuilder, 2000, this::index);
+		bulkUpdateIndex.update(searchBuilder, 2000, writeMode, this);
 	}
 
-	protected void migrate(IndexActionContainer container) {
-		JsonObject source = container.getSource();
-		JsonObject target = initializeDocument(source);
-		indexVersion(source, target);
-		indexDependencies(source, target);
-		indexBuildSystem(source, target);
-		indexClient(source, target);
-		indexErrorState(source, target);
-		container.addAction(new Index.Builder(target)
-				.index(container.getDocument().get("_index").getAsString() + "-new")
-				.type("request").build());
-	}
-
-	private JsonObject initializeDocument(JsonObject source) {
-		JsonObject object = new JsonObject();
-		object.addProperty("generationTimestamp",
-				source.get("generationTimestamp").getAsLong());
-		object.addProperty("type", source.get("type").getAsString());
-		object.addProperty("groupId", source.get("groupId").getAsString());
-		object.addProperty("artifactId", source.get("artifactId").getAsString());
-		object.addProperty("javaVersion", source.get("javaVersion").getAsString());
-		object.addProperty("language", source.get("language").getAsString());
-		object.addProperty("packaging", source.get("packaging").getAsString());
-		String packageName = safeGetString(source, "packageName");
-		if (packageName != null) {
-			object.addProperty("packageName", packageName);
-		}
-		return object;
-	}
-
-	private void indexVersion(JsonObject source, JsonObject target) {
-		Version version = determineSpringBootVersion(source);
-		if (version != null) {
-			JsonObject versionObject = new JsonObject();
-			versionObject.addProperty("id", version.toString());
-			versionObject.addProperty("major", String.format("%s", version.getMajor()));
-			if (version.getMinor() != null) {
-				versionObject.addProperty("minor",
-						String.format("%s.%s", version.getMajor(), version.getMinor()));
-			}
-			target.add("version", versionObject);
+	/**
+	 * Reindex the generated project requests of the specified index and count them per
+	 * day in the specified {@link RequestRollup}. Rollup documents are sent along with
+	 * the requests whenever a flush is due, and once the scan has completed.
+	 * @param bulkUpdateIndex the bulk update index to use
+	 * @param indexName the name of the source index
+	 * @param writeMode how requests should be written
+	 * @param rollup the rollup to update
+	 * @throws IOException if an index operation fails
+	 */
+	public void indexRequests(BulkUpdateIndex bulkUpdateIndex, String indexName,
+			WriteMode writeMode, RequestRollup rollup) throws IOException {
+		logger.info("Reindexing generated project requests with rollups");
+		Search.Builder searchBuilder = new Search.Builder("").addIndex(indexName)
+				.addType("request");
+		Consumer<IndexActionContainer> migration = (container) -> migrate(container,
+				getDefaultTargetIndex(container), rollup);
+		bulkUpdateIndex.update(searchBuilder, 2000, writeMode,
+				(ActionEmitter) (hit, actions) -> {
+					emit(hit, actions, migration);
+					if (rollup.isFlushDue()) {
+						actions.addAll(rollup.flush());
+					}
+				});
+		bulkUpdateIndex.write(rollup.flush(), 2000);
+	}
+
+	/**
+	 * Reindex the generated project requests of all the indices matching the specified
+	 * pattern, one job per index. Indices written by this indexer, such as
+	 * {@code <index>-new} and the physical indices created by {@link #rebuildRequests
+	 * rebuildRequests}, are skipped even if they match the pattern.
+	 * @param scheduler the scheduler to use
+	 * @param indexPattern the pattern of the indices to process
+	 * @return the jobs, once they have all completed
+	 * @throws IOException if the indices could not be resolved
+	 */
+	public List<IndexJob> indexRequests(IndexJobScheduler scheduler, String indexPattern)
+			throws IOException {
+		logger.info("Reindexing generated project requests of " + indexPattern);
+		return scheduler.run(indexPattern, (index) -> !isTargetIndex(index), (index) -> 0,
+				(context) -> context.update(new Search.Builder("")
+						.addIndex(context.getIndex()).addType("request"), 2000,
+						WriteMode.SKIP_UNCHANGED, this));
+	}
+
+	/**
+	 * Rebuild the requests of the specified index in a new physical index and move the
+	 * {@code <index>-new} alias to it once complete.
+	 * @param bulkUpdateIndex the bulk update index to use
+	 * @param indexName the name of the source index
+	 * @param retention how long previous physical indices are kept, or {@code null} to
+	 * keep them
+	 * @return the name of the new physical index
+	 * @throws IOException if an index operation fails
+	 */
+	public String rebuildRequests(BulkUpdateIndex bulkUpdateIndex, String indexName,
+			Duration retention) throws IOException {
+		return bulkUpdateIndex.rebuild(indexName + TARGET_SUFFIX, retention,
+				(targetIndex) -> {
+					logger.info(
+							"Rebuilding generated project requests in " + targetIndex);
+					Search.Builder searchBuilder = new Search.Builder("")
+							.addIndex(indexName).addType("request");
+					// Each request is migrated to exactly one document
+					Consumer<IndexActionContainer> migration = (container) -> migrate(
+							container, targetIndex, null);
+					return bulkUpdateIndex.update(searchBuilder, 2000, WriteMode.INDEX,
+							(ActionEmitter) (hit, actions) -> emit(hit, actions,
+									migration));
+				});
+	}
+
+	/**
+	 * Rebuild the requests of the specified index in a new physical index, like
+	 * {@link #rebuildRequests}, but copy and transform the documents on the cluster using
+	 * {@code _reindex} and an {@link #getIngestPipeline() ingest pipeline}.
+	 * <p>
+	 * The pipeline does not compute the content hash of the documents, so the first
+	 * {@link WriteMode#SKIP_UNCHANGED} run against the new index writes every document
+	 * again.
+	 * @param bulkUpdateIndex the bulk update index to use
+	 * @param indexName the name of the source index
+	 * @param retention how long previous physical indices are kept, or {@code null} to
+	 * keep them
+	 * @param slices the number of slices to run in parallel
+	 * @param requestsPerSecond the throttle or {@code -1} to disable throttling
+	 * @return the name of the new physical index
+	 * @throws IOException if an index operation fails
+	 */
+	public String reindexRequests(BulkUpdateIndex bulkUpdateIndex, String indexName,
+			Duration retention, int slices, float requestsPerSecond) throws IOException {
+		return bulkUpdateIndex.rebuild(indexName + TARGET_SUFFIX, retention,
+				(targetIndex) -> {
+					logger.info(
+							"Reindexing generated project requests in " + targetIndex);
+					return bulkUpdateIndex.reindex(indexName, "request", targetIndex,
+							INGEST_PIPELINE, slices, requestsPerSecond);
+				});
+	}
+
+	/**
+	 * Return the {@link IngestPipeline} that migrates a request on the cluster the same
+	 * way {@link #migrate} does, except for the content hash that is only computed on the
+	 * client.
+	 * @return the ingest pipeline
+	 */
+	public IngestPipeline getIngestPipeline() {
+		return INGEST_PIPELINE;
+	}
+
+	/**
+	 * Index the requests of the specified index that were generated since the last
+	 * incremental run.
+	 * @param bulkUpdateIndex the bulk update index to use
+	 * @param watermarkRepository the repository holding the mark of the last run
+	 * @param indexName the name of the source index
+	 * @throws IOException if an index operation fails
+	 */
+	public void indexRequestsIncrementally(BulkUpdateIndex bulkUpdateIndex,
+			WatermarkRepository watermarkRepository, String indexName)
+			throws IOException {
+		indexRequestsIncrementally(bulkUpdateIndex, watermarkRepository, indexName,
+				DEFAULT_WATERMARK_FIELD);
+	}
+
+	/**
+	 * Index the requests of the specified index whose {@code field} is past the mark of
+	 * the last incremental run. The mark is only moved forward if no item failed, so that
+	 * failed documents are processed again on the next run.
+	 * @param bulkUpdateIndex the bulk update index to use
+	 * @param watermarkRepository the repository holding the mark of the last run
+	 * @param indexName the name of the source index
+	 * @param field the numeric field to use to track progress
+	 * @throws IOException if an index operation fails
+	 */
+	public void indexRequestsIncrementally(BulkUpdateIndex bulkUpdateIndex,
+			WatermarkRepository watermarkRepository, String indexName, String field)
+			throws IOException {
+		Watermark watermark = watermarkRepository.load(indexName,
+				indexName + TARGET_SUFFIX, field);
+		logger.info(String.format("Reindexing generated project requests with %s >= %s",
+				field, watermark.getPreviousValue()));
+		Search.Builder searchBuilder = new Search.Builder(
+				watermark.toQuery(WATERMARK_OVERLAP)).addIndex(indexName)
+						.addType("request");
+		bulkUpdateIndex.update(searchBuilder, 2000, WriteMode.SKIP_UNCHANGED,
+				watermark.track(this), watermark.trackFailures());
+		if (watermark.getFailures() > 0) {
+			logger.warn(String.format("Not moving the mark of %s as %s items failed",
+					indexName, watermark.getFailures()));
+			return;
 		}
+		watermarkRepository.save(watermark);
 	}
 
-	private void indexDependencies(JsonObject source, JsonObject target) {
-		List<String> dependencies = determineRawDependencies(source);
-		if (dependencies != null) {
-			JsonObject dependenciesObject = new JsonObject();
-			JsonArray values = new JsonArray();
-			dependencies.forEach(values::add);
-			dependenciesObject.add("values", values);
-			String dependenciesId = computeDependenciesId(dependencies);
-			dependenciesObject.addProperty("id", dependenciesId);
-			dependenciesObject.addProperty("count", dependencies.size());
-			target.add("dependencies", dependenciesObject);
+	protected void migrate(IndexActionContainer container) {
+		migrate(container, getDefaultTargetIndex(container), null);
+	}
+
+	private String getDefaultTargetIndex(IndexActionContainer container) {
+		return container.getIndex() + TARGET_SUFFIX;
+	}
+
+	// Either the target index or a physical index created by a rebuild
+	private static boolean isTargetIndex(String index) {
+		return index.endsWith(TARGET_SUFFIX) || index.contains(TARGET_SUFFIX + "-");
+	}
+
+	private void migrate(IndexActionContainer container, String targetIndex,
+			RequestRollup rollup) {
+		ProjectRequest request = ProjectRequest.bind(container.getSource());
+		Version version = determineSpringBootVersion(request);
+		String buildSystem = determineBuildSystem(request);
+		String country = resolveCountry(request);
+		JsonObject document = createDocument(request, version, buildSystem, country);
+		if (rollup != null) {
+			rollup.add(request.getGenerationTimestamp(),
+					(version != null && version.getMinor() != null)
+							? version.getMajor() + "." + version.getMinor() : null,
+					request.getDependencies(), buildSystem, country);
 		}
+		container.addIndexAction(targetIndex, "request", container.getId(), document);
 	}
 
-	private void indexBuildSystem(JsonObject source, JsonObject target) {
-		String type = source.get("type").getAsString();
-		String[] elements = type.split("-");
-		if (elements.length == 2) {
-			target.addProperty("buildSystem", elements[0]);
+	// Same document as MAPPING, written from the bound fields of the request rather
+	// than from the source
+	private JsonObject createDocument(ProjectRequest request, Version version,
+			String buildSystem, String country) {
+		JsonObject document = new JsonObject();
+		document.addProperty("generationTimestamp",
+				required("generationTimestamp", request.getGenerationTimestamp()));
+		document.addProperty("type", required("type", request.getType()));
+		document.addProperty("groupId", required("groupId", request.getGroupId()));
+		document.addProperty("artifactId",
+				required("artifactId", request.getArtifactId()));
+		document.addProperty("javaVersion",
+				required("javaVersion", request.getJavaVersion()));
+		document.addProperty("language", required("language", request.getLanguage()));
+		document.addProperty("packaging", required("packaging", request.getPackaging()));
+		if (request.getPackageName() != null) {
+			document.addProperty("packageName", request.getPackageName());
+		}
+		if (version != null) {
+			JsonObject versionObject = toJson(version);
+			addVersionGeneration(versionObject, version);
+			document.add("version", versionObject);
+		}
+		document.add("dependencies", indexDependencies(request));
+		if (buildSystem != null) {
+			document.addProperty("buildSystem", buildSystem);
+		}
+		JsonObject client = new JsonObject();
+		if (request.getClientId() != null) {
+			client.addProperty("id", request.getClientId());
 		}
+		if (request.getClientVersion() != null) {
+			client.addProperty("version", request.getClientVersion());
+		}
+		if (request.getRequestIp() != null) {
+			client.addProperty("ip", request.getRequestIp());
+		}
+		if (country != null) {
+			client.addProperty("country", country);
+		}
+		document.add("client", client);
+		JsonObject errorState = indexErrorState(request);
+		if (errorState != null) {
+			document.add("errorState", errorState);
+		}
+		return document;
 	}
 
-	private void indexClient(JsonObject source, JsonObject target) {
-		JsonObject clientObject = new JsonObject();
-		String clientId = safeGetString(source, "clientId");
-		if (clientId != null) {
-			clientObject.addProperty("id", clientId);
+	private static <T> T required(String name, T value) {
+		if (value == null) {
+			throw new IllegalStateException("Missing required field '" + name + "'");
 		}
-		String clientVersion = safeGetString(source, "clientVersion");
-		if (clientVersion != null) {
-			clientObject.addProperty("version", clientVersion);
+		return value;
+	}
+
+	private String resolveCountry(ProjectRequest request) {
+		String country = request.getRequestCountry();
+		if (country == null && this.countryResolver != null) {
+			return this.countryResolver.resolve(request.getRequestIp());
 		}
-		String requestIp = safeGetString(source, "requestIpv4");
-		if (requestIp != null) {
-			clientObject.addProperty("ip", requestIp);
+		return country;
+	}
+
+	private void addVersionGeneration(JsonObject versionObject, Version version) {
+		if (this.versionGenerations != null) {
+			String generation = this.versionGenerations.classify("spring-boot", version);
+			if (generation != null) {
+				versionObject.addProperty("generation", generation);
+			}
 		}
-		String requestCountry = safeGetString(source, "requestCountry");
-		if (requestCountry != null) {
-			clientObject.addProperty("country", requestCountry);
+	}
+
+	private static JsonObject indexVersion(ProjectRequest request) {
+		Version version = determineSpringBootVersion(request);
+		return (version != null) ? toJson(version) : null;
+	}
+
+	private static JsonObject toJson(Version version) {
+		JsonObject versionObject = new JsonObject();
+		versionObject.addProperty("id", version.toString());
+		versionObject.addProperty("major", String.format("%s", version.getMajor()));
+		if (version.getMinor() != null) {
+			versionObject.addProperty("minor",
+					String.format("%s.%s", version.getMajor(), version.getMinor()));
 		}
-		target.add("client", clientObject);
+		return versionObject;
 	}
 
-	private void indexErrorState(JsonObject source, JsonObject target) {
-		boolean invalid = source.get("invalid").getAsBoolean();
-		if (!invalid) {
-			return;
+	private static JsonObject indexDependencies(ProjectRequest request) {
+		List<String> dependencies = request.getDependencies();
+		JsonObject dependenciesObject = new JsonObject();
+		JsonArray values = new JsonArray();
+		dependencies.forEach(values::add);
+		dependenciesObject.add("values", values);
+		String dependenciesId = computeDependenciesId(new ArrayList<>(dependencies));
+		dependenciesObject.addProperty("id", dependenciesId);
+		dependenciesObject.addProperty("count", dependencies.size());
+		return dependenciesObject;
+	}
+
+	private static JsonPrimitive indexBuildSystem(ProjectRequest request) {
+		String buildSystem = determineBuildSystem(request);
+		return (buildSystem != null) ? new JsonPrimitive(buildSystem) : null;
+	}
+
+	private static String determineBuildSystem(ProjectRequest request) {
+		String[] elements = required("type", request.getType()).split("-");
+		return (elements.length == 2) ? elements[0] : null;
+	}
+
+	private static JsonObject indexErrorState(ProjectRequest request) {
+		if (!request.isInvalid()) {
+			return null;
 		}
 		JsonObject errorState = new JsonObject();
 		errorState.addProperty("invalid", true);
-		if (safeGetBoolean(source, "invalidJavaVersion")) {
+		if (request.isInvalidJavaVersion()) {
 			errorState.addProperty("javaVersion", true);
 		}
-		if (safeGetBoolean(source, "invalidLanguage")) {
+		if (request.isInvalidLanguage()) {
 			errorState.addProperty("language", true);
 		}
-		if (safeGetBoolean(source, "invalidPackaging")) {
+		if (request.isInvalidPackaging()) {
 			errorState.addProperty("packaging", true);
 		}
-		if (safeGetBoolean(source, "invalidType")) {
+		if (request.isInvalidType()) {
 			errorState.addProperty("type", true);
 		}
-		JsonArray invalidDependencies = source.getAsJsonArray("invalidDependencies");
-		if (invalidDependencies != null && invalidDependencies.size() > 0) {
-			errorState.add("dependencies", invalidDependencies);
+		List<String> invalidDependencies = request.getInvalidDependencies();
+		if (!invalidDependencies.isEmpty()) {
+			JsonArray dependencies = new JsonArray();
+			invalidDependencies.forEach(dependencies::add);
+			errorState.add("dependencies", dependencies);
 		}
-		String message = safeGetString(source, "errorMessage");
-		if (message != null) {
-			errorState.addProperty("message", message);
+		if (request.getErrorMessage() != null) {
+			errorState.addProperty("message", request.getErrorMessage());
 		}
-		target.add("errorState", errorState);
-	}
-
-	private boolean safeGetBoolean(JsonObject source, String propertyName) {
-		JsonElement element = source.get(propertyName);
-		return element != null && element.getAsBoolean();
-	}
-
-	private String safeGetString(JsonObject source, String propertyName) {
-		JsonElement element = source.get(propertyName);
-		return (element != null) ? element.getAsString() : null;
+		return errorState;
 	}
 
-	private Version determineSpringBootVersion(JsonObject source) {
-		JsonElement versionEl = source.get("bootVersion");
-		if (versionEl != null) {
-			String bootVersion = versionEl.getAsString();
-			Version version = Version.safeParse(bootVersion);
+	private static Version determineSpringBootVersion(ProjectRequest request) {
+		if (request.getBootVersion() != null) {
+			Version version = Version.safeParse(request.getBootVersion());
 			if (version != null && version.getMajor() != null) {
 				return version;
 			}
@@ -195,19 +516,7 @@ public class ProjectIndexer extends AbstractIndexer {
 		return null;
 	}
 
-	private List<String> determineRawDependencies(JsonObject source) {
-		JsonArray array = source.getAsJsonArray("dependencies");
-		if (array == null) {
-			return Collections.emptyList();
-		}
-		List<String> result = new ArrayList<>();
-		for (JsonElement jsonElement : array) {
-			result.add(jsonElement.getAsString());
-		}
-		return result;
-	}
-
-	private String computeDependenciesId(List<String> dependencies) {
+	private static String computeDependenciesId(List<String> dependencies) {
 		if (ObjectUtils.isEmpty(dependencies)) {
 			return "_none";
 		}
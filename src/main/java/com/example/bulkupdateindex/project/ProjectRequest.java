@@ -0,0 +1,256 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.project;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.JsonObject;
+import com.google.gson.annotations.JsonAdapter;
+
+/**
+ * An immutable view of the {@code _source} of an {@code initializr} request. Only the
+ * fields used by {@link ProjectIndexer} are bound, see {@link ProjectRequestTypeAdapter}.
+ *
+ * @author Stephane Nicoll
+ */
+@JsonAdapter(ProjectRequestTypeAdapter.class)
+final class ProjectRequest {
+
+	private static final ProjectRequestTypeAdapter ADAPTER = new ProjectRequestTypeAdapter();
+
+	private final Long generationTimestamp;
+
+	private final String type;
+
+	private final String groupId;
+
+	private final String artifactId;
+
+	private final String javaVersion;
+
+	private final String language;
+
+	private final String packaging;
+
+	private final String packageName;
+
+	private final String bootVersion;
+
+	private final List<String> dependencies;
+
+	private final String clientId;
+
+	private final String clientVersion;
+
+	private final String requestIp;
+
+	private final String requestCountry;
+
+	private final boolean invalid;
+
+	private final boolean invalidJavaVersion;
+
+	private final boolean invalidLanguage;
+
+	private final boolean invalidPackaging;
+
+	private final boolean invalidType;
+
+	private final List<String> invalidDependencies;
+
+	private final String errorMessage;
+
+	private ProjectRequest(Builder builder) {
+		this.generationTimestamp = builder.generationTimestamp;
+		this.type = builder.type;
+		this.groupId = builder.groupId;
+		this.artifactId = builder.artifactId;
+		this.javaVersion = builder.javaVersion;
+		this.language = builder.language;
+		this.packaging = builder.packaging;
+		this.packageName = builder.packageName;
+		this.bootVersion = builder.bootVersion;
+		this.dependencies = immutable(builder.dependencies);
+		this.clientId = builder.clientId;
+		this.clientVersion = builder.clientVersion;
+		this.requestIp = builder.requestIp;
+		this.requestCountry = builder.requestCountry;
+		this.invalid = builder.invalid;
+		this.invalidJavaVersion = builder.invalidJavaVersion;
+		this.invalidLanguage = builder.invalidLanguage;
+		this.invalidPackaging = builder.invalidPackaging;
+		this.invalidType = builder.invalidType;
+		this.invalidDependencies = immutable(builder.invalidDependencies);
+		this.errorMessage = builder.errorMessage;
+	}
+
+	private static List<String> immutable(List<String> values) {
+		return (values != null) ? Collections.unmodifiableList(values)
+				: Collections.emptyList();
+	}
+
+	/**
+	 * Bind the specified {@code _source}. Missing fields and {@code null} values are
+	 * bound as {@code null}, {@code false} or an empty list and unknown fields are
+	 * ignored. Hits are parsed to a tree by the client already, so the request is bound
+	 * in a single pass over the fields of that tree.
+	 * @param source the source of a request
+	 * @return the request
+	 */
+	static ProjectRequest bind(JsonObject source) {
+		return ADAPTER.read(source);
+	}
+
+	Long getGenerationTimestamp() {
+		return this.generationTimestamp;
+	}
+
+	String getType() {
+		return this.type;
+	}
+
+	String getGroupId() {
+		return this.groupId;
+	}
+
+	String getArtifactId() {
+		return this.artifactId;
+	}
+
+	String getJavaVersion() {
+		return this.javaVersion;
+	}
+
+	String getLanguage() {
+		return this.language;
+	}
+
+	String getPackaging() {
+		return this.packaging;
+	}
+
+	String getPackageName() {
+		return this.packageName;
+	}
+
+	String getBootVersion() {
+		return this.bootVersion;
+	}
+
+	List<String> getDependencies() {
+		return this.dependencies;
+	}
+
+	String getClientId() {
+		return this.clientId;
+	}
+
+	String getClientVersion() {
+		return this.clientVersion;
+	}
+
+	String getRequestIp() {
+		return this.requestIp;
+	}
+
+	String getRequestCountry() {
+		return this.requestCountry;
+	}
+
+	boolean isInvalid() {
+		return this.invalid;
+	}
+
+	boolean isInvalidJavaVersion() {
+		return this.invalidJavaVersion;
+	}
+
+	boolean isInvalidLanguage() {
+		return this.invalidLanguage;
+	}
+
+	boolean isInvalidPackaging() {
+		return this.invalidPackaging;
+	}
+
+	boolean isInvalidType() {
+		return this.invalidType;
+	}
+
+	List<String> getInvalidDependencies() {
+		return this.invalidDependencies;
+	}
+
+	String getErrorMessage() {
+		return this.errorMessage;
+	}
+
+	/**
+	 * Mutable state of a {@link ProjectRequest} being bound.
+	 */
+	static final class Builder {
+
+		Long generationTimestamp;
+
+		String type;
+
+		String groupId;
+
+		String artifactId;
+
+		String javaVersion;
+
+		String language;
+
+		String packaging;
+
+		String packageName;
+
+		String bootVersion;
+
+		List<String> dependencies;
+
+		String clientId;
+
+		String clientVersion;
+
+		String requestIp;
+
+		String requestCountry;
+
+		boolean invalid;
+
+		boolean invalidJavaVersion;
+
+		boolean invalidLanguage;
+
+		boolean invalidPackaging;
+
+		boolean invalidType;
+
+		List<String> invalidDependencies;
+
+		String errorMessage;
+
+		ProjectRequest build() {
+			return new ProjectRequest(this);
+		}
+
+	}
+
+}
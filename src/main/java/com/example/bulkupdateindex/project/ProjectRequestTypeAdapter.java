@@ -0,0 +1,314 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A {@link TypeAdapter} that binds the fields of a {@link ProjectRequest} one by one,
+ * without reflection. Values are coerced the same way {@link com.google.gson.JsonElement}
+ * does: numbers and booleans can be read as strings and strings as numbers or booleans. A
+ * request is written using the names of the fields of the {@code _source} it was bound
+ * from, so that it can be read back.
+ *
+ * @author Stephane Nicoll
+ */
+class ProjectRequestTypeAdapter extends TypeAdapter<ProjectRequest> {
+
+	@Override
+	public ProjectRequest read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		ProjectRequest.Builder request = new ProjectRequest.Builder();
+		StreamValues values = new StreamValues(in);
+		in.beginObject();
+		while (in.hasNext()) {
+			if (!bind(request, in.nextName(), values)) {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return request.build();
+	}
+
+	/**
+	 * Bind the specified tree in a single pass over its fields. Coerces values the same
+	 * way as {@link #read(JsonReader)}, without the buffers of a
+	 * {@link com.google.gson.internal.bind.JsonTreeReader}.
+	 * @param source the source of a request
+	 * @return the request
+	 */
+	ProjectRequest read(JsonObject source) {
+		ProjectRequest.Builder request = new ProjectRequest.Builder();
+		TreeValues values = new TreeValues();
+		try {
+			for (Map.Entry<String, JsonElement> entry : source.entrySet()) {
+				values.current = entry.getValue();
+				bind(request, entry.getKey(), values);
+			}
+		}
+		catch (IOException ex) {
+			throw new JsonIOException(ex);
+		}
+		return request.build();
+	}
+
+	private static boolean bind(ProjectRequest.Builder request, String name,
+			Values values) throws IOException {
+		switch (name) {
+		case "generationTimestamp":
+			request.generationTimestamp = values.readLong();
+			return true;
+		case "type":
+			request.type = values.readString();
+			return true;
+		case "groupId":
+			request.groupId = values.readString();
+			return true;
+		case "artifactId":
+			request.artifactId = values.readString();
+			return true;
+		case "javaVersion":
+			request.javaVersion = values.readString();
+			return true;
+		case "language":
+			request.language = values.readString();
+			return true;
+		case "packaging":
+			request.packaging = values.readString();
+			return true;
+		case "packageName":
+			request.packageName = values.readString();
+			return true;
+		case "bootVersion":
+			request.bootVersion = values.readString();
+			return true;
+		case "dependencies":
+			request.dependencies = values.readStrings();
+			return true;
+		case "clientId":
+			request.clientId = values.readString();
+			return true;
+		case "clientVersion":
+			request.clientVersion = values.readString();
+			return true;
+		case "requestIpv4":
+			request.requestIp = values.readString();
+			return true;
+		case "requestCountry":
+			request.requestCountry = values.readString();
+			return true;
+		case "invalid":
+			request.invalid = values.readBoolean();
+			return true;
+		case "invalidJavaVersion":
+			request.invalidJavaVersion = values.readBoolean();
+			return true;
+		case "invalidLanguage":
+			request.invalidLanguage = values.readBoolean();
+			return true;
+		case "invalidPackaging":
+			request.invalidPackaging = values.readBoolean();
+			return true;
+		case "invalidType":
+			request.invalidType = values.readBoolean();
+			return true;
+		case "invalidDependencies":
+			request.invalidDependencies = values.readStrings();
+			return true;
+		case "errorMessage":
+			request.errorMessage = values.readString();
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public void write(JsonWriter out, ProjectRequest value) throws IOException {
+		if (value == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("generationTimestamp").value(value.getGenerationTimestamp());
+		out.name("type").value(value.getType());
+		out.name("groupId").value(value.getGroupId());
+		out.name("artifactId").value(value.getArtifactId());
+		out.name("javaVersion").value(value.getJavaVersion());
+		out.name("language").value(value.getLanguage());
+		out.name("packaging").value(value.getPackaging());
+		out.name("packageName").value(value.getPackageName());
+		out.name("bootVersion").value(value.getBootVersion());
+		writeStrings(out.name("dependencies"), value.getDependencies());
+		out.name("clientId").value(value.getClientId());
+		out.name("clientVersion").value(value.getClientVersion());
+		out.name("requestIpv4").value(value.getRequestIp());
+		out.name("requestCountry").value(value.getRequestCountry());
+		out.name("invalid").value(value.isInvalid());
+		out.name("invalidJavaVersion").value(value.isInvalidJavaVersion());
+		out.name("invalidLanguage").value(value.isInvalidLanguage());
+		out.name("invalidPackaging").value(value.isInvalidPackaging());
+		out.name("invalidType").value(value.isInvalidType());
+		writeStrings(out.name("invalidDependencies"), value.getInvalidDependencies());
+		out.name("errorMessage").value(value.getErrorMessage());
+		out.endObject();
+	}
+
+	private static void writeStrings(JsonWriter out, List<String> values)
+			throws IOException {
+		out.beginArray();
+		for (String value : values) {
+			out.value(value);
+		}
+		out.endArray();
+	}
+
+	/**
+	 * Reads the value of the current field, coerced to the type of the bound field.
+	 */
+	private interface Values {
+
+		String readString() throws IOException;
+
+		Long readLong() throws IOException;
+
+		boolean readBoolean() throws IOException;
+
+		List<String> readStrings() throws IOException;
+
+	}
+
+	private static final class StreamValues implements Values {
+
+		private final JsonReader in;
+
+		StreamValues(JsonReader in) {
+			this.in = in;
+		}
+
+		@Override
+		public String readString() throws IOException {
+			switch (this.in.peek()) {
+			case NULL:
+				this.in.nextNull();
+				return null;
+			case BOOLEAN:
+				return String.valueOf(this.in.nextBoolean());
+			default:
+				return this.in.nextString();
+			}
+		}
+
+		@Override
+		public Long readLong() throws IOException {
+			if (this.in.peek() == JsonToken.NULL) {
+				this.in.nextNull();
+				return null;
+			}
+			return this.in.nextLong();
+		}
+
+		@Override
+		public boolean readBoolean() throws IOException {
+			switch (this.in.peek()) {
+			case NULL:
+				this.in.nextNull();
+				return false;
+			case STRING:
+				return Boolean.parseBoolean(this.in.nextString());
+			default:
+				return this.in.nextBoolean();
+			}
+		}
+
+		@Override
+		public List<String> readStrings() throws IOException {
+			if (this.in.peek() == JsonToken.NULL) {
+				this.in.nextNull();
+				return null;
+			}
+			List<String> values = new ArrayList<>();
+			this.in.beginArray();
+			while (this.in.hasNext()) {
+				values.add(readString());
+			}
+			this.in.endArray();
+			return values;
+		}
+
+	}
+
+	private static final class TreeValues implements Values {
+
+		private JsonElement current;
+
+		@Override
+		public String readString() {
+			return readString(this.current);
+		}
+
+		@Override
+		public Long readLong() {
+			return isNull(this.current) ? null
+					: this.current.getAsJsonPrimitive().getAsLong();
+		}
+
+		@Override
+		public boolean readBoolean() {
+			return !isNull(this.current)
+					&& this.current.getAsJsonPrimitive().getAsBoolean();
+		}
+
+		@Override
+		public List<String> readStrings() {
+			if (isNull(this.current)) {
+				return null;
+			}
+			JsonArray array = this.current.getAsJsonArray();
+			List<String> values = new ArrayList<>(array.size());
+			for (JsonElement element : array) {
+				values.add(readString(element));
+			}
+			return values;
+		}
+
+		private static String readString(JsonElement element) {
+			return isNull(element) ? null : element.getAsJsonPrimitive().getAsString();
+		}
+
+		private static boolean isNull(JsonElement element) {
+			return element == null || element.isJsonNull();
+		}
+
+	}
+
+}
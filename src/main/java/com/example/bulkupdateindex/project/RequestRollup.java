@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.project;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Update;
+import io.searchbox.params.Parameters;
+
+import org.springframework.util.Assert;
+
+/**
+ * Per-day counts of {@code initializr} requests for the breakdowns used by dashboards,
+ * accumulated while requests are indexed. Counters can be updated concurrently and are
+ * flushed as compact rollup documents, one per day, dimension and value, such as:
+ * <pre class="code">
+ * {"day":"2019-01-01","timestamp":1546300800000,"dimension":"dependency","value":"web","count":1234}
+ * </pre>
+ * <p>
+ * A flush only sends the counts accumulated since the previous flush, and they are added
+ * to the documents that already exist, retrying on version conflicts as flushes can run
+ * concurrently. The rollup index is expected to be built from scratch alongside the index
+ * it summarizes: counts are not keyed per run, so if a run fails part way, running it
+ * again counts the requests that were already flushed a second time. Likewise, a failed
+ * rollup action that is replayed from a dead-letter queue must not be sent again by a new
+ * run.
+ *
+ * @author Stephane Nicoll
+ * @see ProjectIndexer#indexRequests(com.example.bulkupdateindex.BulkUpdateIndex, String,
+ * com.example.bulkupdateindex.WriteMode, RequestRollup)
+ */
+public class RequestRollup {
+
+	/**
+	 * Dimension for the minor version of Spring Boot, such as {@code 2.1}.
+	 */
+	public static final String VERSION = "version";
+
+	/**
+	 * Dimension for each dependency of a request.
+	 */
+	public static final String DEPENDENCY = "dependency";
+
+	/**
+	 * Dimension for the build system, such as {@code maven}.
+	 */
+	public static final String BUILD_SYSTEM = "buildSystem";
+
+	/**
+	 * Dimension for the country the request originates from.
+	 */
+	public static final String COUNTRY = "country";
+
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+	private static final String INCREMENT_SCRIPT = "ctx._source.count += params.count";
+
+	private static final int RETRY_ON_CONFLICT = 5;
+
+	private final Map<Key, AtomicLong> counters = new ConcurrentHashMap<>();
+
+	private final String index;
+
+	private final AtomicLong pending = new AtomicLong();
+
+	private final long flushInterval;
+
+	/**
+	 * Create a new instance.
+	 * @param index the index to write rollup documents to
+	 * @param flushInterval the number of requests after which a flush is due, see
+	 * {@link #isFlushDue()}
+	 */
+	public RequestRollup(String index, long flushInterval) {
+		Assert.hasText(index, "Index must not be empty");
+		Assert.isTrue(flushInterval > 0, "FlushInterval must be positive");
+		this.index = index;
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Count a request.
+	 * @param timestamp the generation timestamp of the request
+	 * @param version the minor version of Spring Boot or {@code null}
+	 * @param dependencies the dependencies of the request
+	 * @param buildSystem the build system or {@code null}
+	 * @param country the country or {@code null}
+	 */
+	public void add(long timestamp, String version, List<String> dependencies,
+			String buildSystem, String country) {
+		long day = Math.floorDiv(timestamp, DAY);
+		increment(day, VERSION, version);
+		for (String dependency : dependencies) {
+			increment(day, DEPENDENCY, dependency);
+		}
+		increment(day, BUILD_SYSTEM, buildSystem);
+		increment(day, COUNTRY, country);
+		this.pending.incrementAndGet();
+	}
+
+	private void increment(long day, String dimension, String value) {
+		if (value != null) {
+			this.counters.computeIfAbsent(new Key(day, dimension, value),
+					(key) -> new AtomicLong()).incrementAndGet();
+		}
+	}
+
+	/**
+	 * Return the count of the specified value accumulated since the last flush.
+	 * @param day the day
+	 * @param dimension the dimension
+	 * @param value the value
+	 * @return the count
+	 */
+	public long getCount(LocalDate day, String dimension, String value) {
+		AtomicLong counter = this.counters
+				.get(new Key(day.toEpochDay(), dimension, value));
+		return (counter != null) ? counter.get() : 0;
+	}
+
+	/**
+	 * Specify if the number of requests counted since the last flush has reached the
+	 * flush interval of this instance.
+	 * @return {@code true} if {@link #flush()} should be invoked
+	 */
+	public boolean isFlushDue() {
+		return this.pending.get() >= this.flushInterval;
+	}
+
+	/**
+	 * Reset the counters and return the actions that add their counts to the rollup
+	 * index. Requests counted while flushing are either part of the returned actions or
+	 * of the next flush.
+	 * @return the actions to send
+	 */
+	public List<BulkableAction<?>> flush() {
+		this.pending.set(0);
+		List<BulkableAction<?>> actions = new ArrayList<>();
+		// Counters are kept so that a concurrent increment is never lost
+		this.counters.forEach((key, counter) -> {
+			long count = counter.getAndSet(0);
+			if (count > 0) {
+				actions.add(createAction(key, count));
+			}
+		});
+		return actions;
+	}
+
+	private BulkableAction<?> createAction(Key key, long count) {
+		LocalDate day = LocalDate.ofEpochDay(key.day);
+		JsonObject document = new JsonObject();
+		document.addProperty("day", day.toString());
+		document.addProperty("timestamp", key.day * DAY);
+		document.addProperty("dimension", key.dimension);
+		document.addProperty("value", key.value);
+		document.addProperty("count", count);
+		JsonObject params = new JsonObject();
+		params.addProperty("count", count);
+		JsonObject script = new JsonObject();
+		script.addProperty("lang", "painless");
+		script.addProperty("source", INCREMENT_SCRIPT);
+		script.add("params", params);
+		JsonObject payload = new JsonObject();
+		payload.add("script", script);
+		payload.add("upsert", document);
+		return new Update.Builder(payload).index(this.index).type("rollup")
+				.id(day + ":" + key.dimension + ":" + key.value)
+				.setParameter(Parameters.RETRY_ON_CONFLICT, RETRY_ON_CONFLICT).build();
+	}
+
+	private static final class Key {
+
+		private final long day;
+
+		private final String dimension;
+
+		private final String value;
+
+		private Key(long day, String dimension, String value) {
+			this.day = day;
+			this.dimension = dimension;
+			this.value = value;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.day == other.day && this.dimension.equals(other.dimension)
+					&& this.value.equals(other.value);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.day, this.dimension, this.value);
+		}
+
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.snapshot;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.example.bulkupdateindex.DocumentSink;
+import com.google.gson.Gson;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Bulk;
+
+/**
+ * A {@link DocumentSink} that writes actions to a local file using the NDJSON format of
+ * the bulk API. The file can be sent as is to the {@code _bulk} endpoint.
+ *
+ * @author Stephane Nicoll
+ */
+public class NdjsonDocumentSink implements DocumentSink {
+
+	private final Gson gson = new Gson();
+
+	private final Writer writer;
+
+	public NdjsonDocumentSink(Path file) throws IOException {
+		this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public synchronized void write(List<BulkableAction<?>> actions) throws IOException {
+		if (!actions.isEmpty()) {
+			this.writer.write(
+					new Bulk.Builder().addAction(actions).build().getData(this.gson));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.writer.close();
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.snapshot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+
+import com.example.bulkupdateindex.DocumentSource;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * A {@link DocumentSource} that reads the hits of one or more chunks of a snapshot.
+ *
+ * @author Stephane Nicoll
+ * @see SnapshotWriter
+ */
+public class SnapshotDocumentSource implements DocumentSource {
+
+	private final SnapshotReader reader;
+
+	private final Iterator<Path> chunks;
+
+	private final int pageSize;
+
+	private SnapshotReader.ChunkReader current;
+
+	public SnapshotDocumentSource(SnapshotReader reader, List<Path> chunks,
+			int pageSize) {
+		this.reader = reader;
+		this.chunks = chunks.iterator();
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public JsonArray nextPage() throws IOException {
+		JsonArray page = new JsonArray();
+		while (page.size() < this.pageSize) {
+			JsonObject hit = nextHit();
+			if (hit == null) {
+				break;
+			}
+			page.add(hit);
+		}
+		return page;
+	}
+
+	private JsonObject nextHit() throws IOException {
+		while (true) {
+			if (this.current == null) {
+				if (!this.chunks.hasNext()) {
+					return null;
+				}
+				this.current = this.reader.open(this.chunks.next());
+			}
+			JsonObject hit = this.current.next();
+			if (hit != null) {
+				return hit;
+			}
+			this.current.close();
+			this.current = null;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.current != null) {
+			this.current.close();
+			this.current = null;
+		}
+	}
+
+}
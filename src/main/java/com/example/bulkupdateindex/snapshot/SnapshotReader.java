@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.snapshot;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Read search hits from the chunks written by a {@link SnapshotWriter}. Each chunk can be
+ * read independently so that several chunks can be processed in parallel.
+ *
+ * @author Stephane Nicoll
+ */
+public class SnapshotReader {
+
+	private final Path directory;
+
+	public SnapshotReader(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Return the chunks of the snapshot, in the order they have been written.
+	 * @return the chunks
+	 * @throws IOException if the directory could not be read
+	 */
+	public List<Path> getChunks() throws IOException {
+		try (Stream<Path> paths = Files.list(this.directory)) {
+			return paths.filter((path) -> {
+				String name = path.getFileName().toString();
+				return name.startsWith(SnapshotWriter.CHUNK_PREFIX)
+						&& name.endsWith(SnapshotWriter.CHUNK_SUFFIX);
+			}).sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Open the specified chunk. The chunk is memory-mapped and decompressed as hits are
+	 * read.
+	 * @param chunk the chunk to read
+	 * @return a reader for the hits of the chunk
+	 * @throws IOException if the chunk could not be opened
+	 */
+	public ChunkReader open(Path chunk) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(chunk, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		return new ChunkReader(new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(new ByteBufferInputStream(buffer), 64 * 1024),
+				StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Read the hits of a chunk.
+	 */
+	public static class ChunkReader implements Closeable {
+
+		private final JsonParser parser = new JsonParser();
+
+		private final BufferedReader reader;
+
+		ChunkReader(BufferedReader reader) {
+			this.reader = reader;
+		}
+
+		/**
+		 * Return the next hit or {@code null} if the end of the chunk has been reached.
+		 * @return the next hit or {@code null}
+		 * @throws IOException if the chunk could not be read
+		 */
+		public JsonObject next() throws IOException {
+			String line = this.reader.readLine();
+			while (line != null && line.isEmpty()) {
+				line = this.reader.readLine();
+			}
+			return (line != null) ? this.parser.parse(line).getAsJsonObject() : null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.reader.close();
+		}
+
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return (this.buffer.hasRemaining()) ? this.buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!this.buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, this.buffer.remaining());
+			this.buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return this.buffer.remaining();
+		}
+
+	}
+
+}
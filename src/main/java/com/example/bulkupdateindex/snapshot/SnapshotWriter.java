@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.snapshot;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Write search hits to a directory as a set of gzip-compressed NDJSON chunks.
+ *
+ * @author Stephane Nicoll
+ * @see SnapshotReader
+ */
+public class SnapshotWriter implements Closeable {
+
+	static final String CHUNK_PREFIX = "chunk-";
+
+	static final String CHUNK_SUFFIX = ".ndjson.gz";
+
+	private final Path directory;
+
+	private final int hitsPerChunk;
+
+	private Writer writer;
+
+	private int chunk;
+
+	private int hitsInChunk;
+
+	/**
+	 * Create a new instance. Chunks of a previous snapshot in the same directory are
+	 * deleted, so that they are not read along with the new ones.
+	 * @param directory the directory to write chunks to
+	 * @param hitsPerChunk the maximum number of hits in a chunk
+	 * @throws IOException if the directory could not be created or cleared
+	 */
+	public SnapshotWriter(Path directory, int hitsPerChunk) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.hitsPerChunk = hitsPerChunk;
+		deleteExistingChunks();
+	}
+
+	private void deleteExistingChunks() throws IOException {
+		try (DirectoryStream<Path> chunks = Files.newDirectoryStream(this.directory,
+				CHUNK_PREFIX + "*" + CHUNK_SUFFIX)) {
+			for (Path chunk : chunks) {
+				Files.delete(chunk);
+			}
+		}
+	}
+
+	/**
+	 * Write the specified hit.
+	 * @param hit a search hit, including its metadata
+	 * @throws IOException if the hit could not be written
+	 */
+	public void write(JsonObject hit) throws IOException {
+		if (this.writer == null || this.hitsInChunk == this.hitsPerChunk) {
+			nextChunk();
+		}
+		this.writer.write(hit.toString());
+		this.writer.write('\n');
+		this.hitsInChunk++;
+	}
+
+	private void nextChunk() throws IOException {
+		close();
+		Path path = this.directory.resolve(
+				String.format("%s%05d%s", CHUNK_PREFIX, this.chunk++, CHUNK_SUFFIX));
+		this.writer = new BufferedWriter(new OutputStreamWriter(
+				new GZIPOutputStream(Files.newOutputStream(path), 64 * 1024),
+				StandardCharsets.UTF_8));
+		this.hitsInChunk = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.writer != null) {
+			this.writer.close();
+			this.writer = null;
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.support;
+
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.JsonElement;
+
+import org.springframework.util.DigestUtils;
+
+/**
+ * Compute stable identifiers and content hashes for generated documents.
+ *
+ * @author Stephane Nicoll
+ */
+public final class DocumentDigest {
+
+	private DocumentDigest() {
+	}
+
+	/**
+	 * Return a stable document id derived from the specified parts. The same parts always
+	 * produce the same id.
+	 * @param parts the parts that identify the source of the document
+	 * @return a stable id
+	 */
+	public static String id(String... parts) {
+		StringBuilder sb = new StringBuilder();
+		for (String part : parts) {
+			sb.append((part != null) ? part : "").append('\u0000');
+		}
+		return md5(sb.toString());
+	}
+
+	/**
+	 * Return a hash of the content of the specified document.
+	 * @param document the generated document
+	 * @return a hash of the document
+	 */
+	public static String contentHash(JsonElement document) {
+		return md5(document.toString());
+	}
+
+	private static String md5(String content) {
+		return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
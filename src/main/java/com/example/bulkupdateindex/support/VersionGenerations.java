@@ -0,0 +1,259 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * A catalog of the support generation of versions, such as {@code 1.5.x EOL} or
+ * {@code train Lovelace current}, per project. Version ranges are held in a sorted table
+ * of primitive keys and release trains in a sorted table of names, both searched using a
+ * binary search.
+ * <p>
+ * A version range covers every version from its first {@code major.minor[.patch]}
+ * (inclusive) to its last (exclusive), regardless of the qualifier. See
+ * {@code version-generations.csv} for the format of a catalog.
+ *
+ * @author Stephane Nicoll
+ */
+public final class VersionGenerations {
+
+	private static final String DEFAULT_LOCATION = "version-generations.csv";
+
+	private static final int MAX_ELEMENT = (1 << 21) - 1;
+
+	private final Map<String, Table> tables;
+
+	private VersionGenerations(Map<String, Table> tables) {
+		this.tables = tables;
+	}
+
+	/**
+	 * Load the catalog bundled with the application.
+	 * @return the default catalog
+	 */
+	public static VersionGenerations loadDefault() {
+		try (InputStream in = new ClassPathResource(DEFAULT_LOCATION).getInputStream()) {
+			return load(new InputStreamReader(in, StandardCharsets.UTF_8));
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to load " + DEFAULT_LOCATION, ex);
+		}
+	}
+
+	/**
+	 * Load a catalog. Empty lines and lines starting with {@code #} are ignored.
+	 * @param reader the reader of the catalog
+	 * @return the catalog
+	 * @throws IOException if the catalog could not be read
+	 * @throws IllegalArgumentException if a line is invalid or version ranges overlap
+	 */
+	public static VersionGenerations load(Reader reader) throws IOException {
+		Map<String, TableBuilder> builders = new HashMap<>();
+		BufferedReader lines = new BufferedReader(reader);
+		String line;
+		while ((line = lines.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] elements = line.split(",");
+			if (elements.length != 4) {
+				throw new IllegalArgumentException("Invalid entry '" + line + "'");
+			}
+			TableBuilder builder = builders.computeIfAbsent(elements[0].trim(),
+					(project) -> new TableBuilder());
+			String generation = elements[3].trim();
+			if ("version".equals(elements[1].trim())) {
+				String[] bounds = elements[2].split("\\.\\.");
+				if (bounds.length != 2) {
+					throw new IllegalArgumentException("Invalid range '" + line + "'");
+				}
+				builder.ranges.add(new Object[] { parseBound(bounds[0], line),
+						parseBound(bounds[1], line), generation });
+			}
+			else if ("train".equals(elements[1].trim())) {
+				builder.trains.put(elements[2].trim(), generation);
+			}
+			else {
+				throw new IllegalArgumentException("Invalid kind '" + line + "'");
+			}
+		}
+		Map<String, Table> tables = new HashMap<>();
+		builders.forEach((project, builder) -> tables.put(project, builder.build()));
+		return new VersionGenerations(tables);
+	}
+
+	private static long parseBound(String bound, String line) {
+		String[] elements = bound.trim().split("\\.");
+		try {
+			if (elements.length < 2 || elements.length > 3) {
+				throw new NumberFormatException();
+			}
+			return key(Integer.parseInt(elements[0]), Integer.parseInt(elements[1]),
+					(elements.length == 3) ? Integer.parseInt(elements[2]) : 0);
+		}
+		catch (NumberFormatException ex) {
+			throw new IllegalArgumentException(
+					"Invalid bound '" + bound + "' in '" + line + "'");
+		}
+	}
+
+	/**
+	 * Return the generation of the specified version reference, using its version or its
+	 * release train.
+	 * @param project the id of the project
+	 * @param reference the version reference
+	 * @return the generation or {@code null} if it is unknown
+	 */
+	public String classify(String project, VersionReference reference) {
+		if (reference.getVersion() != null) {
+			return classify(project, reference.getVersion());
+		}
+		if (reference.getReleaseTrain() != null) {
+			return classify(project, reference.getReleaseTrain());
+		}
+		return null;
+	}
+
+	/**
+	 * Return the generation of the specified version.
+	 * @param project the id of the project
+	 * @param version the version
+	 * @return the generation or {@code null} if it is unknown
+	 */
+	public String classify(String project, Version version) {
+		Table table = this.tables.get(project);
+		if (table == null || version.getMajor() == null) {
+			return null;
+		}
+		return table.classify(key(version.getMajor(),
+				(version.getMinor() != null) ? version.getMinor() : 0,
+				(version.getPatch() != null) ? version.getPatch() : 0));
+	}
+
+	/**
+	 * Return the generation of the specified release train.
+	 * @param project the id of the project
+	 * @param releaseTrain the release train
+	 * @return the generation or {@code null} if it is unknown
+	 */
+	public String classify(String project, ReleaseTrain releaseTrain) {
+		Table table = this.tables.get(project);
+		return (table != null) ? table.classify(releaseTrain.getName()) : null;
+	}
+
+	/**
+	 * Return a primitive key for the specified version that preserves its order. Each
+	 * element is capped to 21 bits.
+	 * @param major the major version
+	 * @param minor the minor version
+	 * @param patch the patch version
+	 * @return the key of the version
+	 */
+	static long key(int major, int minor, int patch) {
+		return ((long) cap(major) << 42) | ((long) cap(minor) << 21) | cap(patch);
+	}
+
+	private static int cap(int element) {
+		return Math.max(0, Math.min(element, MAX_ELEMENT));
+	}
+
+	private static final class TableBuilder {
+
+		private final List<Object[]> ranges = new ArrayList<>();
+
+		private final Map<String, String> trains = new HashMap<>();
+
+		Table build() {
+			this.ranges.sort(Comparator.comparingLong((range) -> (long) range[0]));
+			long[] starts = new long[this.ranges.size()];
+			long[] ends = new long[this.ranges.size()];
+			String[] generations = new String[this.ranges.size()];
+			for (int i = 0; i < this.ranges.size(); i++) {
+				Object[] range = this.ranges.get(i);
+				starts[i] = (long) range[0];
+				ends[i] = (long) range[1];
+				generations[i] = (String) range[2];
+				if (starts[i] >= ends[i] || (i > 0 && starts[i] < ends[i - 1])) {
+					throw new IllegalArgumentException(
+							"Range of '" + generations[i] + "' is empty or overlaps");
+				}
+			}
+			String[] names = this.trains.keySet().toArray(new String[0]);
+			Arrays.sort(names);
+			String[] trainGenerations = new String[names.length];
+			for (int i = 0; i < names.length; i++) {
+				trainGenerations[i] = this.trains.get(names[i]);
+			}
+			return new Table(starts, ends, generations, names, trainGenerations);
+		}
+
+	}
+
+	private static final class Table {
+
+		private final long[] starts;
+
+		private final long[] ends;
+
+		private final String[] generations;
+
+		private final String[] trains;
+
+		private final String[] trainGenerations;
+
+		private Table(long[] starts, long[] ends, String[] generations, String[] trains,
+				String[] trainGenerations) {
+			this.starts = starts;
+			this.ends = ends;
+			this.generations = generations;
+			this.trains = trains;
+			this.trainGenerations = trainGenerations;
+		}
+
+		String classify(long key) {
+			// Index of the last range starting at or before the key
+			int index = Arrays.binarySearch(this.starts, key);
+			if (index < 0) {
+				index = -index - 2;
+			}
+			return (index >= 0 && key < this.ends[index]) ? this.generations[index]
+					: null;
+		}
+
+		String classify(String train) {
+			int index = Arrays.binarySearch(this.trains, train);
+			return (index >= 0) ? this.trainGenerations[index] : null;
+		}
+
+	}
+
+}
@@ -36,10 +36,17 @@ public final class VersionReference {
 
 	private final String minor;
 
-	private VersionReference(String id, String major, String minor) {
+	private final Version version;
+
+	private final ReleaseTrain releaseTrain;
+
+	private VersionReference(String id, String major, String minor, Version version,
+			ReleaseTrain releaseTrain) {
 		this.id = id;
 		this.major = major;
 		this.minor = minor;
+		this.version = version;
+		this.releaseTrain = releaseTrain;
 	}
 
 	public String getId() {
@@ -54,8 +61,24 @@ public final class VersionReference {
 		return this.minor;
 	}
 
+	/**
+	 * Return the parsed version, if any.
+	 * @return the version or {@code null} if it could not be parsed as a version
+	 */
+	public Version getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Return the release train, if any.
+	 * @return the release train or {@code null} if this is not a release train
+	 */
+	public ReleaseTrain getReleaseTrain() {
+		return this.releaseTrain;
+	}
+
 	public static VersionReference of(String id, String major, String minor) {
-		return new VersionReference(id, major, minor);
+		return new VersionReference(id, major, minor, null, null);
 	}
 
 	public static VersionReference parse(String text) {
@@ -68,7 +91,8 @@ public final class VersionReference {
 
 		ReleaseTrain releaseTrain = ReleaseTrain.safeParse(text);
 		if (releaseTrain != null) {
-			return of(versionText, null, releaseTrain.getName());
+			return new VersionReference(versionText, null, releaseTrain.getName(), null,
+					releaseTrain);
 		}
 
 		Version nonStandardVersion = safeNonStandardVersionParse(versionText);
@@ -82,7 +106,7 @@ public final class VersionReference {
 		String major = String.format("%s", version.getMajor());
 		String minor = (version.getMinor() != null)
 				? String.format("%s.%s", version.getMajor(), version.getMinor()) : null;
-		return of(id, major, minor);
+		return new VersionReference(id, major, minor, version, null);
 	}
 
 	private static String cleanVersion(String version) {
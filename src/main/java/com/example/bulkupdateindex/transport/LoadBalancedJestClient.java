@@ -0,0 +1,370 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.transport;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestClientFactory;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.client.config.HttpClientConfig;
+import io.searchbox.cluster.NodesInfo;
+import io.searchbox.core.BulkResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link JestClient} that spreads requests across several nodes of a cluster rather
+ * than sending everything to a single coordinating node. Each request goes to the
+ * available node with the least outstanding requests and the number of requests in flight
+ * on a node is capped: if every node is at capacity, a request waits for one to complete.
+ * <p>
+ * A node that answers with a {@code 429} or a {@code 5xx} status, that rejects items of a
+ * bulk request with a {@code 429} status, or that cannot be reached, is ejected for a
+ * while so that it can recover. If every node is ejected, the one that was ejected first
+ * is used anyway.
+ * <p>
+ * Nodes can be changed using {@link #setServers(Set)}: nodes that are kept retain their
+ * state while the clients of nodes that are removed are shut down once their requests in
+ * flight have completed.
+ *
+ * @author Stephane Nicoll
+ * @see com.example.bulkupdateindex.BulkUpdateIndex#setBulkClient(JestClient)
+ */
+public class LoadBalancedJestClient implements JestClient {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(LoadBalancedJestClient.class);
+
+	private final Function<String, JestClient> clientFactory;
+
+	private final int maxInFlightPerNode;
+
+	private List<Node> nodes;
+
+	private long ejectionNanos = Duration.ofSeconds(30).toNanos();
+
+	private int next;
+
+	/**
+	 * Create a new instance for the specified nodes. Each node gets its own connection
+	 * pool, sized to the number of requests that can be in flight on the node.
+	 * @param urls the urls of the nodes, such as {@code http://10.0.0.1:9200}
+	 * @param maxInFlightPerNode the maximum number of requests in flight on a node
+	 */
+	public LoadBalancedJestClient(List<String> urls, int maxInFlightPerNode) {
+		this(urls, (url) -> createClient(url, maxInFlightPerNode), maxInFlightPerNode);
+	}
+
+	LoadBalancedJestClient(List<String> urls, Function<String, JestClient> clientFactory,
+			int maxInFlightPerNode) {
+		Assert.notEmpty(urls, "At least one node is required");
+		Assert.isTrue(maxInFlightPerNode > 0,
+				"Max in flight requests per node must be positive");
+		this.clientFactory = clientFactory;
+		this.maxInFlightPerNode = maxInFlightPerNode;
+		this.nodes = new ArrayList<>();
+		urls.forEach((url) -> this.nodes.add(new Node(url, clientFactory.apply(url))));
+	}
+
+	/**
+	 * Create a new instance for the nodes of the cluster that have HTTP enabled, as
+	 * reported by {@code _nodes/http}.
+	 * @param jestClient the client to use to discover the nodes
+	 * @param maxInFlightPerNode the maximum number of requests in flight on a node
+	 * @return a client for the nodes of the cluster
+	 * @throws IOException if the nodes could not be discovered
+	 */
+	public static LoadBalancedJestClient discover(JestClient jestClient,
+			int maxInFlightPerNode) throws IOException {
+		JestResult result = jestClient
+				.execute(new NodesInfo.Builder().withHttp().build());
+		if (!result.isSucceeded()) {
+			throw new IllegalStateException(
+					"Failed to discover nodes: " + result.getErrorMessage());
+		}
+		List<String> urls = getHttpUrls(result.getJsonObject());
+		logger.info("Discovered nodes " + urls);
+		return new LoadBalancedJestClient(urls, maxInFlightPerNode);
+	}
+
+	/**
+	 * Set how long a node that failed is ignored. Default is 30 seconds.
+	 * @param ejectionDuration the ejection duration
+	 */
+	public void setEjectionDuration(Duration ejectionDuration) {
+		this.ejectionNanos = ejectionDuration.toNanos();
+	}
+
+	@Override
+	public <T extends JestResult> T execute(Action<T> clientRequest) throws IOException {
+		Node node = acquire();
+		try {
+			T result = node.client.execute(clientRequest);
+			ejectIfOverloaded(node, result);
+			return result;
+		}
+		catch (IOException ex) {
+			eject(node, ex.getMessage());
+			throw ex;
+		}
+		finally {
+			release(node);
+		}
+	}
+
+	/**
+	 * Execute the specified request asynchronously. The calling thread blocks until a
+	 * node has capacity for the request, which throttles callers that submit requests
+	 * faster than the nodes can process them.
+	 * @param clientRequest the request to execute
+	 * @param jestResultHandler the handler of the result
+	 */
+	@Override
+	public <T extends JestResult> void executeAsync(Action<T> clientRequest,
+			JestResultHandler<? super T> jestResultHandler) {
+		Node node = acquire();
+		try {
+			executeAsync(node, clientRequest, jestResultHandler);
+		}
+		catch (RuntimeException ex) {
+			// The handler will never be invoked
+			release(node);
+			throw ex;
+		}
+	}
+
+	private <T extends JestResult> void executeAsync(Node node, Action<T> clientRequest,
+			JestResultHandler<? super T> jestResultHandler) {
+		node.client.executeAsync(clientRequest, new JestResultHandler<T>() {
+
+			@Override
+			public void completed(T result) {
+				ejectIfOverloaded(node, result);
+				release(node);
+				jestResultHandler.completed(result);
+			}
+
+			@Override
+			public void failed(Exception ex) {
+				eject(node, ex.getMessage());
+				release(node);
+				jestResultHandler.failed(ex);
+			}
+
+		});
+	}
+
+	@Override
+	public synchronized void shutdownClient() {
+		this.nodes.forEach((node) -> node.client.shutdownClient());
+	}
+
+	/**
+	 * Replace the nodes of this client. Nodes that are kept retain their requests in
+	 * flight and ejection state, a client is created for each new node and the client of
+	 * a node that is removed is shut down once its requests in flight have completed.
+	 * @param servers the urls of the nodes, such as {@code http://10.0.0.1:9200}
+	 */
+	@Override
+	public synchronized void setServers(Set<String> servers) {
+		Assert.notEmpty(servers, "At least one node is required");
+		Map<String, Node> current = new LinkedHashMap<>();
+		this.nodes.forEach((node) -> current.put(node.url, node));
+		List<Node> nodes = new ArrayList<>();
+		for (String url : servers) {
+			Node node = current.remove(url);
+			nodes.add(
+					(node != null) ? node : new Node(url, this.clientFactory.apply(url)));
+		}
+		for (Node removed : current.values()) {
+			removed.removed = true;
+			if (removed.inFlight == 0) {
+				removed.client.shutdownClient();
+			}
+		}
+		logger.info("Using nodes " + servers);
+		this.nodes = nodes;
+		this.next = 0;
+		notifyAll();
+	}
+
+	/**
+	 * Return the number of requests in flight per node.
+	 * @return the number of requests in flight, keyed by node url
+	 */
+	public synchronized Map<String, Integer> getInFlightRequests() {
+		Map<String, Integer> inFlight = new LinkedHashMap<>();
+		this.nodes.forEach((node) -> inFlight.put(node.url, node.inFlight));
+		return inFlight;
+	}
+
+	synchronized Node acquire() {
+		while (true) {
+			long now = System.nanoTime();
+			Node candidate = null;
+			boolean allEjected = true;
+			for (int i = 0; i < this.nodes.size(); i++) {
+				Node node = this.nodes.get((this.next + i) % this.nodes.size());
+				if (node.isEjected(now)) {
+					continue;
+				}
+				allEjected = false;
+				if (node.inFlight < this.maxInFlightPerNode
+						&& (candidate == null || node.inFlight < candidate.inFlight)) {
+					candidate = node;
+				}
+			}
+			if (candidate == null && allEjected) {
+				candidate = leastRecentlyEjected(now);
+			}
+			if (candidate != null) {
+				candidate.inFlight++;
+				this.next = (this.nodes.indexOf(candidate) + 1) % this.nodes.size();
+				return candidate;
+			}
+			waitForRelease();
+		}
+	}
+
+	private Node leastRecentlyEjected(long now) {
+		Node candidate = null;
+		for (Node node : this.nodes) {
+			if (node.inFlight < this.maxInFlightPerNode && (candidate == null
+					|| node.ejectedUntil - now < candidate.ejectedUntil - now)) {
+				candidate = node;
+			}
+		}
+		return candidate;
+	}
+
+	private void waitForRelease() {
+		try {
+			wait();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a node", ex);
+		}
+	}
+
+	synchronized void release(Node node) {
+		node.inFlight--;
+		if (node.removed && node.inFlight == 0) {
+			node.client.shutdownClient();
+		}
+		notifyAll();
+	}
+
+	private synchronized void eject(Node node, String reason) {
+		logger.warn(String.format("Ejecting node %s for %sms (%s)", node.url,
+				Duration.ofNanos(this.ejectionNanos).toMillis(), reason));
+		node.ejectedUntil = System.nanoTime() + this.ejectionNanos;
+		node.ejected = true;
+	}
+
+	private void ejectIfOverloaded(Node node, JestResult result) {
+		if (isOverloaded(result.getResponseCode())) {
+			eject(node, "status " + result.getResponseCode());
+		}
+		else if (result instanceof BulkResult && !result.isSucceeded()) {
+			// A bulk request is accepted even if the node rejects some of its items
+			long rejected = ((BulkResult) result).getFailedItems().stream()
+					.filter((item) -> item.status == 429).count();
+			if (rejected > 0) {
+				eject(node, rejected + " bulk items rejected");
+			}
+		}
+	}
+
+	private static boolean isOverloaded(int status) {
+		return status == 429 || status >= 500;
+	}
+
+	static List<String> getHttpUrls(JsonObject nodesInfo) {
+		List<String> urls = new ArrayList<>();
+		for (Map.Entry<String, JsonElement> entry : nodesInfo.getAsJsonObject("nodes")
+				.entrySet()) {
+			JsonObject http = entry.getValue().getAsJsonObject().getAsJsonObject("http");
+			if (http != null && http.has("publish_address")) {
+				String address = http.get("publish_address").getAsString();
+				// The address may be prefixed by the host name, as in host/ip:port
+				urls.add("http://" + address.substring(address.indexOf('/') + 1));
+			}
+		}
+		Collections.sort(urls);
+		return urls;
+	}
+
+	private static JestClient createClient(String url, int maxInFlightPerNode) {
+		JestClientFactory factory = new JestClientFactory();
+		factory.setHttpClientConfig(new HttpClientConfig.Builder(url).multiThreaded(true)
+				.maxTotalConnection(maxInFlightPerNode)
+				.defaultMaxTotalConnectionPerRoute(maxInFlightPerNode).build());
+		return factory.getObject();
+	}
+
+	/**
+	 * A node of the cluster and its state.
+	 */
+	static final class Node {
+
+		private final String url;
+
+		private final JestClient client;
+
+		private int inFlight;
+
+		private boolean ejected;
+
+		private boolean removed;
+
+		private long ejectedUntil;
+
+		private Node(String url, JestClient client) {
+			this.url = url;
+			this.client = client;
+		}
+
+		String getUrl() {
+			return this.url;
+		}
+
+		private boolean isEjected(long now) {
+			if (this.ejected && now - this.ejectedUntil >= 0) {
+				this.ejected = false;
+			}
+			return this.ejected;
+		}
+
+	}
+
+}
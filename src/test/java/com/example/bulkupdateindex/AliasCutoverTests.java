@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.gson.Gson;
+import io.searchbox.action.Action;
+import io.searchbox.core.Count;
+import io.searchbox.indices.CreateIndex;
+import io.searchbox.indices.DeleteIndex;
+import io.searchbox.indices.aliases.GetAliases;
+import io.searchbox.indices.aliases.ModifyAliases;
+import io.searchbox.indices.mapping.GetMapping;
+import io.searchbox.indices.settings.GetSettings;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link AliasCutover}.
+ *
+ * @author Stephane Nicoll
+ */
+public class AliasCutoverTests {
+
+	private static final String PREVIOUS_INDEX = "test-20180101000000";
+
+	private final MockJestClient client = new MockJestClient();
+
+	private final AliasCutover aliasCutover = new AliasCutover(this.client);
+
+	@Test
+	public void rebuildMovesAliasAtomically() throws IOException {
+		this.client
+				.respond(GetAliases.class, 200,
+						"{\"" + PREVIOUS_INDEX + "\":{\"aliases\":{\"test\":{}}}}")
+				.respond(Count.class, 200, "{\"count\":10}");
+		String index = this.aliasCutover.rebuild("test", null, (target) -> 10);
+		assertThat(index).startsWith("test-");
+		assertThat(uris(CreateIndex.class)).containsExactly(index);
+		List<ModifyAliases> modifications = this.client.getActions(ModifyAliases.class);
+		assertThat(modifications).hasSize(1);
+		assertThat(modifications.get(0).getData(new Gson()))
+				.isEqualTo("{\"actions\":[" + "{\"add\":{\"index\":\"" + index
+						+ "\",\"alias\":\"test\"}}," + "{\"remove\":{\"index\":\""
+						+ PREVIOUS_INDEX + "\",\"alias\":\"test\"}}]}");
+		assertThat(this.client.getActions(DeleteIndex.class)).isEmpty();
+	}
+
+	@Test
+	public void rebuildWithNoPreviousIndexAddsAlias() throws IOException {
+		this.client.respond(GetAliases.class, 404, "{}").respond(Count.class, 200,
+				"{\"count\":0}");
+		String index = this.aliasCutover.rebuild("test", null, (target) -> 0);
+		assertThat(this.client.getActions(ModifyAliases.class).get(0).getData(new Gson()))
+				.isEqualTo("{\"actions\":[{\"add\":" + "{\"index\":\"" + index
+						+ "\",\"alias\":\"test\"}}]}");
+	}
+
+	@Test
+	public void rebuildWithMissingDocumentsLeavesAliasUnchanged() {
+		this.client
+				.respond(GetAliases.class, 200,
+						"{\"" + PREVIOUS_INDEX + "\":{\"aliases\":{\"test\":{}}}}")
+				.respond(Count.class, 200, "{\"count\":8}");
+		assertThatThrownBy(() -> this.aliasCutover.rebuild("test", null, (target) -> 10))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("holds 8 documents, expected at least 10");
+		assertThat(this.client.getActions(ModifyAliases.class)).isEmpty();
+		assertThat(uris(DeleteIndex.class))
+				.containsExactlyElementsOf(uris(CreateIndex.class));
+	}
+
+	@Test
+	public void rebuildCopiesSettingsAndMappingsOfCurrentIndex() throws IOException {
+		this.client
+				.respond(GetAliases.class, 200,
+						"{\"test-20170101000000\":{\"aliases\":{}},\"" + PREVIOUS_INDEX
+								+ "\":{\"aliases\":{\"test\":{}}}}")
+				.respond(GetSettings.class, 200, "{\"" + PREVIOUS_INDEX
+						+ "\":{\"settings\":{\"index\":{\"number_of_shards\":\"3\","
+						+ "\"uuid\":\"abc\",\"creation_date\":\"1514764800000\","
+						+ "\"provided_name\":\"" + PREVIOUS_INDEX + "\","
+						+ "\"version\":{\"created\":\"6020499\"}}}}}")
+				.respond(GetMapping.class, 200,
+						"{\"" + PREVIOUS_INDEX + "\":{\"mappings\":{\"doc\":"
+								+ "{\"properties\":{\"name\":{\"type\":\"keyword\"}}}}}}")
+				.respond(Count.class, 200, "{\"count\":10}");
+		this.aliasCutover.rebuild("test", null, (target) -> 10);
+		assertThat(uris(GetSettings.class))
+				.containsExactly(PREVIOUS_INDEX + "/_settings");
+		assertThat(this.client.getActions(CreateIndex.class).get(0).getData(new Gson()))
+				.isEqualTo("{\"settings\":{\"index\":{\"number_of_shards\":\"3\"}},"
+						+ "\"mappings\":{\"doc\":{\"properties\":"
+						+ "{\"name\":{\"type\":\"keyword\"}}}}}");
+	}
+
+	@Test
+	public void rebuildWithFailingOperationDeletesIndex() {
+		this.client.respond(GetAliases.class, 200,
+				"{\"" + PREVIOUS_INDEX + "\":{\"aliases\":{\"test\":{}}}}");
+		assertThatThrownBy(() -> this.aliasCutover.rebuild("test", null, (target) -> {
+			throw new IOException("test");
+		})).isInstanceOf(IOException.class).hasMessage("test");
+		assertThat(uris(DeleteIndex.class))
+				.containsExactlyElementsOf(uris(CreateIndex.class));
+	}
+
+	@Test
+	public void rebuildWithIndexNamedAfterAlias() {
+		this.client.respond(GetAliases.class, 200, "{\"test\":{\"aliases\":{}}}");
+		assertThatThrownBy(() -> this.aliasCutover.rebuild("test", null, (target) -> 0))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("an index with that name already exists");
+		assertThat(this.client.getActions(CreateIndex.class)).isEmpty();
+	}
+
+	@Test
+	public void rebuildWithFailingOperationLeavesAliasUnchanged() {
+		this.client.respond(GetAliases.class, 200,
+				"{\"" + PREVIOUS_INDEX + "\":{\"aliases\":{\"test\":{}}}}");
+		assertThatThrownBy(() -> this.aliasCutover.rebuild("test", null, (target) -> {
+			throw new IOException("test");
+		})).isInstanceOf(IOException.class);
+		assertThat(this.client.getActions(ModifyAliases.class)).isEmpty();
+	}
+
+	@Test
+	public void rebuildDeletesExpiredIndices() throws IOException {
+		this.client
+				.respond(
+						(action) -> action instanceof GetAliases
+								&& action.getURI().startsWith("test-*"),
+						200,
+						"{\"test-20170101000000\":{\"aliases\":{}},"
+								+ "\"test-20170201000000\":{\"aliases\":{\"test\":{}}},"
+								+ "\"test-29990101000000\":{\"aliases\":{}},"
+								+ "\"test-other\":{\"aliases\":{}}}")
+				.respond(GetAliases.class, 200,
+						"{\"" + PREVIOUS_INDEX + "\":{\"aliases\":{\"test\":{}}}}")
+				.respond(Count.class, 200, "{\"count\":10}");
+		this.aliasCutover.rebuild("test", Duration.ofDays(1), (target) -> 10);
+		assertThat(uris(DeleteIndex.class)).containsExactly("test-20170101000000");
+	}
+
+	@Test
+	public void rebuildWithNoRetentionKeepsIndices() throws IOException {
+		this.client
+				.respond(GetAliases.class, 200,
+						"{\"test-20170101000000\":{\"aliases\":{}}}")
+				.respond(Count.class, 200, "{\"count\":10}");
+		this.aliasCutover.rebuild("test", null, (target) -> 10);
+		assertThat(this.client.getActions(DeleteIndex.class)).isEmpty();
+	}
+
+	private List<String> uris(Class<? extends Action<?>> type) {
+		return this.client.getActions(type).stream().map(Action::getURI)
+				.collect(Collectors.toList());
+	}
+
+}
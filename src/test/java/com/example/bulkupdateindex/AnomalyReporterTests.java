@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AnomalyReporter}.
+ *
+ * @author Stephane Nicoll
+ */
+public class AnomalyReporterTests {
+
+	@Test
+	public void countByTypeAndKey() {
+		AnomalyReporter reporter = new AnomalyReporter();
+		reporter.record("test", "a", "1");
+		reporter.record("test", "a", "1");
+		reporter.record("test", "b", "1");
+		reporter.record("another", "a", "1");
+		assertThat(reporter.getCount("test")).isEqualTo(3);
+		assertThat(reporter.getCount("test", "a", "1")).isEqualTo(2);
+		assertThat(reporter.getCount("test", "b", "1")).isEqualTo(1);
+		assertThat(reporter.getCount("another")).isEqualTo(1);
+		assertThat(reporter.getCount("unknown")).isEqualTo(0);
+	}
+
+	@Test
+	public void summaryListsMostFrequentKeys() {
+		AnomalyReporter reporter = new AnomalyReporter();
+		for (int i = 0; i < 5; i++) {
+			reporter.record("test", "frequent");
+		}
+		reporter.record("test", "rare");
+		for (int i = 0; i < 3; i++) {
+			reporter.record("test", "medium");
+		}
+		String summary = reporter.getSummary(2);
+		assertThat(summary).contains("test: 9", "frequent: 5", "medium: 3")
+				.doesNotContain("rare");
+		assertThat(summary.indexOf("frequent")).isLessThan(summary.indexOf("medium"));
+	}
+
+	@Test
+	public void keysAreBounded() {
+		AnomalyReporter reporter = new AnomalyReporter(2, 0);
+		reporter.record("test", "a");
+		reporter.record("test", "b");
+		reporter.record("test", "c");
+		reporter.record("test", "a");
+		assertThat(reporter.getCount("test")).isEqualTo(4);
+		assertThat(reporter.getCount("test", "a")).isEqualTo(2);
+		assertThat(reporter.getCount("test", "c")).isEqualTo(0);
+		assertThat(reporter.getSummary(10)).contains("(untracked keys): 1");
+	}
+
+	@Test
+	public void recordWithWeight() {
+		AnomalyReporter reporter = new AnomalyReporter(1, 0);
+		reporter.record("test", 20, "a");
+		reporter.record("test", "a");
+		reporter.record("test", 5, "b");
+		assertThat(reporter.getCount("test")).isEqualTo(26);
+		assertThat(reporter.getCount("test", "a")).isEqualTo(21);
+		assertThat(reporter.getSummary(10)).contains("a: 21")
+				.contains("(untracked keys): 5");
+	}
+
+	@Test
+	public void recordConcurrently() throws Exception {
+		AnomalyReporter reporter = new AnomalyReporter();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> {
+					for (int j = 0; j < 10000; j++) {
+						reporter.record("test", String.valueOf(j % 10));
+					}
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		assertThat(reporter.getCount("test")).isEqualTo(40000);
+		assertThat(reporter.getCount("test", "7")).isEqualTo(4000);
+	}
+
+}
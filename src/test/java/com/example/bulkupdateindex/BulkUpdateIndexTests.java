@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.example.bulkupdateindex.action.GetTask;
+import com.example.bulkupdateindex.action.UpdateByQuery;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Index;
+import io.searchbox.core.Update;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link BulkUpdateIndex}.
+ *
+ * @author Stephane Nicoll
+ */
+public class BulkUpdateIndexTests {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final BulkUpdateIndex bulkUpdateIndex = new BulkUpdateIndex(null);
+
+	@Test
+	public void updateProcessesAllPages() throws IOException {
+		CountingDocumentSink sink = new CountingDocumentSink();
+		long count = this.bulkUpdateIndex.update(new InMemoryDocumentSource(hits(5), 2),
+				sink, (hit) -> Collections.singletonList(indexAction(hit)));
+		assertThat(count).isEqualTo(5);
+		assertThat(sink.getCount()).isEqualTo(5);
+	}
+
+	@Test
+	public void updateWithNoActionForHit() throws IOException {
+		CountingDocumentSink sink = new CountingDocumentSink();
+		long count = this.bulkUpdateIndex.update(new InMemoryDocumentSource(hits(3), 10),
+				sink, (hit) -> null);
+		assertThat(count).isEqualTo(3);
+		assertThat(sink.getCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void updateWritesActionsPerPage() throws IOException {
+		List<Integer> pages = new ArrayList<>();
+		this.bulkUpdateIndex.update(new InMemoryDocumentSource(hits(5), 2),
+				(actions) -> pages.add(actions.size()),
+				(hit) -> Arrays.asList(indexAction(hit), indexAction(hit)));
+		assertThat(pages).containsExactly(4, 4, 2);
+	}
+
+	@Test
+	public void updateWithActionEmitterWritesActionsPerPage() throws IOException {
+		List<Integer> pages = new ArrayList<>();
+		this.bulkUpdateIndex.update(new InMemoryDocumentSource(hits(5), 2),
+				(actions) -> pages.add(actions.size()),
+				(ActionEmitter) (hit, actions) -> {
+					actions.add(indexAction(hit));
+					actions.add(indexAction(hit));
+				});
+		assertThat(pages).containsExactly(4, 4, 2);
+	}
+
+	@Test
+	public void actionEmitterCanBeUsedAsUpdateFunction() {
+		ActionEmitter emitter = (hit, actions) -> actions.add(indexAction(hit));
+		assertThat(emitter.apply(hits(1).get(0))).hasSize(1);
+	}
+
+	@Test
+	public void writeSendsFailedActionsToDeadLetterQueue() throws IOException {
+		MockJestClient jestClient = new MockJestClient().respond(Bulk.class, 200,
+				"{\"errors\":true,\"items\":[{\"update\":{\"status\":200}},"
+						+ "{\"update\":{\"status\":400,\"error\":{\"type\":\"test\"}}}]}");
+		BulkUpdateIndex bulkUpdateIndex = new BulkUpdateIndex(jestClient);
+		Path file = this.temporaryFolder.getRoot().toPath().resolve("dead-letters.json");
+		try (DeadLetterQueue queue = new DeadLetterQueue(file)) {
+			bulkUpdateIndex.setDeadLetterQueue(queue);
+			bulkUpdateIndex.write(Arrays.asList(updateAction("1"), updateAction("2")),
+					10);
+			assertThat(queue.getCount()).isEqualTo(1);
+		}
+		try (DocumentSource source = new DeadLetterDocumentSource(file, null, 10)) {
+			JsonObject entry = source.nextPage().get(0).getAsJsonObject();
+			assertThat(entry.get("id").getAsString()).isEqualTo("2");
+			assertThat(entry.get("source").isJsonNull()).isTrue();
+		}
+	}
+
+	@Test
+	public void updateInPlaceWithScriptMigrationRunsOnCluster() throws IOException {
+		MockJestClient jestClient = new MockJestClient()
+				.respond(UpdateByQuery.class, 200, "{\"task\":\"node:42\"}")
+				.respond(GetTask.class, 200,
+						"{\"completed\":true,\"task\":{\"status\":{\"total\":3,"
+								+ "\"updated\":3}},\"response\":{\"updated\":3,"
+								+ "\"failures\":[]}}");
+		ScriptMigration migration = new ScriptMigration("ctx._source.test = true", null,
+				null);
+		long count = new BulkUpdateIndex(jestClient).updateInPlace("test", "doc",
+				new TestIndexer(migration), 100, 4, -1);
+		assertThat(count).isEqualTo(3);
+		List<UpdateByQuery> updates = jestClient.getActions(UpdateByQuery.class);
+		assertThat(updates).hasSize(1);
+		UpdateByQuery update = updates.get(0);
+		assertThat(update.getURI()).startsWith("test/doc/_update_by_query")
+				.contains("slices=4").contains("wait_for_completion=false")
+				.contains("conflicts=proceed");
+		assertThat(update.getData(null)).isEqualTo(migration.toRequestBody().toString());
+		assertThat(jestClient.getActions(GetTask.class)).hasSize(1);
+	}
+
+	@Test
+	public void updateInPlaceWithScriptMigrationThatFails() {
+		MockJestClient jestClient = new MockJestClient()
+				.respond(UpdateByQuery.class, 200, "{\"task\":\"node:42\"}")
+				.respond(GetTask.class, 200,
+						"{\"completed\":true,\"task\":{\"status\":{}},"
+								+ "\"response\":{\"updated\":1,\"failures\":"
+								+ "[{\"id\":\"1\"}]}}");
+		assertThatThrownBy(() -> new BulkUpdateIndex(jestClient).updateInPlace("test",
+				null, new TestIndexer(new ScriptMigration("ctx.op = 'noop'", null, null)),
+				100, 1, -1)).isInstanceOf(IllegalStateException.class)
+						.hasMessageContaining("node:42");
+	}
+
+	@Test
+	public void updateInPlaceWithScriptMigrationThatHasVersionConflicts() {
+		MockJestClient jestClient = new MockJestClient()
+				.respond(UpdateByQuery.class, 200, "{\"task\":\"node:42\"}")
+				.respond(GetTask.class, 200,
+						"{\"completed\":true,\"task\":{\"status\":{}},"
+								+ "\"response\":{\"updated\":2,\"version_conflicts\":1,"
+								+ "\"failures\":[]}}");
+		assertThatThrownBy(() -> new BulkUpdateIndex(jestClient).updateInPlace("test",
+				null, new TestIndexer(new ScriptMigration("ctx.op = 'noop'", null, null)),
+				100, 1, -1)).isInstanceOf(IllegalStateException.class)
+						.hasMessageContaining("1 version conflict(s)")
+						.hasMessageContaining("2 element(s) have been updated");
+	}
+
+	@Test
+	public void updateInPlaceWithScriptMigrationThatCannotStart() {
+		MockJestClient jestClient = new MockJestClient().respond(UpdateByQuery.class, 400,
+				"{\"error\":\"invalid script\"}");
+		assertThatThrownBy(() -> new BulkUpdateIndex(jestClient).updateInPlace("test",
+				null, new TestIndexer(new ScriptMigration("ctx.op = 'noop'", null, null)),
+				100, 1, -1)).isInstanceOf(IllegalStateException.class)
+						.hasMessageContaining("Failed to start update by query on test");
+		assertThat(jestClient.getActions(GetTask.class)).isEmpty();
+	}
+
+	private BulkableAction<?> updateAction(String id) {
+		return new Update.Builder("{\"doc\":{}}").index("test").type("test").id(id)
+				.build();
+	}
+
+	private BulkableAction<?> indexAction(JsonObject hit) {
+		return new Index.Builder(hit.getAsJsonObject("_source")).index("test")
+				.type("test").id(hit.get("_id").getAsString()).build();
+	}
+
+	private List<JsonObject> hits(int count) {
+		List<JsonObject> hits = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			JsonObject hit = new JsonObject();
+			hit.addProperty("_index", "test");
+			hit.addProperty("_type", "test");
+			hit.addProperty("_id", String.valueOf(i));
+			hit.add("_source", new JsonObject());
+			hits.add(hit);
+		}
+		return hits;
+	}
+
+	private static class TestIndexer extends AbstractIndexer {
+
+		private final ScriptMigration scriptMigration;
+
+		TestIndexer(ScriptMigration scriptMigration) {
+			this.scriptMigration = scriptMigration;
+		}
+
+		@Override
+		public ScriptMigration getScriptMigration() {
+			return this.scriptMigration;
+		}
+
+		@Override
+		protected void migrate(IndexActionContainer container) {
+			throw new IllegalStateException("Should not migrate on the client");
+		}
+
+	}
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Index;
+import io.searchbox.params.Parameters;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link DeadLetterQueue}.
+ *
+ * @author Stephane Nicoll
+ */
+public class DeadLetterQueueTests {
+
+	private static final Gson GSON = new Gson();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void failedActionsAreWrittenWithTheirSource() throws IOException {
+		Path file = this.temporaryFolder.getRoot().toPath().resolve("dead-letters.json");
+		try (DeadLetterQueue queue = new DeadLetterQueue(file)) {
+			Function<JsonObject, List<BulkableAction<?>>> function = queue
+					.trackOrigins((hit) -> Collections
+							.singletonList(new Index.Builder("{\"name\":\"test\"}")
+									.index("target").type("doc")
+									.id("t-" + hit.get("_id").getAsString()).build()));
+			DocumentSink sink = queue.track((
+					failureHandler) -> (actions) -> failureHandler.onFailures(failedItems(
+							actions, (action) -> "t-2".equals(action.getId()))));
+			List<BulkableAction<?>> actions = new ArrayList<>();
+			actions.addAll(function.apply(hit("1")));
+			actions.addAll(function.apply(hit("2")));
+			sink.write(actions);
+			assertThat(queue.getCount()).isEqualTo(1);
+		}
+		JsonArray entries = readEntries(file);
+		assertThat(entries.size()).isEqualTo(1);
+		JsonObject entry = entries.get(0).getAsJsonObject();
+		assertThat(entry.get("operation").getAsString()).isEqualTo("index");
+		assertThat(entry.get("id").getAsString()).isEqualTo("t-2");
+		assertThat(entry.get("status").getAsInt()).isEqualTo(400);
+		assertThat(entry.getAsJsonObject("error").get("type").getAsString())
+				.isEqualTo("mapper_parsing_exception");
+		assertThat(entry.getAsJsonObject("source").get("id").getAsString())
+				.isEqualTo("2");
+		assertThat(entry.getAsJsonObject("document").get("name").getAsString())
+				.isEqualTo("test");
+	}
+
+	@Test
+	public void actionsForTheSameDocumentKeepTheirOrigin() throws IOException {
+		Path file = this.temporaryFolder.getRoot().toPath().resolve("dead-letters.json");
+		try (DeadLetterQueue queue = new DeadLetterQueue(file)) {
+			Function<JsonObject, List<BulkableAction<?>>> function = queue
+					.trackOrigins((hit) -> Collections.singletonList(new Index.Builder(
+							"{\"name\":\"" + hit.get("_id").getAsString() + "\"}")
+									.index("target").type("doc").id("same").build()));
+			List<BulkableAction<?>> actions = new ArrayList<>();
+			actions.addAll(function.apply(hit("1")));
+			actions.addAll(function.apply(hit("2")));
+			DocumentSink sink = queue.track((failureHandler) -> (page) -> failureHandler
+					.onFailures(failedItems(page, (action) -> true)));
+			sink.write(actions);
+		}
+		JsonArray entries = readEntries(file);
+		assertThat(entries.size()).isEqualTo(2);
+		for (int i = 0; i < 2; i++) {
+			JsonObject entry = entries.get(i).getAsJsonObject();
+			String sourceId = entry.getAsJsonObject("source").get("id").getAsString();
+			assertThat(sourceId).isEqualTo(String.valueOf(i + 1));
+			assertThat(entry.getAsJsonObject("document").get("name").getAsString())
+					.isEqualTo(sourceId);
+		}
+	}
+
+	@Test
+	public void actionsWithoutIdKeepTheirOrigin() throws IOException {
+		Path file = this.temporaryFolder.getRoot().toPath().resolve("dead-letters.json");
+		try (DeadLetterQueue queue = new DeadLetterQueue(file)) {
+			Function<JsonObject, List<BulkableAction<?>>> function = queue
+					.trackOrigins((hit) -> Collections.singletonList(new Index.Builder(
+							"{\"name\":\"" + hit.get("_id").getAsString() + "\"}")
+									.index("target").type("doc").build()));
+			List<BulkableAction<?>> actions = new ArrayList<>();
+			actions.addAll(function.apply(hit("1")));
+			actions.addAll(function.apply(hit("2")));
+			List<BulkableAction<?>> failed = Collections.singletonList(actions.get(1));
+			DocumentSink sink = queue.track((failureHandler) -> (page) -> failureHandler
+					.onFailures(failedItems(page, (action) -> failed.contains(action))));
+			sink.write(actions);
+		}
+		JsonArray entries = readEntries(file);
+		assertThat(entries.size()).isEqualTo(1);
+		JsonObject entry = entries.get(0).getAsJsonObject();
+		assertThat(entry.getAsJsonObject("source").get("id").getAsString())
+				.isEqualTo("2");
+		assertThat(entry.getAsJsonObject("document").get("name").getAsString())
+				.isEqualTo("2");
+	}
+
+	@Test
+	public void entriesAreReadInPages() throws IOException {
+		Path file = this.temporaryFolder.getRoot().toPath().resolve("dead-letters.json");
+		try (DeadLetterQueue queue = new DeadLetterQueue(file)) {
+			DocumentSink sink = queue
+					.track((failureHandler) -> (actions) -> failureHandler
+							.onFailures(failedItems(actions, (action) -> true)));
+			Function<JsonObject, List<BulkableAction<?>>> function = queue.trackOrigins(
+					(hit) -> Collections.singletonList(new Index.Builder(new JsonObject())
+							.index("target").type("doc").id(hit.get("_id").getAsString())
+							.build()));
+			List<BulkableAction<?>> actions = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				actions.addAll(function.apply(hit(String.valueOf(i))));
+			}
+			sink.write(actions);
+		}
+		try (DocumentSource source = new DeadLetterDocumentSource(file, null, 2)) {
+			assertThat(source.nextPage().size()).isEqualTo(2);
+			assertThat(source.nextPage().size()).isEqualTo(1);
+			assertThat(source.nextPage().size()).isEqualTo(0);
+		}
+	}
+
+	@Test
+	public void toActionWithCreate() {
+		JsonObject entry = entry("create");
+		entry.addProperty("routing", "r1");
+		entry.add("document", new JsonObject());
+		BulkableAction<?> action = DeadLetterQueue.toAction(entry);
+		assertThat(action).isInstanceOf(Index.class);
+		assertThat(action.getBulkMethodName()).isEqualTo("create");
+		assertThat(action.getId()).isEqualTo("1");
+		assertThat(action.getParameter(Parameters.ROUTING)).containsExactly("r1");
+	}
+
+	@Test
+	public void toActionWithDelete() {
+		BulkableAction<?> action = DeadLetterQueue.toAction(entry("delete"));
+		assertThat(action).isInstanceOf(Delete.class);
+		assertThat(action.getIndex()).isEqualTo("target");
+		assertThat(action.getType()).isEqualTo("doc");
+	}
+
+	// Parse a bulk response in which the matching actions failed
+	private static List<BulkResult.BulkResultItem> failedItems(
+			List<BulkableAction<?>> actions, Predicate<BulkableAction<?>> failed) {
+		Bulk.Builder builder = new Bulk.Builder();
+		actions.forEach(builder::addAction);
+		JsonArray items = new JsonArray();
+		for (BulkableAction<?> action : actions) {
+			JsonObject item = new JsonObject();
+			if (failed.test(action)) {
+				item.addProperty("status", 400);
+				JsonObject error = new JsonObject();
+				error.addProperty("type", "mapper_parsing_exception");
+				item.add("error", error);
+			}
+			else {
+				item.addProperty("status", 201);
+			}
+			JsonObject operation = new JsonObject();
+			operation.add("index", item);
+			items.add(operation);
+		}
+		JsonObject response = new JsonObject();
+		response.addProperty("errors", true);
+		response.add("items", items);
+		return new SerializedBulk(builder, GSON)
+				.createNewElasticSearchResult(response.toString(), 200, null, GSON)
+				.getFailedItems();
+	}
+
+	private static JsonObject entry(String operation) {
+		JsonObject entry = new JsonObject();
+		entry.addProperty("operation", operation);
+		entry.addProperty("index", "target");
+		entry.addProperty("type", "doc");
+		entry.addProperty("id", "1");
+		return entry;
+	}
+
+	private static JsonObject hit(String id) {
+		JsonObject hit = new JsonObject();
+		hit.addProperty("_index", "source");
+		hit.addProperty("_type", "doc");
+		hit.addProperty("_id", id);
+		hit.add("_source", new JsonObject());
+		return hit;
+	}
+
+	private static JsonArray readEntries(Path file) throws IOException {
+		JsonArray entries = new JsonArray();
+		try (DocumentSource source = new DeadLetterDocumentSource(file, null, 100)) {
+			entries.addAll(source.nextPage());
+		}
+		return entries;
+	}
+
+}
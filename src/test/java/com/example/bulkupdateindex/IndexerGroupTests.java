@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult.BulkResultItem;
+import io.searchbox.core.Index;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link IndexerGroup}.
+ *
+ * @author Stephane Nicoll
+ */
+public class IndexerGroupTests {
+
+	private static final Gson GSON = new Gson();
+
+	@Test
+	public void indexersOnlyReceiveTheirTypes() {
+		IndexerGroup group = new IndexerGroup()
+				.add("first", new TestIndexer("first"), "request")
+				.add("second", new TestIndexer("second"), "download")
+				.add("all", new TestIndexer("all"));
+		List<BulkableAction<?>> actions = new ArrayList<>();
+		actions.addAll(group.apply(hit("1", "request")));
+		actions.addAll(group.apply(hit("2", "download")));
+		actions.addAll(group.apply(hit("3", "request")));
+		assertThat(actions).extracting(BulkableAction::getIndex).containsExactly("first",
+				"all", "second", "all", "first", "all");
+		assertThat(group.getStatistics("first").getHits()).isEqualTo(2);
+		assertThat(group.getStatistics("second").getHits()).isEqualTo(1);
+		assertThat(group.getStatistics("all").getHits()).isEqualTo(3);
+		assertThat(group.getStatistics("all").getActions()).isEqualTo(3);
+	}
+
+	@Test
+	public void failingIndexerDoesNotAffectOthers() {
+		IndexerGroup group = new IndexerGroup().add("failing", new AbstractIndexer() {
+			@Override
+			protected void migrate(IndexActionContainer container) {
+				throw new IllegalStateException("test");
+			}
+		}).add("working", new TestIndexer("working"));
+		List<BulkableAction<?>> actions = group.apply(hit("1", "request"));
+		assertThat(actions).hasSize(1);
+		assertThat(group.getStatistics("failing").getErrors()).isEqualTo(1);
+		assertThat(group.getStatistics("working").getErrors()).isEqualTo(0);
+	}
+
+	@Test
+	public void actionsOfFailingIndexerAreDiscarded() {
+		IndexerGroup group = new IndexerGroup().add("working", new TestIndexer("working"))
+				.add("failing", new AbstractIndexer() {
+					@Override
+					protected void migrate(IndexActionContainer container) {
+						container.addAction(new Index.Builder(new JsonObject())
+								.index("failing").type("test").id("1").build());
+						throw new IllegalStateException("test");
+					}
+				});
+		List<BulkableAction<?>> actions = new ArrayList<>();
+		group.emit(hit("1", "request"), actions);
+		assertThat(actions).extracting(BulkableAction::getIndex)
+				.containsExactly("working");
+		assertThat(group.getStatistics("failing").getActions()).isEqualTo(0);
+	}
+
+	@Test
+	public void bulkFailuresAreReportedPerIndexer() throws Exception {
+		IndexerGroup group = new IndexerGroup().add("first", new TestIndexer("first"))
+				.add("second", new TestIndexer("second"));
+		DocumentSink sink = group.track(
+				(failureHandler) -> (actions) -> failureHandler.onFailures(failedItems(
+						actions, (action) -> action.getIndex().equals("second"))));
+		sink.write(group.apply(hit("1", "request")));
+		assertThat(group.getStatistics("first").getFailures()).isEqualTo(0);
+		assertThat(group.getStatistics("second").getFailures()).isEqualTo(1);
+	}
+
+	@Test
+	public void bulkFailuresOfSameDocumentAreReportedPerIndexer() throws Exception {
+		IndexerGroup group = new IndexerGroup().add("first", new TestIndexer("shared"))
+				.add("second", new TestIndexer("shared"));
+		List<BulkableAction<?>> actions = group.apply(hit("1", "request"));
+		BulkableAction<?> secondAction = actions.get(1);
+		DocumentSink sink = group.track((failureHandler) -> (page) -> failureHandler
+				.onFailures(failedItems(page, (action) -> action == secondAction)));
+		sink.write(actions);
+		assertThat(group.getStatistics("first").getFailures()).isEqualTo(0);
+		assertThat(group.getStatistics("second").getFailures()).isEqualTo(1);
+	}
+
+	private static List<BulkResultItem> failedItems(List<BulkableAction<?>> actions,
+			Predicate<BulkableAction<?>> failed) {
+		Bulk.Builder builder = new Bulk.Builder();
+		actions.forEach(builder::addAction);
+		JsonArray items = new JsonArray();
+		for (BulkableAction<?> action : actions) {
+			JsonObject item = new JsonObject();
+			if (failed.test(action)) {
+				item.addProperty("status", 400);
+				JsonObject error = new JsonObject();
+				error.addProperty("type", "mapper_parsing_exception");
+				item.add("error", error);
+			}
+			else {
+				item.addProperty("status", 201);
+			}
+			JsonObject operation = new JsonObject();
+			operation.add("index", item);
+			items.add(operation);
+		}
+		JsonObject response = new JsonObject();
+		response.addProperty("errors", true);
+		response.add("items", items);
+		return new SerializedBulk(builder, GSON)
+				.createNewElasticSearchResult(response.toString(), 200, null, GSON)
+				.getFailedItems();
+	}
+
+	private static JsonObject hit(String id, String type) {
+		JsonObject hit = new JsonObject();
+		hit.addProperty("_index", "projects");
+		hit.addProperty("_type", type);
+		hit.addProperty("_id", id);
+		hit.add("_source", new JsonObject());
+		return hit;
+	}
+
+	private static class TestIndexer extends AbstractIndexer {
+
+		private final String index;
+
+		TestIndexer(String index) {
+			this.index = index;
+		}
+
+		@Override
+		protected void migrate(IndexActionContainer container) {
+			container.addAction(new Index.Builder(new JsonObject()).index(this.index)
+					.type("test").id(container.getId()).build());
+		}
+
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.google.gson.Gson;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+
+/**
+ * A {@link JestClient} that records the actions it executes and answers them with canned
+ * responses. Responses are parsed by the action itself, as they would be with a real
+ * client. An action that matches no response gets an empty successful response.
+ *
+ * @author Stephane Nicoll
+ */
+public class MockJestClient implements JestClient {
+
+	private static final Gson GSON = new Gson();
+
+	private final List<Response> responses = new ArrayList<>();
+
+	private final List<Action<?>> actions = new ArrayList<>();
+
+	/**
+	 * Answer the actions of the specified type with the specified response.
+	 * @param type the type of the actions
+	 * @param status the HTTP status of the response
+	 * @param body the body of the response
+	 * @return this instance
+	 */
+	public MockJestClient respond(Class<?> type, int status, String body) {
+		return respond(type::isInstance, status, body);
+	}
+
+	/**
+	 * Answer the actions matching the specified predicate with the specified response.
+	 * Responses are matched in the order they have been registered.
+	 * @param matcher the predicate of the actions to answer
+	 * @param status the HTTP status of the response
+	 * @param body the body of the response
+	 * @return this instance
+	 */
+	public MockJestClient respond(Predicate<Action<?>> matcher, int status, String body) {
+		this.responses.add(new Response(matcher, status, body, null));
+		return this;
+	}
+
+	/**
+	 * Fail the actions of the specified type with the specified exception.
+	 * @param type the type of the actions
+	 * @param exception the exception to throw
+	 * @return this instance
+	 */
+	public MockJestClient fail(Class<?> type, IOException exception) {
+		this.responses.add(new Response(type::isInstance, 0, null, exception));
+		return this;
+	}
+
+	/**
+	 * Return the actions that have been executed so far.
+	 * @return the executed actions
+	 */
+	public synchronized List<Action<?>> getActions() {
+		return new ArrayList<>(this.actions);
+	}
+
+	/**
+	 * Return the actions of the specified type that have been executed so far.
+	 * @param <T> the type of the actions
+	 * @param type the type of the actions
+	 * @return the executed actions of that type
+	 */
+	public <T> List<T> getActions(Class<T> type) {
+		return getActions().stream().filter(type::isInstance).map(type::cast)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public <T extends JestResult> T execute(Action<T> clientRequest) throws IOException {
+		synchronized (this) {
+			this.actions.add(clientRequest);
+		}
+		Response response = this.responses.stream()
+				.filter((candidate) -> candidate.matcher.test(clientRequest)).findFirst()
+				.orElse(new Response(null, 200, "{}", null));
+		if (response.exception != null) {
+			throw response.exception;
+		}
+		return clientRequest.createNewElasticSearchResult(response.body, response.status,
+				null, GSON);
+	}
+
+	@Override
+	public <T extends JestResult> void executeAsync(Action<T> clientRequest,
+			JestResultHandler<? super T> jestResultHandler) {
+		try {
+			jestResultHandler.completed(execute(clientRequest));
+		}
+		catch (IOException ex) {
+			jestResultHandler.failed(ex);
+		}
+	}
+
+	@Override
+	public void shutdownClient() {
+	}
+
+	@Override
+	public void setServers(Set<String> servers) {
+	}
+
+	private static final class Response {
+
+		private final Predicate<Action<?>> matcher;
+
+		private final int status;
+
+		private final String body;
+
+		private final IOException exception;
+
+		private Response(Predicate<Action<?>> matcher, int status, String body,
+				IOException exception) {
+			this.matcher = matcher;
+			this.status = status;
+			this.body = body;
+			this.exception = exception;
+		}
+
+	}
+
+}
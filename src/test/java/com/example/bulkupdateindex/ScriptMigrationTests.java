@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.Collections;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link ScriptMigration}.
+ *
+ * @author Stephane Nicoll
+ */
+public class ScriptMigrationTests {
+
+	@Test
+	public void requestBodyWithQueryAndParams() {
+		ScriptMigration migration = new ScriptMigration(
+				"ctx._source.count = params.count", "{\"term\":{\"type\":\"test\"}}",
+				Collections.singletonMap("count", 42));
+		JsonObject body = migration.toRequestBody();
+		assertThat(body.getAsJsonObject("query").getAsJsonObject("term").get("type")
+				.getAsString()).isEqualTo("test");
+		JsonObject script = body.getAsJsonObject("script");
+		assertThat(script.get("lang").getAsString()).isEqualTo("painless");
+		assertThat(script.get("source").getAsString())
+				.isEqualTo("ctx._source.count = params.count");
+		assertThat(script.getAsJsonObject("params").get("count").getAsInt())
+				.isEqualTo(42);
+	}
+
+	@Test
+	public void requestBodyWithScriptOnly() {
+		JsonObject body = new ScriptMigration("ctx._source.remove('test')", null, null)
+				.toRequestBody();
+		assertThat(body.has("query")).isFalse();
+		assertThat(body.getAsJsonObject("script").has("params")).isFalse();
+	}
+
+}
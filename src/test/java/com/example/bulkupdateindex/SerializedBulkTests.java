@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.BulkResult.BulkResultItem;
+import io.searchbox.core.Index;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link SerializedBulk}.
+ *
+ * @author Stephane Nicoll
+ */
+public class SerializedBulkTests {
+
+	private final Gson gson = new Gson();
+
+	@Test
+	public void requestTrimmedResponse() {
+		assertThat(createBulk(1).getURI())
+				.contains("filter_path=errors%2Citems.*.status%2Citems.*.error");
+	}
+
+	@Test
+	public void successfulResponseHasNoFailedItems() {
+		BulkResult result = createBulk(2).createNewElasticSearchResult(
+				"{\"errors\":false,\"items\":[{\"index\":{\"status\":201}},"
+						+ "{\"index\":{\"status\":200}}]}",
+				200, "OK", this.gson);
+		assertThat(result.isSucceeded()).isTrue();
+		assertThat(result.getFailedItems()).isEmpty();
+		assertThat(result.getItems()).extracting("status").containsExactly(201, 200);
+	}
+
+	@Test
+	public void failedItemsAreMappedToActions() {
+		BulkResult result = createBulk(3).createNewElasticSearchResult(
+				"{\"errors\":true,\"items\":[{\"index\":{\"status\":201}},"
+						+ "{\"index\":{\"status\":400,\"error\":{\"type\":"
+						+ "\"mapper_parsing_exception\",\"reason\":\"failed\"}}},"
+						+ "{\"index\":{\"status\":201}}]}",
+				200, "OK", this.gson);
+		assertThat(result.isSucceeded()).isFalse();
+		List<BulkResultItem> failedItems = result.getFailedItems();
+		assertThat(failedItems).hasSize(1);
+		BulkResultItem item = failedItems.get(0);
+		assertThat(item.operation).isEqualTo("index");
+		assertThat(item.index).isEqualTo("test");
+		assertThat(item.type).isEqualTo("doc");
+		assertThat(item.id).isEqualTo("1");
+		assertThat(item.status).isEqualTo(400);
+		assertThat(item.errorType).isEqualTo("mapper_parsing_exception");
+		assertThat(item.errorReason).isEqualTo("failed");
+		assertThat(result.getFailedItems()).isSameAs(failedItems);
+	}
+
+	@Test
+	public void failedItemsAreAttributedToSourceActions() {
+		HashedIndex source = (HashedIndex) new HashedIndex.Builder(new JsonObject(),
+				"hash").index("test").type("doc").id("1").build();
+		Bulk.Builder builder = new Bulk.Builder().addAction(source.asCreate());
+		BulkResult result = new SerializedBulk(builder, Collections.singletonList(source),
+				this.gson)
+						.createNewElasticSearchResult(
+								"{\"errors\":true,\"items\":[{\"create\":{\"status\":"
+										+ "400,\"error\":{\"type\":\"test\"}}}]}",
+								200, "OK", this.gson);
+		BulkResultItem item = result.getFailedItems().get(0);
+		assertThat(item.operation).isEqualTo("create");
+		assertThat(SlimBulkResult.getAction(item)).isSameAs(source);
+	}
+
+	@Test
+	public void unsuccessfulRequestIsParsedAsIs() {
+		BulkResult result = createBulk(1).createNewElasticSearchResult(
+				"{\"error\":{\"type\":\"test\"},\"status\":413}", 413, "Too large",
+				this.gson);
+		assertThat(result.isSucceeded()).isFalse();
+		assertThat(result.getJsonObject().get("status").getAsInt()).isEqualTo(413);
+	}
+
+	private SerializedBulk createBulk(int count) {
+		Bulk.Builder builder = new Bulk.Builder();
+		for (int i = 0; i < count; i++) {
+			builder.addAction(new Index.Builder(new JsonObject()).index("test")
+					.type("doc").id(String.valueOf(i)).build());
+		}
+		return new SerializedBulk(builder, this.gson);
+	}
+
+}
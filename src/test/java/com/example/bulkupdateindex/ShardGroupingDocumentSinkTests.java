@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Index;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link ShardGroupingDocumentSink}.
+ *
+ * @author Stephane Nicoll
+ */
+public class ShardGroupingDocumentSinkTests {
+
+	private final ShardRouting routing = new ShardRouting(3, 3);
+
+	private final List<List<String>> batches = Collections
+			.synchronizedList(new ArrayList<>());
+
+	private final DocumentSink delegate = (actions) -> this.batches.add(
+			actions.stream().map(BulkableAction::getId).collect(Collectors.toList()));
+
+	@Test
+	public void actionsAreGroupedByShard() throws IOException {
+		ShardGroupingDocumentSink sink = new ShardGroupingDocumentSink(this.delegate,
+				(index) -> this.routing, 4);
+		List<BulkableAction<?>> actions = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			actions.add(indexAction("test", String.valueOf(i)));
+		}
+		sink.write(actions);
+		assertThat(this.batches).hasSize(3);
+		assertThat(this.batches.stream().mapToInt(List::size).sum()).isEqualTo(20);
+		for (List<String> batch : this.batches) {
+			int shard = this.routing.getShard(batch.get(0), null);
+			for (String id : batch) {
+				assertThat(this.routing.getShard(id, null)).isEqualTo(shard);
+			}
+		}
+	}
+
+	@Test
+	public void actionsAreGroupedByIndex() throws IOException {
+		ShardGroupingDocumentSink sink = new ShardGroupingDocumentSink(this.delegate,
+				(index) -> new ShardRouting(1, 1), 4);
+		sink.write(Arrays.asList(indexAction("a", "1"), indexAction("b", "2"),
+				indexAction("a", "3")));
+		assertThat(this.batches).containsOnlyElementsOf(
+				Arrays.asList(Arrays.asList("1", "3"), Arrays.asList("2")));
+	}
+
+	@Test
+	public void actionsAreNotGroupedWhenRoutingIsUnknown() throws IOException {
+		ShardGroupingDocumentSink sink = new ShardGroupingDocumentSink(this.delegate,
+				(index) -> {
+					throw new IllegalStateException("test");
+				}, 4);
+		sink.write(Arrays.asList(indexAction("test", "1"), indexAction("test", "2")));
+		assertThat(this.batches).containsExactly(Arrays.asList("1", "2"));
+	}
+
+	@Test
+	public void batchesAreWrittenConcurrently() throws IOException {
+		CyclicBarrier barrier = new CyclicBarrier(3);
+		ShardGroupingDocumentSink sink = new ShardGroupingDocumentSink((actions) -> {
+			try {
+				barrier.await(5, TimeUnit.SECONDS);
+			}
+			catch (Exception ex) {
+				throw new IOException("Batches were not written concurrently", ex);
+			}
+			this.delegate.write(actions);
+		}, (index) -> this.routing, 2);
+		List<BulkableAction<?>> actions = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			actions.add(indexAction("test", String.valueOf(i)));
+		}
+		sink.write(actions);
+		assertThat(this.batches).hasSize(3);
+	}
+
+	@Test
+	public void failureIsThrownOnceAllBatchesAreWritten() {
+		ShardGroupingDocumentSink sink = new ShardGroupingDocumentSink((actions) -> {
+			if (actions.get(0).getIndex().equals("b")) {
+				throw new IOException("test");
+			}
+			this.delegate.write(actions);
+		}, (index) -> new ShardRouting(1, 1), 4);
+		assertThatThrownBy(() -> sink.write(Arrays.asList(indexAction("a", "1"),
+				indexAction("b", "2"), indexAction("c", "3"))))
+						.isInstanceOf(IOException.class).hasMessage("test");
+		assertThat(this.batches).containsOnlyElementsOf(
+				Arrays.asList(Arrays.asList("1"), Arrays.asList("3")));
+	}
+
+	private BulkableAction<?> indexAction(String index, String id) {
+		return new Index.Builder(new JsonObject()).index(index).type("test").id(id)
+				.build();
+	}
+
+}
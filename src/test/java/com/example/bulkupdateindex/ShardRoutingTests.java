@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link ShardRouting}.
+ *
+ * @author Stephane Nicoll
+ */
+public class ShardRoutingTests {
+
+	@Test
+	public void hashMatchesElasticsearch() {
+		assertThat(ShardRouting.hash("hell")).isEqualTo(0x5a0cb7c3);
+		assertThat(ShardRouting.hash("hello")).isEqualTo(0xd7c31989);
+		assertThat(ShardRouting.hash("hello w")).isEqualTo(0x22ab2984);
+		assertThat(ShardRouting.hash("hello wo")).isEqualTo(0xdf0ca123);
+		assertThat(ShardRouting.hash("hello wor")).isEqualTo(0xe7744d61);
+		assertThat(ShardRouting.hash("The quick brown fox jumps over the lazy dog"))
+				.isEqualTo(0xe07db09c);
+		assertThat(ShardRouting.hash("The quick brown fox jumps over the lazy cog"))
+				.isEqualTo(0x4e63d2ad);
+	}
+
+	@Test
+	public void shardUsesRoutingOverId() {
+		ShardRouting routing = new ShardRouting(5, 5);
+		assertThat(routing.getShard("1", "hello"))
+				.isEqualTo(routing.getShard("2", "hello"))
+				.isEqualTo(Math.floorMod(0xd7c31989, 5));
+		assertThat(routing.getShard("hello", null))
+				.isEqualTo(Math.floorMod(0xd7c31989, 5));
+	}
+
+	@Test
+	public void shardWithRoutingShards() {
+		ShardRouting routing = new ShardRouting(2, 8);
+		assertThat(routing.getShard("hello", null))
+				.isEqualTo(Math.floorMod(0xd7c31989, 8) / 4);
+	}
+
+	@Test
+	public void ofIndexMetadata() {
+		ShardRouting routing = ShardRouting.of(json("{'downloads-1': {'settings': "
+				+ "{'index': {'number_of_shards': '3'}}, 'routing_num_shards': 12}}"),
+				"downloads");
+		assertThat(routing.getNumberOfShards()).isEqualTo(3);
+		assertThat(routing.getShard("hello", null))
+				.isEqualTo(Math.floorMod(0xd7c31989, 12) / 4);
+	}
+
+	@Test
+	public void ofIndexMetadataWithSeveralIndices() {
+		assertThatThrownBy(() -> ShardRouting.of(json("{'a': {}, 'b': {}}"), "test"))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("single index");
+	}
+
+	private static JsonObject json(String content) {
+		return new JsonParser().parse(content.replace('\'', '"')).getAsJsonObject();
+	}
+
+}
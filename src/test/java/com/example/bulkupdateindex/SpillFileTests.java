@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.google.gson.JsonArray;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link SpillFile}.
+ *
+ * @author Stephane Nicoll
+ */
+public class SpillFileTests {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void pagesAreReadInOrder() throws IOException {
+		try (SpillFile spillFile = new SpillFile(
+				this.temporaryFolder.getRoot().toPath())) {
+			spillFile.append(page("a", "b"));
+			spillFile.append(page("c"));
+			assertThat(spillFile.poll()).isEqualTo(page("a", "b"));
+			spillFile.append(page("d"));
+			assertThat(spillFile.poll()).isEqualTo(page("c"));
+			assertThat(spillFile.poll()).isEqualTo(page("d"));
+			assertThat(spillFile.poll()).isNull();
+			assertThat(spillFile.getSpilled()).isEqualTo(3);
+		}
+	}
+
+	@Test
+	public void fileIsDeletedOnClose() throws IOException {
+		Path directory = this.temporaryFolder.getRoot().toPath();
+		try (SpillFile spillFile = new SpillFile(directory)) {
+			spillFile.append(page("a"));
+			assertThat(directory.toFile().list()).hasSize(1);
+		}
+		assertThat(directory.toFile().list()).isEmpty();
+	}
+
+	private static JsonArray page(String... values) {
+		JsonArray page = new JsonArray();
+		for (String value : values) {
+			page.add(value);
+		}
+		return page;
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link TaskTracker}.
+ *
+ * @author Stephane Nicoll
+ */
+public class TaskTrackerTests {
+
+	@Test
+	public void describeStatus() {
+		JsonObject status = new JsonParser()
+				.parse("{\"total\":100,\"updated\":40,\"created\":0,\"deleted\":0,"
+						+ "\"batches\":2,\"noops\":10,\"version_conflicts\":1,"
+						+ "\"throttled_millis\":250}")
+				.getAsJsonObject();
+		assertThat(TaskTracker.describeStatus(status))
+				.isEqualTo("Processed 51/100 elements [created: 0, updated: 40, "
+						+ "batches: 2, noops: 10, version conflicts: 1, throttled: 250ms]");
+	}
+
+	@Test
+	public void describeStatusWithMissingCounters() {
+		JsonObject status = new JsonParser().parse("{\"total\":10,\"created\":4}")
+				.getAsJsonObject();
+		assertThat(TaskTracker.describeStatus(status)).startsWith("Processed 4/10");
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Index;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link UpdatePipeline}.
+ *
+ * @author Stephane Nicoll
+ */
+public class UpdatePipelineTests {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void allElementsAreWritten() throws IOException {
+		CountingDocumentSink sink = new CountingDocumentSink();
+		long count = new UpdatePipeline(3, 2, 2).run(
+				new InMemoryDocumentSource(hits(1000), 10), sink,
+				(hit) -> Collections.singletonList(indexAction(hit)));
+		assertThat(count).isEqualTo(1000);
+		assertThat(sink.getCount()).isEqualTo(1000);
+	}
+
+	@Test
+	public void slowWriterBoundsPendingPages() throws IOException {
+		AtomicInteger transformed = new AtomicInteger();
+		AtomicInteger written = new AtomicInteger();
+		AtomicInteger maxPending = new AtomicInteger();
+		new UpdatePipeline(2, 1, 2).run(new InMemoryDocumentSource(hits(50), 1),
+				(actions) -> {
+					maxPending.accumulateAndGet(transformed.get() - written.get(),
+							Math::max);
+					sleep(5);
+					written.incrementAndGet();
+				}, (hit) -> {
+					transformed.incrementAndGet();
+					return Collections.singletonList(indexAction(hit));
+				});
+		// queued actions, plus one page held by each transformer and the writer
+		assertThat(maxPending.get()).isLessThanOrEqualTo(2 + 2 + 1);
+		assertThat(written.get()).isEqualTo(50);
+	}
+
+	@Test
+	public void memoryLimitsSpillPagesToDisk() throws IOException {
+		File spillDirectory = this.temporaryFolder.newFolder();
+		UpdatePipeline pipeline = new UpdatePipeline(1, 1, 10);
+		pipeline.setMemoryLimits(64, 1024, spillDirectory.toPath());
+		Set<String> ids = ConcurrentHashMap.newKeySet();
+		long count = pipeline.run(new InMemoryDocumentSource(hits(200), 5), (actions) -> {
+			sleep(1);
+			actions.forEach((action) -> ids.add(action.getId()));
+		}, (hit) -> Collections.singletonList(indexAction(hit)));
+		assertThat(count).isEqualTo(200);
+		assertThat(ids).hasSize(200);
+		assertThat(spillDirectory.list()).isEmpty();
+	}
+
+	@Test
+	public void writeFailureStopsPipeline() {
+		UpdatePipeline pipeline = new UpdatePipeline(2, 2, 1);
+		assertThatThrownBy(() -> pipeline.run(new InMemoryDocumentSource(hits(100), 1),
+				(actions) -> {
+					throw new IOException("test");
+				}, (hit) -> Collections.singletonList(indexAction(hit))))
+						.isInstanceOf(IOException.class).hasMessage("test");
+	}
+
+	@Test
+	public void transformFailureStopsPipeline() {
+		UpdatePipeline pipeline = new UpdatePipeline(1, 1, 1);
+		assertThatThrownBy(() -> pipeline.run(new InMemoryDocumentSource(hits(100), 1),
+				new CountingDocumentSink(), (hit) -> {
+					throw new IllegalArgumentException("test");
+				})).isInstanceOf(IllegalStateException.class)
+						.hasRootCauseInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void transformFailureStopsPipelineWhileSpilling() throws IOException {
+		UpdatePipeline pipeline = new UpdatePipeline(1, 1, 1);
+		pipeline.setMemoryLimits(1, 1024, this.temporaryFolder.newFolder().toPath());
+		AtomicInteger pages = new AtomicInteger();
+		JsonArray page = new JsonArray();
+		hits(10).forEach(page::add);
+		assertThatThrownBy(() -> pipeline.run(() -> {
+			sleep(1);
+			return (pages.incrementAndGet() <= 2000) ? page : new JsonArray();
+		}, new CountingDocumentSink(), (hit) -> {
+			throw new IllegalArgumentException("test");
+		})).isInstanceOf(IllegalStateException.class)
+				.hasRootCauseInstanceOf(IllegalArgumentException.class);
+		assertThat(pages.get()).isLessThan(1000);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static BulkableAction<?> indexAction(JsonObject hit) {
+		return new Index.Builder(hit.getAsJsonObject("_source")).index("test")
+				.type("test").id(hit.get("_id").getAsString()).build();
+	}
+
+	private static List<JsonObject> hits(int count) {
+		List<JsonObject> hits = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			JsonObject hit = new JsonObject();
+			hit.addProperty("_id", String.valueOf(i));
+			hit.add("_source", new JsonObject());
+			hits.add(hit);
+		}
+		return hits;
+	}
+
+}
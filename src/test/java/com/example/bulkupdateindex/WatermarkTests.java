@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.BulkResult;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link Watermark}.
+ *
+ * @author Stephane Nicoll
+ */
+public class WatermarkTests {
+
+	private static final Function<JsonObject, List<BulkableAction<?>>> NO_OP = (
+			hit) -> Collections.emptyList();
+
+	@Test
+	public void queryWithNoPreviousValueMatchesAll() {
+		Watermark watermark = new Watermark("test", "test-new", "timestamp", null);
+		assertThat(watermark.toQuery(10)).isEmpty();
+	}
+
+	@Test
+	public void queryWithPreviousValueAppliesOverlap() {
+		Watermark watermark = new Watermark("test", "test-new", "timestamp", 1000L);
+		assertThat(watermark.toQuery(10))
+				.isEqualTo("{\"query\":{\"range\":{\"timestamp\":{\"gte\":990}}}}");
+	}
+
+	@Test
+	public void trackKeepsHighestValue() {
+		Watermark watermark = new Watermark("test", "test-new", "timestamp", 1000L);
+		Function<JsonObject, List<BulkableAction<?>>> function = watermark.track(NO_OP);
+		function.apply(hit(1500L));
+		function.apply(hit(1200L));
+		function.apply(hit(null));
+		assertThat(watermark.getPreviousValue()).isEqualTo(1000L);
+		assertThat(watermark.getCurrentValue()).isEqualTo(1500L);
+	}
+
+	@Test
+	public void trackWithNoHitKeepsPreviousValue() {
+		Watermark watermark = new Watermark("test", "test-new", "timestamp", 1000L);
+		watermark.track(NO_OP);
+		assertThat(watermark.getCurrentValue()).isEqualTo(1000L);
+	}
+
+	@Test
+	public void trackWithNoHitAndNoPreviousValue() {
+		Watermark watermark = new Watermark("test", "test-new", "timestamp", null);
+		watermark.track(NO_OP).apply(hit(null));
+		assertThat(watermark.getCurrentValue()).isNull();
+	}
+
+	@Test
+	public void trackFailuresCountsFailedItems() {
+		Watermark watermark = new Watermark("test", "test-new", "timestamp", 1000L);
+		BulkFailureHandler handler = watermark.trackFailures();
+		assertThat(watermark.getFailures()).isEqualTo(0);
+		handler.onFailures(Arrays.asList(failedItem("1"), failedItem("2")));
+		handler.onFailures(Collections.singletonList(failedItem("3")));
+		assertThat(watermark.getFailures()).isEqualTo(3);
+	}
+
+	private BulkResult.BulkResultItem failedItem(String id) {
+		BulkResult result = new BulkResult(new Gson());
+		return result.new BulkResultItem("index", "test", "test", id, 400, "{}", null,
+				"mapper_parsing_exception", "test");
+	}
+
+	private JsonObject hit(Long timestamp) {
+		JsonObject source = new JsonObject();
+		if (timestamp != null) {
+			source.addProperty("timestamp", timestamp);
+		}
+		JsonObject hit = new JsonObject();
+		hit.add("_source", source);
+		return hit;
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.gson.Gson;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Get;
+import io.searchbox.core.Index;
+import io.searchbox.indices.ForceMerge;
+import io.searchbox.indices.settings.GetSettings;
+import io.searchbox.indices.settings.UpdateSettings;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Tests for {@link WriteOptimizedLifecycle}.
+ *
+ * @author Stephane Nicoll
+ */
+public class WriteOptimizedLifecycleTests {
+
+	private static final String CURRENT_SETTINGS = "{\"test\":{\"settings\":{\"index\":"
+			+ "{\"refresh_interval\":\"1s\",\"number_of_replicas\":\"1\"}}}}";
+
+	private final MockJestClient client = new MockJestClient()
+			.respond(Get.class, 404, "{\"found\":false}")
+			.respond(GetSettings.class, 200, CURRENT_SETTINGS);
+
+	private final WriteOptimizedLifecycle lifecycle = new WriteOptimizedLifecycle(
+			this.client);
+
+	@Test
+	public void runOptimizesAndRestoresSettings() throws IOException {
+		this.lifecycle.run("test", 0, () -> assertThat(updatedSettings()).hasSize(1));
+		List<String> settings = updatedSettings();
+		assertThat(settings).containsExactly(
+				"{\"index\":{\"refresh_interval\":\"-1\",\"number_of_replicas\":0}}",
+				"{\"index\":{\"refresh_interval\":\"1s\",\"number_of_replicas\":\"1\"}}");
+		assertThat(this.client.getActions(Index.class)).hasSize(1);
+		assertThat(this.client.getActions(Delete.class)).hasSize(1);
+		assertThat(this.client.getActions(ForceMerge.class)).isEmpty();
+	}
+
+	@Test
+	public void runForceMergesOnSuccess() throws IOException {
+		this.lifecycle.run("test", 1, () -> {
+		});
+		assertThat(this.client.getActions(ForceMerge.class)).hasSize(1);
+		assertThat(updatedSettings()).hasSize(2);
+	}
+
+	@Test
+	public void runRestoresSettingsWhenOperationFails() {
+		assertThatThrownBy(() -> this.lifecycle.run("test", 1, () -> {
+			throw new IOException("test");
+		})).isInstanceOf(IOException.class).hasMessage("test");
+		assertThat(this.client.getActions(ForceMerge.class)).isEmpty();
+		assertThat(updatedSettings()).hasSize(2);
+		assertThat(this.client.getActions(Delete.class)).hasSize(1);
+	}
+
+	@Test
+	public void runRestoresSettingsWhenForceMergeFails() {
+		this.client.fail(ForceMerge.class, new IOException("merge"));
+		assertThatThrownBy(() -> this.lifecycle.run("test", 1, () -> {
+		})).isInstanceOf(IOException.class).hasMessage("merge");
+		assertThat(updatedSettings()).hasSize(2);
+		assertThat(this.client.getActions(Delete.class)).hasSize(1);
+	}
+
+	@Test
+	public void runKeepsOperationFailureWhenRestoreFails() {
+		this.client.fail(Delete.class, new IOException("restore"));
+		Throwable ex = catchThrowable(() -> this.lifecycle.run("test", 1, () -> {
+			throw new IOException("test");
+		}));
+		assertThat(ex).isInstanceOf(IOException.class).hasMessage("test");
+		assertThat(ex.getSuppressed()).hasSize(1);
+		assertThat(ex.getSuppressed()[0]).hasMessage("restore");
+		assertThat(updatedSettings()).hasSize(2);
+	}
+
+	@Test
+	public void runKeepsForceMergeFailureWhenRestoreFails() {
+		this.client.fail(ForceMerge.class, new IOException("merge"));
+		this.client.fail(Delete.class, new IOException("restore"));
+		Throwable ex = catchThrowable(() -> this.lifecycle.run("test", 1, () -> {
+		}));
+		assertThat(ex).isInstanceOf(IOException.class).hasMessage("merge");
+		assertThat(ex.getSuppressed()).hasSize(1);
+		assertThat(ex.getSuppressed()[0]).hasMessage("restore");
+	}
+
+	@Test
+	public void runRestoresSettingsSavedByPreviousRun() throws IOException {
+		MockJestClient client = new MockJestClient().respond(Get.class, 200,
+				"{\"found\":true,\"_source\":{\"settings\":"
+						+ "{\"refresh_interval\":\"30s\",\"number_of_replicas\":2}}}");
+		new WriteOptimizedLifecycle(client).run("test", 0, () -> {
+		});
+		assertThat(client.getActions(GetSettings.class)).isEmpty();
+		assertThat(client.getActions(Index.class)).isEmpty();
+		assertThat(client.getActions(UpdateSettings.class).get(1).getData(new Gson()))
+				.isEqualTo(
+						"{\"index\":{\"refresh_interval\":\"30s\",\"number_of_replicas\":2}}");
+	}
+
+	private List<String> updatedSettings() {
+		Gson gson = new Gson();
+		return this.client.getActions(UpdateSettings.class).stream()
+				.map((action) -> action.getData(gson)).collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.action;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link UpdateByQuery}.
+ *
+ * @author Stephane Nicoll
+ */
+public class UpdateByQueryTests {
+
+	@Test
+	public void uriTargetsIndexAndType() {
+		UpdateByQuery action = new UpdateByQuery.Builder("{}").addIndex("test")
+				.addType("doc").build();
+		assertThat(action.getURI()).isEqualTo("test/doc/_update_by_query");
+		assertThat(action.getRestMethodName()).isEqualTo("POST");
+	}
+
+	@Test
+	public void uriWithParameters() {
+		UpdateByQuery action = new UpdateByQuery.Builder("{}").addIndex("test").slices(4)
+				.requestsPerSecond(500).async().proceedOnConflicts().build();
+		assertThat(action.getURI()).startsWith("test/_update_by_query?").contains(
+				"slices=4", "requests_per_second=500.0", "wait_for_completion=false",
+				"conflicts=proceed");
+	}
+
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.dataset;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.example.bulkupdateindex.BulkUpdateIndex;
+import com.example.bulkupdateindex.DocumentSource;
+import com.example.bulkupdateindex.snapshot.SnapshotWriter;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Index;
+
+/**
+ * Generate synthetic {@code initializr} requests and {@code download} statistics, shaped
+ * like the hits of a search, to benchmark indexers at scale. Values follow skewed
+ * distributions: a few dependencies, versions and countries dominate while a long tail is
+ * still represented. A fraction of the documents carry dirty version strings and error
+ * states.
+ * <p>
+ * The same seed always produces the same documents, in the same order. An instance is not
+ * thread-safe.
+ *
+ * @author Stephane Nicoll
+ */
+public class DatasetGenerator {
+
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+	private static final Zipf DEPENDENCIES = new Zipf(1.1, "web", "data-jpa", "security",
+			"actuator", "devtools", "lombok", "thymeleaf", "h2", "mysql", "postgresql",
+			"validation", "jdbc", "data-rest", "webflux", "mail", "cache", "data-redis",
+			"data-mongodb", "kafka", "amqp", "cloud-eureka", "cloud-config-client",
+			"batch", "websocket", "session", "flyway", "liquibase", "freemarker",
+			"jersey", "quartz", "oauth2-client", "cloud-gateway", "data-elasticsearch",
+			"integration", "vaadin");
+
+	private static final Zipf BOOT_VERSIONS = new Zipf(1.0, "2.1.1.RELEASE",
+			"2.0.6.RELEASE", "1.5.17.RELEASE", "2.1.0.RELEASE", "2.1.2.BUILD-SNAPSHOT",
+			"2.2.0.M1", "1.5.18.BUILD-SNAPSHOT", "2.0.7.BUILD-SNAPSHOT", "1.4.7.RELEASE",
+			"2.1.0.RC1", "1.3.8.RELEASE", "2.1.x", "1.5.x.BUILD-SNAPSHOT");
+
+	private static final String[] DIRTY_VERSIONS = { "", "${spring-boot.version}",
+			"2.1.1", "2..1.RELEASE", "2.1.1-RELEASE", "v2.1.1.RELEASE", "latest",
+			"2.1.1.release" };
+
+	private static final Zipf TYPES = new Zipf(1.5, "maven-project", "gradle-project",
+			"maven-build", "gradle-build");
+
+	private static final Zipf JAVA_VERSIONS = new Zipf(1.5, "1.8", "11", "1.7", "10");
+
+	private static final Zipf LANGUAGES = new Zipf(2.0, "java", "kotlin", "groovy");
+
+	private static final Zipf CLIENTS = new Zipf(1.2, "spring", "IntelliJ IDEA",
+			"eclipse", "curl", "vscode", "netbeans", "httpie");
+
+	private static final Zipf COUNTRIES = new Zipf(1.0, "US", "CN", "IN", "DE", "FR",
+			"GB", "BR", "JP", "KR", "RU", "NL", "ES", "IT", "CA", "PL", "BE", "SE", "CH",
+			"ID", "VN");
+
+	private static final Zipf PROJECTS = new Zipf(0.8, "spring-boot", "spring-framework",
+			"spring-security", "spring-data", "spring-batch", "spring-integration",
+			"spring-cloud");
+
+	private static final Zipf STAT_SOURCES = new Zipf(1.5, "central", "jcenter",
+			"spring");
+
+	private static final String[] RELEASE_TRAINS = { "Hopper", "Ingalls", "Kay",
+			"Lovelace", "Moore" };
+
+	private static final String[] DIRTY_STAT_VERSIONS = { "${spring.version}", "",
+			"?4.1.0.RELEASE", "4%2E1%2E6%2ERELEASE", "3..0.RELEASE", "2.0-m1",
+			"[4.3,5.0)", "4.3.+", "LATEST" };
+
+	private final SplittableRandom random;
+
+	private final long startTimestamp;
+
+	private final int days;
+
+	private long requests;
+
+	private long downloads;
+
+	/**
+	 * Create a generator with the specified seed, for requests generated in 2018.
+	 * @param seed the seed
+	 */
+	public DatasetGenerator(long seed) {
+		this(seed, LocalDate.of(2018, 1, 1), 365);
+	}
+
+	/**
+	 * Create a generator with the specified seed.
+	 * @param seed the seed
+	 * @param start the first day requests are generated
+	 * @param days the number of days requests are spread over
+	 */
+	public DatasetGenerator(long seed, LocalDate start, int days) {
+		this.random = new SplittableRandom(seed);
+		this.startTimestamp = start.toEpochDay() * DAY;
+		this.days = days;
+	}
+
+	/**
+	 * Generate the next {@code request} hit.
+	 * @return a request hit
+	 */
+	public JsonObject nextRequest() {
+		long timestamp = this.startTimestamp
+				+ this.random.nextLong((long) this.days * DAY);
+		JsonObject source = new JsonObject();
+		source.addProperty("generationTimestamp", timestamp);
+		if (chance(0.9)) {
+			source.addProperty("clientId", CLIENTS.next(this.random));
+			source.addProperty("clientVersion", this.random.nextInt(1, 5) + "."
+					+ this.random.nextInt(10) + "." + this.random.nextInt(20));
+		}
+		String ip = this.random.nextInt(1, 224) + "." + this.random.nextInt(256) + "."
+				+ this.random.nextInt(256) + "." + this.random.nextInt(1, 255);
+		source.addProperty("requestIp", ip);
+		if (chance(0.97)) {
+			source.addProperty("requestIpv4", ip);
+		}
+		source.addProperty("groupId",
+				chance(0.8) ? "com.example" : "org.acme.app" + this.random.nextInt(1000));
+		source.addProperty("artifactId",
+				chance(0.7) ? "demo" : "service" + this.random.nextInt(1000));
+		if (chance(0.95)) {
+			source.addProperty("packageName", "com.example.demo");
+		}
+		source.addProperty("bootVersion",
+				chance(0.02) ? pick(DIRTY_VERSIONS) : BOOT_VERSIONS.next(this.random));
+		String javaVersion = JAVA_VERSIONS.next(this.random);
+		String language = LANGUAGES.next(this.random);
+		String packaging = chance(0.9) ? "jar" : "war";
+		String type = TYPES.next(this.random);
+		JsonArray dependencies = new JsonArray();
+		nextDependencies().forEach(dependencies::add);
+		JsonArray invalidDependencies = new JsonArray();
+		boolean invalid = chance(0.03);
+		String error = invalid ? pick("javaVersion", "language", "packaging", "type",
+				"dependencies", "message") : null;
+		if ("javaVersion".equals(error)) {
+			javaVersion = pick("abc", "1.6", "12-ea");
+		}
+		else if ("language".equals(error)) {
+			language = pick("c", "scala", "");
+		}
+		else if ("packaging".equals(error)) {
+			packaging = pick("pom", "ear");
+		}
+		else if ("type".equals(error)) {
+			type = pick("build", "ant-project");
+		}
+		else if ("dependencies".equals(error)) {
+			invalidDependencies.add(pick("h3", "mongo", "spring-web", "jpa"));
+		}
+		else if ("message".equals(error)) {
+			source.addProperty("errorMessage", "Something went wrong");
+		}
+		source.addProperty("javaVersion", javaVersion);
+		source.addProperty("language", language);
+		source.addProperty("packaging", packaging);
+		source.addProperty("type", type);
+		source.add("dependencies", dependencies);
+		source.addProperty("invalid", invalid);
+		source.addProperty("invalidJavaVersion", "javaVersion".equals(error));
+		source.addProperty("invalidLanguage", "language".equals(error));
+		source.addProperty("invalidPackaging", "packaging".equals(error));
+		source.addProperty("invalidType", "type".equals(error));
+		source.add("invalidDependencies", invalidDependencies);
+		if (chance(0.95)) {
+			source.addProperty("requestCountry", COUNTRIES.next(this.random));
+		}
+		int year = Instant.ofEpochMilli(timestamp).atOffset(ZoneOffset.UTC).getYear();
+		return hit("initializr-" + year, "request", "r" + (this.requests++), source);
+	}
+
+	private Set<String> nextDependencies() {
+		// Most projects have a handful of dependencies, a few have many more
+		int count = (int) Math.min(-Math.log(1 - this.random.nextDouble()) * 3, 25);
+		Set<String> dependencies = new LinkedHashSet<>();
+		for (int i = 0; i < count * 2 && dependencies.size() < count; i++) {
+			dependencies.add(DEPENDENCIES.next(this.random));
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Generate the next {@code download} hit, holding the statistics of a module for a
+	 * month.
+	 * @param maxStats the maximum number of statistics of the hit
+	 * @return a download hit
+	 */
+	public JsonObject nextDownload(int maxStats) {
+		LocalDate month = LocalDate.ofEpochDay(this.startTimestamp / DAY)
+				.withDayOfMonth(1).plusMonths(this.random.nextInt(12));
+		String projectId = PROJECTS.next(this.random);
+		boolean releaseTrain = "spring-data".equals(projectId) && chance(0.3);
+		JsonObject source = new JsonObject();
+		source.addProperty("from", month.toEpochDay() * DAY);
+		source.addProperty("to", month.plusMonths(1).toEpochDay() * DAY - 1000);
+		source.addProperty("projectId", projectId);
+		source.addProperty("groupId",
+				"org.springframework" + (projectId.equals("spring-framework") ? ""
+						: "." + projectId.substring(7)));
+		source.addProperty("artifactId", releaseTrain ? "spring-data-releasetrain"
+				: projectId + "-module" + this.random.nextInt(20));
+		JsonArray stats = new JsonArray();
+		int size = this.random.nextInt(1, maxStats + 1);
+		for (int i = 0; i < size; i++) {
+			JsonObject stat = new JsonObject();
+			stat.addProperty("source", STAT_SOURCES.next(this.random));
+			stat.addProperty("version",
+					releaseTrain ? nextReleaseTrainVersion() : nextStatVersion());
+			// Counts are heavily skewed, a few versions account for most downloads
+			stat.addProperty("count", (long) Math.pow(10, this.random.nextDouble() * 6));
+			stats.add(stat);
+		}
+		source.add("stats", stats);
+		return hit("projects", "download", "d" + (this.downloads++), source);
+	}
+
+	private String nextStatVersion() {
+		if (chance(0.05)) {
+			return pick(DIRTY_STAT_VERSIONS);
+		}
+		String version = this.random.nextInt(1, 6) + "." + this.random.nextInt(4) + "."
+				+ this.random.nextInt(25);
+		double qualifier = this.random.nextDouble();
+		if (qualifier < 0.7) {
+			return version + ".RELEASE";
+		}
+		if (qualifier < 0.8) {
+			return version;
+		}
+		if (qualifier < 0.9) {
+			return version + ".BUILD-SNAPSHOT";
+		}
+		return version + pick(".M", ".RC") + this.random.nextInt(1, 4);
+	}
+
+	private String nextReleaseTrainVersion() {
+		String name = pick(RELEASE_TRAINS);
+		return chance(0.3) ? name + "-RELEASE"
+				: name + "-SR" + this.random.nextInt(1, 15);
+	}
+
+	/**
+	 * Return a {@link DocumentSource} that pages through the specified number of
+	 * generated requests.
+	 * @param count the number of requests
+	 * @param pageSize the size of a page
+	 * @return a document source
+	 */
+	public DocumentSource requests(long count, int pageSize) {
+		return new GeneratedDocumentSource(this::nextRequest, count, pageSize);
+	}
+
+	/**
+	 * Return a {@link DocumentSource} that pages through the specified number of
+	 * generated downloads.
+	 * @param count the number of downloads
+	 * @param pageSize the size of a page
+	 * @param maxStats the maximum number of statistics of a download
+	 * @return a document source
+	 */
+	public DocumentSource downloads(long count, int pageSize, int maxStats) {
+		return new GeneratedDocumentSource(() -> nextDownload(maxStats), count, pageSize);
+	}
+
+	/**
+	 * Write the hits of the specified source as a snapshot that can be replayed.
+	 * @param source the source of the hits
+	 * @param directory the directory of the snapshot
+	 * @param hitsPerChunk the maximum number of hits in a chunk
+	 * @return the number of hits that have been written
+	 * @throws IOException if the snapshot could not be written
+	 * @see com.example.bulkupdateindex.BulkUpdateIndex#replay
+	 */
+	public static long writeSnapshot(DocumentSource source, Path directory,
+			int hitsPerChunk) throws IOException {
+		long count = 0;
+		try (SnapshotWriter writer = new SnapshotWriter(directory, hitsPerChunk)) {
+			JsonArray page = source.nextPage();
+			while (page.size() > 0) {
+				for (int i = 0; i < page.size(); i++) {
+					writer.write(page.get(i).getAsJsonObject());
+				}
+				count += page.size();
+				page = source.nextPage();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Index the hits of the specified source as they are, for instance to load a test
+	 * cluster.
+	 * @param bulkUpdateIndex the bulk update index to use
+	 * @param source the source of the hits
+	 * @return the number of hits that have been indexed
+	 * @throws IOException if an index operation fails
+	 */
+	public static long load(BulkUpdateIndex bulkUpdateIndex, DocumentSource source)
+			throws IOException {
+		long count = 0;
+		JsonArray page = source.nextPage();
+		while (page.size() > 0) {
+			List<BulkableAction<?>> actions = new ArrayList<>(page.size());
+			for (JsonElement element : page) {
+				JsonObject hit = element.getAsJsonObject();
+				actions.add(new Index.Builder(hit.getAsJsonObject("_source"))
+						.index(hit.get("_index").getAsString())
+						.type(hit.get("_type").getAsString())
+						.id(hit.get("_id").getAsString()).build());
+			}
+			bulkUpdateIndex.write(actions, actions.size());
+			count += page.size();
+			page = source.nextPage();
+		}
+		return count;
+	}
+
+	private boolean chance(double probability) {
+		return this.random.nextDouble() < probability;
+	}
+
+	private String pick(String... values) {
+		return values[this.random.nextInt(values.length)];
+	}
+
+	private static JsonObject hit(String index, String type, String id,
+			JsonObject source) {
+		JsonObject hit = new JsonObject();
+		hit.addProperty("_index", index);
+		hit.addProperty("_type", type);
+		hit.addProperty("_id", id);
+		hit.add("_source", source);
+		return hit;
+	}
+
+	/**
+	 * Pick values following a Zipf distribution: the n-th value is picked with a
+	 * probability proportional to {@code 1 / n^exponent}.
+	 */
+	private static final class Zipf {
+
+		private final String[] values;
+
+		private final double[] cumulative;
+
+		private Zipf(double exponent, String... values) {
+			this.values = values;
+			this.cumulative = new double[values.length];
+			double total = 0;
+			for (int i = 0; i < values.length; i++) {
+				total += 1 / Math.pow(i + 1, exponent);
+				this.cumulative[i] = total;
+			}
+			for (int i = 0; i < values.length; i++) {
+				this.cumulative[i] /= total;
+			}
+		}
+
+		String next(SplittableRandom random) {
+			double value = random.nextDouble();
+			for (int i = 0; i < this.cumulative.length; i++) {
+				if (value < this.cumulative[i]) {
+					return this.values[i];
+				}
+			}
+			return this.values[this.values.length - 1];
+		}
+
+	}
+
+}
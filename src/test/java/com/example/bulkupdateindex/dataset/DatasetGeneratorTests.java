@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.dataset;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.example.bulkupdateindex.DocumentSource;
+import com.example.bulkupdateindex.download.ModuleIndexer;
+import com.example.bulkupdateindex.project.ProjectIndexer;
+import com.example.bulkupdateindex.snapshot.SnapshotDocumentSource;
+import com.example.bulkupdateindex.snapshot.SnapshotReader;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link DatasetGenerator}.
+ *
+ * @author Stephane Nicoll
+ */
+public class DatasetGeneratorTests {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void sameSeedGeneratesSameDocuments() {
+		DatasetGenerator first = new DatasetGenerator(42);
+		DatasetGenerator second = new DatasetGenerator(42);
+		for (int i = 0; i < 100; i++) {
+			assertThat(first.nextRequest()).isEqualTo(second.nextRequest());
+			assertThat(first.nextDownload(10)).isEqualTo(second.nextDownload(10));
+		}
+	}
+
+	@Test
+	public void differentSeedsGenerateDifferentDocuments() {
+		assertThat(new DatasetGenerator(1).nextRequest())
+				.isNotEqualTo(new DatasetGenerator(2).nextRequest());
+	}
+
+	@Test
+	public void requestsCanBeIndexed() throws Exception {
+		ProjectIndexer indexer = new ProjectIndexer();
+		int invalid = 0;
+		try (DocumentSource source = new DatasetGenerator(7).requests(5000, 1000)) {
+			for (JsonElement hit : readAll(source)) {
+				assertThat(indexer.index(hit.getAsJsonObject())).hasSize(1);
+				if (hit.getAsJsonObject().getAsJsonObject("_source").get("invalid")
+						.getAsBoolean()) {
+					invalid++;
+				}
+			}
+		}
+		assertThat(invalid).isBetween(50, 300);
+	}
+
+	@Test
+	public void downloadsCanBeIndexed() throws Exception {
+		ModuleIndexer indexer = new ModuleIndexer();
+		try (DocumentSource source = new DatasetGenerator(7).downloads(200, 50, 100)) {
+			for (JsonElement hit : readAll(source)) {
+				JsonObject download = hit.getAsJsonObject();
+				int stats = download.getAsJsonObject("_source").getAsJsonArray("stats")
+						.size();
+				assertThat(stats).isBetween(1, 100);
+				assertThat(indexer.index(download)).hasSize(stats);
+			}
+		}
+		// Dirty versions such as ${spring.version} have no generation
+		assertThat(indexer.getAnomalyReporter().getCount("No generation information"))
+				.isGreaterThan(0);
+	}
+
+	@Test
+	public void writeSnapshot() throws IOException {
+		Path directory = this.temporaryFolder.getRoot().toPath();
+		long count = DatasetGenerator.writeSnapshot(
+				new DatasetGenerator(3).requests(250, 100), directory, 100);
+		assertThat(count).isEqualTo(250);
+		SnapshotReader reader = new SnapshotReader(directory);
+		List<Path> chunks = reader.getChunks();
+		assertThat(chunks).hasSize(3);
+		try (DocumentSource source = new SnapshotDocumentSource(reader, chunks, 1000)) {
+			assertThat(source.nextPage().size()).isEqualTo(250);
+		}
+	}
+
+	private static JsonArray readAll(DocumentSource source) throws IOException {
+		JsonArray hits = new JsonArray();
+		JsonArray page = source.nextPage();
+		while (page.size() > 0) {
+			hits.addAll(page);
+			page = source.nextPage();
+		}
+		return hits;
+	}
+
+}
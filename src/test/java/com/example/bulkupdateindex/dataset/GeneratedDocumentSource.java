@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.dataset;
+
+import java.util.function.Supplier;
+
+import com.example.bulkupdateindex.DocumentSource;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * A {@link DocumentSource} that generates a fixed number of hits on demand, so that large
+ * datasets do not have to be held in memory.
+ *
+ * @author Stephane Nicoll
+ * @see DatasetGenerator
+ */
+class GeneratedDocumentSource implements DocumentSource {
+
+	private final Supplier<JsonObject> generator;
+
+	private final int pageSize;
+
+	private long remaining;
+
+	GeneratedDocumentSource(Supplier<JsonObject> generator, long count, int pageSize) {
+		this.generator = generator;
+		this.remaining = count;
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public JsonArray nextPage() {
+		JsonArray page = new JsonArray();
+		while (this.remaining > 0 && page.size() < this.pageSize) {
+			page.add(this.generator.get());
+			this.remaining--;
+		}
+		return page;
+	}
+
+}
@@ -19,8 +19,12 @@ package com.example.bulkupdateindex.download;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
 
+import com.example.bulkupdateindex.AnomalyReporter;
 import com.example.bulkupdateindex.IndexActionContainer;
+import com.example.bulkupdateindex.support.VersionGenerations;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import io.searchbox.action.BulkableAction;
@@ -82,12 +86,54 @@ public class ModuleIndexerTests {
 		assertThat(container.getActions()).hasSize(7);
 	}
 
+	@Test
+	public void releaseTrainMigrationWithGenerations() {
+		this.indexer.setVersionGenerations(VersionGenerations.loadDefault());
+		IndexActionContainer container = migrate("module/release-train-input.json");
+		assertThat(generation(container, 0)).isNull();
+		assertThat(generation(container, 4)).isEqualTo("train Gosling EOL");
+		assertThat(generation(container, 7)).isNull();
+	}
+
+	@Test
+	public void nonStandardMigrationReportsAnomalies() {
+		migrate("module/non-standard-input.json");
+		AnomalyReporter anomalyReporter = this.indexer.getAnomalyReporter();
+		assertThat(anomalyReporter.getCount(StatHandler.NO_GENERATION)).isEqualTo(15);
+		assertThat(anomalyReporter.getCount(StatHandler.NO_GENERATION, "com.example",
+				"spring-test", "${spring.version}")).isEqualTo(5);
+	}
+
+	@Test
+	public void statsWithoutSourceAreSkipped() {
+		this.indexer.setVersionGenerations(VersionGenerations.loadDefault());
+		IndexActionContainer container = migrate("module/incomplete-input.json");
+		assertThat(container.getActions()).hasSize(1);
+		JsonObject json = assertIndexAction(container.getActions().get(0));
+		assertThat(json.has("projectId")).isFalse();
+		assertThat(json.getAsJsonObject("version").get("id").getAsString())
+				.isEqualTo("1.0.0.RELEASE");
+		assertThat(generation(container, 0)).isNull();
+		assertThat(this.indexer.getAnomalyReporter().getCount(StatHandler.NO_SOURCE,
+				"org.springframework.plugin", "spring-plugin-metadata")).isEqualTo(140);
+	}
+
 	@Test
 	public void simpleIndexReturnActions() {
 		JsonObject source = read("module/simple-input.json");
 		assertThat(this.indexer.index(source)).hasSize(4);
 	}
 
+	@Test
+	public void documentIdsAreStableAndUnique() {
+		List<String> ids = migrate("module/release-train-input.json").getActions()
+				.stream().map(BulkableAction::getId).collect(Collectors.toList());
+		assertThat(ids).doesNotHaveDuplicates();
+		assertThat(migrate("module/release-train-input.json").getActions().stream()
+				.map(BulkableAction::getId).collect(Collectors.toList()))
+						.containsExactlyElementsOf(ids);
+	}
+
 	private void assertDownload(IndexActionContainer container, int index, String version,
 			String major, String minor, long count) {
 		JsonObject source = container.getSource();
@@ -120,10 +166,17 @@ public class ModuleIndexerTests {
 		}
 	}
 
+	private String generation(IndexActionContainer container, int index) {
+		JsonObject version = assertIndexAction(container.getActions().get(index))
+				.getAsJsonObject("version");
+		return version.has("generation") ? version.get("generation").getAsString() : null;
+	}
+
 	private JsonObject assertIndexAction(BulkableAction<?> action) {
 		assertThat(action).isInstanceOf(Index.class);
 		assertThat(action.getIndex()).isEqualTo("downloads");
-		assertThat(action.getRestMethodName()).isEqualTo("POST");
+		assertThat(action.getId()).isNotNull();
+		assertThat(action.getRestMethodName()).isEqualTo("PUT");
 		assertThat(action.getType()).isEqualTo("download");
 		return (JsonObject) new DirectFieldAccessor(action).getPropertyValue("payload");
 	}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.geoip;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link CountryResolver}.
+ *
+ * @author Stephane Nicoll
+ */
+public class CountryResolverTests {
+
+	private final CountingDatabase database = new CountingDatabase();
+
+	@Test
+	public void resolveUsesCache() {
+		CountryResolver resolver = new CountryResolver(this.database, 100);
+		assertThat(resolver.resolve("10.0.0.1")).isEqualTo("BE");
+		assertThat(resolver.resolve("10.0.0.1")).isEqualTo("BE");
+		assertThat(this.database.lookups.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void resolveCachesUnknownAddresses() {
+		CountryResolver resolver = new CountryResolver(this.database, 100);
+		assertThat(resolver.resolve("192.168.0.1")).isNull();
+		assertThat(resolver.resolve("192.168.0.1")).isNull();
+		assertThat(this.database.lookups.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void resolveEvictsLeastRecentlyUsedAddresses() {
+		// A single entry per segment, addresses below map to the same segment
+		CountryResolver resolver = new CountryResolver(this.database, 16);
+		resolver.resolve("10.0.0.1");
+		resolver.resolve("10.16.0.1");
+		resolver.resolve("10.0.0.1");
+		assertThat(this.database.lookups.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void resolveInvalidAddress() {
+		CountryResolver resolver = new CountryResolver(this.database, 100);
+		assertThat(resolver.resolve("not-an-ip")).isNull();
+		assertThat(this.database.lookups.get()).isEqualTo(0);
+	}
+
+	private static class CountingDatabase extends IpRangeDatabase {
+
+		private final AtomicInteger lookups = new AtomicInteger();
+
+		CountingDatabase() {
+			super(ByteBuffer.allocate(8).putInt(0, 0x49505242));
+		}
+
+		@Override
+		public String lookup(int ip) {
+			this.lookups.incrementAndGet();
+			return ((ip >>> 24) == 10) ? "BE" : null;
+		}
+
+	}
+
+}
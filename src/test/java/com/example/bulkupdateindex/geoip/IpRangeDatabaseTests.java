@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.geoip;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link IpRangeDatabase}.
+ *
+ * @author Stephane Nicoll
+ */
+public class IpRangeDatabaseTests {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void lookupMatchesRangeBoundaries() throws IOException {
+		IpRangeDatabase database = create("# test", "1.0.0.0,1.0.0.255,AU",
+				"81.240.0.0,81.247.255.255,be", "", "200.0.0.0,255.255.255.255,BR");
+		assertThat(database.size()).isEqualTo(3);
+		assertThat(database.lookup("1.0.0.0")).isEqualTo("AU");
+		assertThat(database.lookup("1.0.0.255")).isEqualTo("AU");
+		assertThat(database.lookup("81.245.12.1")).isEqualTo("BE");
+		assertThat(database.lookup("255.255.255.255")).isEqualTo("BR");
+	}
+
+	@Test
+	public void lookupOutsideOfRanges() throws IOException {
+		IpRangeDatabase database = create("1.0.0.0,1.0.0.255,AU",
+				"200.0.0.0,200.0.0.255,BR");
+		assertThat(database.lookup("0.255.255.255")).isNull();
+		assertThat(database.lookup("1.0.1.0")).isNull();
+		assertThat(database.lookup("200.0.1.0")).isNull();
+	}
+
+	@Test
+	public void lookupWithInvalidAddress() throws IOException {
+		IpRangeDatabase database = create("1.0.0.0,1.0.0.255,AU");
+		assertThat(database.lookup("1.0.0")).isNull();
+		assertThat(database.lookup("::1")).isNull();
+		assertThat(database.lookup((String) null)).isNull();
+	}
+
+	@Test
+	public void convertWithOverlappingRanges() {
+		assertThatThrownBy(() -> create("1.0.0.0,1.0.0.255,AU", "1.0.0.128,1.0.1.255,BE"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("1.0.0.128");
+	}
+
+	@Test
+	public void convertWithOverlappingRangesDoesNotWriteTable() throws IOException {
+		Path csv = this.temporaryFolder.newFile().toPath();
+		Files.write(csv, Arrays.asList("1.0.0.0,1.0.0.255,AU", "1.0.0.128,1.0.1.255,BE"),
+				StandardCharsets.UTF_8);
+		Path table = this.temporaryFolder.getRoot().toPath().resolve("test.table");
+		assertThatThrownBy(() -> IpRangeDatabase.convert(csv, table))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(table).doesNotExist();
+	}
+
+	@Test
+	public void parseIpv4() {
+		assertThat(IpRangeDatabase.parseIpv4("127.0.0.1")).isEqualTo(0x7F000001L);
+		assertThat(IpRangeDatabase.parseIpv4("255.255.255.255")).isEqualTo(0xFFFFFFFFL);
+		assertThat(IpRangeDatabase.parseIpv4("256.0.0.1")).isEqualTo(-1);
+		assertThat(IpRangeDatabase.parseIpv4("1..0.1")).isEqualTo(-1);
+		assertThat(IpRangeDatabase.parseIpv4("1.0.0.1.")).isEqualTo(-1);
+		assertThat(IpRangeDatabase.parseIpv4("1.0.0.1.2")).isEqualTo(-1);
+		assertThat(IpRangeDatabase.parseIpv4("")).isEqualTo(-1);
+	}
+
+	private IpRangeDatabase create(String... lines) throws IOException {
+		Path csv = this.temporaryFolder.newFile().toPath();
+		Files.write(csv, Arrays.asList(lines), StandardCharsets.UTF_8);
+		Path table = this.temporaryFolder.newFile().toPath();
+		IpRangeDatabase.convert(csv, table);
+		return IpRangeDatabase.open(table);
+	}
+
+}
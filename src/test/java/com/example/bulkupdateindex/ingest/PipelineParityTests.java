@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.ingest;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link PipelineParity}.
+ *
+ * @author Stephane Nicoll
+ */
+public class PipelineParityTests {
+
+	@Test
+	public void diffIgnoresMemberOrderAndNumberType() {
+		assertThat(PipelineParity.diff("1", json("{'a': 1, 'b': {'c': 'x'}}"),
+				json("{'b': {'c': 'x'}, 'a': 1.0}"))).isEmpty();
+	}
+
+	@Test
+	public void diffMissingAndUnexpectedMembers() {
+		assertThat(PipelineParity.diff("1", json("{'a': 1, 'b': {'c': 'x'}}"),
+				json("{'b': {}, 'd': true}"))).containsExactly(
+						"1.a: expected 1 but was missing",
+						"1.b.c: expected \"x\" but was missing", "1.d: unexpected true");
+	}
+
+	@Test
+	public void diffArrays() {
+		assertThat(PipelineParity.diff("1", json("{'a': ['x', 'y']}"),
+				json("{'a': ['x', 'z']}")))
+						.containsExactly("1.a[1]: expected \"y\" but was \"z\"");
+		assertThat(
+				PipelineParity.diff("1", json("{'a': ['x', 'y']}"), json("{'a': ['x']}")))
+						.containsExactly("1.a: expected [\"x\",\"y\"] but was [\"x\"]");
+	}
+
+	private static JsonElement json(String json) {
+		return new JsonParser().parse(json.replace('\'', '"'));
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.job;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.example.bulkupdateindex.BulkUpdateIndex;
+import com.example.bulkupdateindex.MockJestClient;
+import com.example.bulkupdateindex.WriteMode;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Index;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchScroll;
+import io.searchbox.indices.Stats;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link IndexJobScheduler}.
+ *
+ * @author Stephane Nicoll
+ */
+public class IndexJobSchedulerTests {
+
+	@Test
+	public void jobsAreOrderedByPriorityAndSize() {
+		IndexJobScheduler scheduler = new IndexJobScheduler(null, null, 1, 1);
+		List<String> started = Collections.synchronizedList(new ArrayList<>());
+		List<IndexJob> jobs = scheduler.run(
+				Arrays.asList(new IndexJob("small", 10, 0),
+						new IndexJob("large", 1000, 0), new IndexJob("urgent", 1, 5),
+						new IndexJob("medium", 100, 0)),
+				(context) -> started.add(context.getIndex()));
+		assertThat(started).containsExactly("urgent", "large", "medium", "small");
+		assertThat(jobs).extracting(IndexJob::getState)
+				.containsOnly(IndexJob.State.COMPLETED);
+	}
+
+	@Test
+	public void concurrentJobsAreCapped() {
+		IndexJobScheduler scheduler = new IndexJobScheduler(null, null, 2, 1);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<IndexJob> jobs = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			jobs.add(new IndexJob("index-" + i, i, 0));
+		}
+		scheduler.run(jobs, (context) -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(20);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+		});
+		assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+	}
+
+	@Test
+	public void runWithNoJob() {
+		IndexJobScheduler scheduler = new IndexJobScheduler(null, null, 2, 1);
+		assertThat(scheduler.run(Collections.emptyList(), (context) -> {
+			throw new IllegalStateException("Should not be invoked");
+		})).isEmpty();
+	}
+
+	@Test
+	public void runWithPatternAppliesFilter() throws IOException {
+		MockJestClient client = new MockJestClient().respond(Stats.class, 200,
+				"{\"indices\":{\"first\":" + docs(10) + ",\"first-new\":" + docs(10)
+						+ ",\"second\":" + docs(20) + "}}");
+		IndexJobScheduler scheduler = new IndexJobScheduler(client, null, 2, 1);
+		List<String> started = Collections.synchronizedList(new ArrayList<>());
+		List<IndexJob> jobs = scheduler.run("*", (index) -> !index.endsWith("-new"),
+				(index) -> 0, (context) -> started.add(context.getIndex()));
+		assertThat(jobs).extracting(IndexJob::getIndex).containsExactly("second",
+				"first");
+		assertThat(started).containsOnly("first", "second");
+	}
+
+	@Test
+	public void failedJobDoesNotStopOthers() {
+		IndexJobScheduler scheduler = new IndexJobScheduler(null, null, 1, 1);
+		List<IndexJob> jobs = scheduler.run(
+				Arrays.asList(new IndexJob("first", 2, 0), new IndexJob("second", 1, 0)),
+				(context) -> {
+					if (context.getIndex().equals("first")) {
+						throw new IllegalStateException("test");
+					}
+				});
+		assertThat(jobs).extracting(IndexJob::getState)
+				.containsExactly(IndexJob.State.FAILED, IndexJob.State.COMPLETED);
+		assertThat(jobs.get(0).getFailure()).hasMessage("test");
+	}
+
+	@Test
+	public void updateUsesBulkSinkOfBulkUpdateIndex() {
+		MockJestClient client = new MockJestClient()
+				.respond(SearchScroll.class, 200,
+						"{\"_scroll_id\":\"1\",\"hits\":{\"hits\":[]}}")
+				.respond(Search.class, 200, "{\"_scroll_id\":\"1\",\"hits\":{\"hits\":"
+						+ "[{\"_index\":\"first\",\"_type\":\"doc\",\"_id\":\"1\","
+						+ "\"_source\":{}}]}}");
+		MockJestClient bulkClient = new MockJestClient().respond(Bulk.class, 200,
+				"{\"errors\":false,\"items\":[{\"index\":{\"status\":201}}]}");
+		BulkUpdateIndex bulkUpdateIndex = new BulkUpdateIndex(client);
+		bulkUpdateIndex.setBulkClient(bulkClient);
+		IndexJobScheduler scheduler = new IndexJobScheduler(client, bulkUpdateIndex, 1,
+				1);
+		List<IndexJob> jobs = scheduler.run(
+				Collections.singletonList(new IndexJob("first", 1, 0)),
+				(context) -> context.update(new Search.Builder("").addIndex("first"), 10,
+						WriteMode.INDEX,
+						(hit) -> Collections.singletonList(new Index.Builder("{}")
+								.index("target").type("doc").id("1").build())));
+		assertThat(jobs).extracting(IndexJob::getState)
+				.containsExactly(IndexJob.State.COMPLETED);
+		assertThat(client.getActions(Bulk.class)).isEmpty();
+		assertThat(bulkClient.getActions(Bulk.class)).hasSize(1);
+	}
+
+	private static String docs(long count) {
+		return "{\"primaries\":{\"docs\":{\"count\":" + count + "}}}";
+	}
+
+}
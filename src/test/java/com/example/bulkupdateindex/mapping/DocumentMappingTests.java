@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.mapping;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.example.bulkupdateindex.ingest.IngestPipeline;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link DocumentMapping}.
+ *
+ * @author Stephane Nicoll
+ */
+public class DocumentMappingTests {
+
+	@Test
+	public void mapFieldsInDeclarationOrder() {
+		DocumentMapping<JsonObject> mapping = DocumentMapping.builder()
+				.map("b", FieldType.STRING).map("a", FieldType.LONG).build();
+		assertThat(mapping.apply(json("{'a': '42', 'b': 12, 'c': true}")).toString())
+				.isEqualTo("{\"b\":\"12\",\"a\":42}");
+	}
+
+	@Test
+	public void mapWithRename() {
+		DocumentMapping<JsonObject> mapping = DocumentMapping.builder()
+				.map("name", "title", FieldType.STRING).build();
+		assertThat(mapping.apply(json("{'name': 'test'}")))
+				.isEqualTo(json("{'title': 'test'}"));
+	}
+
+	@Test
+	public void mapNestedTarget() {
+		DocumentMapping<JsonObject> mapping = DocumentMapping.builder()
+				.mapOptional("clientId", "client.id", FieldType.STRING)
+				.map("count", FieldType.LONG)
+				.mapOptional("clientVersion", "client.version", FieldType.STRING).build();
+		assertThat(mapping.apply(json("{'clientId': 'curl', 'count': 2}")).toString())
+				.isEqualTo("{\"client\":{\"id\":\"curl\"},\"count\":2}");
+	}
+
+	@Test
+	public void mapNestedTargetWithNoValueIsPresent() {
+		DocumentMapping<JsonObject> mapping = DocumentMapping.builder()
+				.mapOptional("clientId", "client.id", FieldType.STRING).build();
+		assertThat(mapping.apply(json("{}"))).isEqualTo(json("{'client': {}}"));
+	}
+
+	@Test
+	public void mapNestedSource() {
+		DocumentMapping<JsonObject> mapping = DocumentMapping.builder()
+				.map("client.id", "clientId", FieldType.STRING).build();
+		assertThat(mapping.apply(json("{'client': {'id': 'curl'}}")))
+				.isEqualTo(json("{'clientId': 'curl'}"));
+	}
+
+	@Test
+	public void mapOptionalWithMissingOrNullValue() {
+		DocumentMapping<JsonObject> mapping = DocumentMapping.builder()
+				.mapOptional("a", FieldType.STRING).mapOptional("b", FieldType.STRING)
+				.build();
+		assertThat(mapping.apply(json("{'a': null}"))).isEqualTo(json("{}"));
+	}
+
+	@Test
+	public void mapRequiredWithMissingValue() {
+		DocumentMapping<JsonObject> mapping = DocumentMapping.builder()
+				.map("a", FieldType.STRING).build();
+		assertThatThrownBy(() -> mapping.apply(json("{}")))
+				.isInstanceOf(IllegalStateException.class).hasMessageContaining("'a'");
+	}
+
+	@Test
+	public void compute() {
+		DocumentMapping<JsonObject> mapping = DocumentMapping.builder().compute("size",
+				(source) -> new JsonPrimitive(source.get("name").getAsString().length()))
+				.compute("none", (source) -> null).build();
+		assertThat(mapping.apply(json("{'name': 'test'}")))
+				.isEqualTo(json("{'size': 4}"));
+	}
+
+	@Test
+	public void computeWithViewBindsSourceOnce() {
+		AtomicInteger binds = new AtomicInteger();
+		DocumentMapping<String> mapping = DocumentMapping.builder((source) -> {
+			binds.incrementAndGet();
+			return source.get("name").getAsString();
+		}).compute("size", (name) -> new JsonPrimitive(name.length()))
+				.compute("upper", (name) -> new JsonPrimitive(name.toUpperCase()))
+				.build();
+		assertThat(mapping.apply(json("{'name': 'test'}")))
+				.isEqualTo(json("{'size': 4, 'upper': 'TEST'}"));
+		assertThat(binds.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void computeWithBoundView() {
+		DocumentMapping<String> mapping = DocumentMapping.<String>builder((source) -> {
+			throw new IllegalStateException("Should not bind");
+		}).map("name", FieldType.STRING)
+				.compute("size", (name) -> new JsonPrimitive(name.length())).build();
+		assertThat(mapping.apply(json("{'name': 'test'}"), "other"))
+				.isEqualTo(json("{'name': 'test', 'size': 5}"));
+	}
+
+	@Test
+	public void applyToExistingTarget() {
+		DocumentMapping<JsonObject> mapping = DocumentMapping.builder()
+				.map("a", FieldType.RAW).build();
+		JsonObject target = json("{'b': 1}");
+		mapping.applyTo(json("{'a': [1, 2]}"), target);
+		assertThat(target).isEqualTo(json("{'b': 1, 'a': [1, 2]}"));
+	}
+
+	@Test
+	public void mapSameTargetTwice() {
+		assertThatThrownBy(() -> DocumentMapping.builder().map("a", FieldType.STRING)
+				.map("b", "a", FieldType.STRING))
+						.isInstanceOf(IllegalStateException.class)
+						.hasMessageContaining("already mapped");
+	}
+
+	@Test
+	public void mapNestedTargetOnValue() {
+		assertThatThrownBy(() -> DocumentMapping.builder().map("a", FieldType.STRING)
+				.map("b", "a.b", FieldType.STRING))
+						.isInstanceOf(IllegalStateException.class)
+						.hasMessageContaining("not an object");
+	}
+
+	@Test
+	public void ingestPipelineRenamesAndConvertsFields() {
+		IngestPipeline pipeline = DocumentMapping.builder().map("count", FieldType.LONG)
+				.mapOptional("clientId", "client.id", FieldType.STRING)
+				.map("tags", FieldType.RAW).build().toIngestPipeline("test");
+		assertThat(pipeline.getId()).isEqualTo("test");
+		List<JsonObject> processors = pipeline.getProcessors();
+		assertThat(processors).hasSize(6);
+		assertThat(processors.get(0)).isEqualTo(json(
+				"{'convert': {'field': 'count', 'type': 'long', 'ignore_missing': false}}"));
+		assertThat(processors.get(1))
+				.isEqualTo(json("{'set': {'field': 'client', 'value': {}}}"));
+		assertThat(processors.get(2)).isEqualTo(json("{'rename': {'field': 'clientId', "
+				+ "'target_field': 'client.id', 'ignore_missing': true}}"));
+		assertThat(processors.get(3)).isEqualTo(json("{'convert': {'field': "
+				+ "'client.id', 'type': 'string', 'ignore_missing': true}}"));
+		assertThat(processors.get(4).getAsJsonObject("script").getAsJsonObject("params"))
+				.isEqualTo(json("{'field': 'tags'}"));
+		assertThat(processors.get(5).getAsJsonObject("script").getAsJsonObject("params"))
+				.isEqualTo(json("{'fields': ['count', 'client', 'tags']}"));
+	}
+
+	@Test
+	public void ingestPipelineWithComputedField() {
+		IngestPipeline pipeline = DocumentMapping.builder().compute("size",
+				(source) -> new JsonPrimitive(source.size()), "ctx.size = ctx.size()")
+				.build().toIngestPipeline("test");
+		assertThat(pipeline.getProcessors().get(0)).isEqualTo(json(
+				"{'script': {'lang': 'painless', 'source': 'ctx.size = ctx.size()'}}"));
+	}
+
+	@Test
+	public void ingestPipelineWithComputedFieldAndNoScript() {
+		DocumentMapping<JsonObject> mapping = DocumentMapping.builder()
+				.compute("size", (source) -> new JsonPrimitive(source.size())).build();
+		assertThatThrownBy(() -> mapping.toIngestPipeline("test"))
+				.isInstanceOf(IllegalStateException.class).hasMessageContaining("'size'");
+	}
+
+	private static JsonObject json(String content) {
+		return new JsonParser().parse(content.replace('\'', '"')).getAsJsonObject();
+	}
+
+}
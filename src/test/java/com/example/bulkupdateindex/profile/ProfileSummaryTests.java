@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.profile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import jdk.jfr.Recording;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link ProfileSummary}.
+ *
+ * @author Stephane Nicoll
+ */
+public class ProfileSummaryTests {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void summarizeRecording() throws IOException {
+		Path file = this.temporaryFolder.getRoot().toPath().resolve("test.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(FetchEvent.class);
+			recording.enable(BulkRequestEvent.class);
+			recording.start();
+			for (int i = 1; i <= 3; i++) {
+				FetchEvent fetch = new FetchEvent();
+				fetch.begin();
+				fetch.complete(i, 100, 2000);
+			}
+			BulkRequestEvent request = new BulkRequestEvent();
+			request.begin();
+			request.complete(250, 5000, 2);
+			recording.stop();
+			recording.dump(file);
+		}
+		ProfileSummary summary = ProfileSummary.of(file);
+		assertThat(summary.getCount("Fetch")).isEqualTo(3);
+		assertThat(summary.getTotal("Fetch", "hits")).isEqualTo(300);
+		assertThat(summary.getTotal("Fetch", "size")).isEqualTo(6000);
+		assertThat(summary.getCount("BulkRequest")).isEqualTo(1);
+		assertThat(summary.getTotal("BulkRequest", "failedItems")).isEqualTo(2);
+		assertThat(summary.getCount("Migrate")).isEqualTo(0);
+		assertThat(summary.toString()).contains("Fetch", "BulkRequest");
+	}
+
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.example.bulkupdateindex.AbstractIndexer;
+import com.example.bulkupdateindex.IndexActionContainer;
+import com.example.bulkupdateindex.support.Version;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.searchbox.action.BulkableAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Compare the throughput of the migration of a request by {@link ProjectIndexer} with
+ * {@link BaselineProjectIndexer}, a copy of the hand-written migration it replaced that
+ * looks up every field of the source. Both indexers must produce the same document. Not a
+ * test: run the {@link #main(String[])} method with the test classpath.
+ *
+ * @author Stephane Nicoll
+ */
+public final class ProjectIndexerBenchmark {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(ProjectIndexerBenchmark.class);
+
+	private static final int ITERATIONS = 1_000_000;
+
+	private ProjectIndexerBenchmark() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		AbstractIndexer baseline = new BaselineProjectIndexer();
+		AbstractIndexer indexer = new ProjectIndexer();
+		JsonObject hit = readHit("project/simple-input.json");
+		Assert.state(migrate(baseline, hit).equals(migrate(indexer, hit)),
+				"Indexers are not equivalent");
+		for (int round = 1; round <= 5; round++) {
+			long baselineNanos = measure(baseline, hit);
+			long indexerNanos = measure(indexer, hit);
+			logger.info(String.format(
+					"Round %s: baseline %sns/op, indexer %sns/op (%.2fx)", round,
+					baselineNanos, indexerNanos, (double) baselineNanos / indexerNanos));
+		}
+	}
+
+	private static long measure(AbstractIndexer indexer, JsonObject hit) {
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			sink += indexer.index(hit).size();
+		}
+		long nanos = System.nanoTime() - start;
+		Assert.state(sink == ITERATIONS, "Unexpected number of actions");
+		return nanos / ITERATIONS;
+	}
+
+	private static JsonObject migrate(AbstractIndexer indexer, JsonObject hit) {
+		List<BulkableAction<?>> actions = indexer.index(hit);
+		Assert.state(actions.size() == 1, "Unexpected migration of " + hit);
+		return (JsonObject) new DirectFieldAccessor(actions.get(0))
+				.getPropertyValue("payload");
+	}
+
+	private static JsonObject readHit(String location) throws IOException {
+		try (InputStream in = new ClassPathResource(location).getInputStream()) {
+			return new JsonParser()
+					.parse(StreamUtils.copyToString(in, StandardCharsets.UTF_8))
+					.getAsJsonObject();
+		}
+	}
+
+	/**
+	 * The hand-written migration of {@link ProjectIndexer} before requests were bound to
+	 * a {@link ProjectRequest}.
+	 */
+	static class BaselineProjectIndexer extends AbstractIndexer {
+
+		@Override
+		protected void migrate(IndexActionContainer container) {
+			JsonObject source = container.getSource();
+			JsonObject target = initializeDocument(source);
+			indexVersion(source, target);
+			indexDependencies(source, target);
+			indexBuildSystem(source, target);
+			indexClient(source, target);
+			indexErrorState(source, target);
+			container.addIndexAction(container.getIndex() + "-new", "request",
+					container.getId(), target);
+		}
+
+		private JsonObject initializeDocument(JsonObject source) {
+			JsonObject object = new JsonObject();
+			object.addProperty("generationTimestamp",
+					source.get("generationTimestamp").getAsLong());
+			object.addProperty("type", source.get("type").getAsString());
+			object.addProperty("groupId", source.get("groupId").getAsString());
+			object.addProperty("artifactId", source.get("artifactId").getAsString());
+			object.addProperty("javaVersion", source.get("javaVersion").getAsString());
+			object.addProperty("language", source.get("language").getAsString());
+			object.addProperty("packaging", source.get("packaging").getAsString());
+			String packageName = safeGetString(source, "packageName");
+			if (packageName != null) {
+				object.addProperty("packageName", packageName);
+			}
+			return object;
+		}
+
+		private void indexVersion(JsonObject source, JsonObject target) {
+			Version version = determineSpringBootVersion(source);
+			if (version != null) {
+				JsonObject versionObject = new JsonObject();
+				versionObject.addProperty("id", version.toString());
+				versionObject.addProperty("major",
+						String.format("%s", version.getMajor()));
+				if (version.getMinor() != null) {
+					versionObject.addProperty("minor", String.format("%s.%s",
+							version.getMajor(), version.getMinor()));
+				}
+				target.add("version", versionObject);
+			}
+		}
+
+		private void indexDependencies(JsonObject source, JsonObject target) {
+			List<String> dependencies = determineRawDependencies(source);
+			JsonObject dependenciesObject = new JsonObject();
+			JsonArray values = new JsonArray();
+			dependencies.forEach(values::add);
+			dependenciesObject.add("values", values);
+			String dependenciesId = computeDependenciesId(dependencies);
+			dependenciesObject.addProperty("id", dependenciesId);
+			dependenciesObject.addProperty("count", dependencies.size());
+			target.add("dependencies", dependenciesObject);
+		}
+
+		private void indexBuildSystem(JsonObject source, JsonObject target) {
+			String type = source.get("type").getAsString();
+			String[] elements = type.split("-");
+			if (elements.length == 2) {
+				target.addProperty("buildSystem", elements[0]);
+			}
+		}
+
+		private void indexClient(JsonObject source, JsonObject target) {
+			JsonObject clientObject = new JsonObject();
+			String clientId = safeGetString(source, "clientId");
+			if (clientId != null) {
+				clientObject.addProperty("id", clientId);
+			}
+			String clientVersion = safeGetString(source, "clientVersion");
+			if (clientVersion != null) {
+				clientObject.addProperty("version", clientVersion);
+			}
+			String requestIp = safeGetString(source, "requestIpv4");
+			if (requestIp != null) {
+				clientObject.addProperty("ip", requestIp);
+			}
+			String requestCountry = safeGetString(source, "requestCountry");
+			if (requestCountry != null) {
+				clientObject.addProperty("country", requestCountry);
+			}
+			target.add("client", clientObject);
+		}
+
+		private void indexErrorState(JsonObject source, JsonObject target) {
+			boolean invalid = source.get("invalid").getAsBoolean();
+			if (!invalid) {
+				return;
+			}
+			JsonObject errorState = new JsonObject();
+			errorState.addProperty("invalid", true);
+			if (safeGetBoolean(source, "invalidJavaVersion")) {
+				errorState.addProperty("javaVersion", true);
+			}
+			if (safeGetBoolean(source, "invalidLanguage")) {
+				errorState.addProperty("language", true);
+			}
+			if (safeGetBoolean(source, "invalidPackaging")) {
+				errorState.addProperty("packaging", true);
+			}
+			if (safeGetBoolean(source, "invalidType")) {
+				errorState.addProperty("type", true);
+			}
+			JsonArray invalidDependencies = source.getAsJsonArray("invalidDependencies");
+			if (invalidDependencies != null && invalidDependencies.size() > 0) {
+				errorState.add("dependencies", invalidDependencies);
+			}
+			String message = safeGetString(source, "errorMessage");
+			if (message != null) {
+				errorState.addProperty("message", message);
+			}
+			target.add("errorState", errorState);
+		}
+
+		private boolean safeGetBoolean(JsonObject source, String propertyName) {
+			JsonElement element = source.get(propertyName);
+			return element != null && element.getAsBoolean();
+		}
+
+		private String safeGetString(JsonObject source, String propertyName) {
+			JsonElement element = source.get(propertyName);
+			return (element != null) ? element.getAsString() : null;
+		}
+
+		private Version determineSpringBootVersion(JsonObject source) {
+			JsonElement versionEl = source.get("bootVersion");
+			if (versionEl != null) {
+				String bootVersion = versionEl.getAsString();
+				Version version = Version.safeParse(bootVersion);
+				if (version != null && version.getMajor() != null) {
+					return version;
+				}
+			}
+			return null;
+		}
+
+		private List<String> determineRawDependencies(JsonObject source) {
+			JsonArray array = source.getAsJsonArray("dependencies");
+			if (array == null) {
+				return Collections.emptyList();
+			}
+			List<String> result = new ArrayList<>();
+			for (JsonElement jsonElement : array) {
+				result.add(jsonElement.getAsString());
+			}
+			return result;
+		}
+
+		private String computeDependenciesId(List<String> dependencies) {
+			if (ObjectUtils.isEmpty(dependencies)) {
+				return "_none";
+			}
+			Collections.sort(dependencies);
+			return StringUtils.collectionToDelimitedString(dependencies, " ");
+		}
+
+	}
+
+}
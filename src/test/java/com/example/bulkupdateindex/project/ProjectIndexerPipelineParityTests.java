@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.bulkupdateindex.HashedIndex;
+import com.example.bulkupdateindex.IndexActionContainer;
+import com.example.bulkupdateindex.ingest.PipelineParity;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestClientFactory;
+import io.searchbox.client.config.HttpClientConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Parity tests between {@link ProjectIndexer#getIngestPipeline()} and the client-side
+ * migration of {@link ProjectIndexer}, using all the project fixtures. The content hash
+ * is not part of the comparison as the pipeline does not compute it. Requires a cluster,
+ * whose url is set using the {@code elasticsearch.url} system property.
+ *
+ * @author Stephane Nicoll
+ */
+public class ProjectIndexerPipelineParityTests {
+
+	private static final Gson GSON = new Gson();
+
+	private final ProjectIndexer indexer = new ProjectIndexer();
+
+	private JestClient jestClient;
+
+	@Before
+	public void createClient() {
+		String url = System.getProperty("elasticsearch.url");
+		assumeTrue("No cluster available", url != null);
+		JestClientFactory factory = new JestClientFactory();
+		factory.setHttpClientConfig(new HttpClientConfig.Builder(url).build());
+		this.jestClient = factory.getObject();
+	}
+
+	@After
+	public void closeClient() {
+		if (this.jestClient != null) {
+			this.jestClient.shutdownClient();
+		}
+	}
+
+	@Test
+	public void pipelineMigratesFixturesLikeIndexer() throws IOException {
+		List<String> differences = new PipelineParity(this.jestClient)
+				.compare(this.indexer.getIngestPipeline(), readFixtures(), this::migrate);
+		assertThat(differences).isEmpty();
+	}
+
+	private JsonObject migrate(JsonObject hit) {
+		IndexActionContainer container = new IndexActionContainer(hit);
+		this.indexer.migrate(container);
+		JsonObject document = ((HashedIndex) container.getActions().get(0)).getDocument()
+				.deepCopy();
+		// The hash of the serialized document is only computed by the client
+		document.remove(HashedIndex.CONTENT_HASH_PROPERTY);
+		return document;
+	}
+
+	private List<JsonObject> readFixtures() throws IOException {
+		List<JsonObject> hits = new ArrayList<>();
+		for (Resource resource : new PathMatchingResourcePatternResolver()
+				.getResources("classpath:project/*.json")) {
+			try (InputStream in = resource.getInputStream()) {
+				hits.add(GSON.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8),
+						JsonObject.class));
+			}
+		}
+		return hits;
+	}
+
+}
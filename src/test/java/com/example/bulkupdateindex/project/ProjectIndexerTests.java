@@ -21,12 +21,25 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+import com.example.bulkupdateindex.BulkUpdateIndex;
+import com.example.bulkupdateindex.HashedIndex;
 import com.example.bulkupdateindex.IndexActionContainer;
+import com.example.bulkupdateindex.MockJestClient;
+import com.example.bulkupdateindex.WatermarkRepository;
+import com.example.bulkupdateindex.geoip.CountryResolver;
+import com.example.bulkupdateindex.job.IndexJob;
+import com.example.bulkupdateindex.job.IndexJobScheduler;
+import com.example.bulkupdateindex.support.VersionGenerations;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Get;
 import io.searchbox.core.Index;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchScroll;
+import io.searchbox.indices.Stats;
 import org.junit.Test;
 
 import org.springframework.beans.DirectFieldAccessor;
@@ -34,6 +47,7 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.util.StreamUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 /**
  * Tests for {@link ProjectIndexer}.
@@ -58,6 +72,30 @@ public class ProjectIndexerTests {
 		assertThat(version.get("minor").getAsString()).isEqualTo("2.1");
 	}
 
+	@Test
+	public void indexVersionWithSnapshot() {
+		assertVersion("project/simple-version-snapshot.json", "2.1.999.BUILD-SNAPSHOT",
+				"2", "2.1");
+	}
+
+	@Test
+	public void indexVersionWithMilestone() {
+		assertVersion("project/simple-version-milestone.json", "2.2.0.M1", "2", "2.2");
+	}
+
+	@Test
+	public void indexVersionWithReleaseCandidate() {
+		assertVersion("project/simple-version-release-candidate.json", "2.0.0.RC2", "2",
+				"2.0");
+	}
+
+	@Test
+	public void indexVersionWithInvalidVersion() {
+		IndexActionContainer container = migrate("project/simple-version-invalid.json");
+		JsonObject source = assertIndexAction(container.getActions().get(0));
+		assertThat(source.has("version")).isFalse();
+	}
+
 	@Test
 	public void indexDependencies() {
 		IndexActionContainer container = migrate("project/simple-input.json");
@@ -71,6 +109,16 @@ public class ProjectIndexerTests {
 		assertThat(dependencies.get("count").getAsInt()).isEqualTo(2);
 	}
 
+	@Test
+	public void migrateWithMissingRequiredField() {
+		JsonObject hit = read("project/simple-input.json");
+		hit.getAsJsonObject("_source").remove("groupId");
+		Throwable ex = catchThrowable(
+				() -> this.indexer.migrate(new IndexActionContainer(hit)));
+		assertThat(ex).isInstanceOf(IllegalStateException.class)
+				.hasMessage("Missing required field 'groupId'");
+	}
+
 	@Test
 	public void indexBuildSystem() {
 		IndexActionContainer container = migrate("project/simple-input.json");
@@ -93,6 +141,22 @@ public class ProjectIndexerTests {
 		assertThat(client.get("country").getAsString()).isEqualTo("ID");
 	}
 
+	@Test
+	public void indexVersionWithGeneration() {
+		this.indexer.setVersionGenerations(VersionGenerations.loadDefault());
+		IndexActionContainer container = migrate("project/simple-input.json");
+		JsonObject source = assertIndexAction(container.getActions().get(0));
+		JsonObject version = source.get("version").getAsJsonObject();
+		assertThat(version.get("generation").getAsString()).isEqualTo("2.1.x current");
+	}
+
+	@Test
+	public void indexVersionWithoutGenerations() {
+		IndexActionContainer container = migrate("project/simple-input.json");
+		JsonObject source = assertIndexAction(container.getActions().get(0));
+		assertThat(source.get("version").getAsJsonObject().has("generation")).isFalse();
+	}
+
 	@Test
 	public void indexClientWithNoClientInformation() {
 		IndexActionContainer container = migrate("project/simple-input-no-client.json");
@@ -118,6 +182,34 @@ public class ProjectIndexerTests {
 		assertThat(client.size()).isEqualTo(3);
 	}
 
+	@Test
+	public void indexClientWithCountryResolvedFromIp() {
+		this.indexer.setCountryResolver(new CountryResolver(null, 10) {
+			@Override
+			public String resolve(String address) {
+				return "127.0.0.1".equals(address) ? "BE" : null;
+			}
+		});
+		IndexActionContainer container = migrate("project/simple-input-no-country.json");
+		JsonObject source = assertIndexAction(container.getActions().get(0));
+		JsonObject client = source.get("client").getAsJsonObject();
+		assertThat(client.get("country").getAsString()).isEqualTo("BE");
+	}
+
+	@Test
+	public void indexClientWithCountryDoesNotResolveIp() {
+		this.indexer.setCountryResolver(new CountryResolver(null, 10) {
+			@Override
+			public String resolve(String address) {
+				throw new IllegalStateException("Should not be invoked");
+			}
+		});
+		IndexActionContainer container = migrate("project/simple-input.json");
+		JsonObject source = assertIndexAction(container.getActions().get(0));
+		JsonObject client = source.get("client").getAsJsonObject();
+		assertThat(client.get("country").getAsString()).isEqualTo("ID");
+	}
+
 	@Test
 	public void indexClientWithNoIp() {
 		IndexActionContainer container = migrate("project/simple-input-no-ip.json");
@@ -233,14 +325,102 @@ public class ProjectIndexerTests {
 		assertThat(actions).hasSize(1);
 	}
 
+	@Test
+	public void indexContentHashIsStable() {
+		BulkableAction<?> first = migrate("project/simple-input.json").getActions()
+				.get(0);
+		BulkableAction<?> second = migrate("project/simple-input.json").getActions()
+				.get(0);
+		assertThat(first).isInstanceOf(HashedIndex.class);
+		String contentHash = ((HashedIndex) first).getContentHash();
+		assertThat(contentHash).isEqualTo(((HashedIndex) second).getContentHash());
+		assertThat(assertIndexAction(first).get("contentHash").getAsString())
+				.isEqualTo(contentHash);
+	}
+
+	@Test
+	public void indexContentHashChangesWithContent() {
+		HashedIndex valid = (HashedIndex) migrate("project/simple-input.json")
+				.getActions().get(0);
+		HashedIndex invalid = (HashedIndex) migrate(
+				"project/simple-invalid-error-message.json").getActions().get(0);
+		assertThat(valid.getContentHash()).isNotEqualTo(invalid.getContentHash());
+	}
+
+	@Test
+	public void indexRequestsIncrementallyMovesMark() throws IOException {
+		MockJestClient client = mockIncrementalRun(
+				"{\"errors\":false,\"items\":[{\"index\":{\"status\":201}}]}");
+		this.indexer.indexRequestsIncrementally(new BulkUpdateIndex(client),
+				new WatermarkRepository(client), "initializr-2015");
+		List<Index> saved = client.getActions(Index.class);
+		assertThat(saved).hasSize(1);
+		assertThat(saved.get(0).getIndex()).isEqualTo("bulk-update-watermarks");
+	}
+
+	@Test
+	public void indexRequestsIncrementallyWithFailuresDoesNotMoveMark()
+			throws IOException {
+		MockJestClient client = mockIncrementalRun("{\"errors\":true,\"items\":"
+				+ "[{\"index\":{\"status\":400,\"error\":{\"type\":"
+				+ "\"mapper_parsing_exception\",\"reason\":\"test\"}}}]}");
+		this.indexer.indexRequestsIncrementally(new BulkUpdateIndex(client),
+				new WatermarkRepository(client), "initializr-2015");
+		assertThat(client.getActions(Bulk.class)).hasSize(1);
+		assertThat(client.getActions(Index.class)).isEmpty();
+	}
+
+	@Test
+	public void indexRequestsWithPatternSkipsTargetIndices() throws IOException {
+		MockJestClient client = new MockJestClient()
+				.respond(Stats.class, 200,
+						"{\"indices\":{" + "\"initializr-2015\":" + docs(10) + ","
+								+ "\"initializr-2015-new\":" + docs(10) + ","
+								+ "\"initializr-2015-new-20180101000000\":" + docs(10)
+								+ "," + "\"initializr-2016\":" + docs(20) + "}}")
+				.respond(Search.class, 200,
+						"{\"_scroll_id\":\"1\",\"hits\":{\"hits\":[]}}");
+		IndexJobScheduler scheduler = new IndexJobScheduler(client,
+				new BulkUpdateIndex(client), 2, 2);
+		List<IndexJob> jobs = this.indexer.indexRequests(scheduler, "initializr-*");
+		assertThat(jobs).extracting(IndexJob::getIndex).containsExactly("initializr-2016",
+				"initializr-2015");
+		assertThat(jobs).extracting(IndexJob::getState)
+				.containsOnly(IndexJob.State.COMPLETED);
+	}
+
+	private static String docs(long count) {
+		return "{\"primaries\":{\"docs\":{\"count\":" + count + "}}}";
+	}
+
+	private MockJestClient mockIncrementalRun(String bulkResponse) {
+		String hit = read("project/simple-input.json").toString();
+		return new MockJestClient().respond(Get.class, 404, "{\"found\":false}")
+				.respond(SearchScroll.class, 200,
+						"{\"_scroll_id\":\"1\",\"hits\":{\"hits\":[]}}")
+				.respond(Search.class, 200,
+						"{\"_scroll_id\":\"1\",\"hits\":{\"hits\":[" + hit + "]}}")
+				.respond(Bulk.class, 200, bulkResponse);
+	}
+
 	private JsonObject assertIndexAction(BulkableAction<?> action) {
 		assertThat(action).isInstanceOf(Index.class);
 		assertThat(action.getIndex()).isEqualTo("initializr-2015-new");
-		assertThat(action.getRestMethodName()).isEqualTo("POST");
+		assertThat(action.getId()).isEqualTo("AVLHGNWntD7BNNLRBAr5");
+		assertThat(action.getRestMethodName()).isEqualTo("PUT");
 		assertThat(action.getType()).isEqualTo("request");
 		return (JsonObject) new DirectFieldAccessor(action).getPropertyValue("payload");
 	}
 
+	private void assertVersion(String fixture, String id, String major, String minor) {
+		IndexActionContainer container = migrate(fixture);
+		JsonObject source = assertIndexAction(container.getActions().get(0));
+		JsonObject version = source.get("version").getAsJsonObject();
+		assertThat(version.get("id").getAsString()).isEqualTo(id);
+		assertThat(version.get("major").getAsString()).isEqualTo(major);
+		assertThat(version.get("minor").getAsString()).isEqualTo(minor);
+	}
+
 	private IndexActionContainer migrate(String location) {
 		IndexActionContainer container = new IndexActionContainer(read(location));
 		this.indexer.migrate(container);
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.project;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link ProjectRequestTypeAdapter}.
+ *
+ * @author Stephane Nicoll
+ */
+public class ProjectRequestTypeAdapterTests {
+
+	private static final Gson GSON = new Gson();
+
+	@Test
+	public void bindFromStream() {
+		ProjectRequest request = GSON.fromJson(
+				"{\"generationTimestamp\":1451606297000,"
+						+ "\"type\":\"maven-project\",\"requestIpv4\":\"127.0.0.1\","
+						+ "\"dependencies\":[\"web\",\"security\"],\"invalid\":true,"
+						+ "\"invalidType\":true,\"errorMessage\":\"test\"}",
+				ProjectRequest.class);
+		assertThat(request.getGenerationTimestamp()).isEqualTo(1451606297000L);
+		assertThat(request.getType()).isEqualTo("maven-project");
+		assertThat(request.getRequestIp()).isEqualTo("127.0.0.1");
+		assertThat(request.getDependencies()).containsExactly("web", "security");
+		assertThat(request.isInvalid()).isTrue();
+		assertThat(request.isInvalidType()).isTrue();
+		assertThat(request.isInvalidLanguage()).isFalse();
+		assertThat(request.getErrorMessage()).isEqualTo("test");
+	}
+
+	@Test
+	public void bindIgnoresUnknownFields() {
+		ProjectRequest request = GSON.fromJson(
+				"{\"unknown\":{\"nested\":[1,2]},"
+						+ "\"groupId\":\"com.example\",\"other\":[{\"a\":\"b\"}]}",
+				ProjectRequest.class);
+		assertThat(request.getGroupId()).isEqualTo("com.example");
+	}
+
+	@Test
+	public void bindMissingAndNullFields() {
+		ProjectRequest request = GSON.fromJson(
+				"{\"bootVersion\":null,\"dependencies\":null,\"invalid\":null}",
+				ProjectRequest.class);
+		assertThat(request.getBootVersion()).isNull();
+		assertThat(request.getGenerationTimestamp()).isNull();
+		assertThat(request.getDependencies()).isEmpty();
+		assertThat(request.getInvalidDependencies()).isEmpty();
+		assertThat(request.isInvalid()).isFalse();
+	}
+
+	@Test
+	public void bindCoercesValues() {
+		JsonObject source = new JsonObject();
+		source.addProperty("generationTimestamp", "42");
+		source.addProperty("javaVersion", 11);
+		source.addProperty("invalid", "true");
+		ProjectRequest request = ProjectRequest.bind(source);
+		assertThat(request.getGenerationTimestamp()).isEqualTo(42L);
+		assertThat(request.getJavaVersion()).isEqualTo("11");
+		assertThat(request.isInvalid()).isTrue();
+	}
+
+	@Test
+	public void writeCanBeReadBack() {
+		ProjectRequest request = GSON.fromJson(
+				"{\"generationTimestamp\":1451606297000,\"type\":\"maven-project\","
+						+ "\"requestIpv4\":\"127.0.0.1\",\"dependencies\":[\"web\"],"
+						+ "\"invalid\":true,\"invalidDependencies\":[\"acme\"]}",
+				ProjectRequest.class);
+		JsonObject json = GSON.toJsonTree(request).getAsJsonObject();
+		assertThat(json.get("requestIpv4").getAsString()).isEqualTo("127.0.0.1");
+		assertThat(json.has("groupId")).isFalse();
+		ProjectRequest copy = ProjectRequest.bind(json);
+		assertThat(copy.getGenerationTimestamp()).isEqualTo(1451606297000L);
+		assertThat(copy.getType()).isEqualTo("maven-project");
+		assertThat(copy.getRequestIp()).isEqualTo("127.0.0.1");
+		assertThat(copy.getDependencies()).containsExactly("web");
+		assertThat(copy.isInvalid()).isTrue();
+		assertThat(copy.getInvalidDependencies()).containsExactly("acme");
+	}
+
+	@Test
+	public void writeNull() {
+		assertThat(GSON.toJson(null, ProjectRequest.class)).isEqualTo("null");
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.project;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Update;
+import io.searchbox.params.Parameters;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RequestRollup}.
+ *
+ * @author Stephane Nicoll
+ */
+public class RequestRollupTests {
+
+	private static final LocalDate DAY = LocalDate.of(2019, 1, 1);
+
+	private final RequestRollup rollup = new RequestRollup("rollups", 2);
+
+	@Test
+	public void addCountsEachDimension() {
+		this.rollup.add(timestamp(DAY, 10), "2.1", Arrays.asList("web", "security"),
+				"maven", "BE");
+		this.rollup.add(timestamp(DAY, 20), "2.1", Collections.singletonList("web"),
+				"gradle", null);
+		assertThat(this.rollup.getCount(DAY, RequestRollup.VERSION, "2.1")).isEqualTo(2);
+		assertThat(this.rollup.getCount(DAY, RequestRollup.DEPENDENCY, "web"))
+				.isEqualTo(2);
+		assertThat(this.rollup.getCount(DAY, RequestRollup.DEPENDENCY, "security"))
+				.isEqualTo(1);
+		assertThat(this.rollup.getCount(DAY, RequestRollup.BUILD_SYSTEM, "maven"))
+				.isEqualTo(1);
+		assertThat(this.rollup.getCount(DAY, RequestRollup.COUNTRY, "BE")).isEqualTo(1);
+	}
+
+	@Test
+	public void addCountsPerDay() {
+		this.rollup.add(timestamp(DAY, 23), "2.1", Collections.emptyList(), null, null);
+		this.rollup.add(timestamp(DAY.plusDays(1), 0), "2.1", Collections.emptyList(),
+				null, null);
+		assertThat(this.rollup.getCount(DAY, RequestRollup.VERSION, "2.1")).isEqualTo(1);
+		assertThat(this.rollup.getCount(DAY.plusDays(1), RequestRollup.VERSION, "2.1"))
+				.isEqualTo(1);
+	}
+
+	@Test
+	public void flushIsDueAfterInterval() {
+		this.rollup.add(timestamp(DAY, 1), null, Collections.emptyList(), null, null);
+		assertThat(this.rollup.isFlushDue()).isFalse();
+		this.rollup.add(timestamp(DAY, 2), null, Collections.emptyList(), null, null);
+		assertThat(this.rollup.isFlushDue()).isTrue();
+		this.rollup.flush();
+		assertThat(this.rollup.isFlushDue()).isFalse();
+	}
+
+	@Test
+	public void flushCreatesUpsertActions() {
+		this.rollup.add(timestamp(DAY, 10), null, Collections.singletonList("web"), null,
+				null);
+		this.rollup.add(timestamp(DAY, 11), null, Collections.singletonList("web"), null,
+				null);
+		List<BulkableAction<?>> actions = this.rollup.flush();
+		assertThat(actions).hasSize(1);
+		BulkableAction<?> action = actions.get(0);
+		assertThat(action).isInstanceOf(Update.class);
+		assertThat(action.getIndex()).isEqualTo("rollups");
+		assertThat(action.getId()).isEqualTo("2019-01-01:dependency:web");
+		assertThat(action.getParameter(Parameters.RETRY_ON_CONFLICT)).containsExactly(5);
+		assertThat(new Bulk.Builder().addAction(action).build().getData(new Gson()))
+				.contains("\"_retry_on_conflict\":\"5\"");
+		JsonObject payload = new JsonParser().parse(action.getData(new Gson()))
+				.getAsJsonObject();
+		assertThat(payload.getAsJsonObject("script").getAsJsonObject("params")
+				.get("count").getAsLong()).isEqualTo(2);
+		JsonObject upsert = payload.getAsJsonObject("upsert");
+		assertThat(upsert.get("day").getAsString()).isEqualTo("2019-01-01");
+		assertThat(upsert.get("timestamp").getAsLong()).isEqualTo(timestamp(DAY, 0));
+		assertThat(upsert.get("value").getAsString()).isEqualTo("web");
+		assertThat(upsert.get("count").getAsLong()).isEqualTo(2);
+	}
+
+	@Test
+	public void flushOnlySendsNewCounts() {
+		this.rollup.add(timestamp(DAY, 10), "2.1", Collections.emptyList(), null, null);
+		assertThat(this.rollup.flush()).hasSize(1);
+		assertThat(this.rollup.flush()).isEmpty();
+		assertThat(this.rollup.getCount(DAY, RequestRollup.VERSION, "2.1")).isEqualTo(0);
+	}
+
+	private static long timestamp(LocalDate day, int hour) {
+		return day.atTime(hour, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link SnapshotReader}.
+ *
+ * @author Stephane Nicoll
+ */
+public class SnapshotReaderTests {
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void readChunksInOrder() throws IOException {
+		Path directory = this.temp.newFolder().toPath();
+		try (SnapshotWriter writer = new SnapshotWriter(directory, 2)) {
+			for (int i = 0; i < 5; i++) {
+				writer.write(hit(i));
+			}
+		}
+		SnapshotReader reader = new SnapshotReader(directory);
+		List<Path> chunks = reader.getChunks();
+		assertThat(chunks).hasSize(3);
+		assertThat(readIds(reader, chunks.get(0))).containsExactly("0", "1");
+		assertThat(readIds(reader, chunks.get(1))).containsExactly("2", "3");
+		assertThat(readIds(reader, chunks.get(2))).containsExactly("4");
+	}
+
+	@Test
+	public void readHitContent() throws IOException {
+		Path directory = this.temp.newFolder().toPath();
+		JsonObject hit = hit(42);
+		try (SnapshotWriter writer = new SnapshotWriter(directory, 10)) {
+			writer.write(hit);
+		}
+		SnapshotReader reader = new SnapshotReader(directory);
+		try (SnapshotReader.ChunkReader chunk = reader.open(reader.getChunks().get(0))) {
+			assertThat(chunk.next()).isEqualTo(hit);
+			assertThat(chunk.next()).isNull();
+		}
+	}
+
+	@Test
+	public void emptySnapshotHasNoChunk() throws IOException {
+		Path directory = this.temp.newFolder().toPath();
+		new SnapshotWriter(directory, 10).close();
+		assertThat(new SnapshotReader(directory).getChunks()).isEmpty();
+	}
+
+	@Test
+	public void newSnapshotReplacesExistingChunks() throws IOException {
+		Path directory = this.temp.newFolder().toPath();
+		try (SnapshotWriter writer = new SnapshotWriter(directory, 1)) {
+			for (int i = 0; i < 3; i++) {
+				writer.write(hit(i));
+			}
+		}
+		Path other = Files.createFile(directory.resolve("readme.txt"));
+		try (SnapshotWriter writer = new SnapshotWriter(directory, 1)) {
+			writer.write(hit(42));
+		}
+		SnapshotReader reader = new SnapshotReader(directory);
+		List<Path> chunks = reader.getChunks();
+		assertThat(chunks).hasSize(1);
+		assertThat(readIds(reader, chunks.get(0))).containsExactly("42");
+		assertThat(other).exists();
+	}
+
+	private List<String> readIds(SnapshotReader reader, Path chunk) throws IOException {
+		List<String> ids = new ArrayList<>();
+		try (SnapshotReader.ChunkReader hits = reader.open(chunk)) {
+			JsonObject hit = hits.next();
+			while (hit != null) {
+				ids.add(hit.get("_id").getAsString());
+				hit = hits.next();
+			}
+		}
+		return ids;
+	}
+
+	private JsonObject hit(int id) {
+		JsonObject source = new JsonObject();
+		source.addProperty("name", "test-" + id);
+		JsonObject hit = new JsonObject();
+		hit.addProperty("_index", "test");
+		hit.addProperty("_type", "test");
+		hit.addProperty("_id", String.valueOf(id));
+		hit.add("_source", source);
+		return hit;
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.support;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link VersionGenerations}.
+ *
+ * @author Stephane Nicoll
+ */
+public class VersionGenerationsTests {
+
+	private final VersionGenerations generations = VersionGenerations.loadDefault();
+
+	@Test
+	public void classifyVersion() {
+		assertThat(classify("spring-boot", "1.5.19.RELEASE")).isEqualTo("1.5.x EOL");
+		assertThat(classify("spring-boot", "2.1.2.RELEASE")).isEqualTo("2.1.x current");
+		assertThat(classify("spring-framework", "5.1.4.RELEASE"))
+				.isEqualTo("5.1.x current");
+	}
+
+	@Test
+	public void classifyVersionOnLowerBoundWithQualifier() {
+		assertThat(classify("spring-boot", "2.2.0.M1")).isEqualTo("2.2.x next");
+		assertThat(classify("spring-boot", "2.1.0.BUILD-SNAPSHOT"))
+				.isEqualTo("2.1.x current");
+	}
+
+	@Test
+	public void classifyVersionWithMajorMinorOnly() {
+		assertThat(classify("spring-boot", "2.0")).isEqualTo("2.0.x maintenance");
+	}
+
+	@Test
+	public void classifyVersionOutOfRange() {
+		assertThat(classify("spring-boot", "0.5.0.M1")).isNull();
+		assertThat(classify("spring-boot", "3.0.0.M1")).isNull();
+	}
+
+	@Test
+	public void classifyVersionWithUnknownProject() {
+		assertThat(classify("spring-plugin", "1.2.0.RELEASE")).isNull();
+	}
+
+	@Test
+	public void classifyReleaseTrain() {
+		assertThat(classify("spring-data", "Lovelace-SR4"))
+				.isEqualTo("train Lovelace current");
+		assertThat(classify("spring-cloud", "Greenwich.RELEASE"))
+				.isEqualTo("train Greenwich current");
+	}
+
+	@Test
+	public void classifyUnknownReleaseTrain() {
+		assertThat(classify("spring-data", "Codd-SR2")).isNull();
+	}
+
+	@Test
+	public void classifyNonStandardVersion() {
+		assertThat(classify("spring-boot", "${spring-boot.version}")).isNull();
+		assertThat(classify("spring-framework", "2.5.6"))
+				.isEqualTo("4.2.x and earlier EOL");
+	}
+
+	@Test
+	public void classifyWithRangeOnPatch() throws IOException {
+		VersionGenerations generations = load(
+				"test,version,1.0..1.0.5,early\ntest,version,1.0.5..1.1,late");
+		assertThat(generations.classify("test", Version.parse("1.0.4.RELEASE")))
+				.isEqualTo("early");
+		assertThat(generations.classify("test", Version.parse("1.0.5.RELEASE")))
+				.isEqualTo("late");
+	}
+
+	@Test
+	public void loadWithOverlappingRanges() {
+		assertThatThrownBy(
+				() -> load("test,version,1.0..2.0,first\ntest,version,1.5..3.0,second"))
+						.isInstanceOf(IllegalArgumentException.class)
+						.hasMessageContaining("second");
+	}
+
+	@Test
+	public void loadWithInvalidBound() {
+		assertThatThrownBy(() -> load("test,version,1..2.0,invalid"))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("'1'");
+	}
+
+	@Test
+	public void loadWithInvalidKind() {
+		assertThatThrownBy(() -> load("test,tag,1.0,invalid"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void keyPreservesOrder() {
+		assertThat(VersionGenerations.key(1, 10, 0))
+				.isLessThan(VersionGenerations.key(2, 0, 0));
+		assertThat(VersionGenerations.key(2, 0, 99))
+				.isLessThan(VersionGenerations.key(2, 1, 0));
+		assertThat(VersionGenerations.key(2, 0, Integer.MAX_VALUE))
+				.isLessThan(VersionGenerations.key(2, 1, 0));
+	}
+
+	private String classify(String project, String version) {
+		return this.generations.classify(project, VersionReference.parse(version));
+	}
+
+	private VersionGenerations load(String content) throws IOException {
+		return VersionGenerations.load(new StringReader(content));
+	}
+
+}
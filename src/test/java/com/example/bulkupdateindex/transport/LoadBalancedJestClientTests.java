@@ -0,0 +1,277 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.bulkupdateindex.transport;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.example.bulkupdateindex.transport.LoadBalancedJestClient.Node;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.Get;
+import io.searchbox.core.Index;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link LoadBalancedJestClient}.
+ *
+ * @author Stephane Nicoll
+ */
+public class LoadBalancedJestClientTests {
+
+	private final StubJestClient first = new StubJestClient(200);
+
+	private final StubJestClient second = new StubJestClient(200);
+
+	private final StubJestClient third = new StubJestClient(200);
+
+	private final Map<String, JestClient> clients = new LinkedHashMap<>();
+
+	public LoadBalancedJestClientTests() {
+		this.clients.put("first", this.first);
+		this.clients.put("second", this.second);
+		this.clients.put("third", this.third);
+	}
+
+	@Test
+	public void acquireSpreadsAcrossNodes() {
+		LoadBalancedJestClient client = createClient(2);
+		Node one = client.acquire();
+		Node two = client.acquire();
+		assertThat(one.getUrl()).isNotEqualTo(two.getUrl());
+		assertThat(client.getInFlightRequests()).containsEntry("first", 1)
+				.containsEntry("second", 1);
+	}
+
+	@Test
+	public void acquirePrefersLeastOutstandingNode() {
+		LoadBalancedJestClient client = createClient(2);
+		client.acquire();
+		Node two = client.acquire();
+		client.acquire();
+		client.release(two);
+		assertThat(client.getInFlightRequests()).containsEntry("first", 2)
+				.containsEntry("second", 0);
+		assertThat(client.acquire().getUrl()).isEqualTo("second");
+	}
+
+	@Test
+	public void acquireWaitsWhenAllNodesAreAtCapacity() throws Exception {
+		LoadBalancedJestClient client = createClient(1);
+		Node one = client.acquire();
+		client.acquire();
+		CompletableFuture<Node> next = CompletableFuture.supplyAsync(client::acquire);
+		Thread.sleep(100);
+		assertThat(next.isDone()).isFalse();
+		client.release(one);
+		assertThat(next.get(5, TimeUnit.SECONDS).getUrl()).isEqualTo(one.getUrl());
+	}
+
+	@Test
+	public void overloadedNodeIsEjected() throws IOException {
+		this.first.status = 429;
+		LoadBalancedJestClient client = createClient(2);
+		client.setEjectionDuration(Duration.ofMinutes(1));
+		for (int i = 0; i < 3; i++) {
+			client.execute(new Get.Builder("test", "1").build());
+		}
+		assertThat(this.first.requests).isEqualTo(1);
+		assertThat(this.second.requests).isEqualTo(2);
+	}
+
+	@Test
+	public void nodeRejectingBulkItemsIsEjected() throws IOException {
+		this.first.rejectedItems = 1;
+		LoadBalancedJestClient client = createClient(2);
+		client.setEjectionDuration(Duration.ofMinutes(1));
+		for (int i = 0; i < 3; i++) {
+			client.execute(bulk());
+		}
+		assertThat(this.first.requests).isEqualTo(1);
+		assertThat(this.second.requests).isEqualTo(2);
+	}
+
+	@Test
+	public void nodeFailingBulkItemsIsNotEjected() throws IOException {
+		this.first.failedItems = 1;
+		LoadBalancedJestClient client = createClient(1);
+		client.setEjectionDuration(Duration.ofMinutes(1));
+		for (int i = 0; i < 4; i++) {
+			client.execute(bulk());
+		}
+		assertThat(this.first.requests).isEqualTo(2);
+		assertThat(this.second.requests).isEqualTo(2);
+	}
+
+	@Test
+	public void ejectedNodesAreUsedWhenNoOtherNodeIsAvailable() throws IOException {
+		this.first.status = 503;
+		this.second.status = 503;
+		LoadBalancedJestClient client = createClient(1);
+		client.setEjectionDuration(Duration.ofMinutes(1));
+		for (int i = 0; i < 4; i++) {
+			client.execute(new Get.Builder("test", "1").build());
+		}
+		assertThat(this.first.requests + this.second.requests).isEqualTo(4);
+	}
+
+	@Test
+	public void executeAsyncReleasesNodeWhenDelegateThrows() {
+		this.first.asyncFailure = new IllegalStateException("test");
+		this.second.asyncFailure = new IllegalStateException("test");
+		LoadBalancedJestClient client = createClient(1);
+		for (int i = 0; i < 3; i++) {
+			assertThatThrownBy(() -> client.executeAsync(bulk(), null))
+					.isInstanceOf(IllegalStateException.class).hasMessage("test");
+		}
+		assertThat(client.getInFlightRequests()).containsEntry("first", 0)
+				.containsEntry("second", 0);
+	}
+
+	@Test
+	public void setServersReplacesNodes() throws IOException {
+		LoadBalancedJestClient client = createClient(2);
+		client.execute(bulk());
+		client.setServers(new LinkedHashSet<>(Arrays.asList("second", "third")));
+		assertThat(client.getInFlightRequests()).containsOnlyKeys("second", "third");
+		assertThat(this.first.shutdown).isTrue();
+		assertThat(this.second.shutdown).isFalse();
+		client.execute(bulk());
+		client.execute(bulk());
+		assertThat(this.first.requests).isEqualTo(1);
+		assertThat(this.second.requests).isEqualTo(1);
+		assertThat(this.third.requests).isEqualTo(1);
+	}
+
+	@Test
+	public void setServersShutsDownRemovedNodeOnceIdle() {
+		LoadBalancedJestClient client = createClient(1);
+		Node one = client.acquire();
+		assertThat(one.getUrl()).isEqualTo("first");
+		client.setServers(Collections.singleton("second"));
+		assertThat(this.first.shutdown).isFalse();
+		client.release(one);
+		assertThat(this.first.shutdown).isTrue();
+		assertThat(client.getInFlightRequests()).containsOnlyKeys("second");
+	}
+
+	@Test
+	public void getHttpUrls() {
+		JsonObject nodesInfo = new JsonParser()
+				.parse("{\"nodes\":{\"b\":{\"http\":{\"publish_address\":"
+						+ "\"node-b/10.0.0.2:9200\"}},\"a\":{\"http\":{\"publish_address\":"
+						+ "\"10.0.0.1:9200\"}},\"c\":{}}}")
+				.getAsJsonObject();
+		assertThat(LoadBalancedJestClient.getHttpUrls(nodesInfo))
+				.containsExactly("http://10.0.0.1:9200", "http://10.0.0.2:9200");
+	}
+
+	private Bulk bulk() {
+		return new Bulk.Builder().addAction(
+				new Index.Builder("{}").index("test").type("test").id("1").build())
+				.build();
+	}
+
+	private LoadBalancedJestClient createClient(int maxInFlightPerNode) {
+		return new LoadBalancedJestClient(Arrays.asList("first", "second"),
+				this.clients::get, maxInFlightPerNode);
+	}
+
+	private static class StubJestClient implements JestClient {
+
+		private int status;
+
+		private int requests;
+
+		private int rejectedItems;
+
+		private int failedItems;
+
+		private RuntimeException asyncFailure;
+
+		private boolean shutdown;
+
+		StubJestClient(int status) {
+			this.status = status;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T extends JestResult> T execute(Action<T> clientRequest) {
+			this.requests++;
+			if (clientRequest instanceof Bulk) {
+				return (T) bulkResult();
+			}
+			JestResult result = new JestResult(new Gson());
+			result.setResponseCode(this.status);
+			result.setSucceeded(this.status == 200);
+			return (T) result;
+		}
+
+		private BulkResult bulkResult() {
+			StringBuilder items = new StringBuilder();
+			for (int i = 0; i < this.rejectedItems + this.failedItems; i++) {
+				int status = (i < this.rejectedItems) ? 429 : 400;
+				items.append((i > 0) ? "," : "").append("{\"index\":{\"_index\":"
+						+ "\"test\",\"_type\":\"test\",\"_id\":\"" + i + "\",\"status\":"
+						+ status + ",\"error\":{\"type\":\"test\"}}}");
+			}
+			String body = "{\"errors\":" + (items.length() > 0) + ",\"items\":[" + items
+					+ "]}";
+			return new Bulk.Builder().build().createNewElasticSearchResult(body,
+					this.status, null, new Gson());
+		}
+
+		@Override
+		public <T extends JestResult> void executeAsync(Action<T> clientRequest,
+				JestResultHandler<? super T> jestResultHandler) {
+			if (this.asyncFailure != null) {
+				throw this.asyncFailure;
+			}
+			jestResultHandler.completed(execute(clientRequest));
+		}
+
+		@Override
+		public void shutdownClient() {
+			this.shutdown = true;
+		}
+
+		@Override
+		public void setServers(Set<String> servers) {
+		}
+
+	}
+
+}